@@ -0,0 +1,274 @@
+package geometries;
+
+import java.util.Arrays;
+
+/**
+ * A compact bounding volume hierarchy over the primitives of a composite geometry (such as the triangles of a mesh).
+ * The hierarchy is flattened into primitive arrays: the node bounds are stored as floats, rounded outwards
+ * so that a node box always contains its primitives, and the primitives are referenced by their indices.
+ * The owning geometry traverses the hierarchy with {@link #traverse}, and intersects the primitives of the leaves
+ * itself in a {@link LeafVisitor}.
+ */
+final class Bvh {
+    /**
+     * The action of a traversal on the primitives of the leaves hit by a ray.
+     */
+    @FunctionalInterface
+    interface LeafVisitor {
+        /**
+         * Visits a primitive of a leaf whose box the ray enters within the maximal distance of the traversal.
+         *
+         * @param primitive the primitive index
+         * @param ox        the x-coordinate of the ray origin
+         * @param oy        the y-coordinate of the ray origin
+         * @param oz        the z-coordinate of the ray origin
+         * @param dx        the x-coordinate of the ray direction
+         * @param dy        the y-coordinate of the ray direction
+         * @param dz        the z-coordinate of the ray direction
+         * @param tMax      the maximal distance of the traversal
+         * @return the new maximal distance: tMax to go on, the distance of a closer hit to search only before it,
+         * or a negative value to stop the traversal
+         */
+        double visit(int primitive, double ox, double oy, double oz, double dx, double dy, double dz, double tMax);
+    }
+
+    /** The maximal number of primitives in a leaf */
+    private static final int LEAF_SIZE = 4;
+    /** The maximal depth of a traversal stack */
+    private static final int STACK_SIZE = 128;
+    /** A traversal stack per thread, so that traversal does not allocate */
+    private static final ThreadLocal<int[]> STACK = ThreadLocal.withInitial(() -> new int[STACK_SIZE]);
+
+    /** The node bounds, 6 per node: minX, minY, minZ, maxX, maxY, maxZ */
+    private float[] bounds;
+    /** The node links, 2 per node: for a leaf the first index in {@link #order} and the count,
+     * for an inner node the index of the right child (the left child follows the node) and -1 - the split axis,
+     * the left child holding the primitives with the smaller centroids along the axis */
+    private int[] nodes;
+    /** The primitive indices in leaf order */
+    private final int[] order;
+    /** The number of nodes in use */
+    private int nodeCount = 0;
+
+    /** The primitive bounds, used only while building */
+    private double[] primitiveBounds;
+    /** The primitive centroids, used only while building */
+    private double[] centroids;
+
+    /**
+     * Builds a hierarchy over primitives given by their bounding boxes.
+     *
+     * @param primitiveBounds the primitive bounds, 6 per primitive: minX, minY, minZ, maxX, maxY, maxZ
+     * @param count           the number of primitives
+     */
+    Bvh(double[] primitiveBounds, int count) {
+        this.primitiveBounds = primitiveBounds;
+        centroids = new double[3 * count];
+        order = new int[count];
+        for (int i = 0; i < count; ++i) {
+            order[i] = i;
+            for (int axis = 0; axis < 3; ++axis)
+                centroids[3 * i + axis] = (primitiveBounds[6 * i + axis] + primitiveBounds[6 * i + 3 + axis]) / 2;
+        }
+        // Every split range has more than LEAF_SIZE primitives, so every leaf has at least 2 of them
+        // and there are less nodes than primitives
+        int maxNodes = Math.max(1, count);
+        bounds = new float[6 * maxNodes];
+        nodes = new int[2 * maxNodes];
+        if (count > 0)
+            build(0, count, 0);
+        bounds = Arrays.copyOf(bounds, 6 * Math.max(1, nodeCount));
+        nodes = Arrays.copyOf(nodes, 2 * Math.max(1, nodeCount));
+        this.primitiveBounds = null;
+        centroids = null;
+    }
+
+    /**
+     * Traverses the nodes whose boxes a ray enters within a maximal distance, and visits the primitives of their
+     * leaves. At each inner node the child on the near side of the split along the ray is visited first. The maximal distance returned by each visit bounds the rest
+     * of the traversal, so a search for the closest hit skips the nodes behind it, and a search for any hit
+     * stops at the first one. Nothing is allocated.
+     *
+     * @param ox      the x-coordinate of the ray origin
+     * @param oy      the y-coordinate of the ray origin
+     * @param oz      the z-coordinate of the ray origin
+     * @param dx      the x-coordinate of the ray direction
+     * @param dy      the y-coordinate of the ray direction
+     * @param dz      the z-coordinate of the ray direction
+     * @param tMax    the initial maximal distance along the ray
+     * @param visitor the action on the primitives of the leaves
+     * @return the final maximal distance, negative if a visit stopped the traversal
+     */
+    double traverse(double ox, double oy, double oz, double dx, double dy, double dz, double tMax,
+                    LeafVisitor visitor) {
+        double invX = 1 / dx, invY = 1 / dy, invZ = 1 / dz;
+        int[] stack = STACK.get();
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (!hits(node, ox, oy, oz, invX, invY, invZ, tMax))
+                continue;
+            int first = nodes[2 * node];
+            int count = nodes[2 * node + 1];
+            if (count < 0) {
+                int axis = -1 - count;
+                boolean backwards = (axis == 0 ? dx : axis == 1 ? dy : dz) < 0;
+                // Push the far child first, so that the near child is popped first
+                stack[top++] = backwards ? node + 1 : first;
+                stack[top++] = backwards ? first : node + 1;
+                continue;
+            }
+            for (int i = first; i < first + count; ++i) {
+                tMax = visitor.visit(order[i], ox, oy, oz, dx, dy, dz, tMax);
+                if (tMax < 0)
+                    return tMax;
+            }
+        }
+        return tMax;
+    }
+
+    /**
+     * Returns the number of nodes of the hierarchy.
+     *
+     * @return the number of nodes
+     */
+    int size() {
+        return nodeCount;
+    }
+
+    /**
+     * Recursively builds the node over the primitives in a range of {@link #order}, splitting at the median
+     * of the centroids along the longest axis of the centroid bounds.
+     *
+     * @param first the first index of the range
+     * @param end   the index after the last index of the range
+     * @param depth the depth of the node
+     * @return the index of the node
+     */
+    private int build(int first, int end, int depth) {
+        int node = nodeCount++;
+        double[] box = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        double[] centroidBox = box.clone();
+        for (int i = first; i < end; ++i) {
+            int p = order[i];
+            for (int axis = 0; axis < 3; ++axis) {
+                box[axis] = Math.min(box[axis], primitiveBounds[6 * p + axis]);
+                box[axis + 3] = Math.max(box[axis + 3], primitiveBounds[6 * p + 3 + axis]);
+                centroidBox[axis] = Math.min(centroidBox[axis], centroids[3 * p + axis]);
+                centroidBox[axis + 3] = Math.max(centroidBox[axis + 3], centroids[3 * p + axis]);
+            }
+        }
+        for (int axis = 0; axis < 3; ++axis) {
+            bounds[6 * node + axis] = roundDown(box[axis]);
+            bounds[6 * node + 3 + axis] = roundUp(box[axis + 3]);
+        }
+
+        int axis = 0;
+        double extent = centroidBox[3] - centroidBox[0];
+        for (int a = 1; a < 3; ++a)
+            if (centroidBox[a + 3] - centroidBox[a] > extent) {
+                extent = centroidBox[a + 3] - centroidBox[a];
+                axis = a;
+            }
+
+        if (end - first <= LEAF_SIZE || extent == 0 || depth >= STACK_SIZE / 2 - 1) {
+            nodes[2 * node] = first;
+            nodes[2 * node + 1] = end - first;
+            return node;
+        }
+
+        int middle = (first + end) >>> 1;
+        select(first, end - 1, middle, axis);
+        build(first, middle, depth + 1);
+        nodes[2 * node] = build(middle, end, depth + 1);
+        nodes[2 * node + 1] = -1 - axis;
+        return node;
+    }
+
+    /**
+     * Partially sorts a range of {@link #order} so that the primitive at index k has the k-th centroid
+     * along the axis, and the primitives before it have smaller or equal centroids (quickselect).
+     *
+     * @param left  the first index of the range
+     * @param right the last index of the range
+     * @param k     the index to select
+     * @param axis  the axis of the centroids
+     */
+    private void select(int left, int right, int k, int axis) {
+        while (left < right) {
+            double pivot = centroids[3 * order[(left + right) >>> 1] + axis];
+            int i = left, j = right;
+            while (i <= j) {
+                while (centroids[3 * order[i] + axis] < pivot) ++i;
+                while (centroids[3 * order[j] + axis] > pivot) --j;
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            if (k <= j) right = j;
+            else if (k >= i) left = i;
+            else return;
+        }
+    }
+
+    /**
+     * Checks whether a ray hits the box of a node within a maximal distance (slab test).
+     *
+     * @param node the node index
+     * @param ox   the x-coordinate of the ray origin
+     * @param oy   the y-coordinate of the ray origin
+     * @param oz   the z-coordinate of the ray origin
+     * @param invX the inverse of the x-coordinate of the ray direction
+     * @param invY the inverse of the y-coordinate of the ray direction
+     * @param invZ the inverse of the z-coordinate of the ray direction
+     * @param tMax the maximal distance along the ray
+     * @return true if the ray enters the box before the maximal distance
+     */
+    private boolean hits(int node, double ox, double oy, double oz, double invX, double invY, double invZ, double tMax) {
+        int b = 6 * node;
+        double tNear = 0, tFar = tMax;
+        // A NaN slab distance (a direction parallel to the slab with the origin on its plane) fails both
+        // comparisons and leaves the interval unchanged
+        double t1 = (bounds[b] - ox) * invX, t2 = (bounds[b + 3] - ox) * invX;
+        if (t1 > t2) { double swap = t1; t1 = t2; t2 = swap; }
+        if (t1 > tNear) tNear = t1;
+        if (t2 < tFar) tFar = t2;
+        t1 = (bounds[b + 1] - oy) * invY;
+        t2 = (bounds[b + 4] - oy) * invY;
+        if (t1 > t2) { double swap = t1; t1 = t2; t2 = swap; }
+        if (t1 > tNear) tNear = t1;
+        if (t2 < tFar) tFar = t2;
+        t1 = (bounds[b + 2] - oz) * invZ;
+        t2 = (bounds[b + 5] - oz) * invZ;
+        if (t1 > t2) { double swap = t1; t1 = t2; t2 = swap; }
+        if (t1 > tNear) tNear = t1;
+        if (t2 < tFar) tFar = t2;
+        return tNear <= tFar;
+    }
+
+    /**
+     * Rounds a bound down to the nearest float which is not greater than it.
+     *
+     * @param value the bound
+     * @return the float bound
+     */
+    private static float roundDown(double value) {
+        float f = (float) value;
+        return f > value ? Math.nextDown(f) : f;
+    }
+
+    /**
+     * Rounds a bound up to the nearest float which is not less than it.
+     *
+     * @param value the bound
+     * @return the float bound
+     */
+    private static float roundUp(double value) {
+        float f = (float) value;
+        return f < value ? Math.nextUp(f) : f;
+    }
+}
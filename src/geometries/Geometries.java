@@ -2,7 +2,9 @@ package geometries;
 
 import primitives.Point;
 import primitives.Ray;
+import primitives.RayPacket;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -48,19 +50,85 @@ public class Geometries extends Intersectable {
      */
     @Override
     protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+        return findGeoIntersections(ray, ALL_RAYS);
+    }
+
+    /**
+     * Finds the intersections of a ray of a given kind with the geometries in this composite
+     * which are visible to its kind; the others are skipped without intersection work.
+     *
+     * @param ray  The ray to intersect with the geometries.
+     * @param rays The kind of the ray.
+     * @return A list of {@link GeoPoint} objects representing the intersection points, or null if there are no intersections.
+     */
+    @Override
+    public List<GeoPoint> findGeoIntersections(Ray ray, int rays) {
         List<GeoPoint> intersectionPoints = null;
 
         for (Intersectable geometry : geometries) {
-            List<GeoPoint> temp = geometry.findGeoIntersections(ray);
+            List<GeoPoint> temp = geometry.findGeoIntersections(ray, rays);
             if (temp != null) {
                 if (intersectionPoints == null) {
-                    intersectionPoints = new LinkedList<>();
+                    intersectionPoints = new ArrayList<>();
                 }
-                intersectionPoints.addAll(temp);
+                for (GeoPoint gp : temp) // avoids the array copy of addAll
+                    intersectionPoints.add(gp);
             }
         }
 
         return intersectionPoints;
     }
 
+    /**
+     * Finds the closest intersection of a ray of a given kind with the geometries in this composite,
+     * searching each geometry only before the closest hit of the geometries before it.
+     *
+     * @param ray         The ray.
+     * @param maxDistance The distance along the ray before which hits are searched.
+     * @param rays        The kind of the ray.
+     * @return The closest intersection before the distance, or null if there is none.
+     */
+    @Override
+    public GeoPoint findClosestGeoIntersection(Ray ray, double maxDistance, int rays) {
+        GeoPoint closest = null;
+        for (Intersectable geometry : geometries) {
+            GeoPoint gp = geometry.findClosestGeoIntersection(ray, maxDistance, rays);
+            if (gp != null) {
+                closest = gp;
+                maxDistance = gp.t;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Tells whether a ray of a given kind hits any of the geometries in this composite within a distance,
+     * stopping at the first geometry hit.
+     *
+     * @param ray         The ray.
+     * @param maxDistance The distance along the ray within which hits are searched.
+     * @param rays        The kind of the ray.
+     * @return true if the ray hits a geometry within the distance.
+     */
+    @Override
+    public boolean isOccluded(Ray ray, double maxDistance, int rays) {
+        for (Intersectable geometry : geometries)
+            if (geometry.isOccluded(ray, maxDistance, rays))
+                return true;
+        return false;
+    }
+
+    /**
+     * Intersects a packet of rays with all geometries in this composite which are visible to the camera,
+     * since packets carry the rays from the camera.
+     *
+     * @param packet the packet of rays
+     */
+    @Override
+    public void intersectPacket(RayPacket packet) {
+        for (Intersectable geometry : geometries)
+            if (geometry.isVisibleTo(CAMERA_RAYS))
+                geometry.intersectPacket(packet);
+    }
+
 }
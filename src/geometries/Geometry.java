@@ -1,10 +1,16 @@
 package geometries;
 
+import lighting.LightSource;
 import primitives.Color;
 import primitives.Material;
 import primitives.Point;
+import primitives.Ray;
 import primitives.Vector;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
 
 /**
  * Abstract class representing a geometric object that can be intersected by rays.
@@ -19,6 +25,17 @@ public abstract class Geometry extends Intersectable {
 
     private Material material = new Material();
 
+    /**
+     * The kinds of rays which may hit the geometry, as a mask of {@link #CAMERA_RAYS}, {@link #REFLECTION_RAYS}
+     * and {@link #SHADOW_RAYS}. Defaults to all of them.
+     */
+    private int visibility = ALL_RAYS;
+
+    /**
+     * The light sources which illuminate the geometry, or null for all the light sources of the scene.
+     */
+    private Set<LightSource> lights = null;
+
     public Material getMaterial() {
         return material;
     }
@@ -48,6 +65,133 @@ public abstract class Geometry extends Intersectable {
         return this;
     }
 
+    /**
+     * Sets whether the geometry casts shadows, i.e. whether it is hit by shadow rays.
+     * Small props and emissive decorations which need not shadow anything save their shadow ray tests.
+     *
+     * @param castsShadows Whether the geometry casts shadows (the default) or not.
+     * @return The current instance of Geometry for method chaining.
+     */
+    public Geometry setCastsShadows(boolean castsShadows) {
+        return setVisibleTo(SHADOW_RAYS, castsShadows);
+    }
+
+    /**
+     * Sets whether the geometry is visible to the camera, i.e. whether it is hit by the rays from the camera.
+     * An invisible geometry may still be seen in reflections and cast shadows.
+     *
+     * @param visible Whether the geometry is visible to the camera (the default) or not.
+     * @return The current instance of Geometry for method chaining.
+     */
+    public Geometry setVisibleToCamera(boolean visible) {
+        return setVisibleTo(CAMERA_RAYS, visible);
+    }
+
+    /**
+     * Sets whether the geometry is visible in reflections, i.e. whether it is hit by the reflected and
+     * refracted rays (including glossy and gathering rays).
+     *
+     * @param visible Whether the geometry is visible in reflections (the default) or not.
+     * @return The current instance of Geometry for method chaining.
+     */
+    public Geometry setVisibleToReflections(boolean visible) {
+        return setVisibleTo(REFLECTION_RAYS, visible);
+    }
+
+    /**
+     * Sets or clears a kind of rays in the visibility mask of the geometry.
+     *
+     * @param rays    The kind of rays.
+     * @param visible Whether the rays of the kind may hit the geometry.
+     * @return The current instance of Geometry for method chaining.
+     */
+    private Geometry setVisibleTo(int rays, boolean visible) {
+        visibility = visible ? visibility | rays : visibility & ~rays;
+        return this;
+    }
+
+    @Override
+    public boolean isVisibleTo(int rays) {
+        return (visibility & rays) != 0;
+    }
+
+    /**
+     * Links the geometry to the light sources which illuminate it (light linking): the other light sources
+     * of the scene do not illuminate it, and no shadow ray is traced towards them from it.
+     * The geometry still casts shadows from all the light sources.
+     *
+     * @param lights The light sources illuminating the geometry, or none to unlink it from all of them.
+     * @return The current instance of Geometry for method chaining.
+     */
+    public Geometry setLights(LightSource... lights) {
+        Set<LightSource> linked = Collections.newSetFromMap(new IdentityHashMap<>());
+        Collections.addAll(linked, lights);
+        this.lights = linked;
+        return this;
+    }
+
+    /**
+     * Links the geometry back to all the light sources of the scene (the default).
+     *
+     * @return The current instance of Geometry for method chaining.
+     */
+    public Geometry setAllLights() {
+        lights = null;
+        return this;
+    }
+
+    /**
+     * Tells whether a light source illuminates the geometry.
+     *
+     * @param light The light source.
+     * @return true if the geometry is linked to all the light sources or to this one.
+     */
+    public boolean isLitBy(LightSource light) {
+        return lights == null || lights.contains(light);
+    }
+
+    /**
+     * Gets the material at an intersection point of the geometry. A composite geometry may have a
+     * different material for each of its primitives; by default it is the material of the geometry.
+     *
+     * @param gp The intersection point, from an intersection with this geometry.
+     * @return The material at the point.
+     */
+    public Material getMaterial(Intersectable.GeoPoint gp) {
+        return material;
+    }
+
+    /**
+     * Gets the emission color at an intersection point of the geometry. A composite geometry may have a
+     * different emission for each of its primitives; by default it is the emission of the geometry.
+     *
+     * @param gp The intersection point, from an intersection with this geometry.
+     * @return The emission color at the point.
+     */
+    public Color getEmission(Intersectable.GeoPoint gp) {
+        return emission;
+    }
+
+    /**
+     * Builds the hit record of a hit found by a packet kernel, given by its distance along the ray and the primitive
+     * hit. This default intersects the ray with the whole geometry and keeps the hit closest to the distance;
+     * composite geometries rebuild the record from the primitive alone.
+     *
+     * @param ray       The ray of the lane.
+     * @param t         The distance along the ray to the hit.
+     * @param primitive The index of the primitive hit, or -1 if the kernel did not record it.
+     * @return The hit record, or null if the ray does not hit the geometry.
+     */
+    public Intersectable.GeoPoint getPacketHit(Ray ray, double t, int primitive) {
+        Intersectable.GeoPoint closest = null;
+        var intersections = findGeoIntersections(ray);
+        if (intersections != null)
+            for (Intersectable.GeoPoint gp : intersections)
+                if (closest == null || Math.abs(gp.t - t) < Math.abs(closest.t - t))
+                    closest = gp;
+        return closest;
+    }
+
     /**
      * Computes the normal vector at the given point on the geometry's surface.
      *
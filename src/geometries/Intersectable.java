@@ -2,6 +2,8 @@ package geometries;
 
 import primitives.Point;
 import primitives.Ray;
+import primitives.RayPacket;
+import primitives.Vector;
 import java.util.List;
 import java.util.Objects;
 
@@ -11,6 +13,15 @@ import java.util.Objects;
  */
 public abstract class Intersectable {
 
+    /** The kind of the rays from the camera, as a bit of a mask of ray kinds */
+    public static final int CAMERA_RAYS = 1;
+    /** The kind of the reflected and refracted rays, including glossy and gathering rays */
+    public static final int REFLECTION_RAYS = 2;
+    /** The kind of the shadow rays towards the light sources */
+    public static final int SHADOW_RAYS = 4;
+    /** The mask of all the kinds of rays */
+    public static final int ALL_RAYS = CAMERA_RAYS | REFLECTION_RAYS | SHADOW_RAYS;
+
     /**
      * Nested class representing a geometric point along with its associated geometry.
      */
@@ -26,14 +37,60 @@ public abstract class Intersectable {
         public Point point;
 
         /**
-         * Constructs a GeoPoint with the specified geometry and point.
+         * The distance along the intersecting ray from its head to the point.
+         */
+        public double t;
+
+        /**
+         * The geometric unit normal of the geometry at the point.
+         */
+        public Vector normal;
+
+        /**
+         * The surface coordinates of the point, their meaning depends on the geometry
+         * (spherical angles for a sphere, barycentric weights for a triangle, plane coordinates for a plane).
+         */
+        public double u, v;
+
+        /**
+         * The index of the intersected primitive within a composite geometry (such as a mesh triangle
+         * or a sphere of a cloud), 0 for a single geometry.
+         */
+        public int index;
+
+        /**
+         * Constructs a GeoPoint with the full hit record, computed once by the intersection routine.
          *
          * @param geometry the geometry associated with this point
          * @param point the point in space
+         * @param t the distance along the ray from its head to the point
+         * @param normal the geometric unit normal at the point
+         * @param u the first surface coordinate of the point
+         * @param v the second surface coordinate of the point
          */
-        public GeoPoint(Geometry geometry, Point point) {
+        public GeoPoint(Geometry geometry, Point point, double t, Vector normal, double u, double v) {
             this.geometry = geometry;
             this.point = point;
+            this.t = t;
+            this.normal = normal;
+            this.u = u;
+            this.v = v;
+        }
+
+        /**
+         * Constructs a GeoPoint with the full hit record of a primitive within a composite geometry.
+         *
+         * @param geometry the geometry associated with this point
+         * @param point the point in space
+         * @param t the distance along the ray from its head to the point
+         * @param normal the geometric unit normal at the point
+         * @param u the first surface coordinate of the point
+         * @param v the second surface coordinate of the point
+         * @param index the index of the intersected primitive within the geometry
+         */
+        public GeoPoint(Geometry geometry, Point point, double t, Vector normal, double u, double v, int index) {
+            this(geometry, point, t, normal, u, v);
+            this.index = index;
         }
 
         @Override
@@ -48,6 +105,7 @@ public abstract class Intersectable {
             return "GeoPoint{" +
                     "geometry=" + geometry +
                     ", point=" + point +
+                    ", t=" + t +
                     '}';
         }
     }
@@ -73,6 +131,104 @@ public abstract class Intersectable {
         return findGeoIntersectionsHelper(ray);
     }
 
+    /**
+     * Finds the intersections of a ray of a given kind with the intersectable object. An object which is
+     * not visible to the kind of the ray is skipped without any intersection work.
+     *
+     * @param ray  the ray to intersect with the object
+     * @param rays the kind of the ray, one of {@link #CAMERA_RAYS}, {@link #REFLECTION_RAYS} and {@link #SHADOW_RAYS}
+     * @return a list of GeoPoints where the ray intersects the object, or null if there are no intersections
+     */
+    public List<GeoPoint> findGeoIntersections(Ray ray, int rays) {
+        return isVisibleTo(rays) ? findGeoIntersectionsHelper(ray) : null;
+    }
+
+    /**
+     * Finds the closest intersection of a ray of a given kind with the object which is closer than a distance.
+     * Geometries with a hierarchy search only the nodes before the closest hit found so far, and a composite
+     * passes the closest hit of each of its objects on to the next ones as the distance.
+     * An object which is not visible to the kind of the ray is skipped without any intersection work.
+     *
+     * @param ray         the ray to intersect with the object
+     * @param maxDistance the distance along the ray before which hits are searched
+     * @param rays        the kind of the ray, one of {@link #CAMERA_RAYS}, {@link #REFLECTION_RAYS} and {@link #SHADOW_RAYS}
+     * @return the closest intersection before the distance, or null if there is none
+     */
+    public GeoPoint findClosestGeoIntersection(Ray ray, double maxDistance, int rays) {
+        return isVisibleTo(rays) ? findClosestGeoIntersectionHelper(ray, maxDistance) : null;
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the object which is closer than a distance.
+     * This default implementation finds all the intersections; geometries with a hierarchy override it
+     * to prune the search behind the closest hit found so far.
+     *
+     * @param ray         the ray to intersect with the object
+     * @param maxDistance the distance along the ray before which hits are searched
+     * @return the closest intersection before the distance, or null if there is none
+     */
+    protected GeoPoint findClosestGeoIntersectionHelper(Ray ray, double maxDistance) {
+        GeoPoint closest = ray.findClosestGeoPoint(findGeoIntersectionsHelper(ray));
+        return closest != null && closest.t < maxDistance ? closest : null;
+    }
+
+    /**
+     * Tells whether a ray of a given kind hits the object within a distance, stopping at the first hit found
+     * instead of finding all the intersections. An object which is not visible to the kind of the ray
+     * does not occlude it.
+     *
+     * @param ray         the ray
+     * @param maxDistance the distance along the ray within which hits are searched
+     * @param rays        the kind of the ray, one of {@link #CAMERA_RAYS}, {@link #REFLECTION_RAYS} and {@link #SHADOW_RAYS}
+     * @return true if the ray hits the object within the distance
+     */
+    public boolean isOccluded(Ray ray, double maxDistance, int rays) {
+        return isVisibleTo(rays) && isOccludedHelper(ray, maxDistance);
+    }
+
+    /**
+     * Tells whether a ray hits the object within a distance. This default implementation finds all the
+     * intersections; geometries with a hierarchy override it to stop at the first hit.
+     *
+     * @param ray         the ray
+     * @param maxDistance the distance along the ray within which hits are searched
+     * @return true if the ray hits the object within the distance
+     */
+    protected boolean isOccludedHelper(Ray ray, double maxDistance) {
+        List<GeoPoint> intersections = findGeoIntersectionsHelper(ray);
+        if (intersections != null)
+            for (GeoPoint gp : intersections)
+                if (gp.t <= maxDistance)
+                    return true;
+        return false;
+    }
+
+    /**
+     * Tells whether the object is visible to a kind of rays. By default, an object is visible to all of them.
+     *
+     * @param rays the kind of rays, one of {@link #CAMERA_RAYS}, {@link #REFLECTION_RAYS} and {@link #SHADOW_RAYS}
+     * @return true if the rays of the kind may hit the object
+     */
+    public boolean isVisibleTo(int rays) {
+        return true;
+    }
+
+    /**
+     * Intersects a packet of rays with the intersectable object, recording in each lane of the packet
+     * the closest hit found. This default implementation intersects the lanes one by one;
+     * geometries with a packet kernel override it.
+     *
+     * @param packet the packet of rays
+     */
+    public void intersectPacket(RayPacket packet) {
+        for (int lane = 0; lane < packet.size(); ++lane) {
+            Ray ray = packet.getRay(lane);
+            GeoPoint closest = ray.findClosestGeoPoint(findGeoIntersections(ray));
+            if (closest != null)
+                packet.record(lane, closest);
+        }
+    }
+
     /**
      * Finds the intersections of the given ray with the intersectable object.
      * This method is to be implemented by subclasses to provide the actual intersection logic.
@@ -0,0 +1,386 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.RayPacket;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
+
+/**
+ * Represents a triangle mesh: a set of triangles sharing an array of vertices, with a single material.
+ * The vertices are stored in primitive arrays, either in double precision or, to halve the memory
+ * of large meshes, in single precision. The triangles are indexed by a bounding volume hierarchy.
+ */
+public class Mesh extends Geometry {
+
+    /**
+     * The precision in which the vertices of a mesh are stored and intersected.
+     */
+    public enum Precision {
+        /** Vertices are stored and intersected as doubles */
+        DOUBLE,
+        /** Vertices are stored as floats and intersected in float, and the hit is re-intersected in double */
+        FLOAT
+    }
+
+    /** Relative tolerance of the float intersection test, so that rays through shared edges do not miss */
+    private static final float FLOAT_TOLERANCE = 1e-5f;
+
+    /** The vertex coordinates in double precision (x, y, z per vertex), or null in float precision */
+    private final double[] doubleVertices;
+    /** The vertex coordinates in single precision (x, y, z per vertex), or null in double precision */
+    private final float[] floatVertices;
+    /** The vertex indices of the triangles (3 per triangle) */
+    private final int[] indices;
+    /** The number of triangles */
+    private final int size;
+    /** The hierarchy over the triangles */
+    private final Bvh bvh;
+
+    /**
+     * Constructs a mesh from vertices and triangles given by vertex indices, stored in double precision.
+     *
+     * @param vertices the vertices of the mesh
+     * @param indices  the vertex indices of the triangles, 3 per triangle
+     * @throws IllegalArgumentException if the indices do not form triangles of the given vertices
+     */
+    public Mesh(Point[] vertices, int[] indices) {
+        this(vertices, indices, Precision.DOUBLE);
+    }
+
+    /**
+     * Constructs a mesh from vertices and triangles given by vertex indices.
+     *
+     * @param vertices  the vertices of the mesh
+     * @param indices   the vertex indices of the triangles, 3 per triangle
+     * @param precision the precision in which the vertices are stored
+     * @throws IllegalArgumentException if the indices do not form triangles of the given vertices
+     */
+    public Mesh(Point[] vertices, int[] indices, Precision precision) {
+        if (indices.length == 0 || indices.length % 3 != 0)
+            throw new IllegalArgumentException("A mesh must have whole triangles");
+        for (int index : indices)
+            if (index < 0 || index >= vertices.length)
+                throw new IllegalArgumentException("A mesh triangle refers to a missing vertex");
+
+        this.indices = indices.clone();
+        size = indices.length / 3;
+        if (precision == Precision.FLOAT) {
+            floatVertices = new float[3 * vertices.length];
+            doubleVertices = null;
+            for (int i = 0; i < vertices.length; ++i) {
+                floatVertices[3 * i] = (float) vertices[i].getX();
+                floatVertices[3 * i + 1] = (float) vertices[i].getY();
+                floatVertices[3 * i + 2] = (float) vertices[i].getZ();
+            }
+        } else {
+            doubleVertices = new double[3 * vertices.length];
+            floatVertices = null;
+            for (int i = 0; i < vertices.length; ++i) {
+                doubleVertices[3 * i] = vertices[i].getX();
+                doubleVertices[3 * i + 1] = vertices[i].getY();
+                doubleVertices[3 * i + 2] = vertices[i].getZ();
+            }
+        }
+
+        double[] triangleBounds = new double[6 * size];
+        for (int triangle = 0; triangle < size; ++triangle)
+            for (int axis = 0; axis < 3; ++axis) {
+                double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+                for (int corner = 0; corner < 3; ++corner) {
+                    double value = coordinate(this.indices[3 * triangle + corner], axis);
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                triangleBounds[6 * triangle + axis] = min;
+                triangleBounds[6 * triangle + 3 + axis] = max;
+            }
+        bvh = new Bvh(triangleBounds, size);
+    }
+
+    /**
+     * Returns the precision in which the vertices are stored.
+     *
+     * @return the precision of the mesh
+     */
+    public Precision getPrecision() {
+        return floatVertices != null ? Precision.FLOAT : Precision.DOUBLE;
+    }
+
+    /**
+     * Returns the number of triangles of the mesh.
+     *
+     * @return the number of triangles
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a coordinate of a vertex, as stored.
+     *
+     * @param vertex the vertex index
+     * @param axis   the axis (0 for x, 1 for y, 2 for z)
+     * @return the coordinate
+     */
+    private double coordinate(int vertex, int axis) {
+        return floatVertices != null ? floatVertices[3 * vertex + axis] : doubleVertices[3 * vertex + axis];
+    }
+
+    /**
+     * Returns the normal of the mesh at a point, which is the normal of the first triangle containing the point.
+     * This requires a search over all the triangles; the intersection routines provide the normal directly.
+     *
+     * @param point The point on the geometry's surface.
+     * @return The normal vector of the triangle containing the point.
+     * @throws IllegalArgumentException if the point is not on the mesh
+     */
+    @Override
+    public Vector getNormal(Point point) {
+        for (int triangle = 0; triangle < size; ++triangle) {
+            Vector normal = triangleNormal(triangle);
+            int a = indices[3 * triangle];
+            double distance = (point.getX() - coordinate(a, 0)) * normal.getX()
+                    + (point.getY() - coordinate(a, 1)) * normal.getY()
+                    + (point.getZ() - coordinate(a, 2)) * normal.getZ();
+            if (!isZero(distance))
+                continue;
+            // Re-intersect along the normal to check that the point is inside the triangle
+            double[] hit = new double[3];
+            if (intersectDouble(triangle, point.add(normal), normal.scale(-1), hit))
+                return normal;
+        }
+        throw new IllegalArgumentException("The point is not on the mesh");
+    }
+
+    /**
+     * Finds the intersections of the given ray with the triangles of the mesh, traversing the hierarchy.
+     * The surface coordinates of each point are its barycentric weights of the second and third
+     * vertices of the intersected triangle, and the primitive index of each point is the triangle index.
+     *
+     * @param ray The ray to intersect with the mesh.
+     * @return A list of {@link GeoPoint} objects representing the intersection points, or null if there are no intersections.
+     */
+    @Override
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+        List<GeoPoint> intersections = new ArrayList<>();
+        double[] hit = new double[3];
+        traverse(ray, Double.POSITIVE_INFINITY, (triangle, ox, oy, oz, dx, dy, dz, tMax) -> {
+            if (intersect(triangle, ray, hit))
+                intersections.add(new GeoPoint(this, ray.getPoint(hit[0]), hit[0], triangleNormal(triangle),
+                        hit[1], hit[2], triangle));
+            return tMax;
+        });
+        return intersections.isEmpty() ? null : intersections;
+    }
+
+    /**
+     * Tells whether a ray hits a triangle of the mesh within a distance, traversing only the nodes of the hierarchy
+     * within the distance and stopping at the first triangle hit.
+     *
+     * @param ray         The ray.
+     * @param maxDistance The distance along the ray within which hits are searched.
+     * @return true if the ray hits a triangle within the distance.
+     */
+    @Override
+    protected boolean isOccludedHelper(Ray ray, double maxDistance) {
+        double[] hit = new double[3];
+        return traverse(ray, maxDistance, (triangle, ox, oy, oz, dx, dy, dz, tMax) ->
+                intersect(triangle, ray, hit) && hit[0] <= tMax ? -1 : tMax) < 0;
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the triangles of the mesh before a distance, traversing only
+     * the nodes of the hierarchy before the closest hit found so far.
+     *
+     * @param ray         The ray.
+     * @param maxDistance The distance along the ray before which hits are searched.
+     * @return The closest intersection before the distance, or null if there is none.
+     */
+    @Override
+    protected GeoPoint findClosestGeoIntersectionHelper(Ray ray, double maxDistance) {
+        double[] hit = new double[3];
+        double[] closest = new double[3];
+        int[] closestTriangle = { -1 };
+        traverse(ray, maxDistance, (triangle, ox, oy, oz, dx, dy, dz, tMax) -> {
+            if (!intersect(triangle, ray, hit) || hit[0] >= tMax)
+                return tMax;
+            System.arraycopy(hit, 0, closest, 0, 3);
+            closestTriangle[0] = triangle;
+            return hit[0];
+        });
+        int triangle = closestTriangle[0];
+        return triangle < 0 ? null : new GeoPoint(this, ray.getPoint(closest[0]), closest[0],
+                triangleNormal(triangle), closest[1], closest[2], triangle);
+    }
+
+    /**
+     * Intersects a packet of rays with the triangles of the mesh, recording the closest hit of each lane
+     * with its triangle. Each lane traverses the hierarchy only up to its closest hit so far.
+     *
+     * @param packet the packet of rays
+     */
+    @Override
+    public void intersectPacket(RayPacket packet) {
+        double[] hit = new double[3];
+        int[] closestTriangle = new int[1];
+        for (int lane = 0; lane < packet.size(); ++lane) {
+            Ray ray = packet.getRay(lane);
+            closestTriangle[0] = -1;
+            double t = traverse(ray, packet.t[lane], (triangle, ox, oy, oz, dx, dy, dz, tMax) -> {
+                if (!intersect(triangle, ray, hit) || hit[0] >= tMax)
+                    return tMax;
+                closestTriangle[0] = triangle;
+                return hit[0];
+            });
+            if (closestTriangle[0] >= 0)
+                packet.record(lane, t, this, closestTriangle[0]);
+        }
+    }
+
+    /**
+     * Builds the hit record of a packet lane by intersecting the ray with the hit triangle alone.
+     *
+     * @param ray       The ray of the lane.
+     * @param t         The distance along the ray to the hit.
+     * @param primitive The index of the intersected triangle.
+     * @return The hit record.
+     */
+    @Override
+    public GeoPoint getPacketHit(Ray ray, double t, int primitive) {
+        double[] hit = new double[3];
+        if (primitive < 0 || !intersect(primitive, ray, hit))
+            return super.getPacketHit(ray, t, primitive);
+        return new GeoPoint(this, ray.getPoint(hit[0]), hit[0], triangleNormal(primitive), hit[1], hit[2], primitive);
+    }
+
+    /**
+     * Traverses the hierarchy along a ray.
+     *
+     * @param ray     the ray
+     * @param tMax    the initial maximal distance along the ray
+     * @param visitor the action on the triangles of the leaves
+     * @return the final maximal distance, negative if the visitor stopped the traversal
+     */
+    private double traverse(Ray ray, double tMax, Bvh.LeafVisitor visitor) {
+        Point head = ray.getHead();
+        Vector direction = ray.getDirection();
+        return bvh.traverse(head.getX(), head.getY(), head.getZ(),
+                direction.getX(), direction.getY(), direction.getZ(), tMax, visitor);
+    }
+
+    /**
+     * Intersects a triangle in the precision of the mesh: in single precision, only a triangle accepted
+     * by the float test is re-intersected in double precision.
+     *
+     * @param triangle the triangle index
+     * @param ray      the ray
+     * @param hit      receives the distance and the barycentric coordinates of the second and third vertices
+     * @return true if the ray hits the triangle
+     */
+    private boolean intersect(int triangle, Ray ray, double[] hit) {
+        Point head = ray.getHead();
+        Vector direction = ray.getDirection();
+        return (floatVertices == null || intersectFloat(triangle, head.getX(), head.getY(), head.getZ(),
+                direction.getX(), direction.getY(), direction.getZ()))
+                && intersectDouble(triangle, head, direction, hit);
+    }
+
+    /**
+     * Tests a triangle for intersection in single precision (Moller-Trumbore), with a small tolerance
+     * so that rays through edges shared by two triangles are never missed by both.
+     *
+     * @param triangle the triangle index
+     * @param ox       the x-coordinate of the ray origin
+     * @param oy       the y-coordinate of the ray origin
+     * @param oz       the z-coordinate of the ray origin
+     * @param dx       the x-coordinate of the ray direction
+     * @param dy       the y-coordinate of the ray direction
+     * @param dz       the z-coordinate of the ray direction
+     * @return true if the ray may hit the triangle
+     */
+    private boolean intersectFloat(int triangle, double ox, double oy, double oz, double dx, double dy, double dz) {
+        int a = 3 * indices[3 * triangle], b = 3 * indices[3 * triangle + 1], c = 3 * indices[3 * triangle + 2];
+        float[] v = floatVertices;
+        float e1x = v[b] - v[a], e1y = v[b + 1] - v[a + 1], e1z = v[b + 2] - v[a + 2];
+        float e2x = v[c] - v[a], e2y = v[c + 1] - v[a + 1], e2z = v[c + 2] - v[a + 2];
+        float fdx = (float) dx, fdy = (float) dy, fdz = (float) dz;
+        float px = fdy * e2z - fdz * e2y, py = fdz * e2x - fdx * e2z, pz = fdx * e2y - fdy * e2x;
+        float det = e1x * px + e1y * py + e1z * pz;
+        if (det == 0)
+            return false;
+        float inv = 1 / det;
+        float sx = (float) (ox - v[a]), sy = (float) (oy - v[a + 1]), sz = (float) (oz - v[a + 2]);
+        float u = (sx * px + sy * py + sz * pz) * inv;
+        if (u < -FLOAT_TOLERANCE || u > 1 + FLOAT_TOLERANCE)
+            return false;
+        float qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        float w = (fdx * qx + fdy * qy + fdz * qz) * inv;
+        if (w < -FLOAT_TOLERANCE || u + w > 1 + FLOAT_TOLERANCE)
+            return false;
+        float t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+        return t > 0;
+    }
+
+    /**
+     * Intersects a triangle in double precision (Moller-Trumbore). In single precision mode this is the
+     * re-intersection step of a triangle accepted by the float test: it gives the exact distance and
+     * barycentric coordinates of the stored triangle, and rejects a hit behind or on the ray origin.
+     * Points exactly on an edge or a vertex are not intersections, as in {@link Triangle}.
+     *
+     * @param triangle  the triangle index
+     * @param head      the ray origin
+     * @param direction the ray direction
+     * @param hit       receives the distance and the barycentric coordinates of the second and third vertices
+     * @return true if the ray hits the triangle
+     */
+    private boolean intersectDouble(int triangle, Point head, Vector direction, double[] hit) {
+        int a = indices[3 * triangle], b = indices[3 * triangle + 1], c = indices[3 * triangle + 2];
+        double ax = coordinate(a, 0), ay = coordinate(a, 1), az = coordinate(a, 2);
+        double e1x = coordinate(b, 0) - ax, e1y = coordinate(b, 1) - ay, e1z = coordinate(b, 2) - az;
+        double e2x = coordinate(c, 0) - ax, e2y = coordinate(c, 1) - ay, e2z = coordinate(c, 2) - az;
+        double dx = direction.getX(), dy = direction.getY(), dz = direction.getZ();
+        double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        if (isZero(det))
+            return false;
+        double inv = 1 / det;
+        double sx = head.getX() - ax, sy = head.getY() - ay, sz = head.getZ() - az;
+        double u = alignZero((sx * px + sy * py + sz * pz) * inv);
+        if (u <= 0 || u >= 1)
+            return false;
+        double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        double w = alignZero((dx * qx + dy * qy + dz * qz) * inv);
+        if (w <= 0 || alignZero(u + w - 1) >= 0)
+            return false;
+        double t = alignZero((e2x * qx + e2y * qy + e2z * qz) * inv);
+        if (t <= 0)
+            return false;
+        hit[0] = t;
+        hit[1] = u;
+        hit[2] = w;
+        return true;
+    }
+
+    /**
+     * Computes the unit normal of a triangle, oriented by the order of its vertices.
+     *
+     * @param triangle the triangle index
+     * @return the normal of the triangle
+     */
+    private Vector triangleNormal(int triangle) {
+        int a = indices[3 * triangle], b = indices[3 * triangle + 1], c = indices[3 * triangle + 2];
+        double e1x = coordinate(b, 0) - coordinate(a, 0);
+        double e1y = coordinate(b, 1) - coordinate(a, 1);
+        double e1z = coordinate(b, 2) - coordinate(a, 2);
+        double e2x = coordinate(c, 0) - coordinate(a, 0);
+        double e2y = coordinate(c, 1) - coordinate(a, 1);
+        double e2z = coordinate(c, 2) - coordinate(a, 2);
+        return new Vector(e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x).normalize();
+    }
+}
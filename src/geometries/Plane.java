@@ -15,6 +15,8 @@ public class Plane extends Geometry {
 
     private final Point q; // A point on the plane
     private final Vector normal; // The normal vector to the plane
+    private final Vector uAxis; // First in-plane axis of the surface coordinates
+    private final Vector vAxis; // Second in-plane axis of the surface coordinates
 
     /**
      * Constructs a new Plane instance using three points lying on the plane.
@@ -29,6 +31,8 @@ public class Plane extends Geometry {
         Vector v2 = p3.subtract(p1);
         normal = v1.crossProduct(v2).normalize();
         q = p1; // Choosing one of the points as a reference point for the plane
+        uAxis = normal.createNormal();
+        vAxis = normal.crossProduct(uAxis);
     }
 
     /**
@@ -40,6 +44,8 @@ public class Plane extends Geometry {
     public Plane(Point q, Vector normal) {
         this.q = q;
         this.normal = normal.normalize(); // Normalize the normal vector
+        uAxis = this.normal.createNormal();
+        vAxis = this.normal.crossProduct(uAxis);
     }
 
     /**
@@ -63,78 +69,59 @@ public class Plane extends Geometry {
     }
 
     /**
-     * Finds the intersection points of a ray with the plane.
+     * Finds the intersections of the given ray with the current geometry.
+     * The surface coordinates of the point are its coordinates along two orthogonal axes lying in the plane.
      *
-     * @param ray the ray for which to find the intersections
-     * @return A list containing the intersection points, or null if there are no intersections.
+     * @param ray The ray to intersect with the geometry.
+     * @return A list containing a single {@link GeoPoint} representing the intersection point, or null if there is no intersection.
      */
     @Override
-    public List<Point> findIntersections(Ray ray) {
-        Point p0 = ray.getHead();  // The origin point of the ray
-        Vector v = ray.getDirection();  // The direction vector of the ray
-
-        if(q.equals(p0))  // If the ray's origin lies exactly on the plane and the ray is parallel to the plane
-            return null;
-
-        Vector q0MinusP0 = q.subtract(p0);  // Vector from p0 to q
-
-        double nv = normal.dotProduct(v);  // Dot product of the normal and the ray direction
-
-        // If the ray is parallel to the plane (dot product is zero), return null
-        if (isZero(nv)) {
-            return null;
-        }
-        
-        double nQMinusP0 = normal.dotProduct(q0MinusP0);  // Dot product of the normal and q0MinusP0
-        double t = alignZero(nQMinusP0 / nv);  // Calculate t
-
-        // If t <= 0, the intersection point is behind the ray's origin or on the ray's origin, return null
-        if (t <= 0) {
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+        double t = intersectionDistance(ray);
+        if (t == 0) {
             return null;
         }
 
-        // Calculate the intersection point
-        Point intersectionPoint = ray.getPoint(t);
+        // Calculate the intersection point and its coordinates along the plane axes
+        Point point = ray.getPoint(t);
+        double dx = point.getX() - q.getX();
+        double dy = point.getY() - q.getY();
+        double dz = point.getZ() - q.getZ();
+        double u = dx * uAxis.getX() + dy * uAxis.getY() + dz * uAxis.getZ();
+        double w = dx * vAxis.getX() + dy * vAxis.getY() + dz * vAxis.getZ();
 
-        // Return the intersection point as a list
-        return List.of(intersectionPoint);
+        // Return the intersection GeoPoint as a list
+        return List.of(new GeoPoint(this, point, t, normal, u, w));
     }
 
     /**
-     * Finds the intersections of the given ray with the current geometry.
+     * Calculates the distance along the ray to its intersection with the plane, using raw coordinates
+     * so that no objects are allocated.
      *
-     * @param ray The ray to intersect with the geometry.
-     * @return A list containing a single {@link GeoPoint} representing the intersection point, or null if there is no intersection.
+     * @param ray the ray to intersect with the plane
+     * @return the distance to the intersection point, or 0 if there is no intersection in front of the ray's origin
      */
-    @Override
-    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+    double intersectionDistance(Ray ray) {
         Point p0 = ray.getHead();  // The origin point of the ray
         Vector v = ray.getDirection();  // The direction vector of the ray
 
-        if(q.equals(p0))  // If the ray's origin lies exactly on the plane and the ray is parallel to the plane
-            return null;
-
-        Vector q0MinusP0 = q.subtract(p0);  // Vector from p0 to q
+        // Vector from p0 to q
+        double dx = q.getX() - p0.getX();
+        double dy = q.getY() - p0.getY();
+        double dz = q.getZ() - p0.getZ();
+        if (isZero(dx) && isZero(dy) && isZero(dz))  // The ray's origin lies exactly on the reference point
+            return 0;
 
         double nv = normal.dotProduct(v);  // Dot product of the normal and the ray direction
 
-        // If the ray is parallel to the plane (dot product is zero), return null
-        if (isZero(nv)) {
-            return null;
-        }
+        // If the ray is parallel to the plane (dot product is zero), there is no intersection
+        if (isZero(nv))
+            return 0;
 
-        double nQMinusP0 = normal.dotProduct(q0MinusP0);  // Dot product of the normal and q0MinusP0
-        double t = alignZero(nQMinusP0 / nv);  // Calculate t
+        double nQMinusP0 = normal.getX() * dx + normal.getY() * dy + normal.getZ() * dz;
+        double t = alignZero(nQMinusP0 / nv);
 
-        // If t <= 0, the intersection point is behind the ray's origin or on the ray's origin, return null
-        if (t <= 0) {
-            return null;
-        }
-
-        // Calculate the intersection point
-        GeoPoint intersection = new GeoPoint(this, ray.getPoint(t)) ;
-
-        // Return the intersection GeoPoint as a list
-        return List.of(intersection);
+        // If t <= 0, the intersection point is behind the ray's origin or on the ray's origin
+        return t <= 0 ? 0 : t;
     }
 }
@@ -99,13 +99,14 @@ public class Polygon extends Geometry {
    @Override
    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
       // Find the intersection with the plane
-      List<Point> planeIntersections = plane.findIntersections(ray);
+      List<GeoPoint> planeIntersections = plane.findGeoIntersections(ray);
       if (planeIntersections == null) {
          return null;
       }
 
       // There should be exactly one intersection point with the plane
-      Point intersectionPoint = planeIntersections.getFirst();
+      GeoPoint planeIntersection = planeIntersections.getFirst();
+      Point intersectionPoint = planeIntersection.point;
 
       // Check if the intersection point is on one of the polygon's edges or vertices
       Point p1, p2;
@@ -173,6 +174,8 @@ public class Polygon extends Geometry {
             return null;
          }
       }
-      return List.of(new GeoPoint(this, intersectionPoint));
+      // The hit record of the plane already holds the distance, normal and plane coordinates
+      planeIntersection.geometry = this;
+      return planeIntersections;
    }
 }
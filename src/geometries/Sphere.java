@@ -2,17 +2,20 @@ package geometries;
 
 import primitives.Point;
 import primitives.Ray;
+import primitives.RayPacket;
 import primitives.Vector;
 
 import java.util.List;
 
 import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
 
 /**
  * Represents a sphere in three-dimensional space.
  */
 public class Sphere extends RadialGeometry {
     private final Point center; // The center point of the sphere
+    private final double radiusSquared; // The squared radius, precomputed for the intersection test
 
     /**
      * Constructs a new Sphere instance with the specified radius and center point.
@@ -23,6 +26,7 @@ public class Sphere extends RadialGeometry {
     public Sphere(double radius, Point center) {
         super(radius);
         this.center = center;
+        this.radiusSquared = radius * radius;
     }
 
     /**
@@ -46,33 +50,87 @@ public class Sphere extends RadialGeometry {
         Point p0 = ray.getHead();  // The starting point of the ray
         Vector v = ray.getDirection();  // The direction vector of the ray
 
+        // Vector from ray start point to sphere center, kept in raw coordinates to avoid allocations
+        double ux = center.getX() - p0.getX();
+        double uy = center.getY() - p0.getY();
+        double uz = center.getZ() - p0.getZ();
+
         // Deals with case where ray starts from the center of the sphere
-        if (p0.equals(center))
-            return List.of(new GeoPoint(this, ray.getPoint(radius)));
+        if (isZero(ux) && isZero(uy) && isZero(uz))
+            return List.of(createGeoPoint(ray, radius));
 
-        Vector u = center.subtract(p0);  // Vector from ray start point to sphere center
-        double tm = v.dotProduct(u);  // Projection of u onto v
-        double d = Math.sqrt(u.lengthSquared() - tm * tm);  // Distance from sphere center to ray
-        if (d >= radius)  // If the distance is greater than or equal to the radius, no intersection
+        double tm = v.getX() * ux + v.getY() * uy + v.getZ() * uz;  // Projection of u onto v
+        double dSquared = ux * ux + uy * uy + uz * uz - tm * tm;  // Squared distance from sphere center to ray
+        if (dSquared >= radiusSquared)  // If the distance is greater than or equal to the radius, no intersection
             return null;
-        double th = Math.sqrt(radius * radius - d * d);  // Distance from intersection points to the point closest to the center
+        double th = Math.sqrt(radiusSquared - dSquared);  // Distance from intersection points to the point closest to the center
 
         double t1 = tm - th;  // Distance to the first intersection point
         double t2 = tm + th;  // Distance to the second intersection point
 
-        if (alignZero(t1) > 0 && alignZero(t2) > 0) {  // Both intersections are in front of the ray start
-            Point p1 = ray.getPoint(t1);  // First intersection point
-            Point p2 = ray.getPoint(t2);  // Second intersection point
-            return List.of(new GeoPoint(this, p1), new GeoPoint(this, p2));
-        } else if (alignZero(t1) > 0) {  // Only the first intersection is in front of the ray start
-            Point p1 = ray.getPoint(t1);  // First intersection point
-            return List.of(new GeoPoint(this, p1));
-        } else if (alignZero(t2) > 0) {  // Only the second intersection is in front of the ray start
-            Point p2 = ray.getPoint(t2);  // Second intersection point
-            return List.of(new GeoPoint(this, p2));
-        }
+        if (alignZero(t1) > 0 && alignZero(t2) > 0)  // Both intersections are in front of the ray start
+            return List.of(createGeoPoint(ray, t1), createGeoPoint(ray, t2));
+        else if (alignZero(t1) > 0)  // Only the first intersection is in front of the ray start
+            return List.of(createGeoPoint(ray, t1));
+        else if (alignZero(t2) > 0)  // Only the second intersection is in front of the ray start
+            return List.of(createGeoPoint(ray, t2));
 
         return null;  // No intersections in front of the ray start
     }
+
+    /**
+     * Intersects a coherent packet of rays with the sphere. Since the lanes share the same origin,
+     * the vector to the center and its squared length are computed once, and each lane needs only
+     * a projection and a square root. Incoherent packets are intersected lane by lane.
+     *
+     * @param packet the packet of rays
+     */
+    @Override
+    public void intersectPacket(RayPacket packet) {
+        if (!packet.isCoherent()) {
+            super.intersectPacket(packet);
+            return;
+        }
+        Point p0 = packet.getOrigin();
+        double ux = center.getX() - p0.getX();
+        double uy = center.getY() - p0.getY();
+        double uz = center.getZ() - p0.getZ();
+        double uu = ux * ux + uy * uy + uz * uz;
+        double[] dx = packet.dx, dy = packet.dy, dz = packet.dz;
+
+        for (int lane = 0; lane < packet.size(); ++lane) {
+            double tm = dx[lane] * ux + dy[lane] * uy + dz[lane] * uz;
+            double dSquared = uu - tm * tm;
+            if (dSquared >= radiusSquared)
+                continue;
+            double th = Math.sqrt(radiusSquared - dSquared);
+            double t1 = tm - th;
+            double t2 = tm + th;
+            if (alignZero(t1) > 0)
+                packet.record(lane, t1, this);
+            else if (alignZero(t2) > 0)
+                packet.record(lane, t2, this);
+        }
+    }
+
+    /**
+     * Builds the hit record of the ray with the sphere at the given distance.
+     * The normal is obtained by dividing by the radius instead of normalizing,
+     * and the surface coordinates are the spherical angles of the point around the center,
+     * both mapped to [0,1].
+     *
+     * @param ray the intersecting ray
+     * @param t   the distance along the ray to the intersection point
+     * @return the hit record of the intersection
+     */
+    private GeoPoint createGeoPoint(Ray ray, double t) {
+        Point point = ray.getPoint(t);
+        double nx = (point.getX() - center.getX()) / radius;
+        double ny = (point.getY() - center.getY()) / radius;
+        double nz = (point.getZ() - center.getZ()) / radius;
+        double u = 0.5 + Math.atan2(ny, nx) / (2 * Math.PI);
+        double v = Math.acos(Math.max(-1, Math.min(1, nz))) / Math.PI;
+        return new GeoPoint(this, point, t, new Vector(nx, ny, nz), u, v);
+    }
 }
 
@@ -0,0 +1,303 @@
+package geometries;
+
+import primitives.Color;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.RayPacket;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
+
+/**
+ * Represents a large set of spheres, such as particles or atoms, as a single geometry.
+ * The centers and radii are stored in primitive arrays and indexed by a bounding volume hierarchy,
+ * and each sphere refers to its material and emission by an index into a small palette.
+ * A sphere takes about 60 bytes, including its share of the hierarchy, instead of a separate {@link Sphere}
+ * object with its center point, material and emission.
+ */
+public class SphereCloud extends Geometry {
+    /** The sphere centers (x, y, z per sphere) */
+    private final double[] centers;
+    /** The sphere radii */
+    private final double[] radii;
+    /** The squared sphere radii, precomputed for the intersection test */
+    private final double[] radiiSquared;
+    /** The number of spheres */
+    private final int size;
+    /** The hierarchy over the spheres */
+    private final Bvh bvh;
+
+    /** The palette index of each sphere, or null if all the spheres have the material of the geometry */
+    private short[] materialIndices = null;
+    /** The palette of materials */
+    private Material[] materials = null;
+    /** The palette of emission colors, parallel to the materials */
+    private Color[] emissions = null;
+
+    /**
+     * Constructs a cloud of spheres, all with the material and the emission of the geometry.
+     *
+     * @param centers the sphere centers, 3 coordinates (x, y, z) per sphere
+     * @param radii   the sphere radii
+     * @throws IllegalArgumentException if the arrays do not match or a radius is not positive
+     */
+    public SphereCloud(double[] centers, double[] radii) {
+        if (radii.length == 0 || centers.length != 3 * radii.length)
+            throw new IllegalArgumentException("A sphere cloud must have a center for each radius");
+        size = radii.length;
+        this.centers = centers.clone();
+        this.radii = radii.clone();
+        radiiSquared = new double[size];
+        double[] sphereBounds = new double[6 * size];
+        for (int i = 0; i < size; ++i) {
+            double radius = radii[i];
+            if (alignZero(radius) <= 0)
+                throw new IllegalArgumentException("A sphere radius must be positive");
+            radiiSquared[i] = radius * radius;
+            for (int axis = 0; axis < 3; ++axis) {
+                sphereBounds[6 * i + axis] = centers[3 * i + axis] - radius;
+                sphereBounds[6 * i + 3 + axis] = centers[3 * i + axis] + radius;
+            }
+        }
+        bvh = new Bvh(sphereBounds, size);
+    }
+
+    /**
+     * Sets a material and an emission for each sphere, by indices into palettes.
+     *
+     * @param materialIndices the palette index of each sphere
+     * @param materials       the palette of materials
+     * @param emissions       the palette of emission colors, parallel to the materials
+     * @return the current instance of SphereCloud for method chaining
+     * @throws IllegalArgumentException if the arrays do not match or an index is out of the palette
+     */
+    public SphereCloud setMaterials(short[] materialIndices, Material[] materials, Color[] emissions) {
+        if (materialIndices.length != size || materials.length != emissions.length)
+            throw new IllegalArgumentException("Each sphere must have a palette index, and each material an emission");
+        for (short index : materialIndices)
+            if (index < 0 || index >= materials.length)
+                throw new IllegalArgumentException("A sphere refers to a missing material");
+        this.materialIndices = materialIndices.clone();
+        this.materials = materials.clone();
+        this.emissions = emissions.clone();
+        return this;
+    }
+
+    /**
+     * Returns the number of spheres in the cloud.
+     *
+     * @return the number of spheres
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Material getMaterial(GeoPoint gp) {
+        return materialIndices == null ? getMaterial() : materials[materialIndices[gp.index]];
+    }
+
+    @Override
+    public Color getEmission(GeoPoint gp) {
+        return materialIndices == null ? emission : emissions[materialIndices[gp.index]];
+    }
+
+    /**
+     * Returns the normal of the cloud at a point, which is the normal of the first sphere whose surface
+     * contains the point. This requires a search over all the spheres; the intersection routines provide
+     * the normal directly.
+     *
+     * @param point The point on the geometry's surface.
+     * @return The normal vector of the sphere containing the point.
+     * @throws IllegalArgumentException if the point is not on the surface of any sphere
+     */
+    @Override
+    public Vector getNormal(Point point) {
+        for (int i = 0; i < size; ++i) {
+            double nx = point.getX() - centers[3 * i];
+            double ny = point.getY() - centers[3 * i + 1];
+            double nz = point.getZ() - centers[3 * i + 2];
+            if (isZero(Math.sqrt(nx * nx + ny * ny + nz * nz) - radii[i]))
+                return new Vector(nx / radii[i], ny / radii[i], nz / radii[i]);
+        }
+        throw new IllegalArgumentException("The point is not on the sphere cloud");
+    }
+
+    /**
+     * Finds the intersections of the given ray with the spheres of the cloud, traversing the hierarchy.
+     * The primitive index of each point is the index of the intersected sphere.
+     *
+     * @param ray The ray to intersect with the cloud.
+     * @return A list of {@link GeoPoint} objects representing the intersection points, or null if there are no intersections.
+     */
+    @Override
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+        List<GeoPoint> intersections = new ArrayList<>();
+        double[] roots = new double[2];
+        traverse(ray, Double.POSITIVE_INFINITY, (sphere, ox, oy, oz, dx, dy, dz, tMax) -> {
+            if (intersect(sphere, ox, oy, oz, dx, dy, dz, roots)) {
+                if (alignZero(roots[0]) > 0)
+                    intersections.add(hit(ray, roots[0], sphere));
+                if (alignZero(roots[1]) > 0)
+                    intersections.add(hit(ray, roots[1], sphere));
+            }
+            return tMax;
+        });
+        return intersections.isEmpty() ? null : intersections;
+    }
+
+    /**
+     * Tells whether a ray hits a sphere of the cloud within a distance, traversing only the nodes of the hierarchy
+     * within the distance and stopping at the first sphere hit.
+     *
+     * @param ray         The ray.
+     * @param maxDistance The distance along the ray within which hits are searched.
+     * @return true if the ray hits a sphere within the distance.
+     */
+    @Override
+    protected boolean isOccludedHelper(Ray ray, double maxDistance) {
+        double[] roots = new double[2];
+        return traverse(ray, maxDistance, (sphere, ox, oy, oz, dx, dy, dz, tMax) -> {
+            if (!intersect(sphere, ox, oy, oz, dx, dy, dz, roots))
+                return tMax;
+            double near = alignZero(roots[0]), far = alignZero(roots[1]);
+            return (near > 0 ? near <= tMax : far > 0 && far <= tMax) ? -1 : tMax;
+        }) < 0;
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the spheres of the cloud before a distance, traversing only
+     * the nodes of the hierarchy before the closest hit found so far.
+     *
+     * @param ray         The ray.
+     * @param maxDistance The distance along the ray before which hits are searched.
+     * @return The closest intersection before the distance, or null if there is none.
+     */
+    @Override
+    protected GeoPoint findClosestGeoIntersectionHelper(Ray ray, double maxDistance) {
+        double[] roots = new double[2];
+        int[] closestSphere = { -1 };
+        double t = traverse(ray, maxDistance, (sphere, ox, oy, oz, dx, dy, dz, tMax) -> {
+            if (!intersect(sphere, ox, oy, oz, dx, dy, dz, roots))
+                return tMax;
+            double root = alignZero(roots[0]) > 0 ? roots[0] : alignZero(roots[1]) > 0 ? roots[1] : tMax;
+            if (root >= tMax)
+                return tMax;
+            closestSphere[0] = sphere;
+            return root;
+        });
+        return closestSphere[0] < 0 ? null : hit(ray, t, closestSphere[0]);
+    }
+
+    /**
+     * Intersects a packet of rays with the spheres of the cloud, recording the closest hit of each lane.
+     * Each lane traverses the hierarchy only up to its closest hit so far.
+     *
+     * @param packet the packet of rays
+     */
+    @Override
+    public void intersectPacket(RayPacket packet) {
+        double[] roots = new double[2];
+        int[] closestSphere = new int[1];
+        Bvh.LeafVisitor closest = (sphere, ox, oy, oz, dx, dy, dz, tMax) -> {
+            if (!intersect(sphere, ox, oy, oz, dx, dy, dz, roots))
+                return tMax;
+            double t = alignZero(roots[0]) > 0 ? roots[0] : alignZero(roots[1]) > 0 ? roots[1] : tMax;
+            if (t >= tMax)
+                return tMax;
+            closestSphere[0] = sphere;
+            return t;
+        };
+        for (int lane = 0; lane < packet.size(); ++lane) {
+            Point head = packet.getRay(lane).getHead();
+            closestSphere[0] = -1;
+            double t = bvh.traverse(head.getX(), head.getY(), head.getZ(), packet.dx[lane], packet.dy[lane],
+                    packet.dz[lane], packet.t[lane], closest);
+            if (closestSphere[0] >= 0)
+                packet.record(lane, t, this, closestSphere[0]);
+        }
+    }
+
+    /**
+     * Builds the hit record of a packet lane from the intersected sphere alone, without searching the cloud.
+     *
+     * @param ray       The ray of the lane.
+     * @param t         The distance along the ray to the hit.
+     * @param primitive The index of the intersected sphere.
+     * @return The hit record.
+     */
+    @Override
+    public GeoPoint getPacketHit(Ray ray, double t, int primitive) {
+        return primitive < 0 ? super.getPacketHit(ray, t, primitive) : hit(ray, t, primitive);
+    }
+
+    /**
+     * Traverses the hierarchy along a ray.
+     *
+     * @param ray     the ray
+     * @param tMax    the initial maximal distance along the ray
+     * @param visitor the action on the spheres of the leaves
+     * @return the final maximal distance, negative if the visitor stopped the traversal
+     */
+    private double traverse(Ray ray, double tMax, Bvh.LeafVisitor visitor) {
+        Point head = ray.getHead();
+        Vector direction = ray.getDirection();
+        return bvh.traverse(head.getX(), head.getY(), head.getZ(),
+                direction.getX(), direction.getY(), direction.getZ(), tMax, visitor);
+    }
+
+    /**
+     * Intersects the line of a ray with a sphere of the cloud. A ray starting at the center of the sphere
+     * gets the distances minus and plus the radius.
+     *
+     * @param sphere the index of the sphere
+     * @param ox     the x-coordinate of the ray origin
+     * @param oy     the y-coordinate of the ray origin
+     * @param oz     the z-coordinate of the ray origin
+     * @param dx     the x-coordinate of the ray direction
+     * @param dy     the y-coordinate of the ray direction
+     * @param dz     the z-coordinate of the ray direction
+     * @param roots  receives the distances along the ray to the near and far intersections, possibly not positive
+     * @return true if the line crosses the sphere
+     */
+    private boolean intersect(int sphere, double ox, double oy, double oz, double dx, double dy, double dz,
+                              double[] roots) {
+        double ux = centers[3 * sphere] - ox;
+        double uy = centers[3 * sphere + 1] - oy;
+        double uz = centers[3 * sphere + 2] - oz;
+        double tm = dx * ux + dy * uy + dz * uz;
+        double dSquared = ux * ux + uy * uy + uz * uz - tm * tm;
+        if (dSquared >= radiiSquared[sphere])
+            return false;
+        double th = Math.sqrt(radiiSquared[sphere] - dSquared);
+        roots[0] = tm - th;
+        roots[1] = tm + th;
+        return true;
+    }
+
+    /**
+     * Builds the hit record of the ray with a sphere at the given distance. The normal is obtained by dividing
+     * by the radius, and the surface coordinates are the spherical angles of the point around the center,
+     * as in {@link Sphere}.
+     *
+     * @param ray    the intersecting ray
+     * @param t      the distance along the ray to the intersection point
+     * @param sphere the index of the intersected sphere
+     * @return the hit record
+     */
+    private GeoPoint hit(Ray ray, double t, int sphere) {
+        Point point = ray.getPoint(t);
+        double radius = radii[sphere];
+        double nx = (point.getX() - centers[3 * sphere]) / radius;
+        double ny = (point.getY() - centers[3 * sphere + 1]) / radius;
+        double nz = (point.getZ() - centers[3 * sphere + 2]) / radius;
+        double u = 0.5 + Math.atan2(ny, nx) / (2 * Math.PI);
+        double v = Math.acos(Math.max(-1, Math.min(1, nz))) / Math.PI;
+        return new GeoPoint(this, point, t, new Vector(nx, ny, nz), u, v, sphere);
+    }
+}
@@ -2,9 +2,9 @@ package geometries;
 
 import primitives.Point;
 import primitives.Ray;
+import primitives.RayPacket;
 import primitives.Vector;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static primitives.Util.alignZero;
@@ -15,46 +15,145 @@ import static primitives.Util.isZero;
  * Extends the Polygon class.
  */
 public class Triangle extends Polygon {
+    // Edge vectors from the first vertex and their dot products, used for the barycentric coordinates
+    private final Vector edge1, edge2;
+    private final double d11, d12, d22, invDenominator;
+
     public Triangle(Point p1, Point p2, Point p3) {
         super(p1,p2,p3);
+        edge1 = p2.subtract(p1);
+        edge2 = p3.subtract(p1);
+        d11 = edge1.dotProduct(edge1);
+        d12 = edge1.dotProduct(edge2);
+        d22 = edge2.dotProduct(edge2);
+        invDenominator = 1 / (d11 * d22 - d12 * d12);
     }
 
     /**
      * Finds the intersections of the given ray with the current triangle.
+     * The test is done on scalar coordinates, so that objects are allocated only for an actual hit.
+     * The surface coordinates of the point are its barycentric weights of the second and third vertices.
      *
      * @param ray The ray to intersect with the triangle.
      * @return A list of {@link GeoPoint} objects representing the intersection points, or null if there are no intersections.
      */
     @Override
     protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
-        List<Point> intersectionPoints = plane.findIntersections(ray);
-        if (intersectionPoints == null)
+        double t = plane.intersectionDistance(ray);
+        if (t == 0)
             return null;
-        Point intersectionPoint = intersectionPoints.getFirst();
 
         // Calculate vectors from ray's head to each vertex of the triangle
-        Vector v1 = vertices.get(0).subtract(ray.getHead());
-        Vector v2 = vertices.get(1).subtract(ray.getHead());
-        Vector v3 = vertices.get(2).subtract(ray.getHead());
-
-        // Calculate normal vectors to the planes formed with the ray direction and the triangle's sides
-        Vector n1 = v1.crossProduct(v2).normalize();
-        Vector n2 = v2.crossProduct(v3).normalize();
-        Vector n3 = v3.crossProduct(v1).normalize();
+        Point head = ray.getHead();
+        Point p1 = vertices.get(0), p2 = vertices.get(1), p3 = vertices.get(2);
+        double v1x = p1.getX() - head.getX(), v1y = p1.getY() - head.getY(), v1z = p1.getZ() - head.getZ();
+        double v2x = p2.getX() - head.getX(), v2y = p2.getY() - head.getY(), v2z = p2.getZ() - head.getZ();
+        double v3x = p3.getX() - head.getX(), v3y = p3.getY() - head.getY(), v3z = p3.getZ() - head.getZ();
 
-        // Calculate dot products of the ray's direction with each normal vector
-        double vn1 = ray.getDirection().dotProduct(n1);
-        double vn2 = ray.getDirection().dotProduct(n2);
-        double vn3 = ray.getDirection().dotProduct(n3);
+        // Calculate dot products of the ray's direction with the normals to the planes
+        // formed with the ray direction and the triangle's sides
+        Vector direction = ray.getDirection();
+        double vn1 = sideDotProduct(v1x, v1y, v1z, v2x, v2y, v2z, direction);
+        double vn2 = sideDotProduct(v2x, v2y, v2z, v3x, v3y, v3z, direction);
+        double vn3 = sideDotProduct(v3x, v3y, v3z, v1x, v1y, v1z, direction);
 
         // Check if the ray lies in the same plane as any of the triangle's sides
         if (isZero(vn1) || isZero(vn2) || isZero(vn3))
             return null;
 
         // Check if the ray intersects the triangle by verifying all dot products are either all positive or all negative
-        if ((vn1 > 0.0 && vn2 > 0.0 && vn3 > 0.0) || (vn1 < 0.0 && vn2 < 0.0 && vn3 < 0.0))
-            return List.of(new GeoPoint(this, intersectionPoint));
+        if (!((vn1 > 0.0 && vn2 > 0.0 && vn3 > 0.0) || (vn1 < 0.0 && vn2 < 0.0 && vn3 < 0.0)))
+            return null;
+
+        Point point = ray.getPoint(t);
+        double wx = point.getX() - p1.getX();
+        double wy = point.getY() - p1.getY();
+        double wz = point.getZ() - p1.getZ();
+        double d1 = wx * edge1.getX() + wy * edge1.getY() + wz * edge1.getZ();
+        double d2 = wx * edge2.getX() + wy * edge2.getY() + wz * edge2.getZ();
+        return List.of(new GeoPoint(this, point, t, plane.getNormal(),
+                (d22 * d1 - d12 * d2) * invDenominator,
+                (d11 * d2 - d12 * d1) * invDenominator));
+    }
+
+    /**
+     * Calculates the dot product of a direction with the unit normal to the plane formed by the ray head
+     * and a side of the triangle.
+     *
+     * @param ax        the x-coordinate of the vector from the ray head to the first vertex of the side
+     * @param ay        the y-coordinate of the vector from the ray head to the first vertex of the side
+     * @param az        the z-coordinate of the vector from the ray head to the first vertex of the side
+     * @param bx        the x-coordinate of the vector from the ray head to the second vertex of the side
+     * @param by        the y-coordinate of the vector from the ray head to the second vertex of the side
+     * @param bz        the z-coordinate of the vector from the ray head to the second vertex of the side
+     * @param direction the direction of the ray
+     * @return the dot product
+     */
+    private static double sideDotProduct(double ax, double ay, double az, double bx, double by, double bz,
+                                         Vector direction) {
+        double nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+        return (nx * direction.getX() + ny * direction.getY() + nz * direction.getZ())
+                / Math.sqrt(nx * nx + ny * ny + nz * nz);
+    }
+
+    /**
+     * Intersects a coherent packet of rays with the triangle. Since the lanes share the same origin,
+     * the normals to the planes formed with the origin and the triangle's sides are computed once,
+     * and each lane needs only dot products with its direction. Incoherent packets are intersected lane by lane.
+     *
+     * @param packet the packet of rays
+     */
+    @Override
+    public void intersectPacket(RayPacket packet) {
+        if (!packet.isCoherent()) {
+            super.intersectPacket(packet);
+            return;
+        }
+        Point p1 = vertices.get(0), p2 = vertices.get(1), p3 = vertices.get(2);
+        if (packet.isOriginAt(p1.getX(), p1.getY(), p1.getZ()))
+            return;
+
+        Point head = packet.getOrigin();
+        double v1x = p1.getX() - head.getX(), v1y = p1.getY() - head.getY(), v1z = p1.getZ() - head.getZ();
+        double v2x = p2.getX() - head.getX(), v2y = p2.getY() - head.getY(), v2z = p2.getZ() - head.getZ();
+        double v3x = p3.getX() - head.getX(), v3y = p3.getY() - head.getY(), v3z = p3.getZ() - head.getZ();
+
+        // The unit normals to the planes formed with the origin and the triangle's sides
+        double n1x = v1y * v2z - v1z * v2y, n1y = v1z * v2x - v1x * v2z, n1z = v1x * v2y - v1y * v2x;
+        double n2x = v2y * v3z - v2z * v3y, n2y = v2z * v3x - v2x * v3z, n2z = v2x * v3y - v2y * v3x;
+        double n3x = v3y * v1z - v3z * v1y, n3y = v3z * v1x - v3x * v1z, n3z = v3x * v1y - v3y * v1x;
+        double length1 = Math.sqrt(n1x * n1x + n1y * n1y + n1z * n1z);
+        double length2 = Math.sqrt(n2x * n2x + n2y * n2y + n2z * n2z);
+        double length3 = Math.sqrt(n3x * n3x + n3y * n3y + n3z * n3z);
+        n1x /= length1;
+        n1y /= length1;
+        n1z /= length1;
+        n2x /= length2;
+        n2y /= length2;
+        n2z /= length2;
+        n3x /= length3;
+        n3y /= length3;
+        n3z /= length3;
+
+        Vector normal = plane.getNormal();
+        double nx = normal.getX(), ny = normal.getY(), nz = normal.getZ();
+        double nQMinusP0 = nx * v1x + ny * v1y + nz * v1z;
+        double[] dx = packet.dx, dy = packet.dy, dz = packet.dz;
 
-        return null;
+        for (int lane = 0; lane < packet.size(); ++lane) {
+            double nv = nx * dx[lane] + ny * dy[lane] + nz * dz[lane];
+            if (isZero(nv))
+                continue;
+            double t = alignZero(nQMinusP0 / nv);
+            if (t <= 0)
+                continue;
+            double vn1 = n1x * dx[lane] + n1y * dy[lane] + n1z * dz[lane];
+            double vn2 = n2x * dx[lane] + n2y * dy[lane] + n2z * dz[lane];
+            double vn3 = n3x * dx[lane] + n3y * dy[lane] + n3z * dz[lane];
+            if (isZero(vn1) || isZero(vn2) || isZero(vn3))
+                continue;
+            if ((vn1 > 0.0 && vn2 > 0.0 && vn3 > 0.0) || (vn1 < 0.0 && vn2 < 0.0 && vn3 < 0.0))
+                packet.record(lane, t, this);
+        }
     }
 }
@@ -0,0 +1,80 @@
+package lighting;
+
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * The {@code AreaLight} class represents a light source with a surface, which casts soft shadows.
+ * Its intensity and direction at a point are those of a point light at its center, with the same attenuation
+ * factors; only its visibility from a point is found by sampling its surface, as the fraction of the shadow rays
+ * towards points of the surface which are not blocked.
+ * Subclasses map the unit square onto their surface, so that stratified points of the square give
+ * stratified points of the light.
+ */
+public abstract class AreaLight extends PointLight {
+
+    /**
+     * Constructs a new {@code AreaLight} with the specified intensity and center.
+     *
+     * @param intensity the intensity of the light source
+     * @param center    the center of the light source
+     */
+    protected AreaLight(Color intensity, Point center) {
+        super(intensity, center);
+    }
+
+    /**
+     * Returns a point of the surface of the light source, as seen from a point.
+     *
+     * @param p the point from which the light source is seen
+     * @param u the first coordinate of a point of the unit square, in [0,1)
+     * @param v the second coordinate of a point of the unit square, in [0,1)
+     * @return the point of the surface matching the point of the unit square
+     */
+    public abstract Point getSamplePoint(Point p, double u, double v);
+
+    /**
+     * Maps a point of the unit square to the unit disk by the concentric mapping of Shirley and Chiu,
+     * which keeps the relative areas and the stratification of the points.
+     *
+     * @param u    the first coordinate of the point of the unit square
+     * @param v    the second coordinate of the point of the unit square
+     * @param disk an array to receive the two coordinates of the point of the disk
+     */
+    static void squareToDisk(double u, double v, double[] disk) {
+        double a = 2 * u - 1, b = 2 * v - 1;
+        double r, phi;
+        if (a == 0 && b == 0) {
+            r = 0;
+            phi = 0;
+        } else if (Math.abs(a) > Math.abs(b)) {
+            r = a;
+            phi = Math.PI / 4 * (b / a);
+        } else {
+            r = b;
+            phi = Math.PI / 2 - Math.PI / 4 * (a / b);
+        }
+        disk[0] = r * Math.cos(phi);
+        disk[1] = r * Math.sin(phi);
+    }
+
+    /**
+     * Returns a point of a disk given by its center and two orthogonal radius vectors,
+     * matching a point of the unit square.
+     *
+     * @param center the center of the disk
+     * @param t      the first radius vector
+     * @param b      the second radius vector
+     * @param u      the first coordinate of the point of the unit square
+     * @param v      the second coordinate of the point of the unit square
+     * @return the point of the disk
+     */
+    static Point diskPoint(Point center, Vector t, Vector b, double u, double v) {
+        double[] disk = new double[2];
+        squareToDisk(u, v, disk);
+        return new Point(center.getX() + disk[0] * t.getX() + disk[1] * b.getX(),
+                center.getY() + disk[0] * t.getY() + disk[1] * b.getY(),
+                center.getZ() + disk[0] * t.getZ() + disk[1] * b.getZ());
+    }
+}
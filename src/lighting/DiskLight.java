@@ -0,0 +1,87 @@
+package lighting;
+
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * The {@code DiskLight} class represents an area light on a disk given by its center, normal and radius,
+ * such as a round lamp shade or a spotlight lens.
+ * It extends the {@code AreaLight} class.
+ */
+public class DiskLight extends AreaLight {
+
+    /**
+     * The first radius vector of the disk.
+     */
+    private final Vector radius1;
+    /**
+     * The second radius vector of the disk, orthogonal to the first one.
+     */
+    private final Vector radius2;
+
+    /**
+     * Constructs a new {@code DiskLight} with the specified intensity, center, normal and radius.
+     *
+     * @param intensity the intensity of the light source
+     * @param center    the center of the disk
+     * @param normal    the normal of the disk
+     * @param radius    the radius of the disk
+     * @throws IllegalArgumentException if the radius is not positive
+     */
+    public DiskLight(Color intensity, Point center, Vector normal, double radius) {
+        super(intensity, center);
+        if (radius <= 0)
+            throw new IllegalArgumentException("The radius of a disk light must be positive");
+        Vector n = normal.normalize();
+        Vector t = n.tangent();
+        radius1 = t.scale(radius);
+        radius2 = n.crossProduct(t).scale(radius);
+    }
+
+    /**
+     * Sets the constant attenuation factor.
+     *
+     * @param kC the constant attenuation factor
+     * @return this {@code DiskLight} instance for method chaining
+     */
+    @Override
+    public DiskLight setkC(double kC) {
+        return (DiskLight) super.setkC(kC);
+    }
+
+    /**
+     * Sets the linear attenuation factor.
+     *
+     * @param kL the linear attenuation factor
+     * @return this {@code DiskLight} instance for method chaining
+     */
+    @Override
+    public DiskLight setkL(double kL) {
+        return (DiskLight) super.setkL(kL);
+    }
+
+    /**
+     * Sets the quadratic attenuation factor.
+     *
+     * @param kQ the quadratic attenuation factor
+     * @return this {@code DiskLight} instance for method chaining
+     */
+    @Override
+    public DiskLight setkQ(double kQ) {
+        return (DiskLight) super.setkQ(kQ);
+    }
+
+    /**
+     * Returns a point of the disk, mapped from the unit square by the concentric mapping.
+     *
+     * @param p the point from which the light source is seen
+     * @param u the first coordinate of the point of the unit square
+     * @param v the second coordinate of the point of the unit square
+     * @return the point of the disk
+     */
+    @Override
+    public Point getSamplePoint(Point p, double u, double v) {
+        return diskPoint(position, radius1, radius2, u, v);
+    }
+}
@@ -0,0 +1,391 @@
+package lighting;
+
+import primitives.Color;
+import primitives.MutableColor;
+import primitives.MutableVector;
+import primitives.Vector;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An environment light: the radiance arriving from every direction at infinity, such as the sky, stored in
+ * a latitude-longitude image. The z axis points to the zenith, at the top row of the image, and the columns
+ * sweep the azimuth from the x axis towards the y axis.
+ * <p>
+ * The image serves both the background of the rays which leave the scene and the light samples of the shading
+ * points. For the background, a chain of images halved in size (mip levels) is precomputed, so that a ray
+ * standing for a wide cone of directions reads a prefiltered radiance. For the light samples, a two-dimensional
+ * distribution is precomputed over the texels, proportional to their luminance times their solid angle:
+ * the cumulative distribution of the rows, and of the texels of each row, which are inverted by binary search,
+ * so that bright regions such as the sun are sampled often. Sampling and lookups do not allocate,
+ * and the light is not modified after it is built, so it may be shared by many threads.
+ */
+public final class EnvironmentLight {
+    /** The luminance weights of the red, green and blue components */
+    private static final double LUMINANCE_R = 0.2126, LUMINANCE_G = 0.7152, LUMINANCE_B = 0.0722;
+
+    /** The mip levels, from the full image, with the red, green and blue components of each texel row by row */
+    private final float[][] levels;
+    /** The widths and heights of the mip levels */
+    private final int[] widths, heights;
+    /** The sampling function: the luminance of each texel times the sine of the polar angle of its row */
+    private final double[] function;
+    /** The sum of the sampling function */
+    private final double total;
+    /** The cumulative distribution of the rows, with a final 1 */
+    private final double[] marginal;
+    /** The cumulative distributions of the texels of each row, width + 1 per row */
+    private final double[] conditional;
+
+    /**
+     * Constructs an environment light from a latitude-longitude image.
+     *
+     * @param width  the width of the image
+     * @param height the height of the image
+     * @param rgb    the red, green and blue radiance of each texel, row by row from the zenith, not negative
+     * @throws IllegalArgumentException if the size is not positive or does not match the texels
+     */
+    public EnvironmentLight(int width, int height, float[] rgb) {
+        if (width <= 0 || height <= 0 || rgb.length != 3 * width * height)
+            throw new IllegalArgumentException("The environment image must have 3 components per texel");
+
+        int count = 1;
+        for (int w = width, h = height; w > 1 || h > 1; w = Math.max(1, w / 2), h = Math.max(1, h / 2))
+            ++count;
+        levels = new float[count][];
+        widths = new int[count];
+        heights = new int[count];
+        levels[0] = rgb.clone();
+        widths[0] = width;
+        heights[0] = height;
+        for (int level = 1; level < count; ++level)
+            downsample(level);
+
+        function = new double[width * height];
+        conditional = new double[height * (width + 1)];
+        marginal = new double[height + 1];
+        double sum = 0;
+        for (int j = 0; j < height; ++j) {
+            double sin = Math.sin(Math.PI * (j + 0.5) / height);
+            int base = j * (width + 1);
+            double row = 0;
+            for (int i = 0; i < width; ++i) {
+                int t = 3 * (j * width + i);
+                double value = Math.max(0, LUMINANCE_R * rgb[t] + LUMINANCE_G * rgb[t + 1] + LUMINANCE_B * rgb[t + 2]) * sin;
+                function[j * width + i] = value;
+                row += value;
+                conditional[base + i + 1] = row;
+            }
+            for (int i = 1; i <= width; ++i)
+                conditional[base + i] = row > 0 ? conditional[base + i] / row : (double) i / width;
+            sum += row;
+            marginal[j + 1] = sum;
+        }
+        total = sum;
+        for (int j = 1; j <= height; ++j)
+            marginal[j] = total > 0 ? marginal[j] / total : (double) j / height;
+    }
+
+    /**
+     * Loads an environment light from a Radiance HDR file (RGBE pixels, flat or run-length encoded),
+     * holding a latitude-longitude image stored from the top row down.
+     *
+     * @param fileName the path of the file
+     * @param scale    the factor of the radiance of the file, to bring it to the color range of the scene
+     *                 (e.g. 255 for an image whose white is 1)
+     * @return the environment light
+     * @throws IllegalArgumentException if the file is not a supported HDR image
+     * @throws IllegalStateException    if the file cannot be read
+     */
+    public static EnvironmentLight load(String fileName, double scale) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(fileName))) {
+            return read(new DataInputStream(in), scale);
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error reading the environment image " + fileName, e);
+        }
+    }
+
+    /**
+     * Reads a Radiance HDR image.
+     *
+     * @param in    the stream of the image
+     * @param scale the factor of the radiance
+     * @return the environment light
+     * @throws IOException if the stream cannot be read
+     */
+    private static EnvironmentLight read(DataInputStream in, double scale) throws IOException {
+        String line = readLine(in);
+        if (!line.startsWith("#?"))
+            throw new IllegalArgumentException("Not a Radiance HDR image");
+        while (!(line = readLine(in)).isEmpty())
+            if (line.startsWith("FORMAT=") && !line.equals("FORMAT=32-bit_rle_rgbe"))
+                throw new IllegalArgumentException("Unsupported HDR pixel format " + line);
+        String[] size = readLine(in).trim().split("\\s+");
+        if (size.length != 4 || !size[0].equals("-Y") || !size[2].equals("+X"))
+            throw new IllegalArgumentException("Unsupported HDR image orientation");
+        int height = Integer.parseInt(size[1]), width = Integer.parseInt(size[3]);
+
+        float[] rgb = new float[3 * width * height];
+        byte[] scanline = new byte[4 * width];
+        for (int j = 0; j < height; ++j) {
+            readScanline(in, scanline, width);
+            for (int i = 0; i < width; ++i) {
+                int e = scanline[4 * i + 3] & 0xFF;
+                double f = e == 0 ? 0 : Math.scalb(scale, e - 136);
+                int t = 3 * (j * width + i);
+                for (int c = 0; c < 3; ++c)
+                    rgb[t + c] = e == 0 ? 0 : (float) (((scanline[4 * i + c] & 0xFF) + 0.5) * f);
+            }
+        }
+        return new EnvironmentLight(width, height, rgb);
+    }
+
+    /**
+     * Reads a line of the header of an HDR image.
+     *
+     * @param in the stream of the image
+     * @return the line, without its end
+     * @throws IOException if the stream cannot be read
+     */
+    private static String readLine(DataInputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int b = in.readUnsignedByte(); b != '\n'; b = in.readUnsignedByte())
+            line.append((char) b);
+        return new String(line.toString().getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Reads a scanline of RGBE pixels, in the run-length encoding of each component or flat.
+     *
+     * @param in       the stream of the image
+     * @param scanline the array to receive the 4 bytes of each pixel
+     * @param width    the number of pixels
+     * @throws IOException if the stream cannot be read
+     */
+    private static void readScanline(DataInputStream in, byte[] scanline, int width) throws IOException {
+        in.readFully(scanline, 0, 4);
+        boolean encoded = width >= 8 && width < 0x8000 && scanline[0] == 2 && scanline[1] == 2
+                && ((scanline[2] & 0xFF) << 8 | scanline[3] & 0xFF) == width;
+        if (!encoded) {
+            in.readFully(scanline, 4, 4 * width - 4);
+            return;
+        }
+        for (int c = 0; c < 4; ++c)
+            for (int i = 0; i < width; ) {
+                int count = in.readUnsignedByte();
+                if (count > 128) { // A run of a repeated value
+                    count -= 128;
+                    if (i + count > width)
+                        throw new IllegalArgumentException("Corrupt HDR scanline");
+                    byte value = in.readByte();
+                    for (; count > 0; --count)
+                        scanline[4 * i++ + c] = value;
+                } else { // A run of literal values
+                    if (count == 0 || i + count > width)
+                        throw new IllegalArgumentException("Corrupt HDR scanline");
+                    for (; count > 0; --count)
+                        scanline[4 * i++ + c] = in.readByte();
+                }
+            }
+    }
+
+    /**
+     * Builds a mip level by averaging the blocks of 2x2 texels of the level above it.
+     *
+     * @param level the index of the level to build
+     */
+    private void downsample(int level) {
+        int w = widths[level - 1], h = heights[level - 1];
+        int width = Math.max(1, w / 2), height = Math.max(1, h / 2);
+        float[] above = levels[level - 1];
+        float[] texels = new float[3 * width * height];
+        for (int j = 0; j < height; ++j)
+            for (int i = 0; i < width; ++i) {
+                int i0 = Math.min(2 * i, w - 1), i1 = Math.min(2 * i + 1, w - 1);
+                int j0 = Math.min(2 * j, h - 1), j1 = Math.min(2 * j + 1, h - 1);
+                for (int c = 0; c < 3; ++c)
+                    texels[3 * (j * width + i) + c] = (above[3 * (j0 * w + i0) + c] + above[3 * (j0 * w + i1) + c]
+                            + above[3 * (j1 * w + i0) + c] + above[3 * (j1 * w + i1) + c]) / 4;
+            }
+        levels[level] = texels;
+        widths[level] = width;
+        heights[level] = height;
+    }
+
+    /**
+     * Returns the number of mip levels, from the full image down to a single texel (or a single row or column).
+     *
+     * @return the number of levels
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Returns the radiance arriving from a direction, from the full image.
+     *
+     * @param direction the direction towards the environment
+     * @return the radiance
+     */
+    public Color getRadiance(Vector direction) {
+        return getRadiance(direction, 0);
+    }
+
+    /**
+     * Returns the radiance arriving from a cone of directions, prefiltered by the mip level whose texels
+     * match the solid angle of the cone.
+     *
+     * @param direction the axis of the cone
+     * @param footprint the solid angle of the cone, in steradians, 0 for a single direction
+     * @return the average radiance over the cone
+     */
+    public Color getRadiance(Vector direction, double footprint) {
+        MutableColor radiance = new MutableColor();
+        radiance(direction.getX(), direction.getY(), direction.getZ(), footprint, radiance);
+        return radiance.toColor();
+    }
+
+    /**
+     * Finds the radiance arriving from a cone of directions, without allocating. The texels are interpolated
+     * bilinearly within the two mip levels around the footprint, and between the levels.
+     *
+     * @param x         the x component of the unit axis of the cone
+     * @param y         the y component of the unit axis of the cone
+     * @param z         the z component of the unit axis of the cone
+     * @param footprint the solid angle of the cone, in steradians, 0 for a single direction
+     * @param radiance  the color to receive the radiance
+     */
+    public void radiance(double x, double y, double z, double footprint, MutableColor radiance) {
+        double u = azimuth(x, y), v = Math.acos(Math.max(-1, Math.min(1, z))) / Math.PI;
+        // The average solid angle of a texel of the full image is 4 pi / (width * height)
+        double lod = footprint <= 0 ? 0
+                : 0.5 * Math.log(footprint * widths[0] * heights[0] / (4 * Math.PI)) / Math.log(2);
+        lod = Math.max(0, Math.min(levels.length - 1, lod));
+        int level = (int) lod;
+        double f = lod - level;
+        double r = 0, g = 0, b = 0;
+        for (int l = level; l <= Math.min(level + 1, levels.length - 1); ++l) {
+            double weight = l == level ? 1 - f : f;
+            if (weight == 0)
+                continue;
+            int w = widths[l], h = heights[l];
+            float[] texels = levels[l];
+            double s = u * w - 0.5, t = Math.min(h - 0.5, Math.max(0.5, v * h)) - 0.5;
+            int i0 = (int) Math.floor(s), j0 = (int) Math.floor(t);
+            double fs = s - i0, ft = t - j0;
+            int j1 = Math.min(h - 1, j0 + 1);
+            int i1 = Math.floorMod(i0 + 1, w);
+            i0 = Math.floorMod(i0, w);
+            double w00 = weight * (1 - fs) * (1 - ft), w10 = weight * fs * (1 - ft);
+            double w01 = weight * (1 - fs) * ft, w11 = weight * fs * ft;
+            int t00 = 3 * (j0 * w + i0), t10 = 3 * (j0 * w + i1), t01 = 3 * (j1 * w + i0), t11 = 3 * (j1 * w + i1);
+            r += w00 * texels[t00] + w10 * texels[t10] + w01 * texels[t01] + w11 * texels[t11];
+            g += w00 * texels[t00 + 1] + w10 * texels[t10 + 1] + w01 * texels[t01 + 1] + w11 * texels[t11 + 1];
+            b += w00 * texels[t00 + 2] + w10 * texels[t10 + 2] + w01 * texels[t01 + 2] + w11 * texels[t11 + 2];
+        }
+        radiance.set(r, g, b);
+    }
+
+    /**
+     * Samples a direction towards the environment, with a probability density proportional to the luminance
+     * of the texels, without allocating.
+     *
+     * @param u1        a uniform random number in [0,1), choosing the row
+     * @param u2        a uniform random number in [0,1), choosing the texel in the row
+     * @param direction the vector to receive the unit direction
+     * @param radiance  the color to receive the radiance of the texel of the direction, unfiltered, so that
+     *                  its ratio to the density is the same for all the directions of the texel
+     * @return the probability density of the direction, per steradian, or 0 if the environment is black
+     * (the direction and the radiance are then unset)
+     */
+    public double sample(double u1, double u2, MutableVector direction, MutableColor radiance) {
+        if (total == 0)
+            return 0;
+        int width = widths[0], height = heights[0];
+        int j = find(marginal, 0, height, u1);
+        double v = (j + (u1 - marginal[j]) / (marginal[j + 1] - marginal[j])) / height;
+        int base = j * (width + 1);
+        int i = find(conditional, base, width, u2);
+        double u = (i + (u2 - conditional[base + i]) / (conditional[base + i + 1] - conditional[base + i])) / width;
+
+        double theta = Math.PI * v, phi = 2 * Math.PI * u;
+        double sin = Math.sin(theta);
+        if (sin <= 0)
+            return 0;
+        direction.set(sin * Math.cos(phi), sin * Math.sin(phi), Math.cos(theta));
+        int t = 3 * (j * width + i);
+        radiance.set(levels[0][t], levels[0][t + 1], levels[0][t + 2]);
+        return density(j * width + i, sin);
+    }
+
+    /**
+     * Returns the probability density of sampling a direction (see {@link #sample(double, double, MutableVector, MutableColor)}).
+     *
+     * @param x the x component of the unit direction
+     * @param y the y component of the unit direction
+     * @param z the z component of the unit direction
+     * @return the probability density, per steradian
+     */
+    public double pdf(double x, double y, double z) {
+        if (total == 0)
+            return 0;
+        int width = widths[0], height = heights[0];
+        double sin = Math.sqrt(Math.max(0, 1 - z * z));
+        if (sin <= 0)
+            return 0;
+        int i = Math.min(width - 1, (int) (azimuth(x, y) * width));
+        int j = Math.min(height - 1, (int) (Math.acos(Math.max(-1, Math.min(1, z))) / Math.PI * height));
+        return density(j * width + i, sin);
+    }
+
+    /**
+     * Returns the probability density per steradian of a direction in a texel: the density over the image,
+     * divided by the solid angle of the image per unit area at the polar angle of the direction (2 pi^2 sin).
+     *
+     * @param texel the index of the texel
+     * @param sin   the sine of the polar angle of the direction
+     * @return the probability density
+     */
+    private double density(int texel, double sin) {
+        return function[texel] / total * widths[0] * heights[0] / (2 * Math.PI * Math.PI * sin);
+    }
+
+    /**
+     * Returns the horizontal coordinate of a direction in the image.
+     *
+     * @param x the x component of the direction
+     * @param y the y component of the direction
+     * @return the azimuth of the direction as a fraction of a turn, in [0,1)
+     */
+    private static double azimuth(double x, double y) {
+        double u = Math.atan2(y, x) / (2 * Math.PI);
+        return u < 0 ? Math.min(u + 1, Math.nextDown(1.0)) : u;
+    }
+
+    /**
+     * Finds the interval of a cumulative distribution containing a value: the last index whose cumulative
+     * value is not above it, so that empty intervals are never chosen.
+     *
+     * @param cdf   the cumulative distributions
+     * @param base  the index of the first value of the distribution
+     * @param count the number of intervals of the distribution
+     * @param value the value, in [0,1)
+     * @return the index of the interval, from 0
+     */
+    private static int find(double[] cdf, int base, int count, double value) {
+        int low = 0, high = count - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (cdf[base + middle] <= value)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,199 @@
+package lighting;
+
+import primitives.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A spatial index of the lights of a scene by their influence radius: the distance beyond which the intensity
+ * of an attenuated light is below a cutoff (see {@link LightSource#getInfluenceRadius(double)}).
+ * The spheres of influence of the point lights and spotlights are stored in a uniform grid, whose cells list
+ * the lights whose sphere overlaps them, so that shading a point only considers the lights of its cell,
+ * and never traces shadow rays to lights which cannot noticeably light it.
+ * Lights which are not attenuated (such as directional lights) reach every point.
+ * <p>
+ * The index is built from the lights as they are: it must be built again after lights are moved or changed.
+ * It is not modified after it is built, so it may be queried by many threads.
+ */
+public final class LightIndex {
+    /** The maximal number of cells of the grid */
+    private static final int MAX_CELLS = 1 << 18;
+    /** The cell of a point outside the grid */
+    private static final int[] NONE = new int[0];
+
+    /** The indexed lights */
+    private final PointLight[] lights;
+    /** The squared influence radii of the indexed lights */
+    private final double[] radii2;
+    /** The lights which reach every point */
+    private final List<LightSource> unbounded = new ArrayList<>();
+
+    /** The minimal corner of the grid */
+    private final double minX, minY, minZ;
+    /** The size of a cell */
+    private final double cellSize;
+    /** The number of cells along each axis */
+    private final int nX, nY, nZ;
+    /** The indices of the lights overlapping each cell, null for an empty cell */
+    private final int[][] cells;
+
+    /**
+     * Builds the index of a list of lights.
+     *
+     * @param lights the lights
+     * @param cutoff the intensity below which a light is negligible, positive
+     * @throws IllegalArgumentException if the cutoff is not positive
+     */
+    public LightIndex(List<LightSource> lights, double cutoff) {
+        if (cutoff <= 0)
+            throw new IllegalArgumentException("The cutoff must be positive");
+        List<PointLight> bounded = new ArrayList<>();
+        List<Double> radii = new ArrayList<>();
+        for (LightSource light : lights) {
+            double radius = light.getInfluenceRadius(cutoff);
+            if (radius == 0)
+                continue; // Negligible everywhere
+            if (light instanceof PointLight pointLight && radius < Double.POSITIVE_INFINITY) {
+                bounded.add(pointLight);
+                radii.add(radius);
+            } else
+                unbounded.add(light);
+        }
+        this.lights = bounded.toArray(new PointLight[0]);
+        radii2 = new double[this.lights.length];
+
+        // The grid bounds the spheres, with cells as large as the average sphere unless they are too many
+        double[] box = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        double sumRadii = 0;
+        for (int i = 0; i < this.lights.length; ++i) {
+            double radius = radii.get(i);
+            radii2[i] = radius * radius;
+            sumRadii += radius;
+            Point position = this.lights[i].position;
+            box[0] = Math.min(box[0], position.getX() - radius);
+            box[1] = Math.min(box[1], position.getY() - radius);
+            box[2] = Math.min(box[2], position.getZ() - radius);
+            box[3] = Math.max(box[3], position.getX() + radius);
+            box[4] = Math.max(box[4], position.getY() + radius);
+            box[5] = Math.max(box[5], position.getZ() + radius);
+        }
+        if (this.lights.length == 0) {
+            minX = minY = minZ = 0;
+            cellSize = 1;
+            nX = nY = nZ = 0;
+            cells = new int[0][];
+            return;
+        }
+        double size = 2 * sumRadii / this.lights.length;
+        while ((double) cells(box[3] - box[0], size) * cells(box[4] - box[1], size) * cells(box[5] - box[2], size)
+                > MAX_CELLS)
+            size *= 1.25;
+        minX = box[0];
+        minY = box[1];
+        minZ = box[2];
+        cellSize = size;
+        nX = cells(box[3] - box[0], size);
+        nY = cells(box[4] - box[1], size);
+        nZ = cells(box[5] - box[2], size);
+        cells = new int[nX * nY * nZ][];
+
+        int[] counts = new int[cells.length];
+        for (int pass = 0; pass < 2; ++pass) {
+            for (int i = 0; i < this.lights.length; ++i) {
+                Point position = this.lights[i].position;
+                double radius = radii.get(i);
+                int x0 = cell(position.getX() - radius - minX, nX), x1 = cell(position.getX() + radius - minX, nX);
+                int y0 = cell(position.getY() - radius - minY, nY), y1 = cell(position.getY() + radius - minY, nY);
+                int z0 = cell(position.getZ() - radius - minZ, nZ), z1 = cell(position.getZ() + radius - minZ, nZ);
+                for (int x = x0; x <= x1; ++x)
+                    for (int y = y0; y <= y1; ++y)
+                        for (int z = z0; z <= z1; ++z) {
+                            int c = (x * nY + y) * nZ + z;
+                            if (pass == 0)
+                                ++counts[c];
+                            else
+                                cells[c][--counts[c]] = i;
+                        }
+            }
+            // The cells are allocated after the first pass, and filled from their end in the second one
+            if (pass == 0)
+                for (int c = 0; c < cells.length; ++c)
+                    if (counts[c] > 0)
+                        cells[c] = new int[counts[c]];
+        }
+        // Keep the lights of a cell in the order of the scene
+        for (int[] cell : cells)
+            if (cell != null)
+                Arrays.sort(cell);
+    }
+
+    /**
+     * Returns the number of lights whose influence is bounded.
+     *
+     * @return the number of indexed lights
+     */
+    public int size() {
+        return lights.length;
+    }
+
+    /**
+     * Passes to an action the lights whose influence reaches a point: the lights which are not attenuated,
+     * followed by the indexed lights whose sphere of influence contains the point.
+     *
+     * @param point  the point
+     * @param action the action receiving each light
+     */
+    public void forEachReaching(Point point, Consumer<LightSource> action) {
+        for (LightSource light : unbounded)
+            action.accept(light);
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        for (int i : cellOf(px, py, pz)) {
+            Point position = lights[i].position;
+            double dx = px - position.getX(), dy = py - position.getY(), dz = pz - position.getZ();
+            if (dx * dx + dy * dy + dz * dz <= radii2[i])
+                action.accept(lights[i]);
+        }
+    }
+
+    /**
+     * Returns the indices of the lights overlapping the cell of a point.
+     *
+     * @param px the x coordinate of the point
+     * @param py the y coordinate of the point
+     * @param pz the z coordinate of the point
+     * @return the indices, empty for a point outside the grid
+     */
+    private int[] cellOf(double px, double py, double pz) {
+        double x = (px - minX) / cellSize, y = (py - minY) / cellSize, z = (pz - minZ) / cellSize;
+        if (!(x >= 0 && x < nX && y >= 0 && y < nY && z >= 0 && z < nZ))
+            return NONE;
+        int[] cell = cells[((int) x * nY + (int) y) * nZ + (int) z];
+        return cell == null ? NONE : cell;
+    }
+
+    /**
+     * Calculates the number of cells along an axis.
+     *
+     * @param extent the extent of the grid along the axis
+     * @param size   the size of a cell
+     * @return the number of cells, at least 1
+     */
+    private static int cells(double extent, double size) {
+        return Math.max(1, (int) Math.ceil(extent / size));
+    }
+
+    /**
+     * Calculates the cell of a coordinate along an axis.
+     *
+     * @param offset the offset of the coordinate from the minimal corner of the grid
+     * @param n      the number of cells along the axis
+     * @return the cell index, between 0 and n - 1
+     */
+    private int cell(double offset, int n) {
+        return Math.max(0, Math.min(n - 1, (int) (offset / cellSize)));
+    }
+}
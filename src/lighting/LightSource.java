@@ -33,4 +33,31 @@ public interface LightSource {
      * @return the distance from the light source to the specified point
      */
     double getDistance(Point point);
+
+    /**
+     * Returns the distance from the light source beyond which its intensity is below a cutoff in every component,
+     * so that it may be ignored.
+     *
+     * @param cutoff the intensity below which the light is negligible
+     * @return the influence radius, infinity for a light source which is not attenuated with the distance
+     */
+    default double getInfluenceRadius(double cutoff) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Tells cheaply whether the light source may contribute at a point, so that a ray tracer may skip
+     * the shadow ray of a light which would be multiplied by black anyway (e.g. outside the cone of a spotlight,
+     * or beyond the distance at which an attenuated light is negligible). Whether the surface at the point
+     * faces the light is for the caller to test, from the normal of the surface.
+     *
+     * @param p      the point
+     * @param l      the direction vector from the light source to the point, as returned by {@link #getL(Point)}
+     * @param cutoff the intensity below which the light is negligible, or 0 to keep any positive intensity
+     * @return false if the intensity of the light at the point is black or below the cutoff,
+     * true if it may be above it
+     */
+    default boolean canContribute(Point p, Vector l, double cutoff) {
+        return true;
+    }
 }
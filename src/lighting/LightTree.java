@@ -0,0 +1,343 @@
+package lighting;
+
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hierarchy of the point lights and spotlights of a scene, for choosing stochastically a few lights per shading
+ * point instead of all of them (Conty Estevez and Kulla 2018). Each node bounds its lights by a box, their total
+ * power (the luminance of their intensities), their minimal attenuation factors and a cone of their emission
+ * directions. A light is chosen by descending from the root, choosing each child with a probability proportional
+ * to an estimate of its importance at the shading point; the contribution of the chosen light is then divided by
+ * the probability of the choice, so the expected color is the sum of the contributions of all the lights.
+ * A child is given a zero importance only when none of its lights can light the point (all of them are
+ * behind the surface, or all of them point away from it), so the estimate is unbiased.
+ * The cost of a choice is logarithmic in the number of lights.
+ * <p>
+ * The hierarchy is built from the lights as they are: it must be built again after lights are moved or changed.
+ * Other light sources, such as directional lights, are not bounded and are returned by {@link #getUnbounded()}
+ * to be evaluated at every shading point.
+ */
+public final class LightTree {
+    /** The cosine of the angle beyond which a spotlight emits nothing */
+    private static final double COS_EMISSION = 0;
+    /** The minimal attenuation denominator, so that the importance of a light on a shading point is finite */
+    private static final double MIN_ATTENUATION = 1e-12;
+
+    /**
+     * A light chosen for a shading point.
+     *
+     * @param light       the light
+     * @param probability the probability of choosing the light
+     */
+    public record Sample(LightSource light, double probability) {
+    }
+
+    /**
+     * A node of the hierarchy: a leaf holds a single light.
+     */
+    private static final class Node {
+        /** The bounds of the positions: minX, minY, minZ, maxX, maxY, maxZ */
+        final double[] box = new double[6];
+        /** The total power of the lights */
+        double power;
+        /** The minimal attenuation factors of the lights */
+        double kC, kL, kQ;
+        /** The axis of the cone of the emission directions */
+        double ax, ay, az;
+        /** The half angle of the cone of the emission directions, PI for lights emitting in all directions */
+        double theta;
+        /** The children of an inner node */
+        Node left, right;
+        /** The parent, null for the root */
+        Node parent;
+        /** The light of a leaf */
+        PointLight light;
+    }
+
+    /** The root of the hierarchy, null if there is no bounded light */
+    private final Node root;
+    /** The leaf of each bounded light */
+    private final Map<LightSource, Node> leaves = new IdentityHashMap<>();
+    /** The lights which are not in the hierarchy */
+    private final List<LightSource> unbounded = new ArrayList<>();
+
+    /**
+     * Builds the hierarchy of a list of lights.
+     *
+     * @param lights the lights
+     */
+    public LightTree(List<LightSource> lights) {
+        List<Node> nodes = new ArrayList<>();
+        for (LightSource light : lights)
+            if (light instanceof PointLight pointLight)
+                nodes.add(leaf(pointLight));
+            else
+                unbounded.add(light);
+        root = nodes.isEmpty() ? null : build(nodes.toArray(new Node[0]), 0, nodes.size());
+    }
+
+    /**
+     * Returns the number of lights in the hierarchy.
+     *
+     * @return the number of bounded lights
+     */
+    public int size() {
+        return leaves.size();
+    }
+
+    /**
+     * Returns the lights which are not in the hierarchy, to be evaluated at every shading point.
+     *
+     * @return the unbounded lights
+     */
+    public List<LightSource> getUnbounded() {
+        return unbounded;
+    }
+
+    /**
+     * Chooses a light for a shading point.
+     *
+     * @param point  the shading point
+     * @param normal the unit normal at the point, facing the side of the lights which may light it
+     * @param u      a uniform random number in [0,1)
+     * @return the chosen light with its probability, or null if no light can light the point
+     */
+    public Sample sample(Point point, Vector normal, double u) {
+        if (root == null)
+            return null;
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        double nx = normal.getX(), ny = normal.getY(), nz = normal.getZ();
+        if (importance(root, px, py, pz, nx, ny, nz) <= 0)
+            return null;
+        Node node = root;
+        double probability = 1;
+        while (node.light == null) {
+            double left = importance(node.left, px, py, pz, nx, ny, nz);
+            double right = importance(node.right, px, py, pz, nx, ny, nz);
+            // The sphere around a child may exceed the sphere around its parent, so both may be rejected
+            if (left + right <= 0)
+                return null;
+            double pLeft = left / (left + right);
+            // The random number is rescaled into the chosen part, and reused for the next choice
+            if (u < pLeft) {
+                u /= pLeft;
+                probability *= pLeft;
+                node = node.left;
+            } else {
+                u = (u - pLeft) / (1 - pLeft);
+                probability *= 1 - pLeft;
+                node = node.right;
+            }
+            u = Math.min(u, Math.nextDown(1.0));
+        }
+        return new Sample(node.light, probability);
+    }
+
+    /**
+     * Calculates the probability of choosing a light for a shading point by {@link #sample(Point, Vector, double)}.
+     *
+     * @param light  the light
+     * @param point  the shading point
+     * @param normal the unit normal at the point, facing the side of the lights which may light it
+     * @return the probability, 0 if the light is not in the hierarchy or cannot be chosen
+     */
+    public double probability(LightSource light, Point point, Vector normal) {
+        Node node = leaves.get(light);
+        if (node == null)
+            return 0;
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        double nx = normal.getX(), ny = normal.getY(), nz = normal.getZ();
+        if (importance(root, px, py, pz, nx, ny, nz) <= 0)
+            return 0;
+        double probability = 1;
+        for (; node.parent != null; node = node.parent) {
+            double left = importance(node.parent.left, px, py, pz, nx, ny, nz);
+            double right = importance(node.parent.right, px, py, pz, nx, ny, nz);
+            if (left + right <= 0)
+                return 0;
+            probability *= (node == node.parent.left ? left : right) / (left + right);
+        }
+        return probability;
+    }
+
+    /**
+     * Creates the leaf of a light.
+     *
+     * @param light the light
+     * @return the leaf
+     */
+    private Node leaf(PointLight light) {
+        Node node = new Node();
+        Point position = light.position;
+        node.box[0] = node.box[3] = position.getX();
+        node.box[1] = node.box[4] = position.getY();
+        node.box[2] = node.box[5] = position.getZ();
+        node.power = light.getIntensity().luminance();
+        node.kC = light.kC;
+        node.kL = light.kL;
+        node.kQ = light.kQ;
+        if (light instanceof SpotLight spot) {
+            node.ax = spot.direction.getX();
+            node.ay = spot.direction.getY();
+            node.az = spot.direction.getZ();
+            node.theta = 0;
+        } else {
+            node.az = 1;
+            node.theta = Math.PI;
+        }
+        node.light = light;
+        leaves.put(light, node);
+        return node;
+    }
+
+    /**
+     * Recursively builds the node over a range of leaves, splitting at the median of the positions
+     * along the longest axis of their bounds.
+     *
+     * @param nodes the leaves
+     * @param first the first index of the range
+     * @param end   the index after the last index of the range
+     * @return the node
+     */
+    private static Node build(Node[] nodes, int first, int end) {
+        if (end - first == 1)
+            return nodes[first];
+        double[] box = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (int i = first; i < end; ++i)
+            for (int axis = 0; axis < 3; ++axis) {
+                box[axis] = Math.min(box[axis], nodes[i].box[axis]);
+                box[axis + 3] = Math.max(box[axis + 3], nodes[i].box[axis]);
+            }
+        int axis = 0;
+        for (int a = 1; a < 3; ++a)
+            if (box[a + 3] - box[a] > box[axis + 3] - box[axis])
+                axis = a;
+        int sortAxis = axis;
+        Arrays.sort(nodes, first, end, (a, b) -> Double.compare(a.box[sortAxis], b.box[sortAxis]));
+        int middle = (first + end) >>> 1;
+        Node node = new Node();
+        node.left = build(nodes, first, middle);
+        node.right = build(nodes, middle, end);
+        node.left.parent = node.right.parent = node;
+        merge(node);
+        return node;
+    }
+
+    /**
+     * Sets the bounds of an inner node to the union of the bounds of its children.
+     *
+     * @param node the node
+     */
+    private static void merge(Node node) {
+        Node a = node.left, b = node.right;
+        for (int axis = 0; axis < 3; ++axis) {
+            node.box[axis] = Math.min(a.box[axis], b.box[axis]);
+            node.box[axis + 3] = Math.max(a.box[axis + 3], b.box[axis + 3]);
+        }
+        node.power = a.power + b.power;
+        node.kC = Math.min(a.kC, b.kC);
+        node.kL = Math.min(a.kL, b.kL);
+        node.kQ = Math.min(a.kQ, b.kQ);
+
+        // The union of the cones: the smallest cone around both cones, rotated from the wider one
+        Node wide = a.theta >= b.theta ? a : b, narrow = wide == a ? b : a;
+        double cos = Math.max(-1, Math.min(1, wide.ax * narrow.ax + wide.ay * narrow.ay + wide.az * narrow.az));
+        double between = Math.acos(cos);
+        if (Math.min(between + narrow.theta, Math.PI) <= wide.theta) {
+            setCone(node, wide.ax, wide.ay, wide.az, wide.theta);
+            return;
+        }
+        double theta = (wide.theta + between + narrow.theta) / 2;
+        double rx = wide.ay * narrow.az - wide.az * narrow.ay;
+        double ry = wide.az * narrow.ax - wide.ax * narrow.az;
+        double rz = wide.ax * narrow.ay - wide.ay * narrow.ax;
+        double length = Math.sqrt(rx * rx + ry * ry + rz * rz);
+        if (theta >= Math.PI || length == 0) {
+            setCone(node, 0, 0, 1, Math.PI);
+            return;
+        }
+        // Rotate the axis of the wider cone towards the narrower one (Rodrigues' formula)
+        double angle = theta - wide.theta;
+        rx /= length;
+        ry /= length;
+        rz /= length;
+        double c = Math.cos(angle), s = Math.sin(angle);
+        double dot = rx * wide.ax + ry * wide.ay + rz * wide.az;
+        setCone(node,
+                wide.ax * c + (ry * wide.az - rz * wide.ay) * s + rx * dot * (1 - c),
+                wide.ay * c + (rz * wide.ax - rx * wide.az) * s + ry * dot * (1 - c),
+                wide.az * c + (rx * wide.ay - ry * wide.ax) * s + rz * dot * (1 - c),
+                theta);
+    }
+
+    /**
+     * Sets the cone of the emission directions of a node.
+     *
+     * @param node  the node
+     * @param x     the x coordinate of the axis
+     * @param y     the y coordinate of the axis
+     * @param z     the z coordinate of the axis
+     * @param theta the half angle
+     */
+    private static void setCone(Node node, double x, double y, double z, double theta) {
+        node.ax = x;
+        node.ay = y;
+        node.az = z;
+        node.theta = theta;
+    }
+
+    /**
+     * Estimates the importance of the lights of a node for a shading point: their power, attenuated at the distance
+     * of the center of their bounds (but not nearer than an eighth of their diagonal), scaled by bounds of the cosine
+     * of their emission angle and of the cosine of the incidence angle on the surface.
+     *
+     * @param node the node
+     * @param px   the x coordinate of the shading point
+     * @param py   the y coordinate of the shading point
+     * @param pz   the z coordinate of the shading point
+     * @param nx   the x coordinate of the normal facing the lights
+     * @param ny   the y coordinate of the normal
+     * @param nz   the z coordinate of the normal
+     * @return the importance, 0 if no light of the node can light the point
+     */
+    private static double importance(Node node, double px, double py, double pz, double nx, double ny, double nz) {
+        double[] box = node.box;
+        double cx = (box[0] + box[3]) / 2, cy = (box[1] + box[4]) / 2, cz = (box[2] + box[5]) / 2;
+        double dx = cx - px, dy = cy - py, dz = cz - pz;
+        double d2 = dx * dx + dy * dy + dz * dz;
+        double ex = box[3] - box[0], ey = box[4] - box[1], ez = box[5] - box[2];
+        double r2 = (ex * ex + ey * ey + ez * ez) / 4; // The squared radius of the sphere around the box
+        // The distance is not clamped to the radius, which would hide the distance of a point inside the sphere,
+        // but only kept off zero for lights without constant attenuation
+        double distance = Math.sqrt(Math.max(d2, r2 / 16));
+
+        // The half angle of the cone of directions from the point to the box, PI if the point is in its sphere
+        double thetaB = d2 <= r2 ? Math.PI : Math.asin(Math.sqrt(r2 / d2));
+        double length = Math.sqrt(d2);
+
+        // The angle between the emission axis and the direction from the box to the point
+        double cosW = length == 0 ? 1 : -(node.ax * dx + node.ay * dy + node.az * dz) / length;
+        double thetaW = Math.acos(Math.max(-1, Math.min(1, cosW)));
+        double cosEmission = Math.cos(Math.max(0, thetaW - node.theta - thetaB));
+        if (cosEmission <= COS_EMISSION)
+            return 0;
+
+        // The incidence angle on the surface
+        double cosI = length == 0 ? 1 : (nx * dx + ny * dy + nz * dz) / length;
+        double thetaI = Math.acos(Math.max(-1, Math.min(1, cosI)));
+        if (thetaI - thetaB >= Math.PI / 2)
+            return 0;
+        double cosIncidence = Math.cos(Math.max(0, thetaI - thetaB));
+
+        double attenuation = Math.max(MIN_ATTENUATION, node.kC + node.kL * distance + node.kQ * distance * distance);
+        return node.power * cosEmission * cosIncidence / attenuation;
+    }
+}
@@ -10,10 +10,10 @@ import primitives.Vector;
  */
 public class PointLight extends Light implements LightSource {
 
-    // The position of the light source in the 3D space
-    private Point position;
-    // Attenuation factors
-    private double kC = 1d, kL = 0d, kQ = 0d;
+    // The position of the light source in the 3D space, read by the light hierarchy
+    Point position;
+    // Attenuation factors, read by the light hierarchy
+    double kC = 1d, kL = 0d, kQ = 0d;
 
     /**
      * Constructs a new {@code PointLight} with the specified intensity and position.
@@ -59,6 +59,15 @@ public class PointLight extends Light implements LightSource {
         return this;
     }
 
+    /**
+     * Returns the position of the light source.
+     *
+     * @return the position of the light source
+     */
+    public Point getPosition() {
+        return position;
+    }
+
     /**
      * Returns the intensity of the light source at a specific point.
      * The intensity is calculated using the inverse-square law with attenuation factors.
@@ -81,7 +90,11 @@ public class PointLight extends Light implements LightSource {
      */
     @Override
     public Vector getL(Point p) {
-        return p.subtract(position).normalize();
+        double x = p.getX() - position.getX();
+        double y = p.getY() - position.getY();
+        double z = p.getZ() - position.getZ();
+        double length = Math.sqrt(x * x + y * y + z * z);
+        return new Vector(x / length, y / length, z / length);
     }
 
     /**
@@ -94,5 +107,40 @@ public class PointLight extends Light implements LightSource {
     public double getDistance(Point point) {
         return position.distance(point);
     }
-}
 
+    /**
+     * Tells whether the light source may contribute at a point: whether its attenuated intensity at the point
+     * reaches the cutoff in some component.
+     *
+     * @param p      the point
+     * @param l      the direction vector from the light source to the point
+     * @param cutoff the intensity below which the light is negligible, or 0 to keep any positive intensity
+     * @return false if the intensity of the light at the point is below the cutoff
+     */
+    @Override
+    public boolean canContribute(Point p, Vector l, double cutoff) {
+        if (cutoff == 0)
+            return true;
+        double distanceSquared = position.distanceSquared(p);
+        double attenuation = kC + kL * Math.sqrt(distanceSquared) + kQ * distanceSquared;
+        return intensity.difference(Color.BLACK) >= cutoff * attenuation;
+    }
+
+    /**
+     * Returns the distance from the light source beyond which its intensity is below a cutoff in every component.
+     * The distance solves kC + kL * d + kQ * d^2 = I / cutoff, where I is the largest component of the intensity.
+     *
+     * @param cutoff the intensity below which the light is negligible
+     * @return the influence radius, 0 if the light is negligible everywhere,
+     * infinity if the light is not attenuated with the distance
+     */
+    @Override
+    public double getInfluenceRadius(double cutoff) {
+        double attenuation = intensity.difference(Color.BLACK) / cutoff; // The attenuation at the radius
+        if (attenuation <= kC)
+            return 0;
+        if (kQ > 0)
+            return (-kL + Math.sqrt(kL * kL + 4 * kQ * (attenuation - kC))) / (2 * kQ);
+        return kL > 0 ? (attenuation - kC) / kL : Double.POSITIVE_INFINITY;
+    }
+}
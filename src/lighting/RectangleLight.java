@@ -0,0 +1,88 @@
+package lighting;
+
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * The {@code RectangleLight} class represents an area light on a parallelogram (usually a rectangle)
+ * given by its center and its two edge vectors, such as a ceiling panel or a window.
+ * It extends the {@code AreaLight} class.
+ */
+public class RectangleLight extends AreaLight {
+
+    /**
+     * The first edge of the rectangle.
+     */
+    private final Vector edge1;
+    /**
+     * The second edge of the rectangle.
+     */
+    private final Vector edge2;
+
+    /**
+     * Constructs a new {@code RectangleLight} with the specified intensity, center and edges.
+     *
+     * @param intensity the intensity of the light source
+     * @param center    the center of the rectangle
+     * @param edge1     the first edge of the rectangle
+     * @param edge2     the second edge of the rectangle, not parallel to the first one
+     * @throws IllegalArgumentException if the edges are parallel
+     */
+    public RectangleLight(Color intensity, Point center, Vector edge1, Vector edge2) {
+        super(intensity, center);
+        edge1.crossProduct(edge2); // Throws for parallel edges
+        this.edge1 = edge1;
+        this.edge2 = edge2;
+    }
+
+    /**
+     * Sets the constant attenuation factor.
+     *
+     * @param kC the constant attenuation factor
+     * @return this {@code RectangleLight} instance for method chaining
+     */
+    @Override
+    public RectangleLight setkC(double kC) {
+        return (RectangleLight) super.setkC(kC);
+    }
+
+    /**
+     * Sets the linear attenuation factor.
+     *
+     * @param kL the linear attenuation factor
+     * @return this {@code RectangleLight} instance for method chaining
+     */
+    @Override
+    public RectangleLight setkL(double kL) {
+        return (RectangleLight) super.setkL(kL);
+    }
+
+    /**
+     * Sets the quadratic attenuation factor.
+     *
+     * @param kQ the quadratic attenuation factor
+     * @return this {@code RectangleLight} instance for method chaining
+     */
+    @Override
+    public RectangleLight setkQ(double kQ) {
+        return (RectangleLight) super.setkQ(kQ);
+    }
+
+    /**
+     * Returns a point of the rectangle: the unit square is stretched along the edges.
+     *
+     * @param p the point from which the light source is seen
+     * @param u the coordinate of the point of the unit square along the first edge
+     * @param v the coordinate of the point of the unit square along the second edge
+     * @return the point of the rectangle
+     */
+    @Override
+    public Point getSamplePoint(Point p, double u, double v) {
+        u -= 0.5;
+        v -= 0.5;
+        return new Point(position.getX() + u * edge1.getX() + v * edge2.getX(),
+                position.getY() + u * edge1.getY() + v * edge2.getY(),
+                position.getZ() + u * edge1.getZ() + v * edge2.getZ());
+    }
+}
@@ -0,0 +1,85 @@
+package lighting;
+
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * The {@code SphereLight} class represents an area light on a sphere given by its center and radius,
+ * such as a light bulb or a lamp globe. From a point, the sphere is sampled on its silhouette: the disk through
+ * its center facing the point.
+ * It extends the {@code AreaLight} class.
+ */
+public class SphereLight extends AreaLight {
+
+    /**
+     * The radius of the sphere.
+     */
+    private final double radius;
+
+    /**
+     * Constructs a new {@code SphereLight} with the specified intensity, center and radius.
+     *
+     * @param intensity the intensity of the light source
+     * @param center    the center of the sphere
+     * @param radius    the radius of the sphere
+     * @throws IllegalArgumentException if the radius is not positive
+     */
+    public SphereLight(Color intensity, Point center, double radius) {
+        super(intensity, center);
+        if (radius <= 0)
+            throw new IllegalArgumentException("The radius of a sphere light must be positive");
+        this.radius = radius;
+    }
+
+    /**
+     * Sets the constant attenuation factor.
+     *
+     * @param kC the constant attenuation factor
+     * @return this {@code SphereLight} instance for method chaining
+     */
+    @Override
+    public SphereLight setkC(double kC) {
+        return (SphereLight) super.setkC(kC);
+    }
+
+    /**
+     * Sets the linear attenuation factor.
+     *
+     * @param kL the linear attenuation factor
+     * @return this {@code SphereLight} instance for method chaining
+     */
+    @Override
+    public SphereLight setkL(double kL) {
+        return (SphereLight) super.setkL(kL);
+    }
+
+    /**
+     * Sets the quadratic attenuation factor.
+     *
+     * @param kQ the quadratic attenuation factor
+     * @return this {@code SphereLight} instance for method chaining
+     */
+    @Override
+    public SphereLight setkQ(double kQ) {
+        return (SphereLight) super.setkQ(kQ);
+    }
+
+    /**
+     * Returns a point of the silhouette of the sphere seen from a point, mapped from the unit square
+     * by the concentric mapping. A point inside the sphere sees the center.
+     *
+     * @param p the point from which the light source is seen
+     * @param u the first coordinate of the point of the unit square
+     * @param v the second coordinate of the point of the unit square
+     * @return the point of the silhouette
+     */
+    @Override
+    public Point getSamplePoint(Point p, double u, double v) {
+        if (position.distanceSquared(p) <= radius * radius)
+            return position;
+        Vector w = getL(p);
+        Vector t = w.tangent();
+        return diskPoint(position, t.scale(radius), w.crossProduct(t).scale(radius), u, v);
+    }
+}
@@ -14,9 +14,20 @@ import static primitives.Util.alignZero;
 public class SpotLight extends PointLight {
 
     /**
-     * The direction of the spotlight.
+     * The direction of the spotlight, read by the light hierarchy.
      */
-    private Vector direction;
+    Vector direction;
+
+    /**
+     * The cosine of the half angle of the cone of the spotlight, beyond which it emits nothing,
+     * precomputed from the angle (0 for a half angle of 90 degrees, the default).
+     */
+    private double cosCone = 0;
+
+    /**
+     * The exponent of the falloff of the intensity with the cosine of the angle from the direction.
+     */
+    private double falloff = 1;
 
     /**
      * Constructs a new {@code SpotLight} with the specified intensity, position, and direction.
@@ -63,10 +74,40 @@ public class SpotLight extends PointLight {
         return (SpotLight) super.setkQ(kQ);
     }
 
+    /**
+     * Sets the half angle of the cone of the spotlight, beyond which it emits nothing.
+     *
+     * @param angle the half angle of the cone, in degrees, in (0, 90] (the default is 90)
+     * @return this {@code SpotLight} instance for method chaining
+     * @throws IllegalArgumentException if the angle is not in (0, 90]
+     */
+    public SpotLight setConeAngle(double angle) {
+        if (angle <= 0 || angle > 90)
+            throw new IllegalArgumentException("The half angle of the cone of a spotlight must be in (0, 90] degrees");
+        cosCone = angle == 90 ? 0 : Math.cos(Math.toRadians(angle));
+        return this;
+    }
+
+    /**
+     * Sets the falloff exponent of the spotlight: its intensity is scaled by the cosine of the angle
+     * from its direction raised to this exponent, so that higher exponents give narrower beams.
+     *
+     * @param falloff the falloff exponent, not negative (the default is 1; 0 lights the cone uniformly)
+     * @return this {@code SpotLight} instance for method chaining
+     * @throws IllegalArgumentException if the exponent is negative
+     */
+    public SpotLight setFalloff(double falloff) {
+        if (falloff < 0)
+            throw new IllegalArgumentException("The falloff exponent of a spotlight must not be negative");
+        this.falloff = falloff;
+        return this;
+    }
+
     /**
      * Returns the intensity of the spotlight at a specific point.
      * The intensity is calculated using the inverse-square law with attenuation factors,
-     * and it is scaled by the cosine of the angle between the light's direction and the vector to the point.
+     * and it is scaled by the cosine of the angle between the light's direction and the vector to the point,
+     * raised to the falloff exponent. Beyond the cone of the spotlight, the intensity is black.
      *
      * @param p the point at which the intensity is to be calculated
      * @return the intensity of the spotlight at the specified point
@@ -74,8 +115,33 @@ public class SpotLight extends PointLight {
     @Override
     public Color getIntensity(Point p) {
         double d = alignZero(direction.dotProduct(getL(p)));
-        if (d <= 0) return Color.BLACK;
-        return super.getIntensity(p).scale(d);
+        if (d <= cosCone) return Color.BLACK;
+        return super.getIntensity(p).scale(spread(d));
+    }
+
+    /**
+     * Tells whether the spotlight may contribute at a point: whether the point is inside its cone,
+     * and its intensity there, with the falloff, reaches the cutoff.
+     *
+     * @param p      the point
+     * @param l      the direction vector from the light source to the point
+     * @param cutoff the intensity below which the light is negligible, or 0 to keep any positive intensity
+     * @return false if the point is outside the cone or the intensity is below the cutoff
+     */
+    @Override
+    public boolean canContribute(Point p, Vector l, double cutoff) {
+        double d = alignZero(direction.dotProduct(l));
+        return d > cosCone && super.canContribute(p, l, cutoff == 0 ? 0 : cutoff / spread(d));
+    }
+
+    /**
+     * Returns the factor of the intensity at a cosine of the angle from the direction of the spotlight.
+     *
+     * @param d the cosine, positive
+     * @return the cosine raised to the falloff exponent
+     */
+    private double spread(double d) {
+        return falloff == 1 ? d : Math.pow(d, falloff);
     }
 
 }
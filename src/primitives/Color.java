@@ -12,7 +12,7 @@ public class Color {
      * The internal fields maintain RGB components as double numbers from 0 to
      * whatever...
      */
-    private final Double3     rgb;
+    final Double3             rgb;
 
     /** Black color = (0,0,0) */
     public static final Color BLACK = new Color();
@@ -111,6 +111,22 @@ public class Color {
         return new Color(rgb.reduce(k));
     }
 
+    /**
+     * Calculates the luminance of the color (Rec. 709 weights), in the same units as the components
+     * @return the luminance
+     */
+    public double luminance() { return 0.2126 * rgb.d1 + 0.7152 * rgb.d2 + 0.0722 * rgb.d3; }
+
+    /**
+     * Calculates the difference between two colors, as the largest difference of their components
+     * @param  other the other color
+     * @return       the largest absolute difference of the components
+     */
+    public double difference(Color other) {
+        return Math.max(Math.abs(rgb.d1 - other.rgb.d1),
+                Math.max(Math.abs(rgb.d2 - other.rgb.d2), Math.abs(rgb.d3 - other.rgb.d3)));
+    }
+
     @Override
     public String toString() { return "rgb:" + rgb; }
 }
@@ -3,6 +3,10 @@ package primitives;
 public class Material {
     public Double3 kD = Double3.ZERO, kS = Double3.ZERO, kT = Double3.ZERO, kR = Double3.ZERO;
     public int nShininess = 0;
+    /** The roughness of reflections and refractions: the radius at distance 1 of the disk their rays are spread over, 0 for sharp ones */
+    public double roughness = 0;
+    /** The index of refraction relative to the space outside the geometry, 1 for refractions which do not bend */
+    public double ior = 1;
 
     public Material setkD(Double3 kD) {
         this.kD = kD;
@@ -49,4 +53,18 @@ public class Material {
         return this;
     }
 
+    public Material setIor(double ior) {
+        if (ior <= 0)
+            throw new IllegalArgumentException("The index of refraction must be positive");
+        this.ior = ior;
+        return this;
+    }
+
+    public Material setRoughness(double roughness) {
+        if (roughness < 0)
+            throw new IllegalArgumentException("Roughness must not be negative");
+        this.roughness = roughness;
+        return this;
+    }
+
 }
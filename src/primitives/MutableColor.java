@@ -0,0 +1,155 @@
+package primitives;
+
+/**
+ * A mutable color accumulator for summing light contributions without allocating
+ * a new {@link Color} for each intermediate result. The components have the same
+ * meaning and the same non-negative range as in {@link Color}.
+ */
+public final class MutableColor {
+    /** The accumulated RGB components */
+    private double r, g, b;
+
+    /**
+     * Constructs a black accumulator.
+     */
+    public MutableColor() {
+    }
+
+    /**
+     * Sets the accumulator to a color.
+     *
+     * @param color The color to copy.
+     * @return This accumulator.
+     */
+    public MutableColor set(Color color) {
+        r = color.rgb.d1;
+        g = color.rgb.d2;
+        b = color.rgb.d3;
+        return this;
+    }
+
+    /**
+     * Sets the accumulator to the given components.
+     *
+     * @param r The red component.
+     * @param g The green component.
+     * @param b The blue component.
+     * @return This accumulator.
+     */
+    public MutableColor set(double r, double g, double b) {
+        this.r = r;
+        this.g = g;
+        this.b = b;
+        return this;
+    }
+
+    /**
+     * Adds a color to the accumulator.
+     *
+     * @param color The color to add.
+     * @return This accumulator.
+     */
+    public MutableColor add(Color color) {
+        r += color.rgb.d1;
+        g += color.rgb.d2;
+        b += color.rgb.d3;
+        return this;
+    }
+
+    /**
+     * Adds a color scaled by a triad which is itself scaled by a scalar, i.e. color * (k * s).
+     * This is equivalent to {@code add(color.scale(k.scale(s)))}.
+     *
+     * @param color The color to add.
+     * @param k     The scale factor per rgb.
+     * @param s     The scalar factor of the triad.
+     * @return This accumulator.
+     */
+    public MutableColor addScaled(Color color, Double3 k, double s) {
+        r += color.rgb.d1 * (k.d1 * s);
+        g += color.rgb.d2 * (k.d2 * s);
+        b += color.rgb.d3 * (k.d3 * s);
+        return this;
+    }
+
+    /**
+     * Adds another accumulator to this accumulator.
+     *
+     * @param color The accumulator to add.
+     * @return This accumulator.
+     */
+    public MutableColor add(MutableColor color) {
+        r += color.r;
+        g += color.g;
+        b += color.b;
+        return this;
+    }
+
+    /**
+     * Adds another accumulator scaled by a triad, i.e. color * k.
+     * This is equivalent to {@code add(color.toColor().scale(k))}.
+     *
+     * @param color The accumulator to add.
+     * @param k     The scale factor per rgb.
+     * @return This accumulator.
+     */
+    public MutableColor addScaled(MutableColor color, Double3 k) {
+        r += color.r * k.d1;
+        g += color.g * k.d2;
+        b += color.b * k.d3;
+        return this;
+    }
+
+    /**
+     * Adds another accumulator scaled by a triad which is itself scaled by a scalar, i.e. color * (k * s).
+     * This is equivalent to {@code add(color.toColor().scale(k.scale(s)))}.
+     *
+     * @param color The accumulator to add.
+     * @param k     The scale factor per rgb.
+     * @param s     The scalar scale factor.
+     * @return This accumulator.
+     */
+    public MutableColor addScaled(MutableColor color, Double3 k, double s) {
+        r += color.r * (k.d1 * s);
+        g += color.g * (k.d2 * s);
+        b += color.b * (k.d3 * s);
+        return this;
+    }
+
+    /**
+     * Scales the accumulator by a triad, i.e. this * k.
+     *
+     * @param k The scale factor per rgb.
+     * @return This accumulator.
+     */
+    public MutableColor scale(Double3 k) {
+        r *= k.d1;
+        g *= k.d2;
+        b *= k.d3;
+        return this;
+    }
+
+    /**
+     * Copies the accumulated components into an array, in the order red, green, blue.
+     *
+     * @param rgb    The array to receive the components.
+     * @param offset The index of the red component in the array.
+     */
+    public void get(float[] rgb, int offset) {
+        rgb[offset] = (float) r;
+        rgb[offset + 1] = (float) g;
+        rgb[offset + 2] = (float) b;
+    }
+
+    /**
+     * Creates an immutable color from the accumulated components.
+     *
+     * @return A new color.
+     */
+    public Color toColor() {
+        return new Color(r, g, b);
+    }
+
+    @Override
+    public String toString() { return "rgb:(" + r + "," + g + "," + b + ")"; }
+}
@@ -0,0 +1,158 @@
+package primitives;
+
+/**
+ * A mutable three-dimensional vector used as a scratch register in hot paths.
+ * Unlike {@link Vector}, every operation updates this object in place and returns it,
+ * so a computation chain does not allocate new objects. A zero vector is allowed,
+ * the caller is responsible for checking it where it matters.
+ */
+public final class MutableVector {
+    /** The coordinates of the vector */
+    public double x, y, z;
+
+    /**
+     * Constructs a zero scratch vector.
+     */
+    public MutableVector() {
+    }
+
+    /**
+     * Sets the coordinates of this vector.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param z The z-coordinate.
+     * @return This vector.
+     */
+    public MutableVector set(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Sets the coordinates of this vector to the coordinates of a point or vector.
+     *
+     * @param p The point or vector to copy.
+     * @return This vector.
+     */
+    public MutableVector set(Point p) {
+        return set(p.xyz.d1, p.xyz.d2, p.xyz.d3);
+    }
+
+    /**
+     * Sets this vector to the difference of two points (p1 - p2).
+     *
+     * @param p1 The point to subtract from.
+     * @param p2 The point to subtract.
+     * @return This vector.
+     */
+    public MutableVector setSubtract(Point p1, Point p2) {
+        return set(p1.xyz.d1 - p2.xyz.d1, p1.xyz.d2 - p2.xyz.d2, p1.xyz.d3 - p2.xyz.d3);
+    }
+
+    /**
+     * Sets this vector to the cross product of two vectors. This vector may be one of the operands.
+     *
+     * @param v1 The left operand.
+     * @param v2 The right operand.
+     * @return This vector.
+     */
+    public MutableVector setCrossProduct(MutableVector v1, MutableVector v2) {
+        return set(v1.y * v2.z - v1.z * v2.y, v1.z * v2.x - v1.x * v2.z, v1.x * v2.y - v1.y * v2.x);
+    }
+
+    /**
+     * Adds a scaled vector to this vector (this + v * k).
+     *
+     * @param v The vector to add.
+     * @param k The scale factor of the added vector.
+     * @return This vector.
+     */
+    public MutableVector addScaled(Point v, double k) {
+        return set(x + v.xyz.d1 * k, y + v.xyz.d2 * k, z + v.xyz.d3 * k);
+    }
+
+    /**
+     * Scales this vector by a scalar.
+     *
+     * @param k The scale factor.
+     * @return This vector.
+     */
+    public MutableVector scale(double k) {
+        return set(x * k, y * k, z * k);
+    }
+
+    /**
+     * Normalizes this vector to unit length.
+     *
+     * @return This vector.
+     */
+    public MutableVector normalize() {
+        double length = length();
+        return set(x / length, y / length, z / length);
+    }
+
+    /**
+     * Computes the dot product of this vector with a vector.
+     *
+     * @param v The other vector.
+     * @return The dot product.
+     */
+    public double dotProduct(Point v) {
+        return x * v.xyz.d1 + y * v.xyz.d2 + z * v.xyz.d3;
+    }
+
+    /**
+     * Computes the dot product of this vector with another scratch vector.
+     *
+     * @param v The other vector.
+     * @return The dot product.
+     */
+    public double dotProduct(MutableVector v) {
+        return x * v.x + y * v.y + z * v.z;
+    }
+
+    /**
+     * Returns the squared length of the vector.
+     *
+     * @return The squared length.
+     */
+    public double lengthSquared() {
+        return x * x + y * y + z * z;
+    }
+
+    /**
+     * Returns the length of the vector.
+     *
+     * @return The length.
+     */
+    public double length() {
+        return Math.sqrt(lengthSquared());
+    }
+
+    /**
+     * Creates an immutable vector with the current coordinates.
+     *
+     * @return A new vector.
+     * @throws IllegalArgumentException if this is a zero vector.
+     */
+    public Vector toVector() {
+        return new Vector(x, y, z);
+    }
+
+    /**
+     * Creates an immutable point with the current coordinates.
+     *
+     * @return A new point.
+     */
+    public Point toPoint() {
+        return new Point(x, y, z);
+    }
+
+    @Override
+    public String toString() {
+        return "MutableVector{(" + x + "," + y + "," + z + ")}";
+    }
+}
@@ -0,0 +1,111 @@
+package primitives;
+
+/**
+ * A counter-based random number generator, with one instance per thread. Each number is a hash
+ * (SplitMix64 finalizer) of a key and a counter, where the key is derived from the frame, the pixel
+ * and the sample being rendered. Seeding the generator of the rendering thread before each pixel
+ * makes the numbers of the pixel independent of the thread rendering it and of the pixels rendered before,
+ * so images are reproducible whatever the number of threads, and the threads share no state.
+ */
+public final class PixelRandom {
+    /** The odd constant (2^64 / golden ratio) between consecutive counters */
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+    /** 2^-53, the value of the least significant bit of a double in [0,1) */
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+    /** The generator of each thread */
+    private static final ThreadLocal<PixelRandom> CURRENT = ThreadLocal.withInitial(PixelRandom::new);
+
+    /** The key of the current stream */
+    private long key = 0;
+    /** The number of values drawn from the current stream */
+    private long counter = 0;
+
+    /** Instances are created per thread only */
+    private PixelRandom() {
+    }
+
+    /**
+     * Returns the generator of the current thread.
+     *
+     * @return the generator of the current thread
+     */
+    public static PixelRandom current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts the stream of a sample of a pixel in a frame.
+     *
+     * @param frame  the frame number
+     * @param pixel  the pixel index in the frame
+     * @param sample the sample index in the pixel
+     * @return this generator
+     */
+    public PixelRandom seed(long frame, long pixel, long sample) {
+        key = mix(mix(mix(frame) + pixel) + sample);
+        counter = 0;
+        return this;
+    }
+
+    /**
+     * Returns the next pseudo-random 64-bit value of the stream.
+     *
+     * @return a uniformly distributed long value
+     */
+    public long nextLong() {
+        return mix(key + ++counter * GAMMA);
+    }
+
+    /**
+     * Returns the next pseudo-random 32-bit value of the stream.
+     *
+     * @return a uniformly distributed int value
+     */
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * Returns the next pseudo-random value of the stream in a range [0, bound).
+     *
+     * @param bound the upper bound (exclusive)
+     * @return a uniformly distributed int value in [0, bound)
+     * @throws IllegalArgumentException if the bound is not positive
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0)
+            throw new IllegalArgumentException("bound must be positive");
+        // Lemire's multiply-shift, whose bias of at most 2^-32 is negligible here
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * Returns the next pseudo-random value of the stream in [0,1).
+     *
+     * @return a uniformly distributed double value in [0,1)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Returns the next pseudo-random boolean value of the stream.
+     *
+     * @return a uniformly distributed boolean value
+     */
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /**
+     * Hashes a 64-bit value (the SplitMix64 finalizer), so that close inputs give unrelated outputs.
+     *
+     * @param z the value to hash
+     * @return the hashed value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -24,13 +24,14 @@ public class Ray {
 
     /**
      * Constructs a new ray with the given starting point and direction vector.
+     * A direction which is already a unit vector is kept as is.
      *
      * @param head      The starting point of the ray.
      * @param direction The direction vector of the ray.
      */
     public Ray(Point head, Vector direction) {
         this.head = head;
-        this.direction = direction.normalize();
+        this.direction = normalized(direction);
     }
 
     /**
@@ -43,13 +44,26 @@ public class Ray {
      */
     public Ray(Point head, Vector direction, Vector normal)//con and move in a given direction
     {
-        this.direction = direction.normalize();
-        if (isZero(direction.dotProduct(normal))) {
+        this.direction = normalized(direction);
+        double nv = direction.dotProduct(normal);
+        if (isZero(nv)) {
             this.head = head;
-        } else if (direction.dotProduct(normal) > 0)
-            this.head = head.add(normal.scale(DELTA));
-        else
-            this.head = head.add(normal.scale(-DELTA));
+        } else {
+            double delta = nv > 0 ? DELTA : -DELTA;
+            this.head = new Point(head.xyz.d1 + normal.xyz.d1 * delta,
+                    head.xyz.d2 + normal.xyz.d2 * delta,
+                    head.xyz.d3 + normal.xyz.d3 * delta);
+        }
+    }
+
+    /**
+     * Returns the given vector normalized, without allocating when it already is a unit vector.
+     *
+     * @param v the vector
+     * @return the unit vector in the direction of v
+     */
+    private static Vector normalized(Vector v) {
+        return isZero(v.lengthSquared() - 1) ? v : v.normalize();
     }
 
     public Point getHead() {
@@ -69,7 +83,9 @@ public class Ray {
     public Point getPoint(double t){
         if(isZero(t))
             return head;
-        return head.add(direction.scale(t));
+        return new Point(head.xyz.d1 + direction.xyz.d1 * t,
+                head.xyz.d2 + direction.xyz.d2 * t,
+                head.xyz.d3 + direction.xyz.d3 * t);
 
     }
 
@@ -96,13 +112,26 @@ public class Ray {
      * @return the closest point to the ray's head, or null if the list is empty or null
      */
     public Point findClosestPoint(List<Point> points) {
-        return points == null || points.isEmpty() ? null
-                : findClosestGeoPoint(points.stream().map(p -> new GeoPoint(null, p)).toList()).point;
+        if (points == null || points.isEmpty()) {
+            return null;
+        }
 
+        Point closestPoint = null;
+        double closestDistance = Double.MAX_VALUE;
+
+        for (Point point : points) {
+            double distance = head.distanceSquared(point);
+            if (distance < closestDistance) {
+                closestDistance = distance;
+                closestPoint = point;
+            }
+        }
+        return closestPoint;
     }
 
     /**
      * Finds the closest {@link GeoPoint} from a list of GeoPoints to the origin of the ray.
+     * The distance stored in each hit record at intersection time is used, so no distances are recomputed.
      *
      * @param geoPoints The list of GeoPoints to search through.
      * @return The closest GeoPoint to the ray's origin, or null if the list is null or empty.
@@ -116,9 +145,8 @@ public class Ray {
         double closestDistance = Double.MAX_VALUE;
 
         for (GeoPoint geoPoint : geoPoints) {
-            double distance = head.distanceSquared(geoPoint.point);
-            if (distance < closestDistance) {
-                closestDistance = distance;
+            if (geoPoint.t < closestDistance) {
+                closestDistance = geoPoint.t;
                 closestPoint = geoPoint;
             }
         }
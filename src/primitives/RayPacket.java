@@ -0,0 +1,178 @@
+package primitives;
+
+import geometries.Geometry;
+import geometries.Intersectable.GeoPoint;
+
+import static primitives.Util.isZero;
+
+/**
+ * A packet of up to {@link #SIZE} coherent rays which are intersected with the scene together.
+ * The directions are held in structure-of-arrays form (one array per coordinate), so that
+ * the packet intersection kernels of the geometries run the same arithmetic over all the lanes.
+ * For each lane the packet keeps the closest hit found so far.
+ */
+public class RayPacket {
+    /** The maximal number of rays (lanes) in a packet */
+    public static final int SIZE = 8;
+    /** The minimal cosine between the direction of any lane and the first lane for the packet to be coherent */
+    private static final double COHERENCE_COS = 0.95;
+
+    /** The rays of the lanes */
+    private final Ray[] rays = new Ray[SIZE];
+    /** The direction coordinates of the lanes */
+    public final double[] dx = new double[SIZE], dy = new double[SIZE], dz = new double[SIZE];
+    /** The distance to the closest hit of each lane, infinity if there is no hit yet */
+    public final double[] t = new double[SIZE];
+    /** The geometry of the closest hit of each lane, whose hit record is not built yet */
+    private final Geometry[] geometries = new Geometry[SIZE];
+    /** The primitive of the closest hit of each lane within its geometry, or -1 if not recorded */
+    private final int[] primitives = new int[SIZE];
+    /** The hit record of the closest hit of each lane */
+    private final GeoPoint[] hits = new GeoPoint[SIZE];
+    /** The number of lanes in use */
+    private int size = 0;
+    /** Whether all the lanes share the same origin and close directions */
+    private boolean coherent = true;
+
+    /**
+     * Removes all the rays from the packet, so that it can be refilled.
+     */
+    public void clear() {
+        size = 0;
+        coherent = true;
+    }
+
+    /**
+     * Adds a ray to the next lane of the packet.
+     *
+     * @param ray the ray to add
+     * @throws IllegalStateException if the packet is full
+     */
+    public void add(Ray ray) {
+        if (size == SIZE)
+            throw new IllegalStateException("Ray packet is full");
+        Vector direction = ray.getDirection();
+        rays[size] = ray;
+        dx[size] = direction.getX();
+        dy[size] = direction.getY();
+        dz[size] = direction.getZ();
+        t[size] = Double.POSITIVE_INFINITY;
+        geometries[size] = null;
+        hits[size] = null;
+        if (size > 0 && coherent) {
+            Point origin = rays[0].getHead();
+            Point head = ray.getHead();
+            coherent = (origin == head || origin.equals(head))
+                    && dx[0] * dx[size] + dy[0] * dy[size] + dz[0] * dz[size] >= COHERENCE_COS;
+        }
+        ++size;
+    }
+
+    /**
+     * Returns the number of lanes in use.
+     *
+     * @return the number of rays in the packet
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ray of a lane.
+     *
+     * @param lane the lane index
+     * @return the ray of the lane
+     */
+    public Ray getRay(int lane) {
+        return rays[lane];
+    }
+
+    /**
+     * Returns the common origin of the rays in a coherent packet.
+     *
+     * @return the head of the first ray
+     */
+    public Point getOrigin() {
+        return rays[0].getHead();
+    }
+
+    /**
+     * Checks whether the packet may be intersected as a whole: all the rays share the same origin
+     * and their directions diverge only slightly. Otherwise, the lanes should be traced one by one.
+     *
+     * @return true if the packet is coherent
+     */
+    public boolean isCoherent() {
+        return coherent;
+    }
+
+    /**
+     * Records a hit of a lane found by a packet kernel, if it is closer than the current closest hit.
+     * The hit record is built only later, if requested by {@link #getClosestHit(int)}.
+     *
+     * @param lane     the lane index
+     * @param distance the distance along the ray of the lane to the hit
+     * @param geometry the intersected geometry
+     */
+    public void record(int lane, double distance, Geometry geometry) {
+        record(lane, distance, geometry, -1);
+    }
+
+    /**
+     * Records a hit of a lane on a primitive of a composite geometry found by a packet kernel, if it is closer
+     * than the current closest hit. The hit record is built only later, from the primitive alone.
+     *
+     * @param lane      the lane index
+     * @param distance  the distance along the ray of the lane to the hit
+     * @param geometry  the intersected geometry
+     * @param primitive the index of the intersected primitive in the geometry
+     */
+    public void record(int lane, double distance, Geometry geometry, int primitive) {
+        if (distance < t[lane]) {
+            t[lane] = distance;
+            geometries[lane] = geometry;
+            primitives[lane] = primitive;
+            hits[lane] = null;
+        }
+    }
+
+    /**
+     * Records a full hit record of a lane, if it is closer than the current closest hit.
+     *
+     * @param lane the lane index
+     * @param hit  the hit record
+     */
+    public void record(int lane, GeoPoint hit) {
+        if (hit.t < t[lane]) {
+            t[lane] = hit.t;
+            geometries[lane] = null;
+            hits[lane] = hit;
+        }
+    }
+
+    /**
+     * Returns the hit record of the closest hit of a lane. If the hit was recorded by a packet kernel,
+     * the record is built by the hit geometry only (see {@link Geometry#getPacketHit(Ray, double, int)}).
+     *
+     * @param lane the lane index
+     * @return the closest hit record, or null if the ray of the lane hits nothing
+     */
+    public GeoPoint getClosestHit(int lane) {
+        if (hits[lane] == null && geometries[lane] != null)
+            hits[lane] = geometries[lane].getPacketHit(rays[lane], t[lane], primitives[lane]);
+        return hits[lane];
+    }
+
+    /**
+     * Checks whether the origin of a coherent packet is at the given coordinates.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param z the z-coordinate
+     * @return true if the origin is (almost) at the coordinates
+     */
+    public boolean isOriginAt(double x, double y, double z) {
+        Point origin = getOrigin();
+        return isZero(x - origin.getX()) && isZero(y - origin.getY()) && isZero(z - origin.getZ());
+    }
+}
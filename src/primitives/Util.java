@@ -1,12 +1,10 @@
 package primitives;
-import  java.util.Random;
 
 /** Util class is used for some internal utilities, e.g. controlling accuracy
  * @author Dan */
 public final class Util {
    /** It is binary, equivalent to ~1/1,000,000,000,000 in decimal (12 digits) */
    private static final int ACCURACY = -40;
-   private static Random random = new Random();
    /** Don't let anyone instantiate this class. */
    private Util() {}
 
@@ -46,15 +44,18 @@ public final class Util {
       return (n1 < 0 && n2 < 0) || (n1 > 0 && n2 > 0);
    }
 
-   /** Provide a real random number in range between min and max
+   /** Provide a real random number in range between min and max, drawn from the
+    * generator of the current thread (see {@link PixelRandom})
     * @param  min value (included)
     * @param  max value (excluded)
     * @return     the random value */
    public static double random(double min, double max) {
-      return Math.random() * (max - min) + min;
+      return PixelRandom.current().nextDouble() * (max - min) + min;
    }
 
-   public static int randomSign(){
-      return random.nextBoolean() ?1:-1;
+   /** Provide a random sign, drawn from the generator of the current thread (see {@link PixelRandom})
+    * @return 1 or -1 with equal probability */
+   public static int randomSign() {
+      return PixelRandom.current().nextBoolean() ? 1 : -1;
    }
 }
@@ -124,6 +124,55 @@ public class Vector extends Point {
         return new Vector(this.xyz.reduce(length));
     }
 
+    /**
+     * Returns a unit vector orthogonal to this unit vector: the x axis of the tangent frame of this vector
+     * (see {@link #toFrame(double[], int)}).
+     *
+     * @return an orthogonal unit vector
+     */
+    public Vector tangent() {
+        return toFrame(1, 0, 0);
+    }
+
+    /**
+     * Rotates a direction given around the z axis to the tangent frame of this unit vector
+     * (see {@link #toFrame(double[], int)}).
+     *
+     * @param x the x-coordinate of the direction, along the tangent
+     * @param y the y-coordinate of the direction, along the bitangent
+     * @param z the z-coordinate of the direction, along this vector
+     * @return the rotated direction
+     */
+    public Vector toFrame(double x, double y, double z) {
+        double[] direction = { x, y, z };
+        toFrame(direction, 1);
+        return new Vector(direction[0], direction[1], direction[2]);
+    }
+
+    /**
+     * Rotates directions given around the z axis to the tangent frame of this unit vector, in place:
+     * the z axis is mapped to this vector, and the x and y axes to a tangent and a bitangent.
+     * The frame is built without branches from this vector alone (Duff et al. 2017), so it is continuous
+     * everywhere except across the plane z = 0.
+     *
+     * @param directions the directions, 3 coordinates (x, y, z) per direction
+     * @param count      the number of directions
+     */
+    public void toFrame(double[] directions, int count) {
+        double nx = xyz.d1, ny = xyz.d2, nz = xyz.d3;
+        double sign = Math.copySign(1, nz);
+        double a = -1 / (sign + nz);
+        double b = nx * ny * a;
+        double tx = 1 + sign * nx * nx * a, ty = sign * b, tz = -sign * nx;
+        double bx = b, by = sign + ny * ny * a, bz = -ny;
+        for (int i = 0; i < count; ++i) {
+            double x = directions[3 * i], y = directions[3 * i + 1], z = directions[3 * i + 2];
+            directions[3 * i] = x * tx + y * bx + z * nx;
+            directions[3 * i + 1] = x * ty + y * by + z * ny;
+            directions[3 * i + 2] = x * tz + y * bz + z * nz;
+        }
+    }
+
     public Vector createNormal(){
         if(isZero(xyz.d1))
             return new Vector(1,0,0);
@@ -3,61 +3,85 @@ package renderer;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import static primitives.Util.*;
 
 public class Blackboard {
+    /** The sampler of beams when none is given */
+    private static final Sampler DEFAULT_SAMPLER = new SobolSampler();
+
+    /**
+     * Generates a beam of rays from a given point in a given direction, with the default (Sobol) sampler.
+     *
+     * @param n         The normal vector of the geometry that the rays are intersecting.
+     * @param distance  The distance from the starting point of the beam to the center of the beam.
+     * @param radius    The radius of the beam.
+     * @param ray       The ray to generate the beam from.
+     * @param numOfRays The number of rays to generate.
+     * @return A list of rays representing the beam.
+     */
+    public static List<Ray> generateBeam(Vector n, double distance, double radius, Ray ray, int numOfRays) {
+        return generateBeam(n, distance, radius, ray, numOfRays, DEFAULT_SAMPLER);
+    }
+
     /**
      * Generates a beam of rays from a given point in a given direction.
+     * The beam has a ray through each sample point of the sampler mapped to the disk of the given radius,
+     * orthogonal to the ray at the given distance from its head. The given ray itself is not part of the beam,
+     * so that an average over the beam, or over any prefix of it, is not biased towards the center of the disk;
+     * only a beam without width is the given ray alone.
+     * A ray which would cross the surface to the other side of the given ray is mirrored by the surface
+     * instead of being drawn again, so that every sample gives exactly one ray.
      *
      * @param n         The normal vector of the geometry that the rays are intersecting.
      * @param distance  The distance from the starting point of the beam to the center of the beam.
      * @param radius    The radius of the beam.
      * @param ray       The ray to generate the beam from.
      * @param numOfRays The number of rays to generate.
+     * @param sampler   The sampler of the points of the disk.
      * @return A list of rays representing the beam.
      */
-    public static List<Ray> generateBeam(Vector n, double distance, double radius, Ray ray,int numOfRays) {
-        List<Ray> rays = new LinkedList<>();
-        rays.add(ray);
-        if(numOfRays == 1 || isZero(radius))
-            return rays;
+    public static List<Ray> generateBeam(Vector n, double distance, double radius, Ray ray, int numOfRays,
+                                         Sampler sampler) {
+        if (isZero(radius) || isZero(distance))
+            return List.of(ray);
+        List<Ray> rays = new ArrayList<>(numOfRays);
 
         Vector dir = ray.getDirection();
         Point p0 = ray.getHead();
         Vector vX = dir.createNormal();
         Vector vY = dir.crossProduct(vX);
-
-        Point center = isZero(distance) ? p0 : p0.add(dir.scale(distance));
-        double x, y, delta = radius / numOfRays;
-        Point randPoint;
+        double nx = n.getX(), ny = n.getY(), nz = n.getZ();
         double nv = alignZero(n.dotProduct(dir));
 
+        double[] points = new double[2 * numOfRays];
+        sampler.sample(points, numOfRays);
+        Sampler.squareToDisk(points, numOfRays);
+        double scale = radius / distance;
         for (int i = 0; i < numOfRays; i++) {
-            randPoint = center;
-            x = random(-radius, radius);
-            y = Math.sqrt(radius * radius - x * x) *randomSign();
-            try{
-                randPoint = randPoint.add(vX.scale(x));
-                randPoint = randPoint.add(vY.scale(y));
-            }
-            catch (Exception e){
-                i--;
-            }
-            Vector v12 = randPoint.subtract(p0).normalize();
-            double nt = alignZero(n.dotProduct(v12));
-            if(nt*nv > 0){
-                rays.add(new Ray(p0, v12));
-                radius -= delta;
-            }
-            else{
-                i--;
+            // The sample point in coordinates of the ray at distance 1; its offset is orthogonal to the ray,
+            // so the direction is never zero
+            double x = points[2 * i] * scale, y = points[2 * i + 1] * scale;
+            double dx = dir.getX() + vX.getX() * x + vY.getX() * y;
+            double dy = dir.getY() + vX.getY() * x + vY.getY() * y;
+            double dz = dir.getZ() + vX.getZ() * x + vY.getZ() * y;
+            double nt = dx * nx + dy * ny + dz * nz;
+            if (nv != 0 && nt * nv <= 0) {
+                // Mirror the direction by the surface, to the side of the given ray
+                double mirror = 2 * nt;
+                dx -= mirror * nx;
+                dy -= mirror * ny;
+                dz -= mirror * nz;
+                if (isZero(dx * nx + dy * ny + dz * nz)) {
+                    rays.add(ray);
+                    continue;
+                }
             }
+            double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            rays.add(new Ray(p0, new Vector(dx / length, dy / length, dz / length)));
         }
 
         return rays;
     }
-
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package renderer;
+
+import primitives.PixelRandom;
+
+/**
+ * A blue-noise sampler, by Mitchell's best-candidate algorithm: each new point is the candidate farthest
+ * from all the previous points, among several random candidates. The points are spread evenly without
+ * the regular patterns of a grid, and every prefix keeps this property. The distances wrap around the edges
+ * of the square, so that points of a tiled square are also spread evenly.
+ * Generating n points takes O(n^2) time, which suits the small beams of a single hit.
+ */
+public class BlueNoiseSampler implements Sampler {
+    /** The number of random candidates for each point */
+    private static final int CANDIDATES = 16;
+
+    @Override
+    public void sample(double[] points, int count) {
+        PixelRandom random = PixelRandom.current();
+        for (int i = 0; i < count; ++i) {
+            double bestX = 0, bestY = 0, bestDistance = -1;
+            for (int c = 0; c < CANDIDATES; ++c) {
+                double x = random.nextDouble(), y = random.nextDouble();
+                double nearest = Double.POSITIVE_INFINITY;
+                for (int j = 0; j < i && nearest > bestDistance; ++j) {
+                    double dx = Math.abs(x - points[2 * j]), dy = Math.abs(y - points[2 * j + 1]);
+                    dx = Math.min(dx, 1 - dx);
+                    dy = Math.min(dy, 1 - dy);
+                    nearest = Math.min(nearest, dx * dx + dy * dy);
+                }
+                if (nearest > bestDistance) {
+                    bestDistance = nearest;
+                    bestX = x;
+                    bestY = y;
+                }
+            }
+            points[2 * i] = bestX;
+            points[2 * i + 1] = bestY;
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package renderer;
 
 import primitives.Color;
+import primitives.PixelRandom;
 import primitives.Point;
 import primitives.Ray;
+import primitives.RayPacket;
 import primitives.Vector;
 
-import java.util.Locale;
+import java.util.Arrays;
 import java.util.MissingResourceException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
 
 import static primitives.Util.isZero;
 
@@ -122,6 +127,98 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Sets whether the primary rays are traced in packets of neighbouring pixels.
+         *
+         * @param packetTracing true to trace packets of {@link RayPacket#SIZE} rays per screen tile
+         * @return The Builder instance for method chaining.
+         */
+        public Builder setPacketTracing(boolean packetTracing) {
+            camera.packetTracing = packetTracing;
+            return this;
+        }
+
+        /**
+         * Sets the depth of adaptive supersampling. Each pixel is sampled at its corners, and a square whose
+         * corner colors differ by more than the threshold is divided into four, up to the given depth,
+         * so that a pixel gets at most (2^depth + 1)^2 samples. Corners are shared by neighbouring squares
+         * and pixels, so a flat region costs about one ray per pixel. Adaptive supersampling replaces
+         * both the single center ray and the packet tracing of a pixel.
+         *
+         * @param adaptiveDepth The maximal subdivision depth, 0 to trace one ray through each pixel center.
+         * @return The Builder instance for method chaining.
+         * @throws IllegalArgumentException If the depth is negative or above {@link Camera#MAX_ADAPTIVE_DEPTH}.
+         */
+        public Builder setAdaptiveDepth(int adaptiveDepth) {
+            if (adaptiveDepth < 0 || adaptiveDepth > MAX_ADAPTIVE_DEPTH)
+                throw new IllegalArgumentException("adaptive depth has to be between 0 and " + MAX_ADAPTIVE_DEPTH);
+
+            camera.adaptiveDepth = adaptiveDepth;
+            return this;
+        }
+
+        /**
+         * Sets the color difference above which a square is subdivided by adaptive supersampling.
+         *
+         * @param adaptiveThreshold The maximal difference of any color component between corners (0..255 scale).
+         * @return The Builder instance for method chaining.
+         * @throws IllegalArgumentException If the threshold is negative.
+         */
+        public Builder setAdaptiveThreshold(double adaptiveThreshold) {
+            if (adaptiveThreshold < 0)
+                throw new IllegalArgumentException("adaptive threshold can not be negative");
+
+            camera.adaptiveThreshold = adaptiveThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the number of primary rays generated and traced together as a batch, through
+         * {@link RayTracerBase#traceRays(Ray[], Color[], int)}. A batch holds consecutive pixels in row order,
+         * and is the unit of work of the rendering threads. Batches suit ray tracers which trace many rays
+         * stage by stage, such as {@link WavefrontRayTracer}; adaptive supersampling takes precedence over them,
+         * and they take precedence over packet tracing.
+         *
+         * @param batchSize The number of rays of a batch, 0 to trace the pixels one by one.
+         * @return The Builder instance for method chaining.
+         * @throws IllegalArgumentException If the size is negative.
+         */
+        public Builder setBatchSize(int batchSize) {
+            if (batchSize < 0)
+                throw new IllegalArgumentException("batch size can not be negative");
+
+            camera.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads rendering the image. The image is divided into rows (or rows of tiles),
+         * which the threads take one after the other. The random numbers of every pixel are seeded from
+         * the frame and the pixel, so the image does not depend on the number of threads.
+         *
+         * @param threads The number of rendering threads, 1 to render in the calling thread.
+         * @return The Builder instance for method chaining.
+         * @throws IllegalArgumentException If the number is not positive.
+         */
+        public Builder setThreads(int threads) {
+            if (threads < 1)
+                throw new IllegalArgumentException("number of threads has to be positive");
+
+            camera.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets the frame number, which seeds the random numbers of the rendering together with the pixels,
+         * so that successive frames of an animation get different noise.
+         *
+         * @param frame The frame number.
+         * @return The Builder instance for method chaining.
+         */
+        public Builder setFrame(long frame) {
+            camera.frame = frame;
+            return this;
+        }
 
         /**
          * Builds and returns a Camera object with the specified parameters.
@@ -163,6 +260,23 @@ public class Camera implements Cloneable {
     private double distance = 0.0;
     private ImageWriter imageWriter;
     private RayTracerBase rayTracer;
+    private boolean packetTracing = false;
+    private int adaptiveDepth = 0;
+    private double adaptiveThreshold = DEFAULT_ADAPTIVE_THRESHOLD;
+    private int threads = 1;
+    private int batchSize = 0;
+    private long frame = 0;
+
+    /** Width of a screen tile traced as a packet */
+    private static final int TILE_WIDTH = 4;
+    /** Height of a screen tile traced as a packet */
+    private static final int TILE_HEIGHT = RayPacket.SIZE / TILE_WIDTH;
+    /** The maximal depth of adaptive supersampling, i.e. 17x17 samples per pixel */
+    public static final int MAX_ADAPTIVE_DEPTH = 4;
+    /** The default color difference above which adaptive supersampling subdivides */
+    private static final double DEFAULT_ADAPTIVE_THRESHOLD = 10;
+    /** The number of pixel rows rendered together by adaptive supersampling, sharing their lattice rows */
+    private static final int ADAPTIVE_ROWS = 8;
 
     private Camera() {
     }
@@ -177,34 +291,124 @@ public class Camera implements Cloneable {
      * @return The constructed ray.
      */
     public Ray constructRay(int nX, int nY, int j, int i) {
-        Point pc = p0.add(vTo.scale(distance));
         double rY = height / nY;
         double rX = width / nX;
         double yi = -(i - (nY - 1) / 2.0) * rY;
         double xj = (j - (nX - 1) / 2.0) * rX;
-        Point pij = pc;
-        if (!isZero(xj))
-            pij = pij.add(vRight.scale(xj));
-        if (!isZero(yi))
-            pij = pij.add(vUp.scale(yi));
-        Vector vij = pij.subtract(p0);
-        return new Ray(p0, vij.normalize());
+        return constructRay(xj, yi);
+    }
+
+    /**
+     * Constructs a ray through a point of the camera's view plane.
+     *
+     * @param xj The distance of the point right of the view plane center.
+     * @param yi The distance of the point above the view plane center.
+     * @return The constructed ray.
+     */
+    private Ray constructRay(double xj, double yi) {
+        // The point relative to p0 is computed in raw coordinates so that
+        // only the direction vector and the ray are allocated
+        double x = vTo.getX() * distance;
+        double y = vTo.getY() * distance;
+        double z = vTo.getZ() * distance;
+        if (!isZero(xj)) {
+            x += vRight.getX() * xj;
+            y += vRight.getY() * xj;
+            z += vRight.getZ() * xj;
+        }
+        if (!isZero(yi)) {
+            x += vUp.getX() * yi;
+            y += vUp.getY() * yi;
+            z += vUp.getZ() * yi;
+        }
+        double length = Math.sqrt(x * x + y * y + z * z);
+        return new Ray(p0, new Vector(x / length, y / length, z / length));
     }
 
     /**
      * Renders the image by casting rays through all pixels in the view plane.
+     * Before each pixel, whether traced alone, in a batch or in a packet, the random generator of the rendering
+     * thread is seeded from the frame and the pixel, so the image is reproducible and independent of the number
+     * of threads, the size of the batches and the use of packets.
      */
     public Camera renderImage() {
         int nx = imageWriter.getNx();
         int ny = imageWriter.getNy();
-        for (int i = 0; i < ny; i++) {
+        if (adaptiveDepth > 0) {
+            ThreadLocal<AdaptiveSampler> samplers = ThreadLocal.withInitial(() -> new AdaptiveSampler(nx, ny));
+            render((ny + ADAPTIVE_ROWS - 1) / ADAPTIVE_ROWS, block -> {
+                AdaptiveSampler sampler = samplers.get();
+                for (int row = block * ADAPTIVE_ROWS; row < Math.min((block + 1) * ADAPTIVE_ROWS, ny); row++)
+                    sampler.render(row);
+            });
+            return this;
+        }
+        if (batchSize > 0) {
+            ThreadLocal<Ray[]> rays = ThreadLocal.withInitial(() -> new Ray[batchSize]);
+            ThreadLocal<Color[]> colors = ThreadLocal.withInitial(() -> new Color[batchSize]);
+            ThreadLocal<long[]> pixels = ThreadLocal.withInitial(() -> new long[batchSize]);
+            render((nx * ny + batchSize - 1) / batchSize,
+                    batch -> renderBatch(nx, ny, batch * batchSize, rays.get(), colors.get(), pixels.get()));
+            return this;
+        }
+        if (packetTracing) {
+            ThreadLocal<RayPacket> packets = ThreadLocal.withInitial(RayPacket::new);
+            ThreadLocal<Color[]> colors = ThreadLocal.withInitial(() -> new Color[RayPacket.SIZE]);
+            ThreadLocal<long[]> pixels = ThreadLocal.withInitial(() -> new long[RayPacket.SIZE]);
+            render((ny + TILE_HEIGHT - 1) / TILE_HEIGHT, tileRow ->
+                    renderPackets(nx, ny, tileRow * TILE_HEIGHT, packets.get(), colors.get(), pixels.get()));
+            return this;
+        }
+        render(ny, i -> {
             for (int j = 0; j < nx; j++) {
                 castRay(nx, ny, j, i);
             }
-        }
+        });
         return this;
     }
 
+    /**
+     * Renders units of work (rows of the image) in the calling thread, or in parallel threads taking
+     * the next unit from a shared counter. An exception thrown by a unit stops the rendering and is rethrown.
+     *
+     * @param units The number of units.
+     * @param unit  The rendering of a unit by its index.
+     */
+    private void render(int units, IntConsumer unit) {
+        if (threads == 1) {
+            for (int i = 0; i < units; i++)
+                unit.accept(i);
+            return;
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            try {
+                for (int i = next.getAndIncrement(); i < units && failure.get() == null; i = next.getAndIncrement())
+                    unit.accept(i);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+        };
+        Thread[] workers = new Thread[Math.min(threads, units)];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(worker, "render-" + t);
+            workers[t].start();
+        }
+        try {
+            for (Thread thread : workers)
+                thread.join();
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, new IllegalStateException("rendering was interrupted", e));
+            for (Thread thread : workers)
+                thread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        if (failure.get() != null)
+            throw failure.get();
+    }
+
     /**
      * Casts a ray for each pixel in the view plane and writes the corresponding color to the image.
      *
@@ -214,11 +418,166 @@ public class Camera implements Cloneable {
      * @param row    The row index of the pixel in the view plane.
      */
     private void castRay(int Nx, int Ny, int column, int row) {
+        PixelRandom.current().seed(frame, (long) row * Nx + column, 0);
         Ray ray = constructRay(Nx, Ny, column, row);
         Color color = rayTracer.traceRay(ray);
         imageWriter.writePixel(column, row, color);
     }
 
+    /**
+     * Renders a batch of consecutive pixels in row order, by generating all their rays and tracing them together.
+     *
+     * @param nX     The number of pixels in the view plane's width.
+     * @param nY     The number of pixels in the view plane's height.
+     * @param first  The index of the first pixel of the batch in row order.
+     * @param rays   The rays of the batch of the rendering thread.
+     * @param colors The colors of the batch of the rendering thread.
+     * @param pixels The pixel indices of the batch of the rendering thread.
+     */
+    private void renderBatch(int nX, int nY, int first, Ray[] rays, Color[] colors, long[] pixels) {
+        int count = Math.min(batchSize, nX * nY - first);
+        for (int p = 0; p < count; p++) {
+            rays[p] = constructRay(nX, nY, (first + p) % nX, (first + p) / nX);
+            pixels[p] = first + p;
+        }
+        rayTracer.traceRays(rays, colors, count, frame, pixels);
+        for (int p = 0; p < count; p++)
+            imageWriter.writePixel((first + p) % nX, (first + p) / nX, colors[p]);
+    }
+
+    /**
+     * Renders a row of screen tiles by tracing a packet of rays through each tile.
+     * Tiles at the right and bottom edges of the image may produce partial packets.
+     *
+     * @param nX     The number of pixels in the view plane's width.
+     * @param nY     The number of pixels in the view plane's height.
+     * @param row    The top pixel row of the tiles.
+     * @param packet The packet of the rendering thread.
+     * @param colors The colors of the packet of the rendering thread.
+     * @param pixels The pixel indices of the packet of the rendering thread.
+     */
+    private void renderPackets(int nX, int nY, int row, RayPacket packet, Color[] colors, long[] pixels) {
+        int rowEnd = Math.min(row + TILE_HEIGHT, nY);
+        for (int column = 0; column < nX; column += TILE_WIDTH) {
+            int columnEnd = Math.min(column + TILE_WIDTH, nX);
+            packet.clear();
+            for (int i = row; i < rowEnd; i++)
+                for (int j = column; j < columnEnd; j++) {
+                    pixels[packet.size()] = (long) i * nX + j;
+                    packet.add(constructRay(nX, nY, j, i));
+                }
+            rayTracer.traceRays(packet, colors, frame, pixels);
+            int lane = 0;
+            for (int i = row; i < rowEnd; i++)
+                for (int j = column; j < columnEnd; j++)
+                    imageWriter.writePixel(j, i, colors[lane++]);
+        }
+    }
+
+    /**
+     * Adaptive supersampler of one rendering thread. The view plane is covered by a lattice of 2^depth samples
+     * per pixel side, and the samples of one row of pixels are cached in a band of the lattice, so that every
+     * corner is traced at most once within a block of rows: when the thread renders the consecutive rows
+     * of a block, the bottom row of the band becomes the top row of the next band. The top lattice row
+     * of a block, shared with the block above it, is traced again unless the thread has just rendered that block.
+     * Each lattice point is seeded by its index in the lattice, so a point traced twice gets the same color.
+     */
+    private class AdaptiveSampler {
+        /** The number of lattice cells per pixel side */
+        private final int cells = 1 << adaptiveDepth;
+        /** The number of lattice points in a row */
+        private final int columns;
+        /** The number of pixels in the view plane's width and height */
+        private final int nX, nY;
+        /** The lattice points of the current row of pixels, null where not traced yet */
+        private final Color[] band;
+        /** The current row of pixels, -1 before the first row */
+        private int row = -1;
+
+        /**
+         * Constructs the sampler of a rendering.
+         *
+         * @param nX The number of pixels in the view plane's width.
+         * @param nY The number of pixels in the view plane's height.
+         */
+        AdaptiveSampler(int nX, int nY) {
+            this.nX = nX;
+            this.nY = nY;
+            columns = nX * cells + 1;
+            band = new Color[(cells + 1) * columns];
+        }
+
+        /**
+         * Renders a row of pixels, reusing the bottom lattice row of the previous row if it was rendered last.
+         *
+         * @param next The row of pixels.
+         */
+        void render(int next) {
+            if (row >= 0 && next == row + 1) {
+                System.arraycopy(band, cells * columns, band, 0, columns);
+                Arrays.fill(band, columns, band.length, null);
+            } else
+                Arrays.fill(band, null);
+            row = next;
+            for (int column = 0; column < nX; column++)
+                imageWriter.writePixel(column, row, sample(column * cells, 0, cells));
+        }
+
+        /**
+         * Samples a square of the lattice in the current band: if its corners have similar colors,
+         * or it is a single cell, its color is the average of its corners; otherwise it is the average
+         * of its four quarters.
+         *
+         * @param u    The lattice column of the left corners.
+         * @param v    The lattice row of the top corners within the band.
+         * @param size The side of the square in cells.
+         * @return The color of the square.
+         */
+        private Color sample(int u, int v, int size) {
+            Color c00 = corner(u, v);
+            Color c10 = corner(u + size, v);
+            Color c01 = corner(u, v + size);
+            Color c11 = corner(u + size, v + size);
+            if (size == 1 || similar(c00, c10, c01, c11))
+                return c00.add(c10, c01, c11).reduce(4);
+            int half = size / 2;
+            return sample(u, v, half).add(sample(u + half, v, half),
+                    sample(u, v + half, half), sample(u + half, v + half, half)).reduce(4);
+        }
+
+        /**
+         * Checks whether all the given colors are within the threshold of each other.
+         *
+         * @param colors The colors.
+         * @return true if no two colors differ by more than the threshold.
+         */
+        private boolean similar(Color... colors) {
+            for (int a = 0; a < colors.length; a++)
+                for (int b = a + 1; b < colors.length; b++)
+                    if (colors[a].difference(colors[b]) > adaptiveThreshold)
+                        return false;
+            return true;
+        }
+
+        /**
+         * Returns the color of a lattice point in the current band, tracing it on first use.
+         *
+         * @param u The lattice column.
+         * @param v The lattice row within the band.
+         * @return The color of the point.
+         */
+        private Color corner(int u, int v) {
+            int index = v * columns + u;
+            if (band[index] == null) {
+                PixelRandom.current().seed(frame, (long) (row * cells + v) * columns + u, 0);
+                double xj = ((double) u / cells - nX / 2.0) * (width / nX);
+                double yi = -((double) (row * cells + v) / cells - nY / 2.0) * (height / nY);
+                band[index] = rayTracer.traceRay(constructRay(xj, yi));
+            }
+            return band[index];
+        }
+    }
+
     /**
      * Prints a grid of pixels on the image with the specified interval and color.
      *
@@ -0,0 +1,22 @@
+package renderer;
+
+import lighting.DirectionalLight;
+import primitives.Color;
+import primitives.Vector;
+
+/**
+ * A direction sampled from the environment light of a scene, shaded as a directional light for a single hit:
+ * the radiance of the environment arriving along the direction, from infinitely far away.
+ * The samples are created per hit, so they are not keys of the caches of the light sources.
+ */
+final class EnvironmentSample extends DirectionalLight {
+    /**
+     * Constructs a sample of the environment.
+     *
+     * @param radiance  the radiance of the environment along the direction
+     * @param direction the direction of the light, from the environment towards the scene
+     */
+    EnvironmentSample(Color radiance, Vector direction) {
+        super(radiance, direction);
+    }
+}
@@ -0,0 +1,48 @@
+package renderer;
+
+import primitives.PixelRandom;
+
+/**
+ * A Halton sampler: the points are the radical inverses of their indices in bases 2 and 3, a low-discrepancy
+ * sequence whose every prefix is well distributed. Each call shifts the whole sequence by a random offset
+ * modulo 1 (Cranley-Patterson rotation), so that different calls give different, equally good points.
+ */
+public class HaltonSampler implements Sampler {
+    @Override
+    public void sample(double[] points, int count) {
+        PixelRandom random = PixelRandom.current();
+        double shiftX = random.nextDouble(), shiftY = random.nextDouble();
+        for (int i = 0; i < count; ++i) {
+            points[2 * i] = rotate(radicalInverse(i + 1, 2), shiftX);
+            points[2 * i + 1] = rotate(radicalInverse(i + 1, 3), shiftY);
+        }
+    }
+
+    /**
+     * Computes the radical inverse of an index: its digits in the base, mirrored around the radix point.
+     *
+     * @param index the index
+     * @param base  the base
+     * @return the radical inverse, in [0,1)
+     */
+    static double radicalInverse(int index, int base) {
+        double inverse = 0, digitValue = 1.0 / base;
+        for (int n = index; n > 0; n /= base) {
+            inverse += (n % base) * digitValue;
+            digitValue /= base;
+        }
+        return inverse;
+    }
+
+    /**
+     * Shifts a coordinate by an offset modulo 1.
+     *
+     * @param value the coordinate, in [0,1)
+     * @param shift the offset, in [0,1)
+     * @return the shifted coordinate, in [0,1)
+     */
+    private static double rotate(double value, double shift) {
+        double shifted = value + shift;
+        return shifted >= 1 ? shifted - 1 : shifted;
+    }
+}
@@ -0,0 +1,348 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Double3;
+import primitives.MutableColor;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An irradiance cache (Ward et al. 1988): the indirect diffuse light, which is expensive to gather,
+ * is computed only at sparse points, and interpolated at the shading points around them.
+ * Each record holds the light gathered at a point with its normal, and a validity radius: the harmonic mean
+ * distance of the geometries seen from the point, clamped to the spacing bounds, so that records are dense
+ * near corners and contact shadows and sparse in open areas. A record contributes to a shading point with
+ * the weight 1 / (d / R + sqrt(1 - dot(n, ni))), where d is the distance between the points, R the radius,
+ * and n, ni the normals at the shading point and at the record, as long as the weight is above 1 / accuracy.
+ * <p>
+ * The records are stored in an octree: a record is kept in the deepest node containing its point whose half-size
+ * is at least its radius, so a lookup visits the nodes whose cube, enlarged by their half-size, contains the
+ * shading point. The root grows on demand to contain new records. Lookups do not lock: the records of each
+ * node are an array replaced on insertion (copy on write), so many threads may render with one cache and insert
+ * records concurrently. Since the records depend on the order in which the points are shaded, the image of a
+ * parallel rendering with a cache may differ slightly with the number of threads.
+ */
+public class IrradianceCache {
+    private static final double DEFAULT_ACCURACY = 0.2;
+    private static final double DEFAULT_MIN_SPACING = 1;
+    private static final double DEFAULT_MAX_SPACING = 100;
+    private static final int DEFAULT_GATHER_RAYS = 64;
+    /** The distance behind a shading point, in units of the radius of a record, from which the record is rejected */
+    private static final double BEHIND_TOLERANCE = 0.05;
+
+    /** The accuracy, the inverse of the minimal weight of a valid record */
+    private double accuracy = DEFAULT_ACCURACY;
+    /** The minimal radius of a record */
+    private double minSpacing = DEFAULT_MIN_SPACING;
+    /** The maximal radius of a record */
+    private double maxSpacing = DEFAULT_MAX_SPACING;
+    /** The number of rays gathering the light of a new record */
+    private int gatherRays = DEFAULT_GATHER_RAYS;
+
+    /** The root of the octree, null while the cache is empty */
+    private volatile Node root = null;
+    /** The number of records */
+    private final LongAdder records = new LongAdder();
+    /** The number of lookups */
+    private final LongAdder lookups = new LongAdder();
+    /** The number of lookups answered by interpolation */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * A record of the light gathered at a point.
+     *
+     * @param x          the x coordinate of the point
+     * @param y          the y coordinate of the point
+     * @param z          the z coordinate of the point
+     * @param nx         the x coordinate of the normal facing the gathered hemisphere
+     * @param ny         the y coordinate of the normal
+     * @param nz         the z coordinate of the normal
+     * @param radius     the validity radius
+     * @param irradiance the gathered light
+     */
+    private record Record(double x, double y, double z, double nx, double ny, double nz, double radius,
+                          Color irradiance) {
+    }
+
+    /**
+     * A node of the octree: a cube given by its center and half-size.
+     */
+    private static final class Node {
+        /** The records of an empty node */
+        private static final Record[] NONE = new Record[0];
+
+        /** The center of the cube */
+        final double x, y, z;
+        /** The half-size of the cube */
+        final double half;
+        /** The records of the node, replaced as a whole on insertion */
+        volatile Record[] records = NONE;
+        /** The children of the node, created on demand, indexed by octant */
+        final AtomicReferenceArray<Node> children = new AtomicReferenceArray<>(8);
+
+        /**
+         * Constructs a node.
+         *
+         * @param x    the x coordinate of the center
+         * @param y    the y coordinate of the center
+         * @param z    the z coordinate of the center
+         * @param half the half-size
+         */
+        Node(double x, double y, double z, double half) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.half = half;
+        }
+
+        /**
+         * Returns the octant of a point relative to the center.
+         *
+         * @param px the x coordinate of the point
+         * @param py the y coordinate of the point
+         * @param pz the z coordinate of the point
+         * @return the octant, 0 to 7
+         */
+        int octant(double px, double py, double pz) {
+            return (px >= x ? 4 : 0) | (py >= y ? 2 : 0) | (pz >= z ? 1 : 0);
+        }
+
+        /**
+         * Returns a child, creating it if needed; concurrent creations agree on a single child.
+         *
+         * @param octant the octant of the child
+         * @return the child
+         */
+        Node child(int octant) {
+            Node child = children.get(octant);
+            if (child != null)
+                return child;
+            double h = half / 2;
+            child = new Node(x + ((octant & 4) != 0 ? h : -h), y + ((octant & 2) != 0 ? h : -h),
+                    z + ((octant & 1) != 0 ? h : -h), h);
+            return children.compareAndSet(octant, null, child) ? child : children.get(octant);
+        }
+
+        /**
+         * Checks whether a point is inside the cube enlarged by a margin.
+         *
+         * @param px     the x coordinate of the point
+         * @param py     the y coordinate of the point
+         * @param pz     the z coordinate of the point
+         * @param margin the margin
+         * @return true if the point is inside
+         */
+        boolean contains(double px, double py, double pz, double margin) {
+            double extent = half + margin;
+            return Math.abs(px - x) <= extent && Math.abs(py - y) <= extent && Math.abs(pz - z) <= extent;
+        }
+
+        /**
+         * Adds a record to the node.
+         *
+         * @param record the record
+         */
+        synchronized void add(Record record) {
+            Record[] current = records;
+            Record[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = record;
+            records = updated;
+        }
+    }
+
+    /**
+     * Sets the accuracy: a record is used up to accuracy times its radius from its point
+     * on a flat surface. Lower values are more accurate, with more records.
+     *
+     * @param accuracy The accuracy, in the range (0,1].
+     * @return The current instance of IrradianceCache for method chaining.
+     * @throws IllegalArgumentException if the accuracy is out of range
+     */
+    public IrradianceCache setAccuracy(double accuracy) {
+        if (accuracy <= 0 || accuracy > 1)
+            throw new IllegalArgumentException("The accuracy must be between 0 (excluded) and 1");
+        this.accuracy = accuracy;
+        return this;
+    }
+
+    /**
+     * Sets the bounds of the radii of the records, in scene units.
+     *
+     * @param minSpacing The minimal radius.
+     * @param maxSpacing The maximal radius.
+     * @return The current instance of IrradianceCache for method chaining.
+     * @throws IllegalArgumentException if the minimal radius is not positive or above the maximal radius
+     */
+    public IrradianceCache setSpacing(double minSpacing, double maxSpacing) {
+        if (minSpacing <= 0 || minSpacing > maxSpacing)
+            throw new IllegalArgumentException("The spacing bounds must be positive and ordered");
+        this.minSpacing = minSpacing;
+        this.maxSpacing = maxSpacing;
+        return this;
+    }
+
+    /**
+     * Sets the number of rays gathering the light of a new record.
+     *
+     * @param gatherRays The number of rays.
+     * @return The current instance of IrradianceCache for method chaining.
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public IrradianceCache setGatherRays(int gatherRays) {
+        if (gatherRays < 1)
+            throw new IllegalArgumentException("The number of gather rays must be positive");
+        this.gatherRays = gatherRays;
+        return this;
+    }
+
+    /**
+     * Returns the number of rays gathering the light of a new record.
+     *
+     * @return The number of rays.
+     */
+    public int getGatherRays() {
+        return gatherRays;
+    }
+
+    /**
+     * Returns the number of records in the cache.
+     *
+     * @return The number of records.
+     */
+    public long size() {
+        return records.sum();
+    }
+
+    /**
+     * Returns the fraction of the lookups answered by interpolating records.
+     *
+     * @return The hit rate, or 0 if there was no lookup.
+     */
+    public double getHitRate() {
+        long count = lookups.sum();
+        return count == 0 ? 0 : (double) hits.sum() / count;
+    }
+
+    /**
+     * Removes all the records, e.g. when the scene changes, and resets the statistics.
+     */
+    public synchronized void clear() {
+        root = null;
+        records.reset();
+        lookups.reset();
+        hits.reset();
+    }
+
+    /**
+     * Interpolates the light at a shading point from the valid records around it.
+     *
+     * @param point  the shading point
+     * @param normal the unit normal at the point, facing the hemisphere of the light
+     * @return the interpolated light, or null if no record is valid at the point
+     */
+    public Color lookup(Point point, Vector normal) {
+        lookups.increment();
+        Node node = root;
+        if (node == null)
+            return null;
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        double nx = normal.getX(), ny = normal.getY(), nz = normal.getZ();
+        double minWeight = 1 / accuracy;
+        MutableColor color = new MutableColor();
+        double sum = 0;
+        Node[] stack = new Node[64];
+        int top = 0;
+        if (node.contains(px, py, pz, node.half))
+            stack[top++] = node;
+        while (top > 0) {
+            node = stack[--top];
+            for (Record record : node.records) {
+                double dx = px - record.x, dy = py - record.y, dz = pz - record.z;
+                double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                double cos = nx * record.nx + ny * record.ny + nz * record.nz;
+                double error = distance / record.radius + Math.sqrt(Math.max(0, 1 - cos));
+                if (error * minWeight >= 1)
+                    continue;
+                // Reject a record in front of the shading point, whose hemisphere sees geometries behind it
+                double front = (dx * (nx + record.nx) + dy * (ny + record.ny) + dz * (nz + record.nz)) / 2;
+                if (front < -BEHIND_TOLERANCE * record.radius)
+                    continue;
+                double weight = error == 0 ? 1e10 : 1 / error;
+                color.addScaled(record.irradiance, Double3.ONE, weight);
+                sum += weight;
+            }
+            for (int octant = 0; octant < 8; ++octant) {
+                Node child = node.children.get(octant);
+                if (child != null && child.contains(px, py, pz, child.half)) {
+                    if (top == stack.length)
+                        stack = Arrays.copyOf(stack, 2 * top);
+                    stack[top++] = child;
+                }
+            }
+        }
+        if (sum == 0)
+            return null;
+        hits.increment();
+        return color.toColor().scale(1 / sum);
+    }
+
+    /**
+     * Inserts a record of the light gathered at a point.
+     *
+     * @param point              the point
+     * @param normal             the unit normal at the point, facing the gathered hemisphere
+     * @param irradiance         the gathered light
+     * @param harmonicDistance   the harmonic mean of the distances to the geometries hit by the gather rays,
+     *                           infinity if all the rays missed
+     */
+    public void insert(Point point, Vector normal, Color irradiance, double harmonicDistance) {
+        double radius = Math.max(minSpacing, Math.min(maxSpacing, harmonicDistance));
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        Record record = new Record(px, py, pz, normal.getX(), normal.getY(), normal.getZ(), radius, irradiance);
+        Node node = rootContaining(px, py, pz, radius);
+        while (node.half / 2 >= radius)
+            node = node.child(node.octant(px, py, pz));
+        node.add(record);
+        records.increment();
+    }
+
+    /**
+     * Returns the root, after growing it as needed to contain a point with a cube whose half-size is at least
+     * a radius. The old root becomes a child of the new root, so the records keep their nodes.
+     *
+     * @param px     the x coordinate of the point
+     * @param py     the y coordinate of the point
+     * @param pz     the z coordinate of the point
+     * @param radius the radius
+     * @return the root
+     */
+    private Node rootContaining(double px, double py, double pz, double radius) {
+        Node node = root;
+        if (node != null && node.contains(px, py, pz, 0) && node.half >= radius)
+            return node;
+        synchronized (this) {
+            node = root;
+            if (node == null) {
+                // The first cube is aligned on a power of two around the point, so that it is not too tight
+                double half = Math.scalb(1.0, Math.getExponent(maxSpacing) + 1);
+                node = new Node(px, py, pz, half);
+            }
+            while (!node.contains(px, py, pz, 0) || node.half < radius) {
+                // Grow towards the point: the old root is the octant of the new root opposite to the point
+                double h = node.half;
+                double x = node.x + (px >= node.x ? h : -h);
+                double y = node.y + (py >= node.y ? h : -h);
+                double z = node.z + (pz >= node.z ? h : -h);
+                Node parent = new Node(x, y, z, 2 * h);
+                parent.children.set(parent.octant(node.x, node.y, node.z), node);
+                node = parent;
+            }
+            root = node;
+            return node;
+        }
+    }
+}
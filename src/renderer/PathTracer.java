@@ -0,0 +1,202 @@
+package renderer;
+
+import geometries.Intersectable;
+import geometries.Intersectable.GeoPoint;
+import lighting.LightSource;
+import primitives.*;
+import scene.Scene;
+
+import static primitives.Util.alignZero;
+
+/**
+ * PathTracer is a Monte Carlo implementation of RayTracerBase: the color of a ray is the average of
+ * several random light paths starting at its closest hit. At each hit of a path, the light sources are
+ * sampled directly (next-event estimation) with a shadow ray each, and the path continues in one direction
+ * chosen at random among a diffuse bounce, a mirror reflection and a refraction, in proportion to the
+ * material coefficients. Since the light sources of the scene are points, a path could never reach them
+ * by bouncing; the direct sampling gives the exact direct light at every hit, so only the indirect light is noisy.
+ * Long paths are terminated by Russian roulette without bias.
+ * Random numbers are drawn from the generator of the current thread ({@link PixelRandom}), so the tracer may be
+ * used by several threads, and a camera seeding the generator per pixel renders reproducible images.
+ */
+public class PathTracer extends RayTracerBase {
+    private static final int DEFAULT_SAMPLES = 16;
+    private static final int DEFAULT_MAX_DEPTH = 5;
+    /** The depth from which paths are subject to Russian roulette */
+    private static final int ROULETTE_DEPTH = 3;
+
+    /** The number of paths traced per ray */
+    private int samples = DEFAULT_SAMPLES;
+    /** The maximal number of hits along a path, including the primary hit */
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+
+    /**
+     * Constructs a PathTracer with the given scene.
+     *
+     * @param scene The scene to trace rays in.
+     */
+    public PathTracer(Scene scene) {
+        super(scene);
+    }
+
+    /**
+     * Sets the number of paths traced per ray, i.e. per pixel when the camera casts one ray per pixel.
+     *
+     * @param samples The number of samples.
+     * @return The current instance of PathTracer for method chaining.
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public PathTracer setSamples(int samples) {
+        if (samples < 1)
+            throw new IllegalArgumentException("The number of samples must be positive");
+        this.samples = samples;
+        return this;
+    }
+
+    /**
+     * Sets the maximal number of hits along a path, including the primary hit.
+     * A depth of 1 gives the direct light only.
+     *
+     * @param maxDepth The maximal depth.
+     * @return The current instance of PathTracer for method chaining.
+     * @throws IllegalArgumentException if the depth is not positive
+     */
+    public PathTracer setMaxDepth(int maxDepth) {
+        if (maxDepth < 1)
+            throw new IllegalArgumentException("The maximal depth must be positive");
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Traces a ray through the scene by averaging several paths from its closest hit.
+     * The primary hit is found once and shared by all the paths.
+     *
+     * @param ray The ray to trace through the scene.
+     * @return The estimated color, or the background color if no intersection is found.
+     */
+    @Override
+    public Color traceRay(Ray ray) {
+        GeoPoint gp = findClosestIntersection(ray, Intersectable.CAMERA_RAYS);
+        if (gp == null)
+            return background(ray);
+        MutableColor radiance = new MutableColor();
+        for (int i = 0; i < samples; ++i)
+            tracePath(gp, ray, radiance);
+        return radiance.toColor().reduce(samples).add(scene.ambientLight.getIntensity());
+    }
+
+    /**
+     * Traces one random path from a hit, adding the light it carries to an accumulator.
+     *
+     * @param gp       the first hit of the path
+     * @param ray      the ray intersecting the first hit
+     * @param radiance the accumulator of the light of the paths
+     */
+    private void tracePath(GeoPoint gp, Ray ray, MutableColor radiance) {
+        PixelRandom random = PixelRandom.current();
+        MutableVector r = new MutableVector();
+        Double3 throughput = Double3.ONE;
+        for (int depth = 1; ; ++depth) {
+            radiance.addScaled(gp.geometry.getEmission(gp), throughput, 1);
+            Vector v = ray.getDirection();
+            Vector n = gp.normal;
+            double nv = alignZero(n.dotProduct(v));
+            if (nv == 0)
+                return;
+            Material material = gp.geometry.getMaterial(gp);
+            addDirectLight(gp, v, nv, material, throughput, radiance, r);
+            if (depth == maxDepth)
+                return;
+
+            if (depth >= ROULETTE_DEPTH) {
+                double survival = Math.min(1, throughput.max());
+                if (random.nextDouble() >= survival)
+                    return;
+                throughput = throughput.scale(1 / survival);
+            }
+
+            // Choose the next event in proportion to the coefficients; if they sum below 1 the rest is absorption
+            double pD = material.kD.max(), pR = material.kR.max(), pT = material.kT.max();
+            double total = Math.max(1, pD + pR + pT);
+            double xi = random.nextDouble() * total;
+            Vector direction;
+            Double3 k;
+            double p;
+            if (xi < pD) {
+                direction = sampleDiffuse(n, nv, random);
+                k = material.kD;
+                p = pD;
+            } else if (xi < pD + pR) {
+                direction = r.set(v).addScaled(n, -2 * nv).toVector();
+                k = material.kR;
+                p = pR;
+            } else if (xi < pD + pR + pT) {
+                direction = refract(v, n, material.ior);
+                if (direction == null) // Total internal reflection
+                    direction = r.set(v).addScaled(n, -2 * nv).toVector();
+                k = material.kT;
+                p = pT;
+            } else
+                return;
+            throughput = throughput.product(k).scale(total / p);
+
+            ray = new Ray(gp.point, direction, n);
+            gp = findClosestIntersection(ray, Intersectable.REFLECTION_RAYS);
+            if (gp == null) {
+                radiance.addScaled(background(ray), throughput, 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds the light arriving directly from all the light sources at a hit, through transparent geometries,
+     * reflected towards the viewer by the diffuse and specular terms of the material.
+     *
+     * @param gp         the hit
+     * @param v          the direction of the ray intersecting the hit
+     * @param nv         the dot product of the normal and the ray direction
+     * @param material   the material at the hit
+     * @param throughput the attenuation of the path up to the hit
+     * @param radiance   the accumulator of the light of the paths
+     * @param r          a scratch vector for the reflection direction
+     */
+    private void addDirectLight(GeoPoint gp, Vector v, double nv, Material material, Double3 throughput,
+                                MutableColor radiance, MutableVector r) {
+        Vector n = gp.normal;
+        for (LightSource lightSource : scene.lights) {
+            if (!gp.geometry.isLitBy(lightSource))
+                continue;
+            Vector l = lightSource.getL(gp.point);
+            double nl = alignZero(n.dotProduct(l));
+            if (nl * nv <= 0 || !lightSource.canContribute(gp.point, l, 0))
+                continue;
+            Double3 ktr = transparency(gp, lightSource, l, n);
+            if (ktr.equals(Double3.ZERO))
+                continue;
+            Color iL = lightSource.getIntensity(gp.point);
+            Double3 weight = throughput.product(ktr);
+            radiance.addScaled(iL, weight.product(material.kD), Math.abs(nl));
+            double minusVR = -alignZero(r.set(l).addScaled(n, -(nl * 2)).dotProduct(v));
+            if (minusVR > 0)
+                radiance.addScaled(iL, weight.product(material.kS), Math.pow(minusVR, material.nShininess));
+        }
+    }
+
+    /**
+     * Samples a diffuse bounce direction with a cosine-weighted distribution over the hemisphere facing
+     * the incoming ray. With this distribution the weight of a diffuse bounce is just the diffuse coefficient.
+     *
+     * @param n      the normal at the hit
+     * @param nv     the dot product of the normal and the ray direction
+     * @param random the random generator of the current thread
+     * @return the unit direction of the bounce
+     */
+    private static Vector sampleDiffuse(Vector n, double nv, PixelRandom random) {
+        double phi = 2 * Math.PI * random.nextDouble();
+        double r2 = random.nextDouble();
+        double radius = Math.sqrt(r2);
+        return (nv < 0 ? n : n.scale(-1)).toFrame(radius * Math.cos(phi), radius * Math.sin(phi), Math.sqrt(1 - r2));
+    }
+}
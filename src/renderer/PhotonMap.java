@@ -0,0 +1,714 @@
+package renderer;
+
+import geometries.Intersectable;
+import geometries.Intersectable.GeoPoint;
+import lighting.AreaLight;
+import lighting.DirectionalLight;
+import lighting.LightSource;
+import lighting.PointLight;
+import primitives.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * A caustic photon map: the light focused on diffuse surfaces by reflective and refractive geometries,
+ * which backward ray tracing cannot find, since its shadow rays go straight to the lights.
+ * <p>
+ * In a pre-pass, photons are emitted from the light sources towards a target sphere around the reflective and
+ * refractive geometries, in parallel batches. Each photon is followed through the reflections and refractions
+ * it meets (choosing one of them at random in proportion to their coefficients), and stored where it first lands
+ * on a diffuse surface after at least one of them. The stored photons are arranged in a balanced kd-tree held
+ * in primitive arrays: each range of the arrays has its median photon, along the axis of its widest extent,
+ * at its middle, the photons below it before it and the others after it, so the tree needs no pointers.
+ * While shading, the irradiance of the caustics at a point is estimated from the density of its nearest photons.
+ * <p>
+ * The power of a photon is set so that photons spread over a surface light it like the direct light
+ * of their light source in the shading model of the tracers (the intensity at the point times the cosine):
+ * a photon of a point light carries the intensity at the point where it lands over the area it would cover
+ * along a straight path of the same length, so light passing through a clear geometry which does not bend it
+ * has the brightness of the direct light, and a lens focusing it is brighter. The pre-pass is bounded by the number
+ * of photons emitted, by the number of photons stored (the memory of the map), and by a time limit:
+ * when the time runs out or the map is full, the remaining batches are dropped and the power of the stored
+ * photons is raised to make up for them. The map is not modified after it is built, so it may be shared by
+ * the threads of a rendering.
+ */
+public class PhotonMap {
+    /** The number of photons of a batch of the emission, the unit by which the pre-pass is bounded */
+    private static final int BATCH_PHOTONS = 1024;
+    /** The maximal number of reflections and refractions followed per photon */
+    private static final int MAX_BOUNCES = 8;
+    /** The memory of a stored photon: its position, direction and power as floats, and its splitting axis */
+    private static final int PHOTON_BYTES = 9 * Float.BYTES + 1;
+    /** The power below which a photon is not emitted */
+    private static final double MIN_POWER = 1e-12;
+    /** The frame key of the random streams of the emission, apart from those of the renderings */
+    private static final long EMISSION_FRAME = -1;
+
+    /** The center of the sphere around the reflective and refractive geometries */
+    private final Point center;
+    /** The radius of the sphere around the reflective and refractive geometries */
+    private final double radius;
+    /** The number of photons emitted */
+    private int photons = 100_000;
+    /** The maximal number of photons stored */
+    private int maxPhotons = 1 << 20;
+    /** The time limit of the pre-pass in milliseconds, 0 for no limit */
+    private long timeLimit = 0;
+    /** The number of nearest photons of a density estimate */
+    private int neighbors = 50;
+    /** The maximal radius of a density estimate */
+    private double maxRadius;
+
+    /** The positions of the photons in the order of the tree, 3 per photon */
+    private float[] positions = new float[0];
+    /** The unit directions the photons arrived from, 3 per photon */
+    private float[] directions = new float[0];
+    /** The red, green and blue powers of the photons */
+    private float[] powers = new float[0];
+    /** The axis along which each photon splits its range of the tree */
+    private byte[] axes = new byte[0];
+    /** The number of photons emitted by the last pre-pass */
+    private long emitted = 0;
+    /** The duration of the last pre-pass in milliseconds */
+    private long buildTime = 0;
+
+    /** The nearest photons found by the current density estimate of each thread */
+    private final ThreadLocal<Neighbors> queries = ThreadLocal.withInitial(Neighbors::new);
+
+    /**
+     * The nearest photons found by a density estimate: a max-heap of their indices by their squared distances,
+     * so the farthest one is replaced first.
+     */
+    private static final class Neighbors {
+        /** The indices of the photons */
+        int[] indices = new int[0];
+        /** The squared distances of the photons */
+        double[] distances = new double[0];
+        /** The number of photons found */
+        int count;
+        /** The number of photons to find */
+        int capacity;
+        /** The squared radius within which photons are searched, shrinking once the heap is full */
+        double limit;
+
+        /**
+         * Starts a search.
+         *
+         * @param capacity the number of photons to find
+         * @param limit    the squared radius of the search
+         */
+        void reset(int capacity, double limit) {
+            if (indices.length < capacity) {
+                indices = new int[capacity];
+                distances = new double[capacity];
+            }
+            this.capacity = capacity;
+            this.limit = limit;
+            count = 0;
+        }
+
+        /**
+         * Adds a photon within the radius of the search, replacing the farthest one if the heap is full.
+         *
+         * @param index    the index of the photon
+         * @param distance the squared distance of the photon
+         */
+        void add(int index, double distance) {
+            int i;
+            if (count < capacity) { // Sift up from the new leaf
+                i = count++;
+                while (i > 0 && distances[(i - 1) / 2] < distance) {
+                    indices[i] = indices[(i - 1) / 2];
+                    distances[i] = distances[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+            } else { // Sift down from the root, replacing the farthest photon
+                i = 0;
+                for (int child = 1; child < count; child = 2 * i + 1) {
+                    if (child + 1 < count && distances[child + 1] > distances[child])
+                        ++child;
+                    if (distances[child] <= distance)
+                        break;
+                    indices[i] = indices[child];
+                    distances[i] = distances[child];
+                    i = child;
+                }
+            }
+            indices[i] = index;
+            distances[i] = distance;
+            if (count == capacity)
+                limit = distances[0];
+        }
+    }
+
+    /**
+     * Constructs an empty photon map, whose photons will be emitted towards a sphere around the reflective
+     * and refractive geometries of the scene. The radius of the density estimates is bounded by a tenth
+     * of the radius of the sphere.
+     *
+     * @param center the center of the sphere
+     * @param radius the radius of the sphere
+     * @throws IllegalArgumentException if the radius is not positive
+     */
+    public PhotonMap(Point center, double radius) {
+        if (radius <= 0)
+            throw new IllegalArgumentException("The radius of the photon target must be positive");
+        this.center = center;
+        this.radius = radius;
+        maxRadius = radius / 10;
+    }
+
+    /**
+     * Sets the number of photons emitted by the pre-pass, shared by the light sources in proportion to
+     * the power they send towards the target sphere.
+     *
+     * @param photons the number of photons (100000 by default)
+     * @return this photon map
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public PhotonMap setPhotons(int photons) {
+        if (photons <= 0)
+            throw new IllegalArgumentException("The number of photons must be positive");
+        this.photons = photons;
+        return this;
+    }
+
+    /**
+     * Sets the maximal number of photons stored, which bounds the memory of the map
+     * to about {@value #PHOTON_BYTES} bytes per photon. The batches of photons are kept in order
+     * up to the first one which would exceed the maximum, whatever the number of threads.
+     *
+     * @param maxPhotons the maximal number of photons (1048576 by default)
+     * @return this photon map
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public PhotonMap setMaxPhotons(int maxPhotons) {
+        if (maxPhotons <= 0)
+            throw new IllegalArgumentException("The maximal number of photons must be positive");
+        this.maxPhotons = maxPhotons;
+        return this;
+    }
+
+    /**
+     * Sets the time limit of the pre-pass. The batches of photons not started within the limit are dropped.
+     *
+     * @param timeLimit the time limit in milliseconds, or 0 for no limit (the default)
+     * @return this photon map
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    public PhotonMap setTimeLimit(long timeLimit) {
+        if (timeLimit < 0)
+            throw new IllegalArgumentException("The time limit must not be negative");
+        this.timeLimit = timeLimit;
+        return this;
+    }
+
+    /**
+     * Sets the number of nearest photons whose density estimates the irradiance at a point.
+     * More photons give smoother but blurrier caustics.
+     *
+     * @param neighbors the number of photons (50 by default)
+     * @return this photon map
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public PhotonMap setNeighbors(int neighbors) {
+        if (neighbors <= 0)
+            throw new IllegalArgumentException("The number of neighbors must be positive");
+        this.neighbors = neighbors;
+        return this;
+    }
+
+    /**
+     * Sets the maximal radius of the density estimates: photons farther from a point are not counted,
+     * so sparse photons do not spread light far from the caustics.
+     *
+     * @param maxRadius the maximal radius
+     * @return this photon map
+     * @throws IllegalArgumentException if the radius is not positive
+     */
+    public PhotonMap setMaxRadius(double maxRadius) {
+        if (maxRadius <= 0)
+            throw new IllegalArgumentException("The maximal radius must be positive");
+        this.maxRadius = maxRadius;
+        return this;
+    }
+
+    /**
+     * Returns the number of photons stored by the last pre-pass.
+     *
+     * @return the number of photons
+     */
+    public int size() {
+        return axes.length;
+    }
+
+    /**
+     * Returns the number of photons emitted by the last pre-pass, fewer than configured if it was cut short
+     * by its time limit or by the maximal number of photons.
+     *
+     * @return the number of photons
+     */
+    public long getEmitted() {
+        return emitted;
+    }
+
+    /**
+     * Returns the memory held by the photons of the map.
+     *
+     * @return the memory in bytes
+     */
+    public long getMemory() {
+        return (long) size() * PHOTON_BYTES;
+    }
+
+    /**
+     * Returns the duration of the last pre-pass, including the building of the tree.
+     *
+     * @return the duration in milliseconds
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Emits the photons from the light sources, follows them through the geometries, and builds the tree
+     * of those landing on diffuse surfaces, replacing the photons of a previous pre-pass.
+     * Area lights emit from random points of their surface, and unknown light sources emit no photons.
+     *
+     * @param lights     the light sources
+     * @param geometries the geometries
+     */
+    void build(List<LightSource> lights, Intersectable geometries) {
+        long start = System.nanoTime();
+        long deadline = timeLimit == 0 ? Long.MAX_VALUE : start + timeLimit * 1_000_000;
+        LightSource[] sources = lights.toArray(new LightSource[0]);
+        double[] flux = new double[sources.length];
+        double total = 0;
+        for (int i = 0; i < sources.length; ++i)
+            total += flux[i] = flux(sources[i]);
+
+        int batches = (photons + BATCH_PHOTONS - 1) / BATCH_PHOTONS;
+        long[] shares = new long[sources.length]; // The photons of each light, over all the batches
+        for (int i = 0; i < sources.length; ++i)
+            shares[i] = total == 0 ? 0 : Math.round(photons * flux[i] / total);
+
+        // The batches are cut at the first one, in index order, which takes the photons beyond the maximum,
+        // so the map does not depend on the order in which the threads finish the batches. While emitting,
+        // the cut is found over the prefix of the batches done so far, and the batches after it are skipped
+        float[][] results = new float[batches][];
+        AtomicInteger cut = new AtomicInteger(batches);
+        int[] prefix = new int[2]; // The number of batches in the prefix done so far, and of their photons
+        IntStream.range(0, batches).parallel().forEach(b -> {
+            if (b >= cut.get() || System.nanoTime() > deadline)
+                return;
+            float[] batch = emitBatch(sources, shares, b, batches, geometries);
+            synchronized (results) {
+                results[b] = batch;
+                while (prefix[0] < cut.get() && results[prefix[0]] != null) {
+                    prefix[1] += results[prefix[0]].length / 9;
+                    if (prefix[1] > maxPhotons)
+                        cut.set(prefix[0]);
+                    else
+                        ++prefix[0];
+                }
+            }
+        });
+
+        // Batches missed by the time limit leave gaps, so the final cut is found again over all the batches done
+        int count = 0;
+        for (int b = 0; b < batches; ++b)
+            if (results[b] != null) {
+                if (count + results[b].length / 9 > maxPhotons) {
+                    Arrays.fill(results, b, batches, null);
+                    break;
+                }
+                count += results[b].length / 9;
+            }
+
+        int done = 0;
+        long emittedPhotons = 0;
+        for (int b = 0; b < batches; ++b)
+            if (results[b] != null) {
+                ++done;
+                for (int i = 0; i < sources.length; ++i)
+                    emittedPhotons += share(shares[i], b, batches);
+            }
+        emitted = emittedPhotons;
+        float scale = done == 0 ? 0 : (float) batches / done; // Makes up for the dropped batches
+        float[] photonData = new float[9 * count];
+        int offset = 0;
+        for (float[] batch : results)
+            if (batch != null) {
+                System.arraycopy(batch, 0, photonData, offset, batch.length);
+                offset += batch.length;
+            }
+        positions = new float[3 * count];
+        directions = new float[3 * count];
+        powers = new float[3 * count];
+        axes = new byte[count];
+        int[] order = new int[count];
+        for (int p = 0; p < count; ++p)
+            order[p] = p;
+        balance(photonData, order, 0, count);
+        for (int p = 0; p < count; ++p)
+            for (int c = 0; c < 3; ++c) {
+                positions[3 * p + c] = photonData[9 * order[p] + c];
+                directions[3 * p + c] = photonData[9 * order[p] + 3 + c];
+                powers[3 * p + c] = photonData[9 * order[p] + 6 + c] * scale;
+            }
+        buildTime = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Estimates the power a light source sends towards the target sphere, to share the photons among the lights.
+     *
+     * @param light the light source
+     * @return the estimated power, 0 if the light emits no photons
+     */
+    private double flux(LightSource light) {
+        if (light instanceof DirectionalLight)
+            return light.getIntensity(center).difference(Color.BLACK) * Math.PI * radius * radius;
+        if (light instanceof PointLight point) {
+            double distance = point.getPosition().distance(center);
+            return light.getIntensity(center).difference(Color.BLACK) * solidAngle(distance)
+                    * Math.pow(Math.max(distance, radius), 2);
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the solid angle of the cone of directions from a point light towards the target sphere.
+     *
+     * @param distance the distance of the light from the center of the sphere
+     * @return the solid angle, the whole sphere of directions if the light is inside the target sphere
+     */
+    private double solidAngle(double distance) {
+        return distance <= radius ? 4 * Math.PI : 2 * Math.PI * (1 - cosCone(distance));
+    }
+
+    /**
+     * Returns the cosine of the half angle of the cone from a point light towards the target sphere.
+     *
+     * @param distance the distance of the light from the center of the sphere, beyond its radius
+     * @return the cosine of the half angle of the cone
+     */
+    private double cosCone(double distance) {
+        double sin = radius / distance;
+        return Math.sqrt(1 - sin * sin);
+    }
+
+    /**
+     * Returns the number of photons a light emits in a batch, spreading its photons evenly over the batches.
+     *
+     * @param share   the photons of the light over all the batches
+     * @param b       the index of the batch
+     * @param batches the number of batches
+     * @return the number of photons of the light in the batch
+     */
+    private static long share(long share, int b, int batches) {
+        return share * (b + 1) / batches - share * b / batches;
+    }
+
+    /**
+     * Emits a batch of photons from all the light sources, with a random stream of its own, so the stored
+     * photons do not depend on the threads of the pre-pass.
+     *
+     * @param sources    the light sources
+     * @param shares     the photons of each light, over all the batches
+     * @param b          the index of the batch
+     * @param batches    the number of batches
+     * @param geometries the geometries
+     * @return the stored photons, 9 values per photon: position, direction and power
+     */
+    private float[] emitBatch(LightSource[] sources, long[] shares, int b, int batches, Intersectable geometries) {
+        PixelRandom random = PixelRandom.current().seed(EMISSION_FRAME, b, 0);
+        MutableColor power = new MutableColor();
+        float[] stored = new float[9 * 64];
+        int count = 0;
+        for (int i = 0; i < sources.length; ++i) {
+            long n = share(shares[i], b, batches);
+            for (long p = 0; p < n; ++p) {
+                if (9 * (count + 1) > stored.length)
+                    stored = Arrays.copyOf(stored, 2 * stored.length);
+                if (emit(sources[i], shares[i], random, geometries, power, stored, 9 * count))
+                    ++count;
+            }
+        }
+        return Arrays.copyOf(stored, 9 * count);
+    }
+
+    /**
+     * Emits a photon from a light source towards the target sphere and follows it through the reflections
+     * and refractions it meets, until it lands on a diffuse surface after at least one of them.
+     * A photon landing on a diffuse surface first is part of the direct light, and is not stored.
+     * A directional light emits through a disk across the target sphere, facing the light; its photons
+     * are attenuated by the geometries between the disk and the light, like its shadow rays.
+     *
+     * @param light      the light source
+     * @param share      the number of photons of the light source
+     * @param random     the random stream
+     * @param geometries the geometries
+     * @param scratch    a color to convert the power of the photon
+     * @param stored     the array to receive the position, direction and power of the photon
+     * @param offset     the index of the photon in the array
+     * @return whether the photon is stored
+     */
+    private boolean emit(LightSource light, long share, PixelRandom random, Intersectable geometries,
+                         MutableColor scratch, float[] stored, int offset) {
+        Ray ray;
+        Color power = null; // Set where the photon lands for a point light, by the length of its path
+        double angle = 0; // The solid angle of a photon of a point light
+        if (light instanceof DirectionalLight) {
+            Vector d = light.getL(center);
+            Vector u = d.createNormal(), w = d.crossProduct(u);
+            double r = radius * Math.sqrt(random.nextDouble()), phi = 2 * Math.PI * random.nextDouble();
+            double a = r * Math.cos(phi), c = r * Math.sin(phi);
+            Point start = new Point(center.getX() + a * u.getX() + c * w.getX() - radius * d.getX(),
+                    center.getY() + a * u.getY() + c * w.getY() - radius * d.getY(),
+                    center.getZ() + a * u.getZ() + c * w.getZ() - radius * d.getZ());
+            Double3 ktr = transmittance(geometries, new Ray(start, d.scale(-1)));
+            if (ktr.lowerThan(MIN_POWER))
+                return false;
+            power = light.getIntensity(center).scale(ktr).scale(Math.PI * radius * radius / share);
+            ray = new Ray(start, d);
+        } else if (light instanceof PointLight point) {
+            Point position = point.getPosition();
+            double distance = position.distance(center);
+            Point origin = light instanceof AreaLight area
+                    ? area.getSamplePoint(center, random.nextDouble(), random.nextDouble()) : position;
+            Vector axis = distance <= radius ? new Vector(0, 0, 1) : center.subtract(position).normalize();
+            double cos = distance <= radius ? 1 - 2 * random.nextDouble() // The whole sphere of directions
+                    : 1 - random.nextDouble() * (1 - cosCone(distance));
+            double sin = Math.sqrt(Math.max(0, 1 - cos * cos)), phi = 2 * Math.PI * random.nextDouble();
+            Vector u = axis.createNormal(), w = axis.crossProduct(u);
+            double a = sin * Math.cos(phi), c = sin * Math.sin(phi);
+            ray = new Ray(origin, new Vector(cos * axis.getX() + a * u.getX() + c * w.getX(),
+                    cos * axis.getY() + a * u.getY() + c * w.getY(), cos * axis.getZ() + a * u.getZ() + c * w.getZ()));
+            angle = solidAngle(distance) / share;
+        } else
+            return false;
+
+        boolean specular = false;
+        Double3 throughput = Double3.ONE;
+        double length = 0; // The length of the path of the photon
+        for (int bounce = 0; bounce <= MAX_BOUNCES; ++bounce) {
+            GeoPoint gp = geometries.findClosestGeoIntersection(ray, Double.POSITIVE_INFINITY, Intersectable.SHADOW_RAYS);
+            if (gp == null)
+                return false;
+            length += gp.t;
+            Material material = gp.geometry.getMaterial(gp);
+            Vector v = ray.getDirection(), n = gp.normal;
+            if (specular && !material.kD.equals(Double3.ZERO)) {
+                // The intensity at the point spread over the area the photon would cover along a straight path
+                // of the same length, so a path through a clear geometry lights the point like the direct light
+                Color landed = power != null ? power.scale(throughput)
+                        : light.getIntensity(gp.point).scale(throughput.scale(angle * length * length));
+                if (landed.difference(Color.BLACK) < MIN_POWER)
+                    return false;
+                stored[offset] = (float) gp.point.getX();
+                stored[offset + 1] = (float) gp.point.getY();
+                stored[offset + 2] = (float) gp.point.getZ();
+                stored[offset + 3] = (float) v.getX();
+                stored[offset + 4] = (float) v.getY();
+                stored[offset + 5] = (float) v.getZ();
+                scratch.set(landed).get(stored, offset + 6);
+                return true;
+            }
+
+            // Choose the next event in proportion to the coefficients; if they sum below 1 the rest is absorption
+            double pR = material.kR.max(), pT = material.kT.max();
+            double total = Math.max(1, pR + pT);
+            double xi = random.nextDouble() * total;
+            Vector direction;
+            Double3 k;
+            double p;
+            if (xi < pR) {
+                direction = reflect(v, n);
+                k = material.kR;
+                p = pR;
+            } else if (xi < pR + pT) {
+                direction = RayTracerBase.refract(v, n, material.ior);
+                if (direction == null) // Total internal reflection
+                    direction = reflect(v, n);
+                k = material.kT;
+                p = pT;
+            } else
+                return false;
+            throughput = throughput.product(k).scale(total / p);
+            ray = new Ray(gp.point, direction, n);
+            specular = true;
+        }
+        return false;
+    }
+
+    /**
+     * Reflects a direction about a normal.
+     *
+     * @param v the unit direction
+     * @param n the unit normal
+     * @return the reflected direction
+     */
+    private static Vector reflect(Vector v, Vector n) {
+        double vn = 2 * v.dotProduct(n);
+        return new Vector(v.getX() - vn * n.getX(), v.getY() - vn * n.getY(), v.getZ() - vn * n.getZ());
+    }
+
+    /**
+     * Calculates the transparency factor along a ray leaving the scene, like a shadow ray to a directional light.
+     *
+     * @param geometries the geometries
+     * @param ray        the ray
+     * @return the product of the transparency coefficients of the geometries along the ray
+     */
+    private static Double3 transmittance(Intersectable geometries, Ray ray) {
+        List<GeoPoint> intersections = geometries.findGeoIntersections(ray, Intersectable.SHADOW_RAYS);
+        Double3 ktr = Double3.ONE;
+        if (intersections != null)
+            for (GeoPoint gp : intersections)
+                ktr = ktr.product(gp.geometry.getMaterial(gp).kT);
+        return ktr;
+    }
+
+    /**
+     * Arranges a range of photons as a balanced kd-tree: the median photon along the axis of the widest extent
+     * of their positions is moved to the middle of the range, the photons below it before it and the others
+     * after it, and both halves are arranged in turn.
+     *
+     * @param data  the photons, 9 values per photon, of which the positions are read
+     * @param order the indices of the photons in the order of the tree, rearranged in the range
+     * @param from  the first index of the range (included)
+     * @param to    the last index of the range (excluded)
+     */
+    private void balance(float[] data, int[] order, int from, int to) {
+        while (to - from > 0) {
+            float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+            float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+            for (int i = from; i < to; ++i)
+                for (int c = 0; c < 3; ++c) {
+                    float x = data[9 * order[i] + c];
+                    min[c] = Math.min(min[c], x);
+                    max[c] = Math.max(max[c], x);
+                }
+            int axis = 0;
+            for (int c = 1; c < 3; ++c)
+                if (max[c] - min[c] > max[axis] - min[axis])
+                    axis = c;
+            int middle = (from + to) >>> 1;
+            select(data, order, from, to - 1, middle, axis);
+            axes[middle] = (byte) axis;
+            balance(data, order, from, middle);
+            from = middle + 1; // The upper half is arranged by the loop
+        }
+    }
+
+    /**
+     * Moves the photon of a given rank along an axis to its index in a range, with the photons below it before it
+     * and the others after it (Hoare's selection).
+     *
+     * @param data  the photons, 9 values per photon, of which the positions are read
+     * @param order the indices of the photons, rearranged in the range
+     * @param left  the first index of the range (included)
+     * @param right the last index of the range (included)
+     * @param rank  the index of the photon to select
+     * @param axis  the axis of the positions
+     */
+    private static void select(float[] data, int[] order, int left, int right, int rank, int axis) {
+        while (left < right) {
+            float pivot = data[9 * order[(left + right) >>> 1] + axis];
+            int i = left, j = right;
+            while (i <= j) {
+                while (data[9 * order[i] + axis] < pivot)
+                    ++i;
+                while (data[9 * order[j] + axis] > pivot)
+                    --j;
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            if (rank <= j)
+                right = j;
+            else if (rank >= i)
+                left = i;
+            else
+                return;
+        }
+    }
+
+    /**
+     * Estimates the irradiance of the caustics at a point of a diffuse surface from its nearest photons:
+     * their power over the area of the disk holding them, weighted by a cone filter which sharpens the edges
+     * of the caustics. Only the photons arriving at the side of the surface facing the normal are counted.
+     *
+     * @param point the point
+     * @param n     the unit normal on the side of the surface seen by the shading ray
+     * @return the irradiance, to be scaled by the diffuse coefficient like the intensity of a light
+     */
+    public Color irradiance(Point point, Vector n) {
+        if (axes.length == 0)
+            return Color.BLACK;
+        Neighbors found = queries.get();
+        found.reset(neighbors, maxRadius * maxRadius);
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        nearest(0, axes.length, px, py, pz, n.getX(), n.getY(), n.getZ(), found);
+        if (found.count == 0)
+            return Color.BLACK;
+        double r2 = found.count == found.capacity ? found.limit : maxRadius * maxRadius;
+        double r = Math.sqrt(r2);
+        double red = 0, green = 0, blue = 0;
+        for (int i = 0; i < found.count; ++i) {
+            int p = found.indices[i];
+            double weight = 1 - Math.sqrt(found.distances[i]) / r;
+            red += weight * powers[3 * p];
+            green += weight * powers[3 * p + 1];
+            blue += weight * powers[3 * p + 2];
+        }
+        double area = Math.PI * r2 / 3; // The integral of the cone filter over the disk
+        return new Color(red / area, green / area, blue / area);
+    }
+
+    /**
+     * Searches a range of the tree for the photons nearest to a point, arriving against a normal.
+     * The half of the range on the side of the point is searched first, which shrinks the radius of the search
+     * before the other half is tested.
+     *
+     * @param from  the first index of the range (included)
+     * @param to    the last index of the range (excluded)
+     * @param px    the x coordinate of the point
+     * @param py    the y coordinate of the point
+     * @param pz    the z coordinate of the point
+     * @param nx    the x component of the normal
+     * @param ny    the y component of the normal
+     * @param nz    the z component of the normal
+     * @param found the nearest photons found
+     */
+    private void nearest(int from, int to, double px, double py, double pz, double nx, double ny, double nz,
+                         Neighbors found) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            int axis = axes[middle];
+            double delta = (axis == 0 ? px : axis == 1 ? py : pz) - positions[3 * middle + axis];
+            double dx = px - positions[3 * middle], dy = py - positions[3 * middle + 1],
+                    dz = pz - positions[3 * middle + 2];
+            double distance = dx * dx + dy * dy + dz * dz;
+            if (distance < found.limit && directions[3 * middle] * nx + directions[3 * middle + 1] * ny
+                    + directions[3 * middle + 2] * nz < 0)
+                found.add(middle, distance);
+            if (delta < 0) {
+                nearest(from, middle, px, py, pz, nx, ny, nz, found);
+                if (delta * delta >= found.limit)
+                    return;
+                from = middle + 1;
+            } else {
+                nearest(middle + 1, to, px, py, pz, nx, ny, nz, found);
+                if (delta * delta >= found.limit)
+                    return;
+                to = middle;
+            }
+        }
+    }
+}
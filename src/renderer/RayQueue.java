@@ -0,0 +1,108 @@
+package renderer;
+
+import geometries.Intersectable.GeoPoint;
+import primitives.Color;
+import primitives.Double3;
+import primitives.Ray;
+
+import java.util.Arrays;
+
+/**
+ * A growable queue of path segments of the {@link WavefrontRayTracer}, in structure-of-arrays form:
+ * the state of the i-th segment is held in the i-th cell of one array per field, so that each stage
+ * of the pipeline streams through the fields it needs only.
+ */
+final class RayQueue {
+    /** The initial number of segments */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** The rays of the segments */
+    Ray[] rays = new Ray[INITIAL_CAPACITY];
+    /** The index in the batch of the pixel to which each segment contributes */
+    int[] pixels = new int[INITIAL_CAPACITY];
+    /** The remaining recursion levels */
+    int[] levels = new int[INITIAL_CAPACITY];
+    /** The cumulative attenuation factors, compared with the thresholds of the tracer */
+    Double3[] ks = new Double3[INITIAL_CAPACITY];
+    /** The weights of the contributions of the segments to their pixels */
+    Double3[] weights = new Double3[INITIAL_CAPACITY];
+    /** The keys of the random streams of the segments */
+    long[] seeds = new long[INITIAL_CAPACITY];
+    /** The closest hits, set by the extend stage, null for a miss */
+    GeoPoint[] hits = new GeoPoint[INITIAL_CAPACITY];
+    /** The colors emitted towards the rays, set by the shade stage, before their weights */
+    Color[] colors = new Color[INITIAL_CAPACITY];
+    /** The number of segments in use */
+    int size = 0;
+
+    /**
+     * Adds a segment at the end of the queue.
+     *
+     * @param ray    the ray of the segment
+     * @param pixel  the index of the pixel of the segment in the batch
+     * @param level  the remaining recursion level
+     * @param k      the cumulative attenuation factor
+     * @param weight the weight of the contribution of the segment
+     * @param seed   the key of the random stream of the segment
+     */
+    void add(Ray ray, int pixel, int level, Double3 k, Double3 weight, long seed) {
+        if (size == rays.length)
+            grow(2 * size);
+        rays[size] = ray;
+        pixels[size] = pixel;
+        levels[size] = level;
+        ks[size] = k;
+        weights[size] = weight;
+        seeds[size] = seed;
+        hits[size] = null;
+        colors[size] = null;
+        ++size;
+    }
+
+    /**
+     * Appends all the segments of another queue.
+     *
+     * @param other the queue to append
+     */
+    void addAll(RayQueue other) {
+        if (size + other.size > rays.length)
+            grow(Math.max(2 * rays.length, size + other.size));
+        System.arraycopy(other.rays, 0, rays, size, other.size);
+        System.arraycopy(other.pixels, 0, pixels, size, other.size);
+        System.arraycopy(other.levels, 0, levels, size, other.size);
+        System.arraycopy(other.ks, 0, ks, size, other.size);
+        System.arraycopy(other.weights, 0, weights, size, other.size);
+        System.arraycopy(other.seeds, 0, seeds, size, other.size);
+        Arrays.fill(hits, size, size + other.size, null);
+        Arrays.fill(colors, size, size + other.size, null);
+        size += other.size;
+    }
+
+    /**
+     * Removes all the segments, clearing their references so that the queue does not keep them alive.
+     */
+    void clear() {
+        Arrays.fill(rays, 0, size, null);
+        Arrays.fill(ks, 0, size, null);
+        Arrays.fill(weights, 0, size, null);
+        Arrays.fill(hits, 0, size, null);
+        Arrays.fill(colors, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Enlarges the arrays, keeping the segments in use.
+     *
+     * @param capacity the new capacity
+     */
+    private void grow(int capacity) {
+        rays = Arrays.copyOf(rays, capacity);
+        pixels = Arrays.copyOf(pixels, capacity);
+        levels = Arrays.copyOf(levels, capacity);
+        ks = Arrays.copyOf(ks, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        seeds = Arrays.copyOf(seeds, capacity);
+        hits = Arrays.copyOf(hits, capacity);
+        colors = Arrays.copyOf(colors, capacity);
+    }
+}
@@ -0,0 +1,161 @@
+package renderer;
+
+import geometries.Intersectable.GeoPoint;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Arrays;
+
+/**
+ * Reorders the queues of the {@link WavefrontRayTracer} so that rays which are close in space and direction are
+ * intersected one after the other, and so traverse the same nodes of the acceleration structures while they
+ * are still in the cache. The sort key of a ray is the octant of its direction, followed by the Morton code
+ * (the interleaved bits) of the cell of its origin in a 512^3 grid over the origins of the queue. The key fits in
+ * 30 bits, so that it keeps its order above the index of its ray in the low 32 bits of a long.
+ * The rays carry the index of their pixel, so their contributions are scattered back to the pixels later.
+ * One sorter is kept per thread, with its scratch array of keys.
+ */
+final class RaySorter {
+    /** The number of bits of a coordinate of a grid cell */
+    private static final int CELL_BITS = 9;
+    /** The number of cells of the grid along an axis */
+    private static final int CELLS = 1 << CELL_BITS;
+
+    /** The sort keys, each followed in its low 32 bits by the index of its ray */
+    private long[] keys = new long[256];
+
+    /**
+     * Sorts the rays of a queue, before their hits are found, into another queue.
+     *
+     * @param source the queue to sort
+     * @param target the queue to receive the sorted rays, cleared first
+     */
+    void sort(RayQueue source, RayQueue target) {
+        int size = source.size;
+        double[] bounds = newBounds();
+        for (int i = 0; i < size; ++i)
+            include(bounds, source.rays[i].getHead());
+        ensureCapacity(size);
+        for (int i = 0; i < size; ++i) {
+            Ray ray = source.rays[i];
+            keys[i] = key(bounds, ray.getHead(), ray.getDirection(), 1) << 32 | i;
+        }
+        Arrays.sort(keys, 0, size);
+        target.clear();
+        for (int k = 0; k < size; ++k) {
+            int i = (int) keys[k];
+            target.add(source.rays[i], source.pixels[i], source.levels[i], source.ks[i], source.weights[i],
+                    source.seeds[i]);
+        }
+    }
+
+    /**
+     * Sorts the shadow rays of a queue, before their transparency is found, into another queue.
+     * A shadow ray starts at the hit of its segment and points opposite to its light direction.
+     *
+     * @param source   the queue to sort
+     * @param segments the ray queue of the segments of the shadow rays
+     * @param target   the queue to receive the sorted shadow rays, cleared first
+     */
+    void sort(ShadowQueue source, RayQueue segments, ShadowQueue target) {
+        int size = source.size;
+        double[] bounds = newBounds();
+        for (int j = 0; j < size; ++j)
+            include(bounds, segments.hits[source.segments[j]].point);
+        ensureCapacity(size);
+        for (int j = 0; j < size; ++j) {
+            GeoPoint gp = segments.hits[source.segments[j]];
+            keys[j] = key(bounds, gp.point, source.ls[j], -1) << 32 | j;
+        }
+        Arrays.sort(keys, 0, size);
+        target.clear();
+        for (int k = 0; k < size; ++k) {
+            int j = (int) keys[k];
+            target.add(source.segments[j], source.lights[j], source.ls[j], source.diffuses[j], source.speculars[j],
+                    source.samples[j]);
+        }
+    }
+
+    /**
+     * Calculates the sort key of a ray: 3 bits of direction octant above 27 bits of Morton code of its origin cell.
+     *
+     * @param bounds    the bounds of the origins
+     * @param origin    the origin of the ray
+     * @param direction the direction of the ray, possibly reversed
+     * @param sign      1 for the given direction, -1 for the reversed direction
+     * @return the key, in the low 30 bits
+     */
+    private static long key(double[] bounds, Point origin, Vector direction, double sign) {
+        int octant = (sign * direction.getX() < 0 ? 4 : 0) | (sign * direction.getY() < 0 ? 2 : 0)
+                | (sign * direction.getZ() < 0 ? 1 : 0);
+        int morton = spread(cell(origin.getX(), bounds[0], bounds[3])) << 2
+                | spread(cell(origin.getY(), bounds[1], bounds[4])) << 1
+                | spread(cell(origin.getZ(), bounds[2], bounds[5]));
+        return (long) octant << (3 * CELL_BITS) | morton;
+    }
+
+    /**
+     * Calculates the cell of a coordinate along an axis.
+     *
+     * @param value the coordinate
+     * @param min   the minimal coordinate of the origins
+     * @param max   the maximal coordinate of the origins
+     * @return the cell index, between 0 and {@link #CELLS} - 1
+     */
+    private static int cell(double value, double min, double max) {
+        double extent = max - min;
+        return extent <= 0 ? 0 : Math.min(CELLS - 1, (int) ((value - min) / extent * CELLS));
+    }
+
+    /**
+     * Spreads the 10 low bits of a value so that two zero bits separate each pair of consecutive bits.
+     * A cell index uses only the {@link #CELL_BITS} low bits of them.
+     *
+     * @param v the value
+     * @return the spread value, in 30 bits
+     */
+    private static int spread(int v) {
+        v = (v | (v << 16)) & 0x030000FF;
+        v = (v | (v << 8)) & 0x0300F00F;
+        v = (v | (v << 4)) & 0x030C30C3;
+        v = (v | (v << 2)) & 0x09249249;
+        return v;
+    }
+
+    /**
+     * Creates empty bounds: the minimal coordinates followed by the maximal coordinates.
+     *
+     * @return the bounds
+     */
+    private static double[] newBounds() {
+        double inf = Double.POSITIVE_INFINITY;
+        return new double[] { inf, inf, inf, -inf, -inf, -inf };
+    }
+
+    /**
+     * Extends bounds to include a point.
+     *
+     * @param bounds the bounds
+     * @param point  the point
+     */
+    private static void include(double[] bounds, Point point) {
+        double x = point.getX(), y = point.getY(), z = point.getZ();
+        bounds[0] = Math.min(bounds[0], x);
+        bounds[1] = Math.min(bounds[1], y);
+        bounds[2] = Math.min(bounds[2], z);
+        bounds[3] = Math.max(bounds[3], x);
+        bounds[4] = Math.max(bounds[4], y);
+        bounds[5] = Math.max(bounds[5], z);
+    }
+
+    /**
+     * Makes sure the scratch array can hold the keys of a queue.
+     *
+     * @param size the number of rays of the queue
+     */
+    private void ensureCapacity(int size) {
+        if (keys.length < size)
+            keys = new long[Math.max(size, 2 * keys.length)];
+    }
+}
@@ -1,9 +1,15 @@
 package renderer;
 
-import primitives.Color;
-import primitives.Ray;
+import geometries.Intersectable;
+import geometries.Intersectable.GeoPoint;
+import lighting.LightSource;
+import primitives.*;
 import scene.Scene;
 
+import java.util.List;
+
+import static primitives.Util.alignZero;
+
 /**
  * RayTracerBase is an abstract class representing a base ray tracer.
  * It provides functionality to trace rays through a scene and determine the color at intersection points.
@@ -28,5 +34,167 @@ public abstract class RayTracerBase {
      * @return The color at the intersection point.
      */
     public abstract Color traceRay(Ray ray);
-}
 
+    /**
+     * Traces a packet of rays through the scene, writing the color of each lane into the matching cell
+     * of the colors array. The lanes are keyed 0 to the packet size - 1 in a frame drawn from the random stream
+     * of the caller (see {@link #traceRays(RayPacket, Color[], long, long[])}).
+     *
+     * @param packet The packet of rays to trace.
+     * @param colors The array to receive the colors, at least as long as the packet.
+     */
+    public void traceRays(RayPacket packet, Color[] colors) {
+        traceRays(packet, colors, PixelRandom.current().nextLong(), keys(packet.size()));
+    }
+
+    /**
+     * Traces a packet of rays through the scene, writing the color of each lane into the matching cell
+     * of the colors array. The random stream of each lane is seeded from the frame and the pixel of the lane,
+     * as for a ray traced alone, so the colors do not depend on the grouping of the rays into packets.
+     * This default implementation traces the rays one by one.
+     *
+     * @param packet The packet of rays to trace.
+     * @param colors The array to receive the colors, at least as long as the packet.
+     * @param frame  The key of the frame.
+     * @param pixels The pixel index of each lane in the frame.
+     */
+    public void traceRays(RayPacket packet, Color[] colors, long frame, long[] pixels) {
+        for (int lane = 0; lane < packet.size(); ++lane) {
+            PixelRandom.current().seed(frame, pixels[lane], 0);
+            colors[lane] = traceRay(packet.getRay(lane));
+        }
+    }
+
+    /**
+     * Traces a batch of rays through the scene, writing the color of each ray into the matching cell
+     * of the colors array. The rays are keyed 0 to count - 1 in a frame drawn from the random stream
+     * of the caller (see {@link #traceRays(Ray[], Color[], int, long, long[])}).
+     *
+     * @param rays   The rays to trace.
+     * @param colors The array to receive the colors, at least as long as the batch.
+     * @param count  The number of rays in the batch.
+     */
+    public void traceRays(Ray[] rays, Color[] colors, int count) {
+        traceRays(rays, colors, count, PixelRandom.current().nextLong(), keys(count));
+    }
+
+    /**
+     * Traces a batch of rays through the scene, writing the color of each ray into the matching cell
+     * of the colors array. The random stream of each ray is seeded from the frame and the pixel of the ray,
+     * as for a ray traced alone, so the colors do not depend on the size of the batches.
+     * This default implementation traces the rays one by one.
+     *
+     * @param rays   The rays to trace.
+     * @param colors The array to receive the colors, at least as long as the batch.
+     * @param count  The number of rays in the batch.
+     * @param frame  The key of the frame.
+     * @param pixels The pixel index of each ray in the frame.
+     */
+    public void traceRays(Ray[] rays, Color[] colors, int count, long frame, long[] pixels) {
+        for (int i = 0; i < count; ++i) {
+            PixelRandom.current().seed(frame, pixels[i], 0);
+            colors[i] = traceRay(rays[i]);
+        }
+    }
+
+    /**
+     * Creates the keys of the rays of a batch which is not part of a frame: their indices in the batch.
+     *
+     * @param count The number of rays in the batch.
+     * @return The keys 0 to count - 1.
+     */
+    private static long[] keys(int count) {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; ++i)
+            keys[i] = i;
+        return keys;
+    }
+
+    /**
+     * Returns the color of a ray which leaves the scene: the radiance of the environment of the scene
+     * in the direction of the ray, or the flat background color if the scene has no environment.
+     *
+     * @param ray The ray leaving the scene.
+     * @return The background color of the ray.
+     */
+    protected Color background(Ray ray) {
+        return background(ray, 0);
+    }
+
+    /**
+     * Returns the color of a ray which stands for a cone of rays leaving the scene, such as a ray of a glossy
+     * or diffuse beam: the radiance of the environment prefiltered over the cone, or the flat background color.
+     *
+     * @param ray       The axis of the cone.
+     * @param footprint The solid angle of the cone in steradians, 0 for a single ray.
+     * @return The background color of the cone.
+     */
+    protected Color background(Ray ray, double footprint) {
+        return scene.environment == null ? scene.background
+                : scene.environment.getRadiance(ray.getDirection(), footprint);
+    }
+
+    /**
+     * Refracts a direction through a surface by Snell's law. The side of the surface is found from the direction:
+     * a direction against the normal enters the geometry, whose index of refraction is the given one.
+     *
+     * @param v   The unit direction arriving at the surface.
+     * @param n   The unit normal of the surface.
+     * @param ior The index of refraction of the geometry relative to the space outside it.
+     * @return The refracted unit direction, the direction itself if the index is 1, or null on total internal
+     * reflection.
+     */
+    static Vector refract(Vector v, Vector n, double ior) {
+        if (ior == 1)
+            return v;
+        double cosI = -v.dotProduct(n);
+        double eta = cosI > 0 ? 1 / ior : ior; // Entering or leaving the geometry
+        double sign = cosI > 0 ? 1 : -1; // The normal on the side of the arriving direction
+        cosI *= sign;
+        double k = 1 - eta * eta * (1 - cosI * cosI);
+        if (k < 0)
+            return null;
+        double a = eta * cosI - Math.sqrt(k); // The refracted direction is eta v + a n on the arriving side
+        return new Vector(eta * v.getX() + a * sign * n.getX(), eta * v.getY() + a * sign * n.getY(),
+                eta * v.getZ() + a * sign * n.getZ()).normalize();
+    }
+
+    /**
+     * Finds the closest intersection point of the given ray with the scene geometries visible to its kind.
+     *
+     * @param ray  The ray to find the intersection with.
+     * @param rays The kind of the ray, {@link Intersectable#CAMERA_RAYS} or {@link Intersectable#REFLECTION_RAYS}.
+     * @return The closest intersection point as a GeoPoint, or null if no intersection is found.
+     */
+    protected GeoPoint findClosestIntersection(Ray ray, int rays) {
+        return scene.geometries.findClosestGeoIntersection(ray, Double.POSITIVE_INFINITY, rays);
+    }
+
+    /**
+     * Calculates the transparency factor for a point by checking intersections between the point and the light source.
+     *
+     * @param gp    the intersection point
+     * @param light the light source
+     * @param l     the light direction vector
+     * @param n     the normal vector at the intersection point
+     * @return the transparency factor as a Double3 value
+     */
+    protected Double3 transparency(GeoPoint gp, LightSource light, Vector l, Vector n) {
+        Vector lightDirection = new Vector(-l.getX(), -l.getY(), -l.getZ()); // from point to light source
+        Ray lightRay = new Ray(gp.point, lightDirection, n);
+        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(lightRay, Intersectable.SHADOW_RAYS);
+        if (intersections == null) return Double3.ONE;
+        Double3 ktr = Double3.ONE;
+
+        double lightDistance = light.getDistance(gp.point);
+        for (GeoPoint element : intersections) {
+            if (alignZero(element.t - lightDistance) <= 0) {
+                Material material = element.geometry.getMaterial(element);
+                ktr = ktr.product(material.kT);
+                if (ktr.equals(Double3.ZERO))
+                    break;
+            }
+        }
+        return ktr;
+    }
+}
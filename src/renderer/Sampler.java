@@ -0,0 +1,61 @@
+package renderer;
+
+/**
+ * A generator of well-distributed sample points in the unit square, and mappings of such points
+ * to the unit disk and to the hemisphere. The samples are written directly into primitive arrays,
+ * as consecutive (x, y) pairs, so that generating a beam of rays does not allocate a point per sample.
+ * The samplers are randomized per call, so they may be shared by several threads.
+ */
+public interface Sampler {
+    /**
+     * Generates sample points in the unit square [0,1)^2.
+     *
+     * @param points the array to receive the points, 2 coordinates (x, y) per point
+     * @param count  the number of points
+     */
+    void sample(double[] points, int count);
+
+    /**
+     * Maps points of the unit square to the unit disk in place, by the concentric mapping
+     * of Shirley and Chiu, which keeps the relative areas and the stratification of the points.
+     *
+     * @param points the points, 2 coordinates (x, y) per point
+     * @param count  the number of points
+     */
+    static void squareToDisk(double[] points, int count) {
+        for (int i = 0; i < 2 * count; i += 2) {
+            double a = 2 * points[i] - 1, b = 2 * points[i + 1] - 1;
+            double r, phi;
+            if (a == 0 && b == 0) {
+                r = 0;
+                phi = 0;
+            } else if (Math.abs(a) > Math.abs(b)) {
+                r = a;
+                phi = Math.PI / 4 * (b / a);
+            } else {
+                r = b;
+                phi = Math.PI / 2 - Math.PI / 4 * (a / b);
+            }
+            points[i] = r * Math.cos(phi);
+            points[i + 1] = r * Math.sin(phi);
+        }
+    }
+
+    /**
+     * Maps points of the unit square to directions of the hemisphere around the z axis, with a cosine-weighted
+     * density, by lifting their concentric mapping on the unit disk to the hemisphere (Malley's method).
+     *
+     * @param points     the points, 2 coordinates (x, y) per point; they are mapped to the unit disk in place
+     * @param directions the array to receive the unit directions, 3 coordinates (x, y, z) per direction
+     * @param count      the number of points
+     */
+    static void squareToHemisphere(double[] points, double[] directions, int count) {
+        squareToDisk(points, count);
+        for (int i = 0; i < count; ++i) {
+            double x = points[2 * i], y = points[2 * i + 1];
+            directions[3 * i] = x;
+            directions[3 * i + 1] = y;
+            directions[3 * i + 2] = Math.sqrt(Math.max(0, 1 - x * x - y * y));
+        }
+    }
+}
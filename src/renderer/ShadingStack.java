@@ -0,0 +1,96 @@
+package renderer;
+
+import geometries.Intersectable.GeoPoint;
+import primitives.Double3;
+import primitives.MutableColor;
+import primitives.Ray;
+
+import java.util.Arrays;
+
+/**
+ * An array-backed stack of pending shading frames, used by {@link SimpleRayTracer} to trace reflections
+ * and refractions iteratively instead of recursively. Each frame holds a hit to shade with its ray,
+ * level and accumulated attenuation, the partial colors computed so far and the next step to do.
+ * The partial colors are accumulators owned by the frames, so shading through the stack does not allocate them.
+ * One stack is kept per thread and reused for all the rays it traces; a trace starts at the current
+ * top of the stack, so traces may be nested.
+ */
+final class ShadingStack {
+    /** The initial number of frames, enough for the default recursion level */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The hits to shade */
+    GeoPoint[] hits = new GeoPoint[INITIAL_CAPACITY];
+    /** The rays intersecting the hits */
+    Ray[] rays = new Ray[INITIAL_CAPACITY];
+    /** The remaining recursion levels */
+    int[] levels = new int[INITIAL_CAPACITY];
+    /** The cumulative attenuation factors */
+    Double3[] ks = new Double3[INITIAL_CAPACITY];
+    /** The attenuation factors of the pending secondary rays */
+    Double3[] kxs = new Double3[INITIAL_CAPACITY];
+    /** The local colors of the hits, and then their final colors once the frames are done */
+    MutableColor[] locals = newColors(0, INITIAL_CAPACITY);
+    /** The sums of the global effects traced so far */
+    MutableColor[] globals = newColors(0, INITIAL_CAPACITY);
+    /** The next step of each frame */
+    int[] steps = new int[INITIAL_CAPACITY];
+    /** The number of frames in use */
+    int top = 0;
+    /** The maximal number of frames in use since it was last reset */
+    int deepest = 0;
+
+    /**
+     * Pushes a new frame for shading a hit, at its first step.
+     *
+     * @param gp    the hit to shade
+     * @param ray   the ray intersecting the hit
+     * @param level the remaining recursion level
+     * @param k     the cumulative attenuation factor
+     */
+    void push(GeoPoint gp, Ray ray, int level, Double3 k) {
+        if (top == hits.length) {
+            int capacity = 2 * top;
+            hits = Arrays.copyOf(hits, capacity);
+            rays = Arrays.copyOf(rays, capacity);
+            levels = Arrays.copyOf(levels, capacity);
+            ks = Arrays.copyOf(ks, capacity);
+            kxs = Arrays.copyOf(kxs, capacity);
+            locals = newColors(top, capacity, locals);
+            globals = newColors(top, capacity, globals);
+            steps = Arrays.copyOf(steps, capacity);
+        }
+        hits[top] = gp;
+        rays[top] = ray;
+        levels[top] = level;
+        ks[top] = k;
+        steps[top] = 0;
+        if (++top > deepest)
+            deepest = top;
+    }
+
+    /**
+     * Pops the top frame, clearing its references so that the stack does not keep hits alive.
+     * The colors of the frame stay valid until the next push.
+     */
+    void pop() {
+        --top;
+        hits[top] = null;
+        rays[top] = null;
+    }
+
+    /**
+     * Creates a larger array of accumulators, keeping the accumulators of the frames in use.
+     *
+     * @param used     the number of accumulators in use
+     * @param capacity the new capacity
+     * @param colors   the current accumulators, if any
+     * @return the new array of accumulators
+     */
+    private static MutableColor[] newColors(int used, int capacity, MutableColor... colors) {
+        MutableColor[] result = Arrays.copyOf(colors, capacity);
+        for (int i = used; i < capacity; ++i)
+            result[i] = new MutableColor();
+        return result;
+    }
+}
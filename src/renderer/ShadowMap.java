@@ -0,0 +1,356 @@
+package renderer;
+
+import geometries.Intersectable;
+import geometries.Intersectable.GeoPoint;
+import lighting.AreaLight;
+import lighting.DirectionalLight;
+import lighting.LightSource;
+import lighting.PointLight;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A shadow map: the distances from a light source to the nearest opaque geometries, traced once per scene
+ * on a grid of directions, so that the visibility of the light from a point is looked up in the grid
+ * instead of traced with a shadow ray. A point light (or a spotlight) is mapped on the six faces of a cube
+ * around it; a directional light is mapped orthographically over a sphere of the scene, and the points beyond
+ * the sphere are not covered. Transparent geometries are ignored, as they barely dim point lights anyway.
+ * <p>
+ * The visibility is filtered (percentage-closer filtering): the distance of the point is compared with the
+ * four texels around it, and the results are interpolated. Against self-shadowing, the point is moved off
+ * its surface along the normal, and allowed a depth bias, both of about a texel. The shadows are thus
+ * approximate: their edges are blurred over a texel, and small gaps between geometries may close.
+ * The maps are immutable once built, so many threads may look them up.
+ */
+abstract class ShadowMap {
+    /** The offset of a point along its normal before its lookup, in texels */
+    private static final double NORMAL_OFFSET_TEXELS = 1.5;
+    /** The depth bias, in texels */
+    private static final double BIAS_TEXELS = 1;
+    /** The minimal depth bias, as the offset of the shadow rays */
+    private static final double MIN_BIAS = 0.1;
+
+    /** The number of texels along each side of the map (of each face of a cube map) */
+    final int resolution;
+
+    /**
+     * Constructs a shadow map.
+     *
+     * @param resolution the number of texels along each side of the map
+     */
+    ShadowMap(int resolution) {
+        this.resolution = resolution;
+    }
+
+    /**
+     * Builds the shadow map of a light source.
+     *
+     * @param light      the light source
+     * @param geometries the geometries casting the shadows
+     * @param resolution the number of texels along each side of the map
+     * @param center     the center of the sphere covered by the maps of directional lights
+     * @param radius     the radius of the sphere covered by the maps of directional lights
+     * @param parallel   whether to trace the rows of the map in parallel
+     * @return the shadow map, or null if the light source is not mapped (area lights and unknown lights)
+     */
+    static ShadowMap of(LightSource light, Intersectable geometries, int resolution, Point center, double radius,
+                        boolean parallel) {
+        if (light instanceof AreaLight)
+            return null;
+        if (light instanceof PointLight point)
+            return new Cube(point.getPosition(), geometries, resolution, parallel);
+        if (light instanceof DirectionalLight)
+            return new Ortho(light.getL(center), geometries, resolution, center, radius, parallel);
+        return null;
+    }
+
+    /**
+     * Returns the visibility of the light source from a point of a surface. The point is first moved
+     * off the surface along its normal, by a distance proportional to the size of the texels at the point,
+     * so that surfaces at grazing angles to the light do not shadow themselves.
+     *
+     * @param p the point
+     * @param n the normal of the surface at the point, of any orientation
+     * @return the filtered visibility, from 0 (in shadow) to 1 (lit), or NaN if the point is not covered by the map
+     */
+    double visibility(Point p, Vector n) {
+        double x = p.getX(), y = p.getY(), z = p.getZ();
+        double offset = NORMAL_OFFSET_TEXELS * texelSize(x, y, z);
+        if (towardsLight(x, y, z, n) < 0)
+            offset = -offset;
+        return visibility(x + n.getX() * offset, y + n.getY() * offset, z + n.getZ() * offset);
+    }
+
+    /**
+     * Returns the visibility of the light source from a point.
+     *
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param z the z coordinate of the point
+     * @return the filtered visibility, from 0 (in shadow) to 1 (lit), or NaN if the point is not covered by the map
+     */
+    abstract double visibility(double x, double y, double z);
+
+    /**
+     * Returns the size of the texels of the map at a point.
+     *
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param z the z coordinate of the point
+     * @return the distance between the points of neighbouring texels around the point
+     */
+    abstract double texelSize(double x, double y, double z);
+
+    /**
+     * Returns the dot product of a vector with the direction from a point towards the light,
+     * whose sign tells whether the vector points towards the light.
+     *
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param z the z coordinate of the point
+     * @param n the vector
+     * @return the dot product, up to a positive factor
+     */
+    abstract double towardsLight(double x, double y, double z, Vector n);
+
+    /**
+     * Returns the distance to the nearest opaque intersection of a ray.
+     *
+     * @param geometries the geometries
+     * @param ray        the ray
+     * @return the distance, or infinity if the ray hits no opaque geometry
+     */
+    static float nearestOpaque(Intersectable geometries, Ray ray) {
+        List<GeoPoint> intersections = geometries.findGeoIntersections(ray, Intersectable.SHADOW_RAYS);
+        double nearest = Double.POSITIVE_INFINITY;
+        if (intersections != null)
+            for (GeoPoint gp : intersections)
+                if (gp.t < nearest && gp.geometry.getMaterial(gp).kT.equals(Double3.ZERO))
+                    nearest = gp.t;
+        return (float) nearest;
+    }
+
+    /**
+     * Returns the filtered visibility of a point from a map (bilinear percentage-closer filtering):
+     * the depth of the point, less the bias, is compared with the depths of the four texels around it,
+     * and the visibility is the bilinear interpolation of the results of the comparisons.
+     *
+     * @param depths the depths of the texels of the map (or of the face), row by row
+     * @param u      the horizontal coordinate of the point in the map, in [-1,1]
+     * @param v      the vertical coordinate of the point in the map, in [-1,1]
+     * @param depth  the depth of the point
+     * @param bias   the depth bias
+     * @return the visibility
+     */
+    double filter(float[] depths, double u, double v, double depth, double bias) {
+        double s = (u + 1) / 2 * resolution - 0.5, t = (v + 1) / 2 * resolution - 0.5;
+        int i = (int) Math.floor(s), j = (int) Math.floor(t);
+        double fs = s - i, ft = t - j;
+        double reached = depth - bias;
+        double top = (1 - fs) * lit(depths, i, j, reached) + fs * lit(depths, i + 1, j, reached);
+        double bottom = (1 - fs) * lit(depths, i, j + 1, reached) + fs * lit(depths, i + 1, j + 1, reached);
+        return (1 - ft) * top + ft * bottom;
+    }
+
+    /**
+     * Tells whether a texel, clamped to the map, does not hide a depth.
+     *
+     * @param depths the depths of the texels of the map
+     * @param i      the column of the texel
+     * @param j      the row of the texel
+     * @param depth  the depth
+     * @return 1 if the depth of the texel reaches the depth, 0 otherwise
+     */
+    private int lit(float[] depths, int i, int j, double depth) {
+        i = Math.min(resolution - 1, Math.max(0, i));
+        j = Math.min(resolution - 1, Math.max(0, j));
+        return depths[j * resolution + i] >= depth ? 1 : 0;
+    }
+
+    /**
+     * Returns the coordinate of the center of a texel.
+     *
+     * @param i the index of the texel
+     * @return the coordinate, in (-1,1)
+     */
+    double coordinate(int i) {
+        return (i + 0.5) / resolution * 2 - 1;
+    }
+
+    /**
+     * Returns the depth bias at a distance from a light source, in the units of the distances:
+     * a few texels of the given size.
+     *
+     * @param texelSize the size of a texel at the point
+     * @return the bias
+     */
+    static double bias(double texelSize) {
+        return MIN_BIAS + BIAS_TEXELS * texelSize;
+    }
+
+    /**
+     * A cube map around a point light: the face of a direction is its major axis and sign, and the coordinates
+     * of the direction in the face are its two other components divided by the major one.
+     */
+    private static final class Cube extends ShadowMap {
+        /** The position of the light */
+        private final double px, py, pz;
+        /** The distances to the nearest opaque geometries, per face, row by row */
+        private final float[][] faces = new float[6][];
+
+        /**
+         * Traces the cube map of a point light.
+         *
+         * @param position   the position of the light
+         * @param geometries the geometries casting the shadows
+         * @param resolution the number of texels along each side of each face
+         * @param parallel   whether to trace the rows in parallel
+         */
+        Cube(Point position, Intersectable geometries, int resolution, boolean parallel) {
+            super(resolution);
+            px = position.getX();
+            py = position.getY();
+            pz = position.getZ();
+            for (int f = 0; f < 6; ++f)
+                faces[f] = new float[resolution * resolution];
+            IntStream rows = IntStream.range(0, 6 * resolution);
+            (parallel ? rows.parallel() : rows).forEach(row -> {
+                int f = row / resolution, j = row % resolution, axis = f / 2;
+                double[] d = new double[3];
+                for (int i = 0; i < resolution; ++i) {
+                    d[axis] = f % 2 == 0 ? 1 : -1;
+                    d[(axis + 1) % 3] = coordinate(i);
+                    d[(axis + 2) % 3] = coordinate(j);
+                    faces[f][j * resolution + i] =
+                            nearestOpaque(geometries, new Ray(position, new Vector(d[0], d[1], d[2])));
+                }
+            });
+        }
+
+        @Override
+        double visibility(double x, double y, double z) {
+            double[] w = { x - px, y - py, z - pz };
+            int axis = Math.abs(w[0]) >= Math.abs(w[1])
+                    ? (Math.abs(w[0]) >= Math.abs(w[2]) ? 0 : 2)
+                    : (Math.abs(w[1]) >= Math.abs(w[2]) ? 1 : 2);
+            double major = Math.abs(w[axis]);
+            if (major == 0)
+                return 1;
+            int face = 2 * axis + (w[axis] < 0 ? 1 : 0);
+            double depth = Math.sqrt(w[0] * w[0] + w[1] * w[1] + w[2] * w[2]);
+            return filter(faces[face], w[(axis + 1) % 3] / major, w[(axis + 2) % 3] / major, depth,
+                    bias(texelSize(x, y, z)));
+        }
+
+        @Override
+        double texelSize(double x, double y, double z) {
+            // A face spans 90 degrees, so its texels are about 2 * distance / resolution wide at the point
+            double dx = x - px, dy = y - py, dz = z - pz;
+            return 2 * Math.sqrt(dx * dx + dy * dy + dz * dz) / resolution;
+        }
+
+        @Override
+        double towardsLight(double x, double y, double z, Vector n) {
+            return (px - x) * n.getX() + (py - y) * n.getY() + (pz - z) * n.getZ();
+        }
+    }
+
+    /**
+     * An orthographic map of a directional light over a sphere of the scene. The rays of the texels are traced
+     * from the far side of the sphere towards the light, so that geometries beyond the sphere towards the light
+     * cast their shadows on it too, and each texel keeps the depth, along the light direction, of the opaque
+     * intersection nearest to the light.
+     */
+    private static final class Ortho extends ShadowMap {
+        /** The center of the covered sphere */
+        private final Point center;
+        /** The radius of the covered sphere */
+        private final double radius;
+        /** The direction of the light and the two axes of the map */
+        private final Vector direction, axisU, axisV;
+        /** The depths of the texels, row by row, from the center along the light direction */
+        private final float[] depths;
+
+        /**
+         * Traces the orthographic map of a directional light.
+         *
+         * @param direction  the direction of the light
+         * @param geometries the geometries casting the shadows
+         * @param resolution the number of texels along each side of the map
+         * @param center     the center of the covered sphere
+         * @param radius     the radius of the covered sphere
+         * @param parallel   whether to trace the rows in parallel
+         */
+        Ortho(Vector direction, Intersectable geometries, int resolution, Point center, double radius,
+              boolean parallel) {
+            super(resolution);
+            this.center = center;
+            this.radius = radius;
+            this.direction = direction;
+            Vector other = Math.abs(direction.getX()) < 0.9 ? new Vector(1, 0, 0) : new Vector(0, 1, 0);
+            axisU = direction.crossProduct(other).normalize();
+            axisV = direction.crossProduct(axisU);
+            depths = new float[resolution * resolution];
+            Vector back = direction.scale(-1);
+            Point far = center.add(direction.scale(radius));
+            IntStream rows = IntStream.range(0, resolution);
+            (parallel ? rows.parallel() : rows).forEach(j -> {
+                double v = coordinate(j) * radius;
+                for (int i = 0; i < resolution; ++i) {
+                    double u = coordinate(i) * radius;
+                    Point head = new Point(far.getX() + u * axisU.getX() + v * axisV.getX(),
+                            far.getY() + u * axisU.getY() + v * axisV.getY(),
+                            far.getZ() + u * axisU.getZ() + v * axisV.getZ());
+                    depths[j * resolution + i] = farthestOpaque(geometries, new Ray(head, back), radius);
+                }
+            });
+        }
+
+        /**
+         * Returns the depth of the opaque intersection of a ray traced towards the light which is nearest
+         * to the light, i.e. the farthest one along the ray.
+         *
+         * @param geometries the geometries
+         * @param ray        the ray, from the far side of the sphere
+         * @param radius     the radius of the sphere
+         * @return the depth from the center along the light direction, or infinity if the ray hits no opaque geometry
+         */
+        private static float farthestOpaque(Intersectable geometries, Ray ray, double radius) {
+            List<GeoPoint> intersections = geometries.findGeoIntersections(ray, Intersectable.SHADOW_RAYS);
+            double farthest = Double.NEGATIVE_INFINITY;
+            if (intersections != null)
+                for (GeoPoint gp : intersections)
+                    if (gp.t > farthest && gp.geometry.getMaterial(gp).kT.equals(Double3.ZERO))
+                        farthest = gp.t;
+            return farthest == Double.NEGATIVE_INFINITY ? Float.POSITIVE_INFINITY : (float) (radius - farthest);
+        }
+
+        @Override
+        double visibility(double x, double y, double z) {
+            x -= center.getX();
+            y -= center.getY();
+            z -= center.getZ();
+            double u = (x * axisU.getX() + y * axisU.getY() + z * axisU.getZ()) / radius;
+            double v = (x * axisV.getX() + y * axisV.getY() + z * axisV.getZ()) / radius;
+            double depth = x * direction.getX() + y * direction.getY() + z * direction.getZ();
+            if (Math.abs(u) > 1 || Math.abs(v) > 1 || depth > radius)
+                return Double.NaN;
+            return filter(depths, u, v, depth, bias(texelSize(x, y, z)));
+        }
+
+        @Override
+        double texelSize(double x, double y, double z) {
+            return 2 * radius / resolution;
+        }
+
+        @Override
+        double towardsLight(double x, double y, double z, Vector n) {
+            return -direction.dotProduct(n);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package renderer;
+
+import lighting.LightSource;
+import primitives.Double3;
+import primitives.Vector;
+
+import java.util.Arrays;
+
+/**
+ * A growable queue of shadow rays of the {@link WavefrontRayTracer}, in structure-of-arrays form.
+ * Each shadow ray connects the hit of a path segment with a light source, and carries the diffuse
+ * and specular factors of the light at the hit, to be added if the light is not blocked.
+ */
+final class ShadowQueue {
+    /** The initial number of shadow rays */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** The index of the segment of each shadow ray in the current ray queue */
+    int[] segments = new int[INITIAL_CAPACITY];
+    /** The light sources */
+    LightSource[] lights = new LightSource[INITIAL_CAPACITY];
+    /** The directions from the light sources to the hits */
+    Vector[] ls = new Vector[INITIAL_CAPACITY];
+    /** The diffuse factors */
+    double[] diffuses = new double[INITIAL_CAPACITY];
+    /** The specular factors, 0 if there is no specular reflection towards the viewer */
+    double[] speculars = new double[INITIAL_CAPACITY];
+    /** The index of each shadow ray among the shadow rays of its segment, which keys its random stream */
+    int[] samples = new int[INITIAL_CAPACITY];
+    /** The transparency factors between the hits and the lights, set by the shadow stage */
+    Double3[] ktrs = new Double3[INITIAL_CAPACITY];
+    /** The number of shadow rays in use */
+    int size = 0;
+
+    /**
+     * Adds a shadow ray at the end of the queue.
+     *
+     * @param segment  the index of the segment in the current ray queue
+     * @param light    the light source
+     * @param l        the direction from the light source to the hit
+     * @param diffuse  the diffuse factor
+     * @param specular the specular factor
+     * @param sample   the index of the shadow ray among the shadow rays of its segment
+     */
+    void add(int segment, LightSource light, Vector l, double diffuse, double specular, int sample) {
+        if (size == segments.length)
+            grow(2 * size);
+        segments[size] = segment;
+        lights[size] = light;
+        ls[size] = l;
+        diffuses[size] = diffuse;
+        speculars[size] = specular;
+        samples[size] = sample;
+        ktrs[size] = null;
+        ++size;
+    }
+
+    /**
+     * Appends all the shadow rays of another queue.
+     *
+     * @param other the queue to append
+     */
+    void addAll(ShadowQueue other) {
+        if (size + other.size > segments.length)
+            grow(Math.max(2 * segments.length, size + other.size));
+        System.arraycopy(other.segments, 0, segments, size, other.size);
+        System.arraycopy(other.lights, 0, lights, size, other.size);
+        System.arraycopy(other.ls, 0, ls, size, other.size);
+        System.arraycopy(other.diffuses, 0, diffuses, size, other.size);
+        System.arraycopy(other.speculars, 0, speculars, size, other.size);
+        System.arraycopy(other.samples, 0, samples, size, other.size);
+        Arrays.fill(ktrs, size, size + other.size, null);
+        size += other.size;
+    }
+
+    /**
+     * Removes all the shadow rays, clearing their references.
+     */
+    void clear() {
+        Arrays.fill(lights, 0, size, null);
+        Arrays.fill(ls, 0, size, null);
+        Arrays.fill(ktrs, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Enlarges the arrays, keeping the shadow rays in use.
+     *
+     * @param capacity the new capacity
+     */
+    private void grow(int capacity) {
+        segments = Arrays.copyOf(segments, capacity);
+        lights = Arrays.copyOf(lights, capacity);
+        ls = Arrays.copyOf(ls, capacity);
+        diffuses = Arrays.copyOf(diffuses, capacity);
+        speculars = Arrays.copyOf(speculars, capacity);
+        samples = Arrays.copyOf(samples, capacity);
+        ktrs = Arrays.copyOf(ktrs, capacity);
+    }
+}
@@ -1,11 +1,21 @@
 package renderer;
 
+import lighting.AreaLight;
+import lighting.EnvironmentLight;
+import lighting.LightIndex;
 import lighting.LightSource;
+import lighting.LightTree;
 import primitives.*;
 import scene.Scene;
+import geometries.Geometry;
+import geometries.Intersectable;
 import geometries.Intersectable.GeoPoint;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjDoubleConsumer;
 
 import static primitives.Util.alignZero;
 
@@ -18,7 +28,82 @@ public class SimpleRayTracer extends RayTracerBase {
     private static final int MAX_CALC_COLOR_LEVEL = 10;
     private static final double MIN_CALC_COLOR_K = 0.001;
     private static final Double3 INITIAL_K = Double3.ONE;
-    private static final boolean IS_ANTI_ALIASING = true;
+    /** The number of rays traced first in a glossy beam */
+    static final int GLOSSY_INITIAL_RAYS = 4;
+    /** The number of rays added at once to a glossy beam while it is too noisy */
+    private static final int GLOSSY_BATCH_RAYS = 4;
+    /** The maximal number of rays of a glossy beam at the primary hit */
+    static final int GLOSSY_MAX_RAYS = 32;
+    /** The standard error of the luminance of a glossy beam (in color units) below which no more rays are traced */
+    private static final double GLOSSY_MAX_ERROR = 2;
+    /** The default number of cells along each side of the sampling grid of an area light */
+    private static final int DEFAULT_SOFT_SHADOW_GRID = 4;
+    /** The default number of directions sampled from the environment light per hit */
+    private static final int DEFAULT_ENVIRONMENT_SAMPLES = 16;
+    /** The shading stack of each thread, reused for all its rays */
+    private static final ThreadLocal<ShadingStack> SHADING_STACK = ThreadLocal.withInitial(ShadingStack::new);
+    /** The direction of the environment samples of each thread, reused for all its hits */
+    private static final ThreadLocal<MutableVector> ENVIRONMENT_DIRECTION = ThreadLocal.withInitial(MutableVector::new);
+    /** The radiance of the environment samples of each thread, reused for all its hits */
+    private static final ThreadLocal<MutableColor> ENVIRONMENT_RADIANCE = ThreadLocal.withInitial(MutableColor::new);
+    /** The directions of the rays gathering indirect diffuse light of each thread, reused for all its gatherings */
+    private static final ThreadLocal<HemisphereSamples> GATHER_DIRECTIONS =
+            ThreadLocal.withInitial(HemisphereSamples::new);
+    /** The directions of the ambient occlusion rays of each thread, reused for all its primary hits */
+    private static final ThreadLocal<HemisphereSamples> OCCLUSION_DIRECTIONS =
+            ThreadLocal.withInitial(HemisphereSamples::new);
+
+    /** The maximal number of hits shaded along a path, including the primary hit */
+    int maxLevel = MAX_CALC_COLOR_LEVEL;
+    /** The cumulative attenuation below which a path is terminated */
+    double minK = MIN_CALC_COLOR_K;
+    /** The cumulative attenuation below which a path is subject to Russian roulette, 0 for no roulette */
+    double rouletteK = 0;
+    /** The sampler of the glossy beams and of the rays gathering indirect diffuse light */
+    Sampler sampler = new SobolSampler();
+    /** The cache of the indirect diffuse light, null to ignore indirect diffuse light */
+    private IrradianceCache irradianceCache = null;
+    /** The number of lights chosen per hit through the light hierarchy, 0 to add all the lights */
+    private int lightSamples = 0;
+    /** The hierarchy of the lights of the scene, null to add all the lights */
+    private LightTree lightTree = null;
+    /** The index of the lights of the scene by their influence radius, null to add all the lights */
+    private LightIndex lightIndex = null;
+    /** The intensity below which a light source is negligible, 0 to add all the lights */
+    private double lightCutoff = 0;
+    /** The number of directions sampled from the environment light of the scene per hit */
+    private int environmentSamples = DEFAULT_ENVIRONMENT_SAMPLES;
+    /** The number of occlusion rays scaling the ambient light at a primary hit, 0 for no ambient occlusion */
+    private int occlusionRays = 0;
+    /** The distance within which the occlusion rays look for occluders */
+    private double occlusionDistance = 0;
+    /** The photon map of the caustics of the scene, null to ignore caustics */
+    private PhotonMap photonMap = null;
+    /** Whether the last opaque occluder of each light source is tested first by the shadow rays */
+    private boolean shadowCache = true;
+    /** The number of cells along each side of the sampling grid of an area light */
+    private int softShadowGrid = DEFAULT_SOFT_SHADOW_GRID;
+    /** The shadow maps of the light sources, or null to trace all the shadow rays */
+    private Map<LightSource, ShadowMap> shadowMaps = null;
+    /** The last opaque geometry found between a hit and each light source, per thread */
+    private final ThreadLocal<Map<LightSource, Geometry>> occluders = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    /** The number of paths shaded since the statistics were reset */
+    private final LongAdder paths = new LongAdder();
+    /** The sum of the depths of the paths shaded since the statistics were reset */
+    private final LongAdder pathDepths = new LongAdder();
+    /** The number of glossy beams traced since the statistics were reset */
+    private final LongAdder glossyBeams = new LongAdder();
+    /** The number of glossy beam rays traced since the statistics were reset */
+    private final LongAdder glossyRays = new LongAdder();
+    /** The number of shadow rays traced since the statistics were reset */
+    private final LongAdder shadowRays = new LongAdder();
+    /** The number of shadow rays blocked by the cached occluder of their light since the statistics were reset */
+    private final LongAdder shadowCacheHits = new LongAdder();
+    /** The number of points shaded by area lights since the statistics were reset */
+    private final LongAdder softShadows = new LongAdder();
+    /** The number of points found in a penumbra since the statistics were reset */
+    private final LongAdder penumbras = new LongAdder();
 
     /**
      * Constructs a SimpleRayTracer with the given scene.
@@ -29,6 +114,317 @@ public class SimpleRayTracer extends RayTracerBase {
         super(scene);
     }
 
+    /**
+     * Sets the maximal number of hits shaded along a path, including the primary hit.
+     * A level of 1 shades the primary hits only, without reflections and refractions.
+     *
+     * @param maxLevel The maximal level.
+     * @return The current instance of SimpleRayTracer for method chaining.
+     * @throws IllegalArgumentException if the level is not positive
+     */
+    public SimpleRayTracer setMaxLevel(int maxLevel) {
+        if (maxLevel < 1)
+            throw new IllegalArgumentException("The maximal level must be positive");
+        this.maxLevel = maxLevel;
+        return this;
+    }
+
+    /**
+     * Sets the cumulative attenuation below which a path is terminated, and below which a light source
+     * is not added. Terminating paths darkens the image slightly; a higher threshold is faster.
+     *
+     * @param minK The minimal attenuation.
+     * @return The current instance of SimpleRayTracer for method chaining.
+     * @throws IllegalArgumentException if the attenuation is negative
+     */
+    public SimpleRayTracer setMinK(double minK) {
+        if (minK < 0)
+            throw new IllegalArgumentException("The minimal attenuation must not be negative");
+        this.minK = minK;
+        return this;
+    }
+
+    /**
+     * Enables Russian roulette: a secondary ray whose cumulative attenuation k is below the given threshold
+     * is traced only with probability max(k) / threshold, and its contribution is divided by that probability,
+     * so that the expected color is unchanged. Combined with a minimal attenuation of 0 the termination
+     * is unbiased, at the cost of some noise.
+     *
+     * @param rouletteK The attenuation below which paths are subject to the roulette, 0 to disable it.
+     * @return The current instance of SimpleRayTracer for method chaining.
+     * @throws IllegalArgumentException if the threshold is not in the range [0,1]
+     */
+    public SimpleRayTracer setRussianRoulette(double rouletteK) {
+        if (rouletteK < 0 || rouletteK > 1)
+            throw new IllegalArgumentException("The roulette threshold must be between 0 and 1");
+        this.rouletteK = rouletteK;
+        return this;
+    }
+
+    /**
+     * Sets the sampler of the beams of glossy reflections and refractions. Since a glossy beam is traced
+     * adaptively, the sampler should spread every prefix of its points well, as the Sobol sampler
+     * (the default), the Halton sampler and the blue-noise sampler do.
+     *
+     * @param sampler The sampler.
+     * @return The current instance of SimpleRayTracer for method chaining.
+     */
+    public SimpleRayTracer setSampler(Sampler sampler) {
+        if (sampler == null)
+            throw new IllegalArgumentException("sampler can not be null");
+        this.sampler = sampler;
+        return this;
+    }
+
+    /**
+     * Sets the irradiance cache through which the indirect diffuse light is added to diffuse materials.
+     * The light arriving at a hit from the geometries around it (their emission and direct light, i.e. one bounce)
+     * and from the background is gathered by cosine-weighted rays at sparse points, and interpolated elsewhere.
+     * It is added at every hit shaded with reflections and refractions (above the last level), scaled by
+     * the diffuse coefficient. The cache may be shared by the threads of a rendering, and by several renderings
+     * of a static scene. The wavefront mode does not use it.
+     *
+     * @param irradianceCache The cache, or null to ignore indirect diffuse light (the default).
+     * @return The current instance of SimpleRayTracer for method chaining.
+     */
+    public SimpleRayTracer setIrradianceCache(IrradianceCache irradianceCache) {
+        this.irradianceCache = irradianceCache;
+        return this;
+    }
+
+    /**
+     * Enables many-light sampling: at each hit, instead of tracing a shadow ray to every light source,
+     * a few point lights and spotlights are chosen through a {@link LightTree} of the lights of the scene,
+     * with probabilities proportional to their estimated importance at the hit, and their contributions are
+     * divided by these probabilities. The expected color is unchanged, at the cost of some noise, and the cost
+     * of a hit is roughly logarithmic in the number of lights. Other light sources (such as directional lights)
+     * are still added at every hit. The hierarchy is built from the lights of the scene when this method is called.
+     *
+     * @param lightSamples The number of lights chosen per hit, or 0 to add all the lights (the default).
+     * @return The current instance of SimpleRayTracer for method chaining.
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public SimpleRayTracer setLightSamples(int lightSamples) {
+        if (lightSamples < 0)
+            throw new IllegalArgumentException("The number of light samples must not be negative");
+        this.lightSamples = lightSamples;
+        LightTree tree = lightSamples == 0 ? null : new LightTree(scene.lights);
+        // With no more lights than samples, adding all the lights is both cheaper and exact
+        lightTree = tree == null || tree.size() <= lightSamples ? null : tree;
+        return this;
+    }
+
+    /**
+     * Sets the intensity below which a light source is negligible: each attenuated light source (a point light or
+     * a spotlight with linear or quadratic attenuation) is given the radius beyond which its intensity is below
+     * the cutoff in every component, and a hit considers only the lights whose radius reaches it, through
+     * a {@link LightIndex} of the lights of the scene. The lights beyond their radius are skipped with their shadow
+     * rays, which darkens the image by less than the cutoff per skipped light; so are the lights reaching a hit
+     * whose intensity there is below the cutoff (see {@link LightSource#canContribute(Point, Vector, double)}).
+     * The index is built from the lights
+     * of the scene when this method is called. It is not used with many-light sampling, which rarely chooses
+     * negligible lights anyway.
+     *
+     * @param cutoff The cutoff, in color units (e.g. 0.5 for half a level of an 8-bit component),
+     *               or 0 to add all the lights (the default).
+     * @return The current instance of SimpleRayTracer for method chaining.
+     * @throws IllegalArgumentException if the cutoff is negative
+     */
+    public SimpleRayTracer setLightCutoff(double cutoff) {
+        if (cutoff < 0)
+            throw new IllegalArgumentException("The light cutoff must not be negative");
+        lightCutoff = cutoff;
+        lightIndex = cutoff == 0 ? null : new LightIndex(scene.lights, cutoff);
+        return this;
+    }
+
+    /**
+     * Sets the number of directions sampled per hit from the environment light of the scene, if it has one.
+     * The directions are importance-sampled from the environment, so most of them fall on its bright regions,
+     * and each one is shaded as a directional light with a shadow ray, weighted by the inverse of its probability.
+     * The light of the environment is normalized like the gathered indirect light: a uniform environment
+     * lights an unoccluded diffuse surface with its own radiance times the diffuse coefficient.
+     *
+     * @param environmentSamples The number of directions per hit, or 0 to light the scene by the lights only.
+     * @return The current instance of SimpleRayTracer for method chaining.
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public SimpleRayTracer setEnvironmentSamples(int environmentSamples) {
+        if (environmentSamples < 0)
+            throw new IllegalArgumentException("The number of environment samples must not be negative");
+        this.environmentSamples = environmentSamples;
+        return this;
+    }
+
+    /**
+     * Enables ambient occlusion: the ambient light added at a primary hit is scaled by the fraction of
+     * cosine-weighted rays over the hemisphere around the normal which meet no geometry within a distance,
+     * so creases, corners and the ground under objects receive less of it. The occlusion rays stop at the first
+     * geometry found within the distance, which keeps them much cheaper than the rays gathering indirect light:
+     * they neither look beyond the distance nor shade their hits. All the geometries casting shadows occlude,
+     * transparent ones included.
+     *
+     * @param rays     The number of occlusion rays per primary hit, or 0 to add the ambient light unoccluded (the default).
+     * @param distance The distance within which geometries occlude, in scene units.
+     * @return The current instance of SimpleRayTracer for method chaining.
+     * @throws IllegalArgumentException if the number of rays is negative, or the distance is not positive
+     *                                  with occlusion rays
+     */
+    public SimpleRayTracer setAmbientOcclusion(int rays, double distance) {
+        if (rays < 0)
+            throw new IllegalArgumentException("The number of occlusion rays must not be negative");
+        if (rays > 0 && distance <= 0)
+            throw new IllegalArgumentException("The occlusion distance must be positive");
+        occlusionRays = rays;
+        occlusionDistance = distance;
+        return this;
+    }
+
+    /**
+     * Sets the photon map through which caustics are added to diffuse materials: the light of the light sources
+     * focused by reflective and refractive geometries. The photons are emitted from the lights of the scene
+     * and stored when this method is called, in a pre-pass bounded by the configuration of the map, which reports
+     * its duration and memory. The caustics are added at every hit, like the direct light, scaled by the diffuse
+     * coefficient. Since the shadow rays pass straight through transparent geometries, their light is not
+     * removed from their shadows, to which the caustics are added.
+     *
+     * @param photonMap The photon map, or null to ignore caustics (the default).
+     * @return The current instance of SimpleRayTracer for method chaining.
+     */
+    public SimpleRayTracer setPhotonMap(PhotonMap photonMap) {
+        if (photonMap != null)
+            photonMap.build(scene.lights, scene.geometries);
+        this.photonMap = photonMap;
+        return this;
+    }
+
+    /**
+     * Enables or disables the shadow occluder cache: each thread keeps, for each light source, the last opaque
+     * geometry found blocking a shadow ray to it, and tests it first for the next shadow ray to that light,
+     * before querying all the geometries of the scene. Neighbouring hits are usually blocked by the same geometry,
+     * and a shadow ray blocked by an opaque geometry needs no other test, so the colors are unchanged.
+     *
+     * @param shadowCache Whether to cache the occluders (the default) or not.
+     * @return The current instance of SimpleRayTracer for method chaining.
+     */
+    public SimpleRayTracer setShadowCache(boolean shadowCache) {
+        this.shadowCache = shadowCache;
+        return this;
+    }
+
+    /**
+     * Returns the fraction of the shadow rays traced since the statistics were last reset which were found blocked
+     * by the cached occluder of their light, without querying the scene. The others missed the cache.
+     *
+     * @return The hit rate of the shadow occluder cache, or 0 if no shadow ray was traced.
+     */
+    public double getShadowCacheHitRate() {
+        long count = shadowRays.sum();
+        return count == 0 ? 0 : (double) shadowCacheHits.sum() / count;
+    }
+
+    /**
+     * Sets the sampling of the soft shadows of area lights: the surface of an area light is divided into
+     * a grid of cells, and a shadow ray is traced towards a random point of each cell. Only the four corner cells
+     * are traced at points whose shadow rays to them agree (fully lit or fully shadowed points), so that
+     * soft shadows cost little more than hard shadows outside the penumbrae.
+     *
+     * @param grid The number of cells along each side of the grid, at least 2 (the default is 4).
+     * @return The current instance of SimpleRayTracer for method chaining.
+     * @throws IllegalArgumentException if the number is lower than 2
+     */
+    public SimpleRayTracer setSoftShadowGrid(int grid) {
+        if (grid < 2)
+            throw new IllegalArgumentException("The soft shadow grid must have at least 2 cells per side");
+        softShadowGrid = grid;
+        return this;
+    }
+
+    /**
+     * Enables shadow maps, a fast approximate shadow mode for previews: the distances from each point light,
+     * spotlight and directional light to the nearest opaque geometries are traced once, on a cube map around
+     * a point light or an orthographic map of a directional light over a sphere of the scene, and the visibility
+     * of the light from a hit is looked up in its map with a 3x3 filter, instead of traced with a shadow ray.
+     * The edges of the shadows are softened over a few texels, transparent geometries cast no shadow,
+     * and the hits outside the map of a directional light still trace their shadow rays. Area lights keep
+     * their sampled soft shadows. The maps are built from the lights of the scene when this method is called,
+     * with 6 * resolution^2 rays per point light and resolution^2 rays per directional light;
+     * final renders should disable them to get the exact ray-traced shadows.
+     *
+     * @param resolution The number of texels along each side of a map, or 0 to trace all the shadow rays (the default).
+     * @param center     The center of the sphere of the scene covered by the maps of directional lights.
+     * @param radius     The radius of the sphere of the scene covered by the maps of directional lights.
+     * @return The current instance of SimpleRayTracer for method chaining.
+     * @throws IllegalArgumentException if the resolution is negative or the radius is not positive
+     */
+    public SimpleRayTracer setShadowMaps(int resolution, Point center, double radius) {
+        if (resolution < 0)
+            throw new IllegalArgumentException("The shadow map resolution must not be negative");
+        if (resolution == 0) {
+            shadowMaps = null;
+            return this;
+        }
+        if (radius <= 0)
+            throw new IllegalArgumentException("The radius covered by the shadow maps must be positive");
+        Map<LightSource, ShadowMap> maps = new IdentityHashMap<>();
+        for (LightSource light : scene.lights) {
+            ShadowMap map = ShadowMap.of(light, scene.geometries, resolution, center, radius, true);
+            if (map != null)
+                maps.put(light, map);
+        }
+        shadowMaps = maps;
+        return this;
+    }
+
+    /**
+     * Returns the fraction of the points shaded by area lights since the statistics were last reset which were
+     * found in a penumbra, and so traced with all the cells of the sampling grid.
+     *
+     * @return The penumbra rate, or 0 if no point was shaded by an area light.
+     */
+    public double getPenumbraRate() {
+        long count = softShadows.sum();
+        return count == 0 ? 0 : (double) penumbras.sum() / count;
+    }
+
+    /**
+     * Returns the average depth of the paths shaded since the statistics were last reset,
+     * i.e. the average number of hits along the deepest chain of reflections and refractions of a primary hit.
+     *
+     * @return The average path depth, or 0 if no path was shaded.
+     */
+    public double getAveragePathDepth() {
+        long count = paths.sum();
+        return count == 0 ? 0 : (double) pathDepths.sum() / count;
+    }
+
+    /**
+     * Returns the average number of rays of the glossy beams traced since the statistics were last reset.
+     *
+     * @return The average beam size, or 0 if no glossy beam was traced.
+     */
+    public double getAverageGlossyRays() {
+        long count = glossyBeams.sum();
+        return count == 0 ? 0 : (double) glossyRays.sum() / count;
+    }
+
+    /**
+     * Resets the path statistics, to be called before each render to be reported.
+     *
+     * @return The current instance of SimpleRayTracer for method chaining.
+     */
+    public SimpleRayTracer resetStatistics() {
+        paths.reset();
+        pathDepths.reset();
+        glossyBeams.reset();
+        glossyRays.reset();
+        shadowRays.reset();
+        shadowCacheHits.reset();
+        softShadows.reset();
+        penumbras.reset();
+        return this;
+    }
+
     /**
      * Traces a ray through the scene and determines the color at the intersection point.
      *
@@ -37,23 +433,40 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     @Override
     public Color traceRay(Ray ray) {
-        var intersections = scene.geometries.findGeoIntersections(ray);
-        return intersections == null ? scene.background : calcColor(ray.findClosestGeoPoint(intersections), ray);
+        GeoPoint gp = findClosestIntersection(ray, Intersectable.CAMERA_RAYS);
+        return gp == null ? background(ray) : calcColor(gp, ray);
     }
 
     /**
-     * Finds the closest intersection point of the given ray with the scene geometries.
+     * Traces a packet of primary rays. A coherent packet is intersected with the scene geometries as a whole,
+     * and then each lane is shaded from its closest hit. An incoherent packet falls back to tracing
+     * the rays one by one.
      *
-     * @param ray The ray to find the intersection with.
-     * @return The closest intersection point as a GeoPoint, or null if no intersection is found.
+     * @param packet The packet of rays to trace.
+     * @param colors The array to receive the colors, at least as long as the packet.
+     * @param frame  The key of the frame.
+     * @param pixels The pixel index of each lane in the frame.
      */
-    private GeoPoint findClosestIntersection(Ray ray) {
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(ray);
-        return ray.findClosestGeoPoint(intersections);
+    @Override
+    public void traceRays(RayPacket packet, Color[] colors, long frame, long[] pixels) {
+        if (!packet.isCoherent()) {
+            super.traceRays(packet, colors, frame, pixels);
+            return;
+        }
+        scene.geometries.intersectPacket(packet);
+        for (int lane = 0; lane < packet.size(); ++lane) {
+            PixelRandom.current().seed(frame, pixels[lane], 0);
+            GeoPoint gp = packet.getClosestHit(lane);
+            colors[lane] = gp == null ? background(packet.getRay(lane)) : calcColor(gp, packet.getRay(lane));
+        }
     }
 
     /**
      * Calculates the color at a given intersection point considering global effects like reflection and refraction.
+     * The secondary rays are traced iteratively on the shading stack of the current thread: each frame computes
+     * the local effects of its hit, then pushes a frame for the hit of its reflected ray and then for the hit of
+     * its refracted ray, and finally returns its color scaled by its attenuation factor to the frame below it.
+     * The colors are summed in the same order as by recursion, so the result is identical.
      *
      * @param intersection the intersection point
      * @param ray          the ray intersecting the point
@@ -62,8 +475,53 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return the color at the intersection point
      */
     private Color calcColor(GeoPoint intersection, Ray ray, int level, Double3 k) {
-        Color color = calcLocalEffects(intersection, ray, k);
-        return 1 == level ? color : color.add(calcGlobalEffects(intersection, ray.getDirection(), level, k));
+        ShadingStack stack = SHADING_STACK.get();
+        int base = stack.top;
+        if (base == 0)
+            stack.deepest = 0;
+        stack.push(intersection, ray, level, k);
+        MutableColor result = null; // The color of the last popped frame
+        while (stack.top > base) {
+            int f = stack.top - 1;
+            if (result != null) {
+                stack.globals[f].addScaled(result, stack.kxs[f]);
+                result = null;
+            }
+            GeoPoint gp = stack.hits[f];
+            switch (stack.steps[f]++) {
+                case 0 -> {
+                    calcLocalEffects(gp, stack.rays[f], stack.ks[f], stack.locals[f]);
+                    if (irradianceCache != null && stack.levels[f] > 1)
+                        calcIndirectDiffuse(gp, stack.rays[f], stack.ks[f], stack.locals[f]);
+                    if (stack.levels[f] == 1) {
+                        result = stack.locals[f];
+                        stack.pop();
+                    } else
+                        stack.globals[f].set(Color.BLACK);
+                }
+                case 1 -> {
+                    Double3 kR = gp.geometry.getMaterial(gp).kR;
+                    if (!kR.equals(Double3.ZERO))
+                        pushGlobalEffect(stack, f, constructReflectedRay(gp.normal, gp.point, stack.rays[f].getDirection()), kR);
+                }
+                case 2 -> {
+                    Material material = gp.geometry.getMaterial(gp);
+                    if (!material.kT.equals(Double3.ZERO))
+                        pushGlobalEffect(stack, f,
+                                constructRefractedRay(gp.normal, gp.point, stack.rays[f].getDirection(), material.ior),
+                                material.kT);
+                }
+                default -> {
+                    result = stack.locals[f].add(stack.globals[f]);
+                    stack.pop();
+                }
+            }
+        }
+        if (base == 0) {
+            paths.increment();
+            pathDepths.add(stack.deepest);
+        }
+        return result.toColor();
     }
 
     /**
@@ -74,216 +532,607 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return the color at the intersection point
      */
     private Color calcColor(GeoPoint gp, Ray ray) {
-        return calcColor(gp, ray, MAX_CALC_COLOR_LEVEL, INITIAL_K).add(scene.ambientLight.getIntensity());
+        return calcColor(gp, ray, maxLevel, INITIAL_K).add(calcAmbient(gp, ray));
     }
 
     /**
      * Constructs a reflected ray based on the normal at the intersection point.
+     * The reflected direction is computed on a scratch vector.
      *
      * @param n     the normal vector at the intersection point
      * @param point the intersection point
-     * @param inRay the incoming ray
+     * @param v     the direction of the incoming ray
      * @return the reflected ray
      */
-    private Ray constructReflectedRay(Vector n, Point point, Ray inRay) {
-        Vector sub = n.scale(inRay.getDirection().dotProduct(n)).scale(2);
-        Vector dir = inRay.getDirection().subtract(sub);
-        return new Ray(point, dir, n);
+    Ray constructReflectedRay(Vector n, Point point, Vector v) {
+        MutableVector dir = new MutableVector().set(v).addScaled(n, -2 * v.dotProduct(n));
+        return new Ray(point, dir.toVector(), n);
     }
 
     /**
-     * Constructs a refracted ray based on the normal at the intersection point.
+     * Constructs a refracted ray based on the normal at the intersection point, bent by the index of refraction
+     * of the geometry. On total internal reflection, the reflected ray is returned.
      *
      * @param n     the normal vector at the intersection point
      * @param point the intersection point
-     * @param inRay the incoming ray
+     * @param v     the direction of the incoming ray
+     * @param ior   the index of refraction of the geometry
      * @return the refracted ray
      */
-    private Ray constructRefractedRay(Vector n, Point point, Ray inRay) {
-        return new Ray(point, inRay.getDirection(), n);
+    Ray constructRefractedRay(Vector n, Point point, Vector v, double ior) {
+        Vector t = refract(v, n, ior);
+        return t == null ? constructReflectedRay(n, point, v) : new Ray(point, t, n);
     }
 
     /**
-     * Calculates the global effects of reflection and refraction on the color at a given point.
+     * Starts tracing a secondary ray of a frame of the shading stack. If the ray hits a geometry and its attenuation
+     * is significant and it survives the Russian roulette, a frame is pushed for shading the hit; otherwise
+     * the contribution of the ray (nothing or the background) is added to the global effects of the frame at once.
+     * For a rough material, the glossy effect of a beam around the ray is traced by nested traces
+     * on the stack, and added at once as well.
+     *
+     * @param stack the shading stack
+     * @param f     the index of the frame tracing the ray
+     * @param ray   the secondary ray
+     * @param kx    the attenuation factor of the material for the ray
+     */
+    private void pushGlobalEffect(ShadingStack stack, int f, Ray ray, Double3 kx) {
+        Double3 kkx = stack.ks[f].product(kx);
+        if (kkx.lowerThan(minK))
+            return;
+        if (kkx.lowerThan(rouletteK)) {
+            double survival = kkx.max() / rouletteK;
+            if (PixelRandom.current().nextDouble() >= survival)
+                return;
+            kx = kx.scale(1 / survival);
+            kkx = kkx.scale(1 / survival);
+        }
+        GeoPoint hit = stack.hits[f];
+        double roughness = hit.geometry.getMaterial(hit).roughness;
+        if (roughness > 0) {
+            stack.globals[f].addScaled(calcGlossyEffect(hit.normal, ray, roughness, stack.levels[f], kkx), kx, 1);
+            return;
+        }
+        GeoPoint gp = findClosestIntersection(ray, Intersectable.REFLECTION_RAYS);
+        if (gp == null) {
+            stack.globals[f].addScaled(background(ray), kx, 1);
+            return;
+        }
+        stack.kxs[f] = kx;
+        stack.push(gp, ray, stack.levels[f] - 1, kkx);
+    }
+
+    /**
+     * Calculates the local effects of light on the color at a given intersection point.
+     * The contributions of all the light sources are summed in a color accumulator.
      *
      * @param gp    the intersection point
-     * @param v     the direction vector
-     * @param level the current recursion level
+     * @param ray   the ray intersecting the point
      * @param k     the cumulative attenuation factor
-     * @return the color at the intersection point considering global effects
-     */
-    private Color calcGlobalEffects(GeoPoint gp, Vector v, int level, Double3 k) {
-        Material material = gp.geometry.getMaterial();
-        Color color = Color.BLACK;
-        Vector normal = gp.geometry.getNormal(gp.point);
-
-        // Reflective effect
-        if (!material.kR.equals(Double3.ZERO)) {
-            Ray reflectedRay = constructReflectedRay(normal, gp.point, new Ray(gp.point, v));
-            Color reflectedColor = calcGlobalEffect(reflectedRay, level, k, material.kR);
-            color = color.add(reflectedColor);
-        }
+     * @param color the accumulator to receive the color at the intersection point considering local effects
+     */
+    private void calcLocalEffects(GeoPoint gp, Ray ray, Double3 k, MutableColor color) {
+        Color emission = gp.geometry.getEmission(gp); // Start with the emission color of the geometry
 
-        // Refractive effect
-        if (!material.kT.equals(Double3.ZERO)) {
-            Ray refractedRay = constructRefractedRay(normal, gp.point, new Ray(gp.point, v));
-            Color refractedColor = calcGlobalEffect(refractedRay, level, k, material.kT);
-            color = color.add(refractedColor);
-        }
+        Vector v = ray.getDirection(); // View direction vector
+        Vector n = gp.normal; // Normal vector at the intersection point, computed by the intersection routine
 
-        return color;
+        double nv = alignZero(n.dotProduct(v)); // Dot product between the normal and view direction vectors
+
+        color.set(emission);
+        if (nv == 0)
+            return;
+
+        Material material = gp.geometry.getMaterial(gp); // Material of the intersected geometry
+        MutableVector r = new MutableVector();
+        EnvironmentLight environment = scene.environment;
+        if (environment != null && environmentSamples > 0)
+            addEnvironment(environment, gp, v, nv, k, material, r, color);
+        forEachLight(gp, nv, PixelRandom.current(), (lightSource, weight) -> {
+            Vector l = lightSource.getL(gp.point); // Light direction vector at the intersection point
+            double nl = alignZero(n.dotProduct(l)); // Dot product between the normal and light direction vectors
+
+            if (nl * nv > 0 && canContribute(lightSource, gp.point, l)) {
+                Double3 ktr = transparency(gp, lightSource, l, n);
+                if (!ktr.product(k).lowerThan(minK)) {
+                    Color iL = calcLightIntensity(lightSource, gp.point, ktr); // Intensity of the light source at the intersection point
+
+                    // Add the contributions of diffuse and specular reflections
+                    color.addScaled(iL, material.kD, calcDiffusive(nl) * weight);
+                    double specular = calcSpecular(r, n, l, nl, v, material.nShininess);
+                    if (specular > 0)
+                        color.addScaled(iL, material.kS, specular * weight);
+                }
+            }
+        });
+        if (photonMap != null)
+            color.add(calcCaustics(gp, nv, material));
     }
 
     /**
-     * Recursively calculates the global effects of reflection and refraction on the color.
+     * Calculates the light of the caustics at a hit, from the density of the photons of the photon map around it.
      *
-     * @param ray   the ray to trace
-     * @param level the current recursion level
-     * @param k     the cumulative attenuation factor
-     * @param kx    the attenuation factor for the current material
-     * @return the color after considering global effects
+     * @param gp       the intersection point
+     * @param nv       the dot product between the normal and the direction of the ray intersecting the point
+     * @param material the material of the hit
+     * @return the light of the caustics, scaled by the diffuse coefficient
      */
-    private Color calcGlobalEffect(Ray ray, int level, Double3 k, Double3 kx) {
-        Double3 kkx = k.product(kx);
-        if (kkx.lowerThan(MIN_CALC_COLOR_K)) return Color.BLACK;
-        GeoPoint gp = findClosestIntersection(ray);
-        return (gp == null ? scene.background : calcColor(gp, ray, level - 1, kkx)).scale(kx);
+    Color calcCaustics(GeoPoint gp, double nv, Material material) {
+        if (photonMap == null || nv == 0 || material.kD.equals(Double3.ZERO))
+            return Color.BLACK;
+        return photonMap.irradiance(gp.point, nv < 0 ? gp.normal : gp.normal.scale(-1)).scale(material.kD);
     }
 
-    /*
-     * Recursively calculates the global effects of reflection and refraction on the color.
+    /**
+     * Tells cheaply whether a light source may contribute at a point, before its shadow ray is traced:
+     * whether the point is in the cone of a spotlight, and the intensity reaches the light cutoff.
+     * The cutoff is not applied with many-light sampling, whose weights may raise low intensities.
      *
-     * @param ray   the ray to trace
-     * @param level the current recursion level
-     * @param k     the cumulative attenuation factor
-     * @param kx    the attenuation factor for the current material
-     * @return the color after considering global effects
+     * @param lightSource the light source
+     * @param point       the point
+     * @param l           the direction vector from the light source to the point
+     * @return false if the light source contributes nothing (or a negligible intensity) at the point
      */
-//    private Color calcGlobalEffect(Ray ray, int level, Double3 k, Double3 kx) {
-//        Double3 kkx = k.product(kx);
-//        if (kkx.lowerThan(MIN_CALC_COLOR_K)) return Color.BLACK;
-//        GeoPoint gp = findClosestIntersection(ray);
-//        if(gp == null)
-//            return scene.background;
-//        Vector n = gp.geometry.getNormal(gp.point);
-//        var rays = Blackboard.generateBeam(n, 1, 1, ray, IS_ANTI_ALIASING ? 10 : 1);
-//        return calcAverageColor(rays, level, kx, kkx);
-//    }
+    boolean canContribute(LightSource lightSource, Point point, Vector l) {
+        return lightSource.canContribute(point, l, lightTree == null ? lightCutoff : 0);
+    }
 
     /**
-     * Calculates the local effects of light on the color at a given intersection point.
+     * Passes the light sources to add at a hit to an action, with the weight of their contributions:
+     * all the light sources (or those reaching the hit, with a light cutoff) with a weight of 1, or, with many-light
+     * sampling, the unbounded lights with a weight of 1 and the lights chosen through the light hierarchy weighted
+     * by the inverse of their expected count.
+     * A light may be chosen more than once. Only the lights linked to the geometry of the hit are passed.
+     * The environment light of the scene is not passed (see {@link #addEnvironment}).
      *
-     * @param gp  the intersection point
-     * @param ray the ray intersecting the point
-     * @param k   the cumulative attenuation factor
-     * @return the color at the intersection point considering local effects
+     * @param gp     the intersection point
+     * @param nv     the dot product between the normal and the direction of the ray intersecting the point
+     * @param random the random stream choosing the lights
+     * @param action the action receiving each light and its weight
      */
-    private Color calcLocalEffects(GeoPoint gp, Ray ray, Double3 k) {
-        Color color = gp.geometry.getEmission(); // Start with the emission color of the geometry
+    void forEachLight(GeoPoint gp, double nv, PixelRandom random, ObjDoubleConsumer<LightSource> action) {
+        LightTree tree = lightTree;
+        Geometry geometry = gp.geometry;
+        if (tree == null) {
+            if (lightIndex != null)
+                lightIndex.forEachReaching(gp.point, lightSource -> {
+                    if (geometry.isLitBy(lightSource))
+                        action.accept(lightSource, 1);
+                });
+            else
+                for (LightSource lightSource : scene.lights)
+                    if (geometry.isLitBy(lightSource))
+                        action.accept(lightSource, 1);
+            return;
+        }
+        for (LightSource lightSource : tree.getUnbounded())
+            if (geometry.isLitBy(lightSource))
+                action.accept(lightSource, 1);
+        Vector side = nv < 0 ? gp.normal : gp.normal.scale(-1); // The normal on the side of the viewer
+        for (int i = 0; i < lightSamples; ++i) {
+            LightTree.Sample sample = tree.sample(gp.point, side, random.nextDouble());
+            if (sample == null)
+                return;
+            if (geometry.isLitBy(sample.light()))
+                action.accept(sample.light(), 1 / (lightSamples * sample.probability()));
+        }
+    }
 
-        Vector v = ray.getDirection(); // View direction vector
-        Vector n = gp.geometry.getNormal(gp.point); // Normal vector at the intersection point
+    /**
+     * Adds the light of directions sampled from the environment light at a hit, before the light sources.
+     * Each direction is shaded as light arriving from infinitely far away with the radiance of the environment,
+     * weighted by the inverse of its probability density and by the 1/pi of the diffuse reflection.
+     * The directions and their radiances are sampled into scratch objects of the thread; only the shadow rays
+     * are allocated, as for the light sources. The environment lights every geometry.
+     *
+     * @param environment the environment light
+     * @param gp          the intersection point
+     * @param v           the direction of the ray intersecting the point
+     * @param nv          the dot product between the normal and the direction of the ray
+     * @param k           the cumulative attenuation factor
+     * @param material    the material of the hit
+     * @param r           the vector to receive the reflected directions of the specular reflection
+     * @param color       the accumulator of the color at the intersection point
+     */
+    void addEnvironment(EnvironmentLight environment, GeoPoint gp, Vector v, double nv, Double3 k,
+                        Material material, MutableVector r, MutableColor color) {
+        PixelRandom random = PixelRandom.current();
+        MutableVector direction = ENVIRONMENT_DIRECTION.get(); // Towards the environment, against the light
+        MutableColor radiance = ENVIRONMENT_RADIANCE.get();
+        Vector n = gp.normal;
+        for (int i = 0; i < environmentSamples; ++i) {
+            double pdf = environment.sample(random.nextDouble(), random.nextDouble(), direction, radiance);
+            if (pdf <= 0)
+                continue;
+            double nl = -alignZero(direction.dotProduct(n)); // The light direction is against the sampled one
+            if (nl * nv <= 0)
+                continue;
+            Double3 ktr = transparency(null, new Ray(gp.point, direction.toVector(), n), Double.POSITIVE_INFINITY);
+            if (ktr.product(k).lowerThan(minK))
+                continue;
+            double weight = 1 / (environmentSamples * Math.PI * pdf);
+            radiance.scale(ktr);
+            color.addScaled(radiance, material.kD, calcDiffusive(nl) * weight);
+            r.set(-direction.x, -direction.y, -direction.z).addScaled(n, -(nl * 2));
+            double minusVR = -alignZero(r.dotProduct(v));
+            if (minusVR > 0)
+                color.addScaled(radiance, material.kS, Math.pow(minusVR, material.nShininess) * weight);
+        }
+    }
 
-        double nv = alignZero(n.dotProduct(v)); // Dot product between the normal and view direction vectors
+    /**
+     * Passes directions sampled from the environment light of the scene to an action, as directional lights
+     * weighted by the inverse of their probability density, and by the 1/pi of the diffuse reflection.
+     * This is for the tracers which shade the samples later, from queues of light sources; the samples are
+     * the same as those shaded at once by {@link #addEnvironment}.
+     *
+     * @param random the random stream choosing the directions
+     * @param action the action receiving each direction and its weight
+     */
+    void forEachEnvironmentSample(PixelRandom random, ObjDoubleConsumer<LightSource> action) {
+        EnvironmentLight environment = scene.environment;
+        if (environment == null || environmentSamples == 0)
+            return;
+        MutableVector direction = ENVIRONMENT_DIRECTION.get();
+        MutableColor radiance = ENVIRONMENT_RADIANCE.get();
+        for (int i = 0; i < environmentSamples; ++i) {
+            double pdf = environment.sample(random.nextDouble(), random.nextDouble(), direction, radiance);
+            if (pdf > 0)
+                action.accept(new EnvironmentSample(radiance.toColor(),
+                        new Vector(-direction.x, -direction.y, -direction.z)), 1 / (environmentSamples * Math.PI * pdf));
+        }
+    }
 
+    /**
+     * Adds the indirect diffuse light at a given intersection point, interpolated from the irradiance cache,
+     * or gathered and cached if no record of the cache is valid at the point.
+     *
+     * @param gp    the intersection point
+     * @param ray   the ray intersecting the point
+     * @param k     the cumulative attenuation factor
+     * @param color the accumulator of the color at the intersection point
+     */
+    private void calcIndirectDiffuse(GeoPoint gp, Ray ray, Double3 k, MutableColor color) {
+        Material material = gp.geometry.getMaterial(gp);
+        Double3 kkd = k.product(material.kD);
+        if (kkd.lowerThan(minK))
+            return;
+        double nv = alignZero(gp.normal.dotProduct(ray.getDirection()));
         if (nv == 0)
-            return color;
+            return;
+        Vector n = nv < 0 ? gp.normal : gp.normal.scale(-1); // The normal on the side of the viewer
+        Color irradiance = irradianceCache.lookup(gp.point, n);
+        if (irradiance == null)
+            irradiance = gatherIrradiance(gp.point, n, kkd);
+        color.addScaled(irradiance, material.kD, 1);
+    }
 
-        Material material = gp.geometry.getMaterial(); // Material of the intersected geometry
+    /**
+     * Calculates the ambient light added at a primary hit, scaled by the visibility of the hemisphere around
+     * the normal with ambient occlusion.
+     *
+     * @param gp  the primary hit
+     * @param ray the primary ray
+     * @return the ambient light at the hit
+     */
+    Color calcAmbient(GeoPoint gp, Ray ray) {
+        Color ambient = scene.ambientLight.getIntensity();
+        if (occlusionRays == 0 || ambient.difference(Color.BLACK) == 0)
+            return ambient;
+        double nv = alignZero(gp.normal.dotProduct(ray.getDirection()));
+        if (nv == 0)
+            return ambient;
+        Vector n = nv < 0 ? gp.normal : gp.normal.scale(-1); // The normal on the side of the viewer
+        int count = occlusionRays;
+        double[] directions = OCCLUSION_DIRECTIONS.get().sample(sampler, count, n);
+        int open = 0;
+        for (int i = 0; i < count; ++i) {
+            Ray occlusionRay = new Ray(gp.point,
+                    new Vector(directions[3 * i], directions[3 * i + 1], directions[3 * i + 2]), n);
+            if (!scene.geometries.isOccluded(occlusionRay, occlusionDistance, Intersectable.SHADOW_RAYS))
+                ++open;
+        }
+        return ambient.scale((double) open / count);
+    }
 
-        // Iterate over all light sources in the scene
-        for (LightSource lightSource : scene.lights) {
-            Vector l = lightSource.getL(gp.point); // Light direction vector at the intersection point
-            double nl = alignZero(n.dotProduct(l)); // Dot product between the normal and light direction vectors
+    /**
+     * Gathers the light arriving at a point from the hemisphere around its normal, with cosine-weighted rays,
+     * and inserts it in the irradiance cache, with the harmonic mean distance of the hits as the radius.
+     * The hits are shaded with their local effects only, so a gathering never starts another one.
+     *
+     * @param point the point
+     * @param n     the unit normal facing the hemisphere
+     * @param k     the cumulative attenuation factor of the gathered light
+     * @return the average light of the gather rays
+     */
+    private Color gatherIrradiance(Point point, Vector n, Double3 k) {
+        int count = irradianceCache.getGatherRays();
+        double[] directions = GATHER_DIRECTIONS.get().sample(sampler, count, n);
 
-            if (nl * nv > 0) {
-                Double3 ktr = transparency(gp, lightSource, l, n);
-                if (!ktr.product(k).lowerThan(MIN_CALC_COLOR_K)) {
-                    Color iL = lightSource.getIntensity(new Point(new Double3(gp.point.getX(), gp.point.getY(), gp.point.getZ()).product(ktr))); // Intensity of the light source at the intersection point
-
-                    // Calculate the contributions of diffuse and specular reflections
-                    color = color.add(
-                            calcDiffusive(material.kD, nl, iL),
-                            calcSpecular(material.kS, n, l, nl, v, iL, material.nShininess)
-                    );
-                }
+        MutableColor sum = new MutableColor();
+        double inverseDistances = 0;
+        for (int i = 0; i < count; ++i) {
+            Ray gatherRay = new Ray(point, new Vector(directions[3 * i], directions[3 * i + 1], directions[3 * i + 2]), n);
+            GeoPoint gp = findClosestIntersection(gatherRay, Intersectable.REFLECTION_RAYS);
+            if (gp == null)
+                sum.add(background(gatherRay, 2 * Math.PI / count));
+            else {
+                sum.add(calcColor(gp, gatherRay, 1, k));
+                inverseDistances += 1 / point.distance(gp.point);
+            }
+        }
+        Color irradiance = sum.toColor().reduce(count);
+        irradianceCache.insert(point, n, irradiance, count / inverseDistances);
+        return irradiance;
+    }
+
+    /**
+     * Calculates the transparency factor between a point and a light source. For an area light, it is the average
+     * transparency towards points of its surface (see {@link #softTransparency(GeoPoint, AreaLight, Vector)}).
+     * With shadow maps, it is the visibility of the light looked up in its map, if the map covers the point.
+     *
+     * @param gp    the intersection point
+     * @param light the light source
+     * @param l     the light direction vector
+     * @param n     the normal vector at the intersection point
+     * @return the transparency factor as a Double3 value
+     */
+    @Override
+    protected Double3 transparency(GeoPoint gp, LightSource light, Vector l, Vector n) {
+        if (light instanceof AreaLight area)
+            return softTransparency(gp, area, n);
+        ShadowMap map = shadowMaps == null ? null : shadowMaps.get(light);
+        if (map != null) {
+            double visibility = map.visibility(gp.point, n);
+            if (!Double.isNaN(visibility))
+                return new Double3(visibility);
+        }
+        if (!shadowCache)
+            return super.transparency(gp, light, l, n);
+        Ray lightRay = new Ray(gp.point, new Vector(-l.getX(), -l.getY(), -l.getZ()), n);
+        return transparency(light, lightRay, light.getDistance(gp.point));
+    }
+
+    /**
+     * Calculates the transparency factor along a shadow ray. With the shadow occluder cache, the last opaque
+     * geometry found blocking the light is tested first, and the scene is queried only if it does not block
+     * the shadow ray; the occluder found by the query, if any, replaces it.
+     *
+     * @param light         the light source, or null for a direction of the environment, which is not cached
+     * @param lightRay      the shadow ray, towards the light source
+     * @param lightDistance the distance of the light source (or of its point) along the ray
+     * @return the transparency factor as a Double3 value
+     */
+    private Double3 transparency(LightSource light, Ray lightRay, double lightDistance) {
+        shadowRays.increment();
+        Map<LightSource, Geometry> cache = shadowCache && light != null && !(light instanceof EnvironmentSample) ? occluders.get() : null;
+        if (cache != null) {
+            Geometry occluder = cache.get(light);
+            if (occluder != null
+                    && findOpaqueOccluder(occluder.findGeoIntersections(lightRay, Intersectable.SHADOW_RAYS), lightDistance) != null) {
+                shadowCacheHits.increment();
+                return Double3.ZERO;
             }
         }
-        return color;
+
+        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(lightRay, Intersectable.SHADOW_RAYS);
+        Geometry occluder = findOpaqueOccluder(intersections, lightDistance);
+        if (occluder != null) {
+            if (cache != null)
+                cache.put(light, occluder);
+            return Double3.ZERO;
+        }
+        if (cache != null)
+            cache.remove(light);
+        if (intersections == null)
+            return Double3.ONE;
+        Double3 ktr = Double3.ONE;
+        for (GeoPoint element : intersections)
+            if (alignZero(element.t - lightDistance) <= 0)
+                ktr = ktr.product(element.geometry.getMaterial(element).kT);
+        return ktr;
     }
 
     /**
-     * Calculates the specular reflection color at a given intersection point.
+     * Calculates the average transparency factor between a point and the surface of an area light.
+     * The unit square is divided into a grid of cells, each mapped to a region of the light, and a shadow ray
+     * is traced towards a random point of each cell. The cells at the corners of the grid are traced first:
+     * if their shadow rays agree, the point is taken as fully lit or fully shadowed (or shadowed by the same
+     * transparent geometries); otherwise it is in the penumbra, and all the cells are traced.
      *
-     * @param kS         The specular reflection coefficient of the material
+     * @param gp    the intersection point
+     * @param light the area light
+     * @param n     the normal vector at the intersection point
+     * @return the average transparency factor
+     */
+    private Double3 softTransparency(GeoPoint gp, AreaLight light, Vector n) {
+        int grid = softShadowGrid;
+        int cells = grid * grid;
+        PixelRandom random = PixelRandom.current();
+        softShadows.increment();
+        int[] probes = { 0, grid - 1, cells - grid, cells - 1 };
+        Double3 first = sampleTransparency(gp, light, n, 0, grid, random);
+        Double3 sum = first;
+        boolean agree = true;
+        for (int i = 1; i < probes.length; ++i) {
+            Double3 ktr = sampleTransparency(gp, light, n, probes[i], grid, random);
+            sum = sum.add(ktr);
+            agree &= ktr.equals(first);
+        }
+        if (agree)
+            return first;
+
+        penumbras.increment();
+        for (int cell = 1; cell < cells - 1; ++cell)
+            if (cell != grid - 1 && cell != cells - grid)
+                sum = sum.add(sampleTransparency(gp, light, n, cell, grid, random));
+        return sum.reduce(cells);
+    }
+
+    /**
+     * Traces a shadow ray from a point towards a random point of a cell of an area light.
+     *
+     * @param gp     the intersection point
+     * @param light  the area light
+     * @param n      the normal vector at the intersection point
+     * @param cell   the index of the cell, row by row
+     * @param grid   the number of cells along each side of the unit square
+     * @param random the random stream jittering the point in the cell
+     * @return the transparency factor towards the point of the light
+     */
+    private Double3 sampleTransparency(GeoPoint gp, AreaLight light, Vector n, int cell, int grid, PixelRandom random) {
+        double u = (cell % grid + random.nextDouble()) / grid;
+        double v = (cell / grid + random.nextDouble()) / grid;
+        Point target = light.getSamplePoint(gp.point, u, v);
+        double distance = gp.point.distance(target);
+        if (distance == 0)
+            return Double3.ONE;
+        return transparency(light, new Ray(gp.point, target.subtract(gp.point), n), distance);
+    }
+
+    /**
+     * Finds an opaque geometry among the intersections of a shadow ray before its light source.
+     *
+     * @param intersections the intersections of the shadow ray, or null
+     * @param lightDistance the distance of the light source
+     * @return the geometry of the first opaque intersection before the light, or null if there is none
+     */
+    private static Geometry findOpaqueOccluder(List<GeoPoint> intersections, double lightDistance) {
+        if (intersections != null)
+            for (GeoPoint element : intersections)
+                if (alignZero(element.t - lightDistance) <= 0
+                        && element.geometry.getMaterial(element).kT.equals(Double3.ZERO))
+                    return element.geometry;
+        return null;
+    }
+
+    /**
+     * Calculates the intensity of a light source at an intersection point, given the transparency
+     * of the geometries between them: the intensity at the point scaled by the transparency.
+     * For an area light the transparency is the visible fraction of its surface, and for a light with
+     * a shadow map it is the filtered visibility.
+     *
+     * @param lightSource the light source
+     * @param point       the intersection point
+     * @param ktr         the transparency factor between the point and the light source
+     * @return the intensity of the light source
+     */
+    Color calcLightIntensity(LightSource lightSource, Point point, Double3 ktr) {
+        return lightSource.getIntensity(point).scale(ktr);
+    }
+
+    /**
+     * Calculates the maximal number of rays of a glossy beam traced from a hit.
+     *
+     * @param level the level of the hit
+     * @return the maximal beam size
+     */
+    int maxGlossyRays(int level) {
+        return Math.max(GLOSSY_INITIAL_RAYS, GLOSSY_MAX_RAYS >> Math.min(30, maxLevel - level));
+    }
+
+    /**
+     * Calculates the specular reflection factor at a given intersection point,
+     * to be multiplied by the specular coefficient of the material and by the light intensity.
+     *
+     * @param r          A scratch vector for the reflection direction
      * @param n          The surface normal vector at the intersection point
      * @param l          The direction vector towards the light source
      * @param nl         The dot product between the surface normal and light direction vectors
      * @param v          The view direction vector
-     * @param iL         The intensity of the light source at the intersection point
      * @param nShininess The shininess factor of the material
-     * @return The color resulting from the specular reflection at the intersection point
+     * @return The specular factor, or 0 if there is no specular reflection towards the viewer
      */
-    private Color calcSpecular(Double3 kS, Vector n, Vector l, double nl, Vector v, Color iL, int nShininess) {
-        Vector r = l.subtract(n.scale(nl * 2)); // Calculate the reflection direction vector
-        double minusVR = -alignZero(v.dotProduct(r)); // Calculate the dot product between the view direction and reflection direction vectors
+    double calcSpecular(MutableVector r, Vector n, Vector l, double nl, Vector v, int nShininess) {
+        r.set(l).addScaled(n, -(nl * 2)); // Calculate the reflection direction vector
+        double minusVR = -alignZero(r.dotProduct(v)); // Calculate the dot product between the view direction and reflection direction vectors
 
         if (minusVR <= 0)
-            return Color.BLACK;
+            return 0;
 
-        Double3 shine = kS.scale(Math.pow(minusVR, nShininess)); // Calculate the specular reflection color based on the shininess factor
-        return iL.scale(shine); // Scale the color by the intensity of the light source
+        return Math.pow(minusVR, nShininess); // The specular factor based on the shininess factor
     }
 
     /**
-     * Calculates the diffuse reflection color at a given intersection point.
+     * Calculates the diffuse reflection factor at a given intersection point,
+     * to be multiplied by the diffuse coefficient of the material and by the light intensity.
      *
-     * @param kD The diffuse coefficient of the material
      * @param nl The dot product between the normal and light direction vectors
-     * @param iL The intensity of the light source
-     * @return The calculated diffuse reflection color at the given intersection point
+     * @return The diffuse factor
      */
-    private Color calcDiffusive(Double3 kD, double nl, Color iL) {
-        Double3 diffuseCoefficient = kD.scale(Math.abs(nl)); // Calculate the diffuse reflection coefficient
-        return iL.scale(diffuseCoefficient); // Scale the intensity of the light source by the diffuse coefficient
+    double calcDiffusive(double nl) {
+        return Math.abs(nl);
     }
 
     /**
-     * Calculates the transparency factor for a point by checking intersections between the point and the light source.
+     * Calculates the glossy effect of a rough reflection or refraction: the average color of a beam of rays
+     * around the ideal ray, through a disk whose radius at distance 1 is the roughness. The beam is traced
+     * adaptively: after the first {@link #GLOSSY_INITIAL_RAYS} rays, more rays are traced in batches only while
+     * the standard error of the average luminance is above {@link #GLOSSY_MAX_ERROR}. The maximal beam size is
+     * halved at each level, since deeper paths contribute less to the image and multiply the cost of the beams.
      *
-     * @param gp    the intersection point
-     * @param light the light source
-     * @param l     the light direction vector
-     * @param n     the normal vector at the intersection point
-     * @return the transparency factor as a Double3 value
+     * @param n         the normal at the hit
+     * @param ray       the ideal reflected or refracted ray
+     * @param roughness the roughness of the material
+     * @param level     the level of the hit
+     * @param kkx       the cumulative attenuation factor of the beam
+     * @return the average color of the beam, before its attenuation
      */
-    private Double3 transparency(GeoPoint gp, LightSource light, Vector l, Vector n) {
-        Vector lightDirection = l.scale(-1); // from point to light source
-        Ray lightRay = new Ray(gp.point, lightDirection, n);
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(lightRay);
-        if (intersections == null) return Double3.ONE;
-        Double3 ktr = Double3.ONE;
-
-        for (GeoPoint element : intersections) {
-            if (alignZero(element.point.distance(gp.point)) - light.getDistance(gp.point) <=0) {
-                Material material = element.geometry.getMaterial();
-                ktr = ktr.product(material.kT);
-                if (ktr.equals(Double3.ZERO))
+    private Color calcGlossyEffect(Vector n, Ray ray, double roughness, int level, Double3 kkx) {
+        List<Ray> beam = Blackboard.generateBeam(n, 1, roughness, ray, maxGlossyRays(level), sampler);
+        // The rays of the beam share the cone of the disk, so each one misses into its own part of the environment
+        double footprint = Math.PI * roughness * roughness / beam.size();
+        MutableColor sum = new MutableColor();
+        double sumY = 0, sumYY = 0;
+        int count = 0;
+        for (Ray beamRay : beam) {
+            GeoPoint gp = findClosestIntersection(beamRay, Intersectable.REFLECTION_RAYS);
+            Color color = gp == null ? background(beamRay, footprint) : calcColor(gp, beamRay, level - 1, kkx);
+            sum.add(color);
+            double y = color.luminance();
+            sumY += y;
+            sumYY += y * y;
+            ++count;
+            if (count >= GLOSSY_INITIAL_RAYS && count % GLOSSY_BATCH_RAYS == 0) {
+                double mean = sumY / count;
+                double variance = Math.max(0, sumYY / count - mean * mean);
+                if (variance <= GLOSSY_MAX_ERROR * GLOSSY_MAX_ERROR * count)
                     break;
             }
         }
-        return ktr;
+        glossyBeams.increment();
+        glossyRays.add(count);
+        return sum.toColor().reduce(count);
     }
 
-    Color calcAverageColor(List<Ray> rays,int level, Double3 kx, Double3 kkx){
-        Color color = Color.BLACK;
+    /**
+     * Scratch arrays of cosine-weighted directions of the hemisphere around a normal, grown as needed.
+     * The arrays are overwritten by each sampling, so a thread keeps one instance per kind of ray whose
+     * sampling may be nested in the tracing of another.
+     */
+    private static final class HemisphereSamples {
+        /** The sample points of the unit square, 2 coordinates per point */
+        private double[] points = new double[0];
+        /** The directions, 3 coordinates per direction */
+        private double[] directions = new double[0];
 
-        for(Ray ray : rays){
-            GeoPoint gp = findClosestIntersection(ray);
-            Color rayColor = (gp == null ? scene.background : calcColor(gp, ray, level - 1, kkx)).scale(kx);
-            color = color.add(rayColor);
+        /**
+         * Samples cosine-weighted directions of the hemisphere around a normal.
+         *
+         * @param sampler the sampler of the unit square
+         * @param count   the number of directions
+         * @param n       the unit normal
+         * @return the directions, 3 coordinates per direction, valid until the next sampling
+         */
+        double[] sample(Sampler sampler, int count, Vector n) {
+            if (directions.length < 3 * count) {
+                points = new double[2 * count];
+                directions = new double[3 * count];
+            }
+            sampler.sample(points, count);
+            Sampler.squareToHemisphere(points, directions, count);
+            n.toFrame(directions, count);
+            return directions;
         }
-
-        return color.reduce(rays.size());
     }
 }
@@ -0,0 +1,39 @@
+package renderer;
+
+import primitives.PixelRandom;
+
+/**
+ * A Sobol sampler: the points are the first two dimensions of the Sobol sequence, computed with integer
+ * bit operations. Every prefix of a power of two points is a (0,m,2)-net, i.e. has exactly one point in each
+ * of the elementary intervals of its size. Each call applies a random digital shift (XOR) to the coordinates,
+ * which keeps this property, so that different calls give different, equally good points.
+ */
+public class SobolSampler implements Sampler {
+    /** The direction numbers of the second dimension, for the primitive polynomial x + 1 */
+    private static final int[] DIRECTIONS = new int[32];
+
+    static {
+        DIRECTIONS[0] = 1 << 31;
+        for (int k = 1; k < 32; ++k)
+            DIRECTIONS[k] = DIRECTIONS[k - 1] ^ (DIRECTIONS[k - 1] >>> 1);
+    }
+
+    /** 2^-32, the value of the least significant bit of a coordinate */
+    private static final double SCALE = 1.0 / (1L << 32);
+
+    @Override
+    public void sample(double[] points, int count) {
+        PixelRandom random = PixelRandom.current();
+        int shiftX = random.nextInt(), shiftY = random.nextInt();
+        for (int i = 0; i < count; ++i) {
+            // The first dimension is the base 2 radical inverse, i.e. the reversed bits of the index
+            int x = Integer.reverse(i);
+            int y = 0;
+            for (int k = 0, n = i; n != 0; ++k, n >>>= 1)
+                if ((n & 1) != 0)
+                    y ^= DIRECTIONS[k];
+            points[2 * i] = Integer.toUnsignedLong(x ^ shiftX) * SCALE;
+            points[2 * i + 1] = Integer.toUnsignedLong(y ^ shiftY) * SCALE;
+        }
+    }
+}
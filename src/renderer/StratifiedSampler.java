@@ -0,0 +1,29 @@
+package renderer;
+
+import primitives.PixelRandom;
+
+/**
+ * A jittered (stratified) sampler: the unit square is divided into a grid of about as many cells as points,
+ * and each point is placed at random inside its own cell. The cells are visited in a random order,
+ * so that a prefix of the points is still spread over the square.
+ */
+public class StratifiedSampler implements Sampler {
+    @Override
+    public void sample(double[] points, int count) {
+        PixelRandom random = PixelRandom.current();
+        int columns = (int) Math.ceil(Math.sqrt(count));
+        int rows = (count + columns - 1) / columns;
+        int cells = columns * rows;
+        // A random permutation of the cells (Fisher-Yates), drawn only as far as the number of points
+        int[] order = new int[cells];
+        for (int i = 0; i < cells; ++i)
+            order[i] = i;
+        for (int i = 0; i < count; ++i) {
+            int j = i + random.nextInt(cells - i);
+            int cell = order[j];
+            order[j] = order[i];
+            points[2 * i] = (cell % columns + random.nextDouble()) / columns;
+            points[2 * i + 1] = (cell / columns + random.nextDouble()) / rows;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package renderer;
+
+import geometries.Intersectable;
+import geometries.Intersectable.GeoPoint;
+import lighting.LightSource;
+import primitives.*;
+import scene.Scene;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjDoubleConsumer;
+import java.util.stream.IntStream;
+
+import static primitives.Util.alignZero;
+
+/**
+ * WavefrontRayTracer shades like {@link SimpleRayTracer}, but traces a batch of rays breadth-first instead of
+ * one path after the other: all the rays of a bounce go through each stage of a pipeline before the next stage,
+ * so each stage runs one kind of work over many rays.
+ * <ol>
+ * <li>{@link Stage#GENERATE} loads the primary rays of the batch, generated by the camera, into the ray queue;</li>
+ * <li>{@link Stage#SORT} reorders the secondary rays by direction and origin (see {@link #setRaySorting});</li>
+ * <li>{@link Stage#EXTEND} finds the closest hit of every ray in the queue;</li>
+ * <li>{@link Stage#SHADE} computes the emission at the hits, queues a shadow ray per light source facing
+ * each hit and spawns the reflected and refracted rays of the next bounce;</li>
+ * <li>{@link Stage#SORT} reorders the shadow rays likewise;</li>
+ * <li>{@link Stage#SHADOW} finds the transparency between every hit and its light sources;</li>
+ * <li>{@link Stage#ACCUMULATE} adds the weighted contributions of the bounce to the pixels.</li>
+ * </ol>
+ * The state of the rays is held in structure-of-arrays queues, which are reused by the thread tracing the batch.
+ * The work of a stage is independent per ray, and is split into chunks which may run in parallel; the stages
+ * are timed separately. Glossy beams are traced in full, since a batch can not refine them adaptively,
+ * and the random numbers of every ray are seeded from the frame and the pixel of its primary ray, so the colors
+ * do not depend on the parallelism nor on the size of the batches.
+ */
+public class WavefrontRayTracer extends SimpleRayTracer {
+    /** The number of rays of a chunk of work of a stage */
+    private static final int CHUNK_SIZE = 512;
+    /** The queues of each thread tracing a batch, reused for all its batches */
+    private static final ThreadLocal<Wavefront> WAVEFRONT = ThreadLocal.withInitial(Wavefront::new);
+
+    /**
+     * The stages of the pipeline, in their order.
+     */
+    public enum Stage {
+        /** Loading the primary rays */
+        GENERATE,
+        /** Sorting the secondary rays and the shadow rays */
+        SORT,
+        /** Finding the closest hits */
+        EXTEND,
+        /** Shading the hits and spawning shadow and secondary rays */
+        SHADE,
+        /** Tracing the shadow rays */
+        SHADOW,
+        /** Adding the contributions to the pixels */
+        ACCUMULATE
+    }
+
+    /** Whether the chunks of a stage run in parallel */
+    private boolean parallel = false;
+    /** Whether the secondary rays and the shadow rays are sorted before they are intersected */
+    private boolean raySorting = false;
+    /** The time spent in each stage since the statistics were reset, in nanoseconds */
+    private final LongAdder[] stageNanos = newAdders();
+    /** The number of items processed by each stage since the statistics were reset */
+    private final LongAdder[] stageItems = newAdders();
+
+    /**
+     * The queues of a batch in flight.
+     */
+    private static final class Wavefront {
+        /** The rays of the current bounce */
+        RayQueue rays = new RayQueue();
+        /** The rays of the next bounce */
+        RayQueue next = new RayQueue();
+        /** The rays of the current bounce, once sorted */
+        RayQueue sorted = new RayQueue();
+        /** The shadow rays of the current bounce */
+        ShadowQueue shadows = new ShadowQueue();
+        /** The shadow rays of the current bounce, once sorted */
+        ShadowQueue sortedShadows = new ShadowQueue();
+        /** The sorter of the queues */
+        final RaySorter sorter = new RaySorter();
+        /** The rays spawned by each chunk of the shade stage */
+        RayQueue[] spawned = new RayQueue[0];
+        /** The shadow rays of each chunk of the shade stage */
+        ShadowQueue[] shadowed = new ShadowQueue[0];
+        /** The color accumulators of the pixels */
+        MutableColor[] pixels = new MutableColor[0];
+
+        /**
+         * Prepares the queues for a batch.
+         *
+         * @param count  the number of pixels of the batch
+         * @param chunks the maximal number of chunks of a stage
+         */
+        void prepare(int count, int chunks) {
+            if (pixels.length < count) {
+                pixels = new MutableColor[count];
+                for (int i = 0; i < count; ++i)
+                    pixels[i] = new MutableColor();
+            } else
+                for (int i = 0; i < count; ++i)
+                    pixels[i].set(Color.BLACK);
+            if (spawned.length < chunks) {
+                spawned = new RayQueue[chunks];
+                shadowed = new ShadowQueue[chunks];
+                for (int c = 0; c < chunks; ++c) {
+                    spawned[c] = new RayQueue();
+                    shadowed[c] = new ShadowQueue();
+                }
+            }
+        }
+    }
+
+    /**
+     * A chunk of work of a stage.
+     */
+    @FunctionalInterface
+    private interface ChunkTask {
+        /**
+         * Processes a chunk of items.
+         *
+         * @param chunk the index of the chunk
+         * @param from  the first item (included)
+         * @param to    the last item (excluded)
+         */
+        void run(int chunk, int from, int to);
+    }
+
+    /**
+     * Constructs a WavefrontRayTracer with the given scene.
+     *
+     * @param scene The scene to trace rays in.
+     */
+    public WavefrontRayTracer(Scene scene) {
+        super(scene);
+    }
+
+    /**
+     * Sets whether the chunks of each stage run in parallel, in the common fork-join pool.
+     * The colors are the same either way.
+     *
+     * @param parallel true to run the chunks of the stages in parallel
+     * @return The current instance of WavefrontRayTracer for method chaining.
+     */
+    public WavefrontRayTracer setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Sets whether the secondary rays and the shadow rays are sorted before they are intersected, by direction
+     * octant and then by the Morton code of their origin (see {@link RaySorter}). Secondary rays are spawned
+     * in pixel order but point anywhere; sorted, consecutive rays traverse the same parts of the scene.
+     * The primary rays are never sorted, since they are coherent in pixel order. The colors are the same
+     * either way, up to the rounding of the sums. Sorting pays off when the scene is much larger than the cache
+     * and the secondary rays diverge, e.g. many curved mirrors; glossy beams are already coherent in pixel order.
+     *
+     * @param raySorting true to sort the rays
+     * @return The current instance of WavefrontRayTracer for method chaining.
+     */
+    public WavefrontRayTracer setRaySorting(boolean raySorting) {
+        this.raySorting = raySorting;
+        return this;
+    }
+
+    /**
+     * Returns the time spent in a stage since the statistics were last reset, summed over all the batches.
+     *
+     * @param stage The stage.
+     * @return The time in nanoseconds.
+     */
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of items (rays, or shadow rays for {@link Stage#SHADOW}) processed by a stage
+     * since the statistics were last reset.
+     *
+     * @param stage The stage.
+     * @return The number of items.
+     */
+    public long getStageItems(Stage stage) {
+        return stageItems[stage.ordinal()].sum();
+    }
+
+    @Override
+    public WavefrontRayTracer resetStatistics() {
+        super.resetStatistics();
+        for (Stage stage : Stage.values()) {
+            stageNanos[stage.ordinal()].reset();
+            stageItems[stage.ordinal()].reset();
+        }
+        return this;
+    }
+
+    @Override
+    public Color traceRay(Ray ray) {
+        Color[] colors = new Color[1];
+        traceRays(new Ray[] { ray }, colors, 1);
+        return colors[0];
+    }
+
+    @Override
+    public void traceRays(RayPacket packet, Color[] colors, long frame, long[] pixels) {
+        Ray[] rays = new Ray[packet.size()];
+        for (int lane = 0; lane < rays.length; ++lane)
+            rays[lane] = packet.getRay(lane);
+        traceRays(rays, colors, rays.length, frame, pixels);
+    }
+
+    /**
+     * Traces a batch of rays through the stages of the pipeline, one bounce after the other,
+     * until no ray is left. The random streams of the segments of a primary ray are keyed by the frame
+     * and the pixel of the ray.
+     *
+     * @param rays   The rays to trace.
+     * @param colors The array to receive the colors, at least as long as the batch.
+     * @param count  The number of rays in the batch.
+     * @param frame  The key of the frame.
+     * @param pixels The pixel index of each ray in the frame.
+     */
+    @Override
+    public void traceRays(Ray[] rays, Color[] colors, int count, long frame, long[] pixels) {
+        Wavefront wavefront = WAVEFRONT.get();
+        wavefront.prepare(count, (count + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        long batchKey = frame;
+
+        RayQueue queue = wavefront.rays;
+        run(Stage.GENERATE, count, () -> {
+            for (int i = 0; i < count; ++i)
+                queue.add(rays[i], i, maxLevel, Double3.ONE, Double3.ONE, pixels[i]);
+        });
+
+        for (int bounce = 0; wavefront.rays.size > 0; ++bounce) {
+            if (raySorting && bounce > 0) {
+                RayQueue unsorted = wavefront.rays;
+                run(Stage.SORT, unsorted.size, () -> wavefront.sorter.sort(unsorted, wavefront.sorted));
+                unsorted.clear();
+                wavefront.rays = wavefront.sorted;
+                wavefront.sorted = unsorted;
+            }
+            RayQueue current = wavefront.rays;
+            int size = current.size;
+            int kind = bounce == 0 ? Intersectable.CAMERA_RAYS : Intersectable.REFLECTION_RAYS;
+            run(Stage.EXTEND, size, (chunk, from, to) -> {
+                for (int i = from; i < to; ++i)
+                    current.hits[i] = findClosestIntersection(current.rays[i], kind);
+            }, parallel);
+
+            prepareChunks(wavefront, size);
+            run(Stage.SHADE, size, (chunk, from, to) ->
+                    shade(current, from, to, wavefront.spawned[chunk], wavefront.shadowed[chunk], batchKey), parallel);
+            wavefront.shadows.clear();
+            wavefront.next.clear();
+            for (int c = 0; c < chunkCount(size); ++c) {
+                wavefront.shadows.addAll(wavefront.shadowed[c]);
+                wavefront.next.addAll(wavefront.spawned[c]);
+            }
+            if (raySorting) {
+                ShadowQueue unsorted = wavefront.shadows;
+                run(Stage.SORT, unsorted.size, () -> wavefront.sorter.sort(unsorted, current, wavefront.sortedShadows));
+                unsorted.clear();
+                wavefront.shadows = wavefront.sortedShadows;
+                wavefront.sortedShadows = unsorted;
+            }
+            ShadowQueue shadows = wavefront.shadows;
+
+            run(Stage.SHADOW, shadows.size, (chunk, from, to) -> {
+                for (int j = from; j < to; ++j) {
+                    int segment = shadows.segments[j];
+                    GeoPoint gp = current.hits[segment];
+                    // Negative sample indices keep the streams of the shadow rays apart from those of the segments
+                    PixelRandom.current().seed(batchKey, current.seeds[segment], -1 - shadows.samples[j]);
+                    shadows.ktrs[j] = transparency(gp, shadows.lights[j], shadows.ls[j], gp.normal);
+                }
+            }, parallel);
+
+            boolean primary = bounce == 0;
+            run(Stage.ACCUMULATE, size, () -> accumulate(current, shadows, wavefront.pixels, primary, batchKey));
+
+            current.clear();
+            wavefront.rays = wavefront.next;
+            wavefront.next = current;
+        }
+
+        for (int i = 0; i < count; ++i)
+            colors[i] = wavefront.pixels[i].toColor();
+    }
+
+    /**
+     * Clears the output queues of the chunks of the shade stage.
+     *
+     * @param wavefront the queues of the batch
+     * @param size      the number of rays of the bounce
+     */
+    private void prepareChunks(Wavefront wavefront, int size) {
+        int chunks = chunkCount(size);
+        if (wavefront.spawned.length < chunks)
+            wavefront.prepare(0, chunks);
+        for (int c = 0; c < chunks; ++c) {
+            wavefront.spawned[c].clear();
+            wavefront.shadowed[c].clear();
+        }
+    }
+
+    /**
+     * Shades a chunk of the rays of a bounce: sets the color emitted towards each ray (the background for a miss),
+     * queues a shadow ray for each light source facing its hit (or each light chosen for it, with many-light
+     * sampling), and spawns its secondary rays.
+     *
+     * @param rays     the rays of the bounce
+     * @param from     the first ray of the chunk (included)
+     * @param to       the last ray of the chunk (excluded)
+     * @param spawned  the queue to receive the secondary rays of the chunk
+     * @param shadows  the queue to receive the shadow rays of the chunk
+     * @param batchKey the key of the random streams of the batch
+     */
+    private void shade(RayQueue rays, int from, int to, RayQueue spawned, ShadowQueue shadows, long batchKey) {
+        MutableVector r = new MutableVector();
+        for (int i = from; i < to; ++i) {
+            GeoPoint gp = rays.hits[i];
+            if (gp == null) {
+                rays.colors[i] = background(rays.rays[i]);
+                continue;
+            }
+            rays.colors[i] = gp.geometry.getEmission(gp);
+            Vector v = rays.rays[i].getDirection();
+            Vector n = gp.normal;
+            double nv = alignZero(n.dotProduct(v));
+            Material material = gp.geometry.getMaterial(gp);
+            int level = rays.levels[i];
+            PixelRandom random = PixelRandom.current().seed(batchKey, rays.seeds[i], level);
+            int segment = i;
+            int[] sample = { 0 };
+            if (nv != 0) {
+                Color caustics = calcCaustics(gp, nv, material);
+                if (caustics != Color.BLACK)
+                    rays.colors[i] = rays.colors[i].add(caustics);
+                ObjDoubleConsumer<LightSource> queueShadow = (lightSource, weight) -> {
+                    Vector l = lightSource.getL(gp.point);
+                    double nl = alignZero(n.dotProduct(l));
+                    if (nl * nv > 0 && canContribute(lightSource, gp.point, l))
+                        shadows.add(segment, lightSource, l, calcDiffusive(nl) * weight,
+                                calcSpecular(r, n, l, nl, v, material.nShininess) * weight, sample[0]++);
+                };
+                forEachEnvironmentSample(random, queueShadow);
+                forEachLight(gp, nv, random, queueShadow);
+            }
+
+            if (level == 1)
+                continue;
+            if (!material.kR.equals(Double3.ZERO))
+                spawn(rays, i, constructReflectedRay(n, gp.point, v), material.kR, material.roughness, spawned, random);
+            if (!material.kT.equals(Double3.ZERO))
+                spawn(rays, i, constructRefractedRay(n, gp.point, v, material.ior), material.kT, material.roughness, spawned, random);
+        }
+    }
+
+    /**
+     * Spawns a secondary ray of a ray, or the beam of rays around it for a rough material, unless its attenuation
+     * is insignificant or it does not survive the Russian roulette. The rays of a beam share its contribution.
+     *
+     * @param rays      the rays of the bounce
+     * @param i         the index of the ray spawning the secondary ray
+     * @param ray       the secondary ray
+     * @param kx        the attenuation factor of the material for the ray
+     * @param roughness the roughness of the material
+     * @param spawned   the queue to receive the secondary rays
+     * @param random    the random stream of the spawning ray
+     */
+    private void spawn(RayQueue rays, int i, Ray ray, Double3 kx, double roughness, RayQueue spawned,
+                       PixelRandom random) {
+        Double3 kkx = rays.ks[i].product(kx);
+        if (kkx.lowerThan(minK))
+            return;
+        if (kkx.lowerThan(rouletteK)) {
+            double survival = kkx.max() / rouletteK;
+            if (random.nextDouble() >= survival)
+                return;
+            kx = kx.scale(1 / survival);
+            kkx = kkx.scale(1 / survival);
+        }
+        int pixel = rays.pixels[i];
+        int level = rays.levels[i] - 1;
+        Double3 weight = rays.weights[i].product(kx);
+        if (roughness <= 0) {
+            spawned.add(ray, pixel, level, kkx, weight, random.nextLong());
+            return;
+        }
+        List<Ray> beam = Blackboard.generateBeam(rays.hits[i].normal, 1, roughness, ray,
+                maxGlossyRays(rays.levels[i]), sampler);
+        weight = weight.reduce(beam.size());
+        for (Ray beamRay : beam)
+            spawned.add(beamRay, pixel, level, kkx, weight, random.nextLong());
+    }
+
+    /**
+     * Adds the contributions of the rays of a bounce and of their unblocked shadow rays to the pixels.
+     *
+     * @param rays     the rays of the bounce
+     * @param shadows  the shadow rays of the bounce
+     * @param pixels   the color accumulators of the pixels
+     * @param primary  whether the rays are the primary rays, whose hits receive the ambient light
+     * @param batchKey the key of the random streams of the batch
+     */
+    private void accumulate(RayQueue rays, ShadowQueue shadows, MutableColor[] pixels, boolean primary,
+                            long batchKey) {
+        for (int i = 0; i < rays.size; ++i) {
+            MutableColor pixel = pixels[rays.pixels[i]];
+            pixel.addScaled(rays.colors[i], rays.weights[i], 1);
+            if (primary && rays.hits[i] != null) {
+                // Level 0, which no shaded segment has, keys the stream of the ambient occlusion rays
+                PixelRandom.current().seed(batchKey, rays.seeds[i], 0);
+                pixel.add(calcAmbient(rays.hits[i], rays.rays[i]));
+            }
+        }
+        for (int j = 0; j < shadows.size; ++j) {
+            int i = shadows.segments[j];
+            Double3 ktr = shadows.ktrs[j];
+            if (ktr.product(rays.ks[i]).lowerThan(minK))
+                continue;
+            GeoPoint gp = rays.hits[i];
+            Material material = gp.geometry.getMaterial(gp);
+            Color iL = calcLightIntensity(shadows.lights[j], gp.point, ktr);
+            MutableColor pixel = pixels[rays.pixels[i]];
+            pixel.addScaled(iL, rays.weights[i].product(material.kD), shadows.diffuses[j]);
+            if (shadows.speculars[j] > 0)
+                pixel.addScaled(iL, rays.weights[i].product(material.kS), shadows.speculars[j]);
+        }
+    }
+
+    /**
+     * Runs a stage over a number of items, split into chunks, and records its time.
+     *
+     * @param stage    the stage
+     * @param count    the number of items
+     * @param task     the work of a chunk
+     * @param parallel whether the chunks may run in parallel
+     */
+    private void run(Stage stage, int count, ChunkTask task, boolean parallel) {
+        long start = System.nanoTime();
+        int chunks = chunkCount(count);
+        if (parallel && chunks > 1)
+            IntStream.range(0, chunks).parallel()
+                    .forEach(c -> task.run(c, c * CHUNK_SIZE, Math.min(count, (c + 1) * CHUNK_SIZE)));
+        else
+            for (int c = 0; c < chunks; ++c)
+                task.run(c, c * CHUNK_SIZE, Math.min(count, (c + 1) * CHUNK_SIZE));
+        stageNanos[stage.ordinal()].add(System.nanoTime() - start);
+        stageItems[stage.ordinal()].add(count);
+    }
+
+    /**
+     * Runs a stage which can not be split into chunks, and records its time.
+     *
+     * @param stage the stage
+     * @param count the number of items
+     * @param task  the work of the stage
+     */
+    private void run(Stage stage, int count, Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        stageNanos[stage.ordinal()].add(System.nanoTime() - start);
+        stageItems[stage.ordinal()].add(count);
+    }
+
+    /**
+     * Calculates the number of chunks of a number of items.
+     *
+     * @param count the number of items
+     * @return the number of chunks
+     */
+    private static int chunkCount(int count) {
+        return (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    /**
+     * Creates a counter per stage.
+     *
+     * @return the counters
+     */
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[Stage.values().length];
+        for (int s = 0; s < adders.length; ++s)
+            adders[s] = new LongAdder();
+        return adders;
+    }
+}
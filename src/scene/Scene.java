@@ -2,6 +2,7 @@ package scene;
 
 import geometries.Geometries;
 import lighting.AmbientLight;
+import lighting.EnvironmentLight;
 import lighting.LightSource;
 import primitives.Color;
 
@@ -11,6 +12,7 @@ import java.util.List;
 public class Scene {
     public final String name;
     public Color background = Color.BLACK;
+    public EnvironmentLight environment = null;
     public AmbientLight ambientLight = AmbientLight.NONE;
     public Geometries geometries = new Geometries();
     public List<LightSource> lights = new LinkedList<>();
@@ -24,6 +26,11 @@ public class Scene {
         return this;
     }
 
+    public Scene setEnvironment(EnvironmentLight environment) {
+        this.environment = environment;
+        return this;
+    }
+
     public Scene setAmbientLight(AmbientLight ambientLight) {
         this.ambientLight = ambientLight;
         return this;
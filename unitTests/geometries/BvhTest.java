@@ -0,0 +1,56 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the traversal order of the bounding volume hierarchy
+ */
+class BvhTest {
+    /** The number of unit boxes of the hierarchy, in a row along the x axis */
+    private static final int COUNT = 16;
+
+    /**
+     * Test method for {@link Bvh#traverse(double, double, double, double, double, double, double, Bvh.LeafVisitor)}.
+     */
+    @Test
+    void testTraverse() {
+        double[] bounds = new double[6 * COUNT];
+        for (int i = 0; i < COUNT; ++i) {
+            bounds[6 * i] = i;
+            bounds[6 * i + 3] = i + 1;
+            bounds[6 * i + 4] = bounds[6 * i + 5] = 1;
+        }
+        Bvh bvh = new Bvh(bounds, COUNT);
+        List<Integer> visited = new ArrayList<>();
+        Bvh.LeafVisitor record = (primitive, ox, oy, oz, dx, dy, dz, tMax) -> {
+            visited.add(primitive);
+            return tMax;
+        };
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A ray along the row visits the leaf of the nearest boxes first
+        bvh.traverse(-1, 0.5, 0.5, 1, 0, 0, Double.POSITIVE_INFINITY, record);
+        assertEquals(COUNT, visited.size(), "All the boxes should be visited");
+        assertTrue(visited.getFirst() < 4, "The near end of the row should be visited first");
+        // TC02: A ray in the opposite direction visits the other end first
+        visited.clear();
+        bvh.traverse(COUNT + 1, 0.5, 0.5, -1, 0, 0, Double.POSITIVE_INFINITY, record);
+        assertTrue(visited.getFirst() >= COUNT - 4, "The far end of the row should be visited first");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A visit returning a negative distance stops the traversal
+        visited.clear();
+        Bvh.LeafVisitor stop = (primitive, ox, oy, oz, dx, dy, dz, tMax) -> {
+            visited.add(primitive);
+            return -1;
+        };
+        double t = bvh.traverse(-1, 0.5, 0.5, 1, 0, 0, Double.POSITIVE_INFINITY, stop);
+        assertEquals(-1, t, "The traversal should return the negative distance");
+        assertEquals(1, visited.size(), "The traversal should stop at the first visit");
+    }
+}
@@ -59,4 +59,67 @@ class GeometriesTest {
                 geometries4.findIntersections(ray1).size(),
                 "There are supposed to be 4 intersection points");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link Geometries#findGeoIntersections(Ray, int)}.
+     */
+    @Test
+    void testFindGeoIntersectionsByKind() {
+        Ray ray = new Ray(new Point(0.25, 0.25, 10), new Vector(0, 0, -1));
+        Geometry prop = new Sphere(1, new Point(0, 0, 5)).setCastsShadows(false);
+        Geometry ghost = new Sphere(1, new Point(0, 0, 0)).setVisibleToCamera(false).setVisibleToReflections(false);
+        Geometries geometries = new Geometries(prop, new Geometries(ghost));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Camera rays skip the geometry invisible to the camera, even in a nested composite
+        assertEquals(2, geometries.findGeoIntersections(ray, Intersectable.CAMERA_RAYS).size(),
+                "Camera rays should hit only the prop");
+        // TC02: Shadow rays skip the geometry which casts no shadow
+        assertEquals(2, geometries.findGeoIntersections(ray, Intersectable.SHADOW_RAYS).size(),
+                "Shadow rays should hit only the ghost");
+        // TC03: Rays of all kinds hit both geometries
+        assertEquals(4, geometries.findGeoIntersections(ray).size(), "Rays of all kinds should hit both spheres");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A geometry invisible to every kind of rays
+        ghost.setCastsShadows(false);
+        assertNull(ghost.findGeoIntersections(ray, Intersectable.SHADOW_RAYS), "The ghost should be invisible");
+        // TC12: A geometry made visible again
+        prop.setCastsShadows(true);
+        assertEquals(2, prop.findGeoIntersections(ray, Intersectable.SHADOW_RAYS).size(),
+                "The prop should cast shadows again");
+    }
+
+    /**
+     * Test method for {@link Geometries#isOccluded(Ray, double, int)}.
+     */
+    @Test
+    void testIsOccluded() {
+        Ray ray = new Ray(new Point(0.25, 0.25, 10), new Vector(0, 0, -1));
+        Mesh mesh = new Mesh(new Point[] { new Point(-1, -1, 4), new Point(2, -1, 4), new Point(-1, 2, 4) },
+                new int[] { 0, 1, 2 });
+        SphereCloud cloud = new SphereCloud(new double[] { 0, 0, 2, 5, 5, 5 }, new double[] { 1, 1 });
+        Geometries geometries = new Geometries(new Geometries(mesh), cloud);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The mesh occludes the ray within the distance
+        assertTrue(geometries.isOccluded(ray, 7, Intersectable.SHADOW_RAYS), "The mesh should occlude the ray");
+        // TC02: Beyond the distance, or to rays of a kind it is invisible to, nothing occludes the ray
+        assertFalse(geometries.isOccluded(ray, 5, Intersectable.SHADOW_RAYS), "The mesh is beyond the distance");
+        mesh.setCastsShadows(false);
+        assertFalse(geometries.isOccluded(ray, 7, Intersectable.SHADOW_RAYS), "The mesh casts no shadow");
+        // TC03: The sphere cloud occludes the ray, from outside and from inside a sphere
+        assertTrue(geometries.isOccluded(ray, 7.5, Intersectable.SHADOW_RAYS), "The cloud should occlude the ray");
+        assertTrue(cloud.isOccluded(new Ray(new Point(0, 0, 2), new Vector(1, 0, 0)), 1.5, Intersectable.ALL_RAYS),
+                "A sphere should occlude a ray from inside it");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A hit exactly at the distance occludes the ray
+        assertTrue(mesh.isOccluded(ray, 6, Intersectable.CAMERA_RAYS), "A hit at the distance should occlude");
+        // TC12: The default test of a single geometry
+        assertTrue(new Sphere(1, new Point(0, 0, 0)).isOccluded(ray, 9.1, Intersectable.ALL_RAYS),
+                "The sphere should occlude the ray");
+        assertFalse(new Sphere(1, new Point(0, 0, 0)).isOccluded(ray, 9, Intersectable.ALL_RAYS),
+                "The sphere is beyond the distance");
+    }
+}
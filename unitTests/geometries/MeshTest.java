@@ -0,0 +1,199 @@
+package geometries;
+
+import geometries.Intersectable.GeoPoint;
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.RayPacket;
+import primitives.Vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Mesh class, comparing it to separate triangles in both precisions.
+ */
+class MeshTest {
+    private final double DELTA = 0.000001;
+
+    /** A grid of 8 by 8 quads (128 triangles) on the plane z = 1, from (0,0) to (8,8) */
+    private final Point[] vertices = new Point[81];
+    private final int[] indices = new int[6 * 64];
+
+    MeshTest() {
+        for (int i = 0; i <= 8; ++i)
+            for (int j = 0; j <= 8; ++j)
+                vertices[9 * i + j] = new Point(j, i, 1);
+        int k = 0;
+        for (int i = 0; i < 8; ++i)
+            for (int j = 0; j < 8; ++j) {
+                int a = 9 * i + j;
+                indices[k++] = a;
+                indices[k++] = a + 1;
+                indices[k++] = a + 10;
+                indices[k++] = a;
+                indices[k++] = a + 10;
+                indices[k++] = a + 9;
+            }
+    }
+
+    /**
+     * Test method for {@link geometries.Mesh#Mesh(Point[], int[], Mesh.Precision)}.
+     */
+    @Test
+    void testConstructor() {
+        Point[] pts = { new Point(0, 0, 0), new Point(1, 0, 0), new Point(0, 1, 0) };
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A correct mesh
+        assertDoesNotThrow(() -> new Mesh(pts, new int[] { 0, 1, 2 }), "Failed constructing a correct mesh");
+
+        // TC02: Indices which do not form whole triangles
+        assertThrows(IllegalArgumentException.class, () -> new Mesh(pts, new int[] { 0, 1 }),
+                "Constructed a mesh with a partial triangle");
+
+        // TC03: An index of a missing vertex
+        assertThrows(IllegalArgumentException.class, () -> new Mesh(pts, new int[] { 0, 1, 3 }),
+                "Constructed a mesh with a missing vertex");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: No triangles
+        assertThrows(IllegalArgumentException.class, () -> new Mesh(pts, new int[0]),
+                "Constructed an empty mesh");
+    }
+
+    /**
+     * Test method for {@link geometries.Mesh#findGeoIntersections(primitives.Ray)}.
+     */
+    @Test
+    void testFindGeoIntersections() {
+        for (Mesh.Precision precision : Mesh.Precision.values()) {
+            Mesh mesh = new Mesh(vertices, indices, precision);
+            assertEquals(precision, mesh.getPrecision(), "Wrong mesh precision");
+            assertEquals(128, mesh.size(), "Wrong number of triangles");
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: The hits equal the hits of the separate triangles
+            for (int s = 0; s < 50; ++s) {
+                double x = 0.13 + s * 0.157, y = 7.9 - s * 0.151;
+                Ray ray = new Ray(new Point(1, 2, 5), new Point(x, y, 1).subtract(new Point(1, 2, 5)));
+                Triangle expected = null;
+                for (int i = 0; i < indices.length && expected == null; i += 3) {
+                    Triangle triangle = new Triangle(vertices[indices[i]], vertices[indices[i + 1]],
+                            vertices[indices[i + 2]]);
+                    if (triangle.findGeoIntersections(ray) != null)
+                        expected = triangle;
+                }
+                assertNotNull(expected, "Bad test ray");
+                var expectedHit = expected.findGeoIntersections(ray).getFirst();
+                var result = mesh.findGeoIntersections(ray);
+                assertNotNull(result, precision + ": ray should intersect the mesh");
+                assertEquals(1, result.size(), precision + ": wrong number of points");
+                var hit = result.getFirst();
+                assertSame(mesh, hit.geometry, precision + ": wrong intersected geometry");
+                assertEquals(expectedHit.point, hit.point, precision + ": wrong intersection point");
+                assertEquals(expectedHit.t, hit.t, DELTA, precision + ": wrong distance");
+                assertEquals(expectedHit.normal, hit.normal, precision + ": wrong normal");
+                assertEquals(expectedHit.u, hit.u, DELTA, precision + ": wrong surface coordinate u");
+                assertEquals(expectedHit.v, hit.v, DELTA, precision + ": wrong surface coordinate v");
+            }
+
+            // TC02: Ray misses the mesh
+            assertNull(mesh.findGeoIntersections(new Ray(new Point(9, 9, 5), new Vector(0, 0, -1))),
+                    precision + ": ray should miss the mesh");
+
+            // TC03: Ray starts past the mesh
+            assertNull(mesh.findGeoIntersections(new Ray(new Point(4.3, 4.1, 0), new Vector(0, 0, -1))),
+                    precision + ": ray should miss the mesh behind it");
+
+            // =============== Boundary Values Tests ==================
+            // TC11: Ray parallel to the mesh plane
+            assertNull(mesh.findGeoIntersections(new Ray(new Point(-1, 4.3, 1), new Vector(1, 0, 0))),
+                    precision + ": ray in the mesh plane should not intersect");
+        }
+    }
+
+    /**
+     * Test method for {@link geometries.Mesh#getNormal(primitives.Point)}.
+     */
+    @Test
+    void testGetNormal() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The normal of a point inside a triangle of the mesh
+        Mesh mesh = new Mesh(vertices, indices);
+        assertEquals(new Vector(0, 0, 1), mesh.getNormal(new Point(2.7, 5.2, 1)), "Wrong mesh normal");
+
+        // TC02: A point out of the mesh
+        assertThrows(IllegalArgumentException.class, () -> mesh.getNormal(new Point(2.7, 5.2, 2)),
+                "Found a normal of a point out of the mesh");
+    }
+    /**
+     * Creates a mesh of two overlapping triangles, on the planes z = 1 and z = 3.
+     *
+     * @param precision the precision of the mesh
+     * @return the mesh
+     */
+    private static Mesh layers(Mesh.Precision precision) {
+        Point[] pts = { new Point(-4, -4, 1), new Point(4, -4, 1), new Point(0, 4, 1),
+                new Point(-4, -4, 3), new Point(4, -4, 3), new Point(0, 4, 3) };
+        return new Mesh(pts, new int[] { 0, 1, 2, 3, 4, 5 }, precision);
+    }
+
+    /**
+     * Test method for {@link geometries.Mesh#findClosestGeoIntersection(Ray, double, int)}.
+     */
+    @Test
+    void testFindClosestGeoIntersection() {
+        for (Mesh.Precision precision : Mesh.Precision.values()) {
+            Mesh mesh = layers(precision);
+            Ray down = new Ray(new Point(0.1, 0.2, 10), new Vector(0, 0, -1));
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: The closest of the two layers, with its triangle
+            GeoPoint gp = mesh.findClosestGeoIntersection(down, Double.POSITIVE_INFINITY, Intersectable.ALL_RAYS);
+            assertEquals(new Point(0.1, 0.2, 3), gp.point, precision + ": wrong closest point");
+            assertEquals(1, gp.index, precision + ": wrong closest triangle");
+            assertEquals(7, gp.t, DELTA, precision + ": wrong distance");
+            // TC02: No hit before the distance
+            assertNull(mesh.findClosestGeoIntersection(down, 6, Intersectable.ALL_RAYS),
+                    precision + ": the layers are beyond the distance");
+
+            // =============== Boundary Values Tests ==================
+            // TC11: A hit exactly at the distance is not closer than it
+            assertNull(mesh.findClosestGeoIntersection(down, 7, Intersectable.ALL_RAYS),
+                    precision + ": a hit at the distance is not before it");
+            // TC12: A ray between the layers
+            Ray up = new Ray(new Point(0.1, 0.2, 2), new Vector(0, 0, 1));
+            assertEquals(1, mesh.findClosestGeoIntersection(up, Double.POSITIVE_INFINITY, Intersectable.ALL_RAYS).t,
+                    DELTA, precision + ": wrong distance between the layers");
+        }
+    }
+
+    /**
+     * Test method for {@link geometries.Mesh#intersectPacket(RayPacket)}.
+     */
+    @Test
+    void testIntersectPacket() {
+        for (Mesh.Precision precision : Mesh.Precision.values()) {
+            Mesh mesh = layers(precision);
+            Point head = new Point(0.3, 0.1, 10);
+            RayPacket packet = new RayPacket();
+            for (int lane = 0; lane < RayPacket.SIZE; ++lane)
+                packet.add(new Ray(head, new Point(lane - 4, 1 - lane, 0).subtract(head)));
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: The closest hit of each lane equals the closest scalar hit, with its triangle
+            mesh.intersectPacket(packet);
+            for (int lane = 0; lane < RayPacket.SIZE; ++lane) {
+                Ray ray = packet.getRay(lane);
+                GeoPoint expected = ray.findClosestGeoPoint(mesh.findGeoIntersections(ray));
+                GeoPoint hit = packet.getClosestHit(lane);
+                if (expected == null) {
+                    assertNull(hit, precision + ": lane " + lane + " should miss the mesh");
+                    continue;
+                }
+                assertEquals(expected.point, hit.point, precision + ": wrong closest point of lane " + lane);
+                assertEquals(expected.index, hit.index, precision + ": wrong triangle of lane " + lane);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package geometries;
+
+import geometries.Intersectable.GeoPoint;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.RayPacket;
+import primitives.Vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SphereCloud class, comparing it to separate spheres.
+ */
+class SphereCloudTest {
+    private final double DELTA = 0.000001;
+
+    /** A grid of 10 by 10 by 10 spheres of alternating radii, 1 apart */
+    private final double[] centers = new double[3000];
+    private final double[] radii = new double[1000];
+
+    SphereCloudTest() {
+        for (int i = 0; i < 1000; ++i) {
+            centers[3 * i] = i % 10;
+            centers[3 * i + 1] = i / 10 % 10;
+            centers[3 * i + 2] = -(i / 100);
+            radii[i] = i % 2 == 0 ? 0.4 : 0.2;
+        }
+    }
+
+    /**
+     * Test method for {@link geometries.SphereCloud#SphereCloud(double[], double[])}.
+     */
+    @Test
+    void testConstructor() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A correct cloud
+        assertDoesNotThrow(() -> new SphereCloud(new double[] { 0, 0, 0 }, new double[] { 1 }),
+                "Failed constructing a correct sphere cloud");
+
+        // TC02: Centers which do not match the radii
+        assertThrows(IllegalArgumentException.class,
+                () -> new SphereCloud(new double[] { 0, 0 }, new double[] { 1 }),
+                "Constructed a sphere cloud with a missing center coordinate");
+
+        // TC03: A negative radius
+        assertThrows(IllegalArgumentException.class,
+                () -> new SphereCloud(new double[] { 0, 0, 0 }, new double[] { -1 }),
+                "Constructed a sphere cloud with a negative radius");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A zero radius
+        assertThrows(IllegalArgumentException.class,
+                () -> new SphereCloud(new double[] { 0, 0, 0 }, new double[] { 0 }),
+                "Constructed a sphere cloud with a zero radius");
+    }
+
+    /**
+     * Test method for {@link geometries.SphereCloud#findGeoIntersections(primitives.Ray)}.
+     */
+    @Test
+    void testFindGeoIntersections() {
+        SphereCloud cloud = new SphereCloud(centers, radii);
+        Point head = new Point(4.3, 4.6, 10);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The hits equal the hits of the separate spheres
+        for (int s = 0; s < 40; ++s) {
+            Ray ray = new Ray(head, new Point(s % 10 + 0.05 * s, s / 4 % 10, -3).subtract(head));
+            int expected = 0;
+            GeoPoint closest = null;
+            for (int i = 0; i < 1000; ++i) {
+                Sphere sphere = new Sphere(radii[i], new Point(centers[3 * i], centers[3 * i + 1], centers[3 * i + 2]));
+                var hits = sphere.findGeoIntersections(ray);
+                if (hits != null) {
+                    expected += hits.size();
+                    for (GeoPoint hit : hits)
+                        if (closest == null || hit.t < closest.t)
+                            closest = hit;
+                }
+            }
+            var result = cloud.findGeoIntersections(ray);
+            assertEquals(expected, result == null ? 0 : result.size(), "Wrong number of points");
+            if (closest == null)
+                continue;
+            GeoPoint hit = ray.findClosestGeoPoint(result);
+            assertSame(cloud, hit.geometry, "Wrong intersected geometry");
+            assertEquals(closest.point, hit.point, "Wrong intersection point");
+            assertEquals(closest.normal, hit.normal, "Wrong normal");
+            assertEquals(closest.u, hit.u, DELTA, "Wrong surface coordinate u");
+            assertEquals(closest.v, hit.v, DELTA, "Wrong surface coordinate v");
+        }
+
+        // TC02: Ray misses the cloud
+        assertNull(cloud.findGeoIntersections(new Ray(new Point(20, 20, 10), new Vector(0, 0, -1))),
+                "Ray should miss the cloud");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Ray starts at the center of a sphere (one point on it, then the spheres behind it)
+        var result = cloud.findGeoIntersections(new Ray(new Point(0, 0, 0), new Vector(0, 0, -1)));
+        assertNotNull(result, "Ray from a center should intersect the cloud");
+        assertEquals(19, result.size(), "Wrong number of points from a center");
+    }
+
+    /**
+     * Test method for {@link geometries.SphereCloud#intersectPacket(primitives.RayPacket)}.
+     */
+    @Test
+    void testIntersectPacket() {
+        SphereCloud cloud = new SphereCloud(centers, radii);
+        Point head = new Point(4.3, 4.6, 10);
+        RayPacket packet = new RayPacket();
+        for (int lane = 0; lane < RayPacket.SIZE; ++lane)
+            packet.add(new Ray(head, new Point(lane, 9 - lane, 0).subtract(head)));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The closest hit of each lane equals the closest scalar hit
+        cloud.intersectPacket(packet);
+        for (int lane = 0; lane < RayPacket.SIZE; ++lane) {
+            Ray ray = packet.getRay(lane);
+            GeoPoint expected = ray.findClosestGeoPoint(cloud.findGeoIntersections(ray));
+            GeoPoint hit = packet.getClosestHit(lane);
+            assertNotNull(hit, "Lane " + lane + " should intersect the cloud");
+            assertEquals(expected.point, hit.point, "Wrong closest point of lane " + lane);
+            assertEquals(expected.index, hit.index, "Wrong sphere of lane " + lane);
+        }
+    }
+
+    /**
+     * Test method for {@link geometries.SphereCloud#findClosestGeoIntersection(Ray, double, int)}.
+     */
+    @Test
+    void testFindClosestGeoIntersection() {
+        SphereCloud cloud = new SphereCloud(new double[] { 0, 0, 0, 3, 0, 0 }, new double[] { 1, 1 });
+        Ray ray = new Ray(new Point(-2, 0, 0), new Vector(1, 0, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The near side of the first sphere
+        GeoPoint gp = cloud.findClosestGeoIntersection(ray, Double.POSITIVE_INFINITY, Intersectable.ALL_RAYS);
+        assertEquals(new Point(-1, 0, 0), gp.point, "Wrong closest point");
+        assertEquals(0, gp.index, "Wrong closest sphere");
+        // TC02: No hit before the distance
+        assertNull(cloud.findClosestGeoIntersection(ray, 0.5, Intersectable.ALL_RAYS), "The cloud is beyond the distance");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: From inside a sphere, its far side
+        gp = cloud.findClosestGeoIntersection(new Ray(new Point(3, 0, 0), new Vector(-1, 0, 0)),
+                Double.POSITIVE_INFINITY, Intersectable.ALL_RAYS);
+        assertEquals(new Point(2, 0, 0), gp.point, "Wrong closest point from inside");
+        assertEquals(1, gp.index, "Wrong sphere from inside");
+    }
+
+    /**
+     * Test method for {@link geometries.SphereCloud#getMaterial(Intersectable.GeoPoint)}.
+     */
+    @Test
+    void testGetMaterial() {
+        SphereCloud cloud = new SphereCloud(new double[] { 0, 0, 0, 3, 0, 0 }, new double[] { 1, 1 });
+        Material own = new Material().setkD(0.1);
+        cloud.setMaterial(own);
+        var hits = cloud.findGeoIntersections(new Ray(new Point(-2, 0, 0), new Vector(1, 0, 0)));
+        assertEquals(4, hits.size(), "Wrong number of points");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Without a palette all the spheres have the material of the cloud
+        for (GeoPoint hit : hits)
+            assertSame(own, cloud.getMaterial(hit), "Wrong material without a palette");
+
+        // TC02: With a palette each sphere has its own material and emission
+        Material[] materials = { new Material().setkD(0.2), new Material().setkD(0.3) };
+        Color[] emissions = { new Color(10, 0, 0), new Color(0, 10, 0) };
+        cloud.setMaterials(new short[] { 1, 0 }, materials, emissions);
+        for (GeoPoint hit : hits) {
+            int expected = hit.point.getX() < 1.5 ? 1 : 0;
+            assertSame(materials[expected], cloud.getMaterial(hit), "Wrong material of a sphere");
+            assertSame(emissions[expected], cloud.getEmission(hit), "Wrong emission of a sphere");
+        }
+
+        // TC03: An index out of the palette
+        assertThrows(IllegalArgumentException.class,
+                () -> cloud.setMaterials(new short[] { 0, 2 }, materials, emissions),
+                "Set a material index out of the palette");
+    }
+}
@@ -213,4 +213,22 @@ class SphereTest {
             fail("Expected non-null result");
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link Sphere#findGeoIntersections(Ray)}.
+     */
+    @Test
+    public void testFindGeoIntersections() {
+        Sphere sphere = new Sphere(1d, new Point(1, 0, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The hit records hold the distances and the outward unit normals
+        var result = sphere.findGeoIntersections(new Ray(new Point(-1, 0, 0), new Vector(1, 0, 0)));
+        assertNotNull(result, "Expected non-null result");
+        assertEquals(2, result.size(), "Wrong number of points");
+        for (var gp : result) {
+            assertEquals(gp.point.distance(new Point(-1, 0, 0)), gp.t, DELTA, "Wrong distance in the hit record");
+            assertEquals(sphere.getNormal(gp.point), gp.normal, "Wrong normal in the hit record");
+        }
+    }
+}
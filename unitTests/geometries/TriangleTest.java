@@ -85,4 +85,25 @@ class TriangleTest {
         assertNull(triangle.findIntersections(ray6),
                     "Ray's line should be on the continuation of the edge of the triangle");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link geometries.Triangle#findGeoIntersections(primitives.Ray)}.
+     */
+    @Test
+    public void testFindGeoIntersections() {
+        Triangle triangle = new Triangle(new Point(0, 0, 1), new Point(1, 0, 0), new Point(0, 1, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The hit record holds the distance, the normal and the barycentric coordinates
+        Ray ray = new Ray(new Point(0.25, 0.25, 1), new Vector(0, 0, -1));
+        var result = triangle.findGeoIntersections(ray);
+        assertNotNull(result, "Ray's line should intersect the triangle");
+        assertEquals(1, result.size(), "Wrong number of points");
+        var gp = result.getFirst();
+        assertSame(triangle, gp.geometry, "Wrong geometry in the hit record");
+        assertEquals(0.5, gp.t, DELTA, "Wrong distance in the hit record");
+        assertEquals(triangle.getNormal(gp.point), gp.normal, "Wrong normal in the hit record");
+        assertEquals(0.25, gp.u, DELTA, "Wrong first barycentric coordinate");
+        assertEquals(0.25, gp.v, DELTA, "Wrong second barycentric coordinate");
+    }
+}
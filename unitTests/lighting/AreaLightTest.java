@@ -0,0 +1,96 @@
+package lighting;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static primitives.Util.isZero;
+
+/**
+ * Tests for the area lights
+ */
+class AreaLightTest {
+    /** The intensity of the lights of the tests */
+    private final Color light = new Color(100, 100, 100);
+    /** The center of the lights of the tests */
+    private final Point center = new Point(1, 2, 3);
+    /** The point from which the lights are seen */
+    private final Point viewer = new Point(10, -5, -20);
+
+    /**
+     * Test method for {@link RectangleLight#getSamplePoint(Point, double, double)}.
+     */
+    @Test
+    void testRectangleLight() {
+        RectangleLight rectangle = new RectangleLight(light, center, new Vector(4, 0, 0), new Vector(0, 2, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The unit square is stretched along the edges around the center
+        assertEquals(new Point(0, 2.5, 3), rectangle.getSamplePoint(viewer, 0.25, 0.75), "Wrong rectangle point");
+        // TC02: Parallel edges
+        assertThrows(IllegalArgumentException.class,
+                () -> new RectangleLight(light, center, new Vector(1, 0, 0), new Vector(2, 0, 0)),
+                "Created with parallel edges");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The corners of the unit square are the corners of the rectangle
+        assertEquals(new Point(-1, 1, 3), rectangle.getSamplePoint(viewer, 0, 0), "Wrong first corner");
+        assertEquals(new Point(1, 2, 3), rectangle.getSamplePoint(viewer, 0.5, 0.5), "Wrong center");
+    }
+
+    /**
+     * Test method for {@link DiskLight#getSamplePoint(Point, double, double)}.
+     */
+    @Test
+    void testDiskLight() {
+        Vector normal = new Vector(1, 1, 1);
+        DiskLight disk = new DiskLight(light, center, normal, 2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The points are on the disk
+        for (int i = 0; i < 10; ++i)
+            for (int j = 0; j < 10; ++j) {
+                Point point = disk.getSamplePoint(viewer, (i + 0.5) / 10, (j + 0.5) / 10);
+                assertTrue(point.distance(center) <= 2 + 1e-9, "Point beyond the radius");
+                assertTrue(isZero(point.subtract(center).dotProduct(normal)), "Point off the plane of the disk");
+            }
+        // TC02: A non-positive radius
+        assertThrows(IllegalArgumentException.class, () -> new DiskLight(light, center, normal, 0),
+                "Created with a zero radius");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The center of the unit square is the center of the disk, and its edge is the edge of the disk
+        assertEquals(center, disk.getSamplePoint(viewer, 0.5, 0.5), "Wrong center");
+        assertEquals(2, disk.getSamplePoint(viewer, 1, 0.5).distance(center), 1e-9, "Wrong edge");
+    }
+
+    /**
+     * Test method for {@link SphereLight#getSamplePoint(Point, double, double)}.
+     */
+    @Test
+    void testSphereLight() {
+        SphereLight sphere = new SphereLight(light, center, 3).setkQ(0.1);
+        Vector toViewer = viewer.subtract(center);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The points are on the silhouette facing the viewer
+        for (int i = 0; i < 10; ++i)
+            for (int j = 0; j < 10; ++j) {
+                Point point = sphere.getSamplePoint(viewer, (i + 0.5) / 10, (j + 0.5) / 10);
+                assertTrue(point.distance(center) <= 3 + 1e-9, "Point beyond the radius");
+                assertTrue(isZero(point.subtract(center).dotProduct(toViewer)), "Point off the silhouette");
+            }
+        // TC02: The intensity is the intensity of a point light at the center
+        assertEquals(new PointLight(light, center).setkQ(0.1).getIntensity(viewer).getColor(),
+                sphere.getIntensity(viewer).getColor(), "Wrong intensity");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A point inside the sphere sees its center
+        assertEquals(center, sphere.getSamplePoint(new Point(1, 2, 4), 0.1, 0.9), "Wrong point from inside");
+        // TC12: A non-positive radius
+        assertThrows(IllegalArgumentException.class, () -> new SphereLight(light, center, -1),
+                "Created with a negative radius");
+    }
+}
@@ -0,0 +1,157 @@
+package lighting;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.MutableColor;
+import primitives.MutableVector;
+import primitives.Vector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the environment light: loading, prefiltered lookups and importance sampling
+ */
+class EnvironmentLightTest {
+    /** The width of the images of the tests */
+    private static final int WIDTH = 8;
+    /** The height of the images of the tests */
+    private static final int HEIGHT = 4;
+
+    /**
+     * Creates an image of the tests with a radiance per row.
+     *
+     * @param rows the gray radiance of each row, from the zenith
+     * @return the red, green and blue components of the texels
+     */
+    private static float[] image(float... rows) {
+        float[] rgb = new float[3 * WIDTH * rows.length];
+        for (int j = 0; j < rows.length; ++j)
+            Arrays.fill(rgb, 3 * WIDTH * j, 3 * WIDTH * (j + 1), rows[j]);
+        return rgb;
+    }
+
+    /**
+     * Test method for {@link EnvironmentLight#load(String, double)}.
+     */
+    @Test
+    void testLoad() throws IOException {
+        // A pixel of components 128, 64 and 0 with an exponent of 129, i.e. about 1, 0.5 and 0
+        byte[] pixel = { (byte) 128, 64, 0, (byte) 129 };
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        encoded.writeBytes("#?RADIANCE\nFORMAT=32-bit_rle_rgbe\n\n-Y 2 +X 8\n".getBytes(StandardCharsets.US_ASCII));
+        for (int j = 0; j < 2; ++j) {
+            encoded.writeBytes(new byte[] { 2, 2, 0, 8 });
+            for (int c = 0; c < 3; ++c) { // The components as literal runs
+                encoded.write(8);
+                for (int i = 0; i < 8; ++i)
+                    encoded.write(pixel[c]);
+            }
+            encoded.writeBytes(new byte[] { (byte) (128 + 8), pixel[3] }); // The exponents as a repeated run
+        }
+        Path file = Files.createTempFile("sky", ".hdr");
+        file.toFile().deleteOnExit();
+        Files.write(file, encoded.toByteArray());
+        Vector up = new Vector(0, 0, 1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A run-length encoded image, scaled
+        Color radiance = EnvironmentLight.load(file.toString(), 255).getRadiance(up);
+        assertEquals(new Color(128.5 / 128 * 255, 64.5 / 128 * 255, 0.5 / 128 * 255).getColor(), radiance.getColor(),
+                "Wrong encoded radiance");
+        // TC02: A flat image
+        ByteArrayOutputStream flat = new ByteArrayOutputStream();
+        flat.writeBytes("#?RGBE\n\n-Y 1 +X 2\n".getBytes(StandardCharsets.US_ASCII));
+        flat.writeBytes(pixel);
+        flat.writeBytes(pixel);
+        Files.write(file, flat.toByteArray());
+        assertEquals(radiance.getColor(), EnvironmentLight.load(file.toString(), 255).getRadiance(up).getColor(),
+                "Wrong flat radiance");
+        // TC03: Not an HDR image
+        Files.write(file, "P3\n1 1\n255\n0 0 0\n".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IllegalArgumentException.class, () -> EnvironmentLight.load(file.toString(), 1),
+                "Loaded a file of another format");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A missing file
+        assertThrows(IllegalStateException.class,
+                () -> EnvironmentLight.load(file.resolveSibling("missing-sky.hdr").toString(), 1), "Loaded a missing file");
+    }
+
+    /**
+     * Test method for {@link EnvironmentLight#getRadiance(Vector, double)}.
+     */
+    @Test
+    void testGetRadiance() {
+        EnvironmentLight sky = new EnvironmentLight(WIDTH, HEIGHT, image(100, 100, 0, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The upper half is lit, the lower half is black
+        assertEquals(new Color(100, 100, 100).getColor(), sky.getRadiance(new Vector(1, 2, 3)).getColor(),
+                "Wrong radiance of the sky");
+        assertEquals(Color.BLACK.getColor(), sky.getRadiance(new Vector(-1, 2, -3)).getColor(),
+                "Wrong radiance of the ground");
+        // TC02: Wrong images
+        assertThrows(IllegalArgumentException.class, () -> new EnvironmentLight(WIDTH, 3, image(1, 1, 1, 1)),
+                "Created with a wrong size");
+        assertThrows(IllegalArgumentException.class, () -> new EnvironmentLight(0, 0, new float[0]),
+                "Created with an empty image");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The mip levels go down to a single texel
+        assertEquals(4, sky.getLevelCount(), "Wrong number of levels");
+        // TC12: A footprint of the whole sphere averages the whole image
+        assertEquals(new Color(50, 50, 50).getColor(), sky.getRadiance(new Vector(0, 0, 1), 4 * Math.PI).getColor(),
+                "Wrong prefiltered radiance");
+        // TC13: The direction along the seam of the azimuth and the directions of the poles
+        MutableColor radiance = new MutableColor();
+        sky.radiance(1, -1e-12, 0.5, 0, radiance);
+        assertEquals(new Color(100, 100, 100).getColor(), radiance.toColor().getColor(), "Wrong radiance at the seam");
+        assertEquals(Color.BLACK.getColor(), sky.getRadiance(new Vector(0, 0, -1)).getColor(), "Wrong nadir");
+    }
+
+    /**
+     * Test method for {@link EnvironmentLight#sample(double, double, MutableVector, MutableColor)} and
+     * {@link EnvironmentLight#pdf(double, double, double)}.
+     */
+    @Test
+    void testSample() {
+        MutableVector direction = new MutableVector();
+        MutableColor radiance = new MutableColor();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: All the directions are sampled from the lit half, with the density of their direction
+        EnvironmentLight sky = new EnvironmentLight(WIDTH, HEIGHT, image(100, 100, 0, 0));
+        for (int i = 0; i < 16; ++i)
+            for (int j = 0; j < 16; ++j) {
+                double pdf = sky.sample((i + 0.5) / 16, (j + 0.5) / 16, direction, radiance);
+                assertTrue(direction.z > 0, "A direction below the horizon was sampled");
+                assertEquals(1, direction.length(), 1e-12, "The direction should be a unit vector");
+                assertEquals(sky.pdf(direction.x, direction.y, direction.z), pdf, 1e-9, "Wrong density");
+                assertEquals(new Color(100, 100, 100).getColor(), radiance.toColor().getColor(), "Wrong radiance");
+            }
+        assertEquals(0, sky.pdf(0.6, 0, -0.8), "The ground should not be sampled");
+        // TC02: A uniform environment is sampled uniformly over the sphere
+        float[] rows = new float[64];
+        Arrays.fill(rows, 1);
+        EnvironmentLight uniform = new EnvironmentLight(WIDTH, rows.length, image(rows));
+        double theta = Math.PI * 20.5 / rows.length; // The center of a row
+        assertEquals(1 / (4 * Math.PI), uniform.pdf(Math.sin(theta), 0, Math.cos(theta)), 1e-4,
+                "Wrong uniform density");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A black environment is not sampled
+        assertEquals(0, new EnvironmentLight(WIDTH, HEIGHT, image(0, 0, 0, 0)).sample(0.5, 0.5, direction, radiance),
+                "A black environment should not be sampled");
+        // TC12: The first random numbers sample the zenith, which has no solid angle, the last ones the lit rows
+        assertEquals(0, sky.sample(0, 0, direction, radiance), "The zenith should not be sampled");
+        assertTrue(sky.sample(Math.nextDown(1.0), Math.nextDown(1.0), direction, radiance) > 0 && direction.z > 0,
+                "Wrong last direction");
+    }
+}
@@ -0,0 +1,95 @@
+package lighting;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the influence radius of lights and the spatial light index
+ */
+class LightIndexTest {
+    /**
+     * Test method for {@link LightSource#getInfluenceRadius(double)}.
+     */
+    @Test
+    void testGetInfluenceRadius() {
+        Point origin = new Point(0, 0, 0);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Quadratic attenuation: the intensity at the radius is the cutoff in its largest component
+        PointLight quadratic = new PointLight(new Color(100, 200, 50), origin).setkL(0.1).setkQ(0.01);
+        double radius = quadratic.getInfluenceRadius(0.5);
+        assertEquals(0.5, quadratic.getIntensity(new Point(radius, 0, 0)).difference(Color.BLACK), 1e-9,
+                "Wrong quadratic radius");
+
+        // TC02: Linear attenuation
+        SpotLight linear = new SpotLight(new Color(100, 200, 50), origin, new Vector(1, 0, 0)).setkL(0.5);
+        assertEquals((200 / 0.5 - 1) / 0.5, linear.getInfluenceRadius(0.5), 1e-9, "Wrong linear radius");
+
+        // TC03: Lights which are not attenuated reach everywhere
+        assertEquals(Double.POSITIVE_INFINITY, new PointLight(new Color(100, 100, 100), origin)
+                .getInfluenceRadius(0.5), "A constant point light should reach everywhere");
+        assertEquals(Double.POSITIVE_INFINITY, new DirectionalLight(new Color(100, 100, 100), new Vector(0, 0, -1))
+                .getInfluenceRadius(0.5), "A directional light should reach everywhere");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A light below the cutoff at its position is negligible everywhere
+        assertEquals(0, new PointLight(new Color(1, 1, 1), origin).setkC(4).setkQ(1).getInfluenceRadius(0.5),
+                "A dim light should have no influence");
+    }
+
+    /**
+     * Test method for {@link LightIndex#forEachReaching(Point, java.util.function.Consumer)}.
+     */
+    @Test
+    void testForEachReaching() {
+        List<LightSource> lights = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            double angle = i * 2.399963;
+            double radius = 5 * Math.sqrt(i);
+            Point position = new Point(radius * Math.cos(angle), radius * Math.sin(angle), i % 5 * 3);
+            Color intensity = new Color(50 + i % 7 * 20, 80, 60);
+            lights.add(i % 3 == 0
+                    ? new SpotLight(intensity, position, new Vector(0, 0, -1)).setkQ(0.02 + i % 4 * 0.01)
+                    : new PointLight(intensity, position).setkL(0.1 + i % 3 * 0.2));
+        }
+        DirectionalLight sun = new DirectionalLight(new Color(20, 20, 20), new Vector(1, 0, -1));
+        lights.add(sun);
+        lights.add(new PointLight(new Color(0.2, 0.2, 0.2), new Point(0, 0, 0))); // negligible everywhere
+        LightIndex index = new LightIndex(lights, 0.5);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The lights reaching a point are exactly the lights within their radius, in scene order
+        assertEquals(500, index.size(), "Wrong number of indexed lights");
+        for (int p = 0; p < 400; ++p) {
+            Point point = new Point(p % 20 * 8 - 80, p / 20 * 8 - 80, p % 3 * 2);
+            List<LightSource> expected = new ArrayList<>(List.of(sun));
+            for (LightSource light : lights.subList(0, 500))
+                if (light.getDistance(point) <= light.getInfluenceRadius(0.5))
+                    expected.add(light);
+            List<LightSource> actual = new ArrayList<>();
+            index.forEachReaching(point, actual::add);
+            assertEquals(expected, actual, "Wrong lights reaching point " + p);
+        }
+
+        // TC02: Only the unattenuated lights reach a point far from all the lights
+        List<LightSource> far = new ArrayList<>();
+        index.forEachReaching(new Point(1e4, 0, 0), far::add);
+        assertEquals(List.of(sun), far, "Only the directional light should reach a far point");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: No attenuated light
+        List<LightSource> none = new ArrayList<>();
+        new LightIndex(List.of(sun), 0.5).forEachReaching(Point.ZERO, none::add);
+        assertEquals(List.of(sun), none, "Wrong lights without attenuated lights");
+
+        // TC12: A non-positive cutoff
+        assertThrows(IllegalArgumentException.class, () -> new LightIndex(lights, 0), "Created with a zero cutoff");
+    }
+}
@@ -0,0 +1,101 @@
+package lighting;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the light hierarchy
+ */
+class LightTreeTest {
+    /** A grid of point lights and spotlights above the plane z = 0, with a directional light */
+    private final List<LightSource> lights = new ArrayList<>();
+    /** The normal of the plane, facing the lights */
+    private final Vector up = new Vector(0, 0, 1);
+
+    LightTreeTest() {
+        for (int i = 0; i < 20; ++i)
+            for (int j = 0; j < 10; ++j) {
+                Point position = new Point(i * 10 - 95, j * 10 - 45, 20 + (i + j) % 3 * 5);
+                Color intensity = new Color(100 + i * 5, 100, 100 + j * 10);
+                lights.add((i + j) % 2 == 0
+                        ? new PointLight(intensity, position).setkL(0.01).setkQ(0.001)
+                        : new SpotLight(intensity, position, new Vector(i - 10, j - 5, -10)).setkQ(0.001));
+            }
+        lights.add(new DirectionalLight(new Color(50, 50, 50), new Vector(1, 1, -1)));
+    }
+
+    /**
+     * Test method for {@link LightTree#sample(Point, Vector, double)} and
+     * {@link LightTree#probability(LightSource, Point, Vector)}.
+     */
+    @Test
+    void testSample() {
+        LightTree tree = new LightTree(lights);
+        Point point = new Point(12, -7, 0);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The positional lights are in the hierarchy, the others are not
+        assertEquals(200, tree.size(), "Wrong number of bounded lights");
+        assertEquals(List.of(lights.get(200)), tree.getUnbounded(), "Wrong unbounded lights");
+
+        // TC02: Every light which may light the point may be chosen, and the probabilities sum to at most 1:
+        // a sample is missed when both children of a node are found unable to light the point
+        double sum = 0;
+        for (LightSource light : tree.getUnbounded())
+            assertEquals(0, tree.probability(light, point, up), "An unbounded light should not be chosen");
+        for (LightSource light : lights.subList(0, 200)) {
+            double probability = tree.probability(light, point, up);
+            sum += probability;
+            if (light.getIntensity(point).luminance() > 0)
+                assertTrue(probability > 0, "A light of the point should have a positive probability");
+        }
+        assertTrue(sum > 0.9 && sum <= 1 + 1e-9, "Wrong sum of probabilities");
+
+        // TC03: A sample is chosen with its probability, and near lights are chosen more often than far lights
+        int[] counts = new int[200];
+        int samples = 100000, missed = 0;
+        for (int s = 0; s < samples; ++s) {
+            LightTree.Sample sample = tree.sample(point, up, (s + 0.5) / samples);
+            if (sample == null) {
+                ++missed;
+                continue;
+            }
+            assertEquals(tree.probability(sample.light(), point, up), sample.probability(), 1e-12,
+                    "Wrong probability of sample " + s);
+            ++counts[lights.indexOf(sample.light())];
+        }
+        assertEquals((1 - sum) * samples, missed, 2, "Wrong number of missed samples");
+        for (int i = 0; i < 200; ++i)
+            assertEquals(tree.probability(lights.get(i), point, up) * samples, counts[i], 2,
+                    "Wrong frequency of light " + i);
+        int near = lights.indexOf(tree.sample(point, up, 0.5).light());
+        assertTrue(counts[near] > samples / 200, "The chosen lights should be the important ones");
+
+        // TC04: No light is chosen for a point whose lights are all behind its surface
+        assertNull(tree.sample(point, new Vector(0, 0, -1), 0.5), "No light should be chosen behind the surface");
+        assertEquals(0, tree.probability(lights.get(0), point, new Vector(0, 0, -1)),
+                "A light behind the surface should have no probability");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: No positional light
+        LightTree empty = new LightTree(List.of(lights.get(200)));
+        assertEquals(0, empty.size(), "Wrong number of bounded lights");
+        assertNull(empty.sample(point, up, 0.5), "No light should be chosen");
+
+        // TC12: A single light is always chosen
+        LightTree single = new LightTree(lights.subList(0, 1));
+        assertEquals(1, single.sample(point, up, 0.99).probability(), "Wrong probability of a single light");
+
+        // TC13: A spotlight pointing away from the point is not chosen
+        LightTree away = new LightTree(List.of(new SpotLight(new Color(100, 100, 100), new Point(0, 0, 10),
+                new Vector(0, 0, 1))));
+        assertNull(away.sample(point, up, 0.5), "A spotlight pointing away should not be chosen");
+    }
+}
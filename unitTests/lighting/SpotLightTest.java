@@ -0,0 +1,99 @@
+package lighting;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the cone, the falloff and the contribution test of the spotlight
+ */
+class SpotLightTest {
+    /** The intensity of the lights of the tests */
+    private final Color light = new Color(100, 100, 100);
+    /** A point 45 degrees off the direction of the spotlights of the tests, without attenuation */
+    private final Point offAxis = new Point(1, 0, -1);
+
+    /**
+     * Test method for {@link SpotLight#setConeAngle(double)}.
+     */
+    @Test
+    void testSetConeAngle() {
+        SpotLight spot = new SpotLight(light, Point.ZERO, new Vector(0, 0, -1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A point inside the cone is lit
+        spot.setConeAngle(60);
+        assertTrue(spot.getIntensity(offAxis).getColor().getRed() > 0, "The point should be in the cone");
+        // TC02: A point outside the cone is not lit
+        spot.setConeAngle(30);
+        assertEquals(Color.BLACK.getColor(), spot.getIntensity(offAxis).getColor(), "The point should be out of the cone");
+        // TC03: Angles out of range
+        assertThrows(IllegalArgumentException.class, () -> spot.setConeAngle(0), "Set a zero angle");
+        assertThrows(IllegalArgumentException.class, () -> spot.setConeAngle(120), "Set an angle above 90 degrees");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: With the default cone of 90 degrees, a point beside the spotlight is not lit
+        SpotLight wide = new SpotLight(light, Point.ZERO, new Vector(0, 0, -1));
+        assertEquals(Color.BLACK.getColor(), wide.getIntensity(new Point(1, 0, 0)).getColor(),
+                "A point at 90 degrees should not be lit");
+        // TC12: A cone of 90 degrees is the default cone
+        assertEquals(wide.getIntensity(offAxis).getColor(), spot.setConeAngle(90).getIntensity(offAxis).getColor(),
+                "A cone of 90 degrees should be the default");
+    }
+
+    /**
+     * Test method for {@link SpotLight#setFalloff(double)}.
+     */
+    @Test
+    void testSetFalloff() {
+        SpotLight spot = new SpotLight(light, Point.ZERO, new Vector(0, 0, -1));
+        double cos = Math.sqrt(0.5); // The cosine of 45 degrees
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The default falloff scales by the cosine, an exponent scales by its power
+        assertEquals(light.scale(cos).getColor(), spot.getIntensity(offAxis).getColor(), "Wrong default falloff");
+        assertEquals(light.scale(Math.pow(cos, 8)).getColor(), spot.setFalloff(8).getIntensity(offAxis).getColor(),
+                "Wrong falloff");
+        // TC02: A negative exponent
+        assertThrows(IllegalArgumentException.class, () -> spot.setFalloff(-1), "Set a negative falloff");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A zero exponent lights the cone uniformly
+        assertEquals(light.getColor(), spot.setFalloff(0).getIntensity(offAxis).getColor(),
+                "A zero falloff should not depend on the angle");
+    }
+
+    /**
+     * Test method for {@link SpotLight#canContribute(Point, Vector, double)} and
+     * {@link PointLight#canContribute(Point, Vector, double)}.
+     */
+    @Test
+    void testCanContribute() {
+        SpotLight spot = new SpotLight(light, Point.ZERO, new Vector(0, 0, -1)).setConeAngle(60).setkQ(1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A point inside the cone, above the cutoff
+        assertTrue(spot.canContribute(offAxis, spot.getL(offAxis), 1), "The point should be lit");
+        // TC02: A point outside the cone
+        Point aside = new Point(1, 0, -0.1);
+        assertFalse(spot.canContribute(aside, spot.getL(aside), 0), "The point should be out of the cone");
+        // TC03: A point inside the cone, below the cutoff
+        Point far = new Point(0, 0, -20);
+        assertFalse(spot.canContribute(far, spot.getL(far), 1), "The point should be below the cutoff");
+        // TC04: A point light below the cutoff far away
+        PointLight point = new PointLight(light, Point.ZERO).setkQ(1);
+        assertFalse(point.canContribute(far, point.getL(far), 1), "The point should be below the cutoff");
+        assertTrue(point.canContribute(offAxis, point.getL(offAxis), 1), "The point should be above the cutoff");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Without cutoff, any point inside the cone may be lit
+        assertTrue(spot.canContribute(far, spot.getL(far), 0), "The point should be lit without cutoff");
+        // TC12: The falloff lowers the intensity at the edge of the cone below the cutoff
+        Point edge = new Point(1, 0, -0.6);
+        assertTrue(spot.canContribute(edge, spot.getL(edge), 10), "The edge should be above the cutoff");
+        assertFalse(spot.setFalloff(20).canContribute(edge, spot.getL(edge), 10), "The edge should be below the cutoff");
+    }
+}
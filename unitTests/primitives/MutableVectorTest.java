@@ -0,0 +1,63 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the MutableVector class, comparing it to the immutable Vector operations.
+ */
+class MutableVectorTest {
+    private final double DELTA = 0.000001;
+
+    /**
+     * Test method for {@link primitives.MutableVector#setCrossProduct(MutableVector, MutableVector)}.
+     */
+    @Test
+    void testSetCrossProduct() {
+        Vector v1 = new Vector(1, 2, 3);
+        Vector v2 = new Vector(0, 3, -2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The scratch cross product equals the immutable cross product
+        MutableVector m1 = new MutableVector().set(v1);
+        MutableVector m2 = new MutableVector().set(v2);
+        assertEquals(v1.crossProduct(v2), new MutableVector().setCrossProduct(m1, m2).toVector(),
+                "ERROR: setCrossProduct() wrong result");
+
+        // TC02: The result may be stored in one of the operands
+        assertEquals(v1.crossProduct(v2), m1.setCrossProduct(m1, m2).toVector(),
+                "ERROR: setCrossProduct() into an operand wrong result");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Parallel vectors give a zero scratch vector instead of an exception
+        assertEquals(0, new MutableVector().setCrossProduct(m2, m2).lengthSquared(), DELTA,
+                "ERROR: setCrossProduct() of parallel vectors is not zero");
+    }
+
+    /**
+     * Test method for {@link primitives.MutableVector#normalize()}.
+     */
+    @Test
+    void testNormalize() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The scratch normalization equals the immutable normalization
+        Vector v = new Vector(1, 2, 3);
+        MutableVector m = new MutableVector().set(v).normalize();
+        assertEquals(1, m.length(), DELTA, "ERROR: the normalized vector is not a unit vector");
+        assertEquals(v.normalize(), m.toVector(), "ERROR: normalize() wrong result");
+    }
+
+    /**
+     * Test method for {@link primitives.MutableVector#addScaled(Point, double)}.
+     */
+    @Test
+    void testAddScaled() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Adding a scaled vector equals the immutable point operations
+        Point p = new Point(1, 2, 3);
+        Vector v = new Vector(1, -1, 2);
+        assertEquals(p.add(v.scale(2)), new MutableVector().set(p).addScaled(v, 2).toPoint(),
+                "ERROR: addScaled() wrong result");
+    }
+}
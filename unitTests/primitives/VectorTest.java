@@ -182,4 +182,49 @@ class VectorTest {
         assertFalse(v1.dotProduct(u) < 0,
                     "ERROR: the normalized vector is opposite to the original one");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link primitives.Vector#tangent()}.
+     */
+    @Test
+    void testTangent() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The tangent of a unit vector is an orthogonal unit vector
+        Vector n = v1.normalize();
+        Vector t = n.tangent();
+        assertEquals(1, t.length(), DELTA, "ERROR: the tangent is not a unit vector");
+        assertEquals(0, n.dotProduct(t), DELTA, "ERROR: the tangent is not orthogonal to the vector");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The tangents of the vectors up and down the z axis
+        assertEquals(new Vector(1, 0, 0), new Vector(0, 0, 1).tangent(), "ERROR: wrong tangent of the z axis");
+        assertEquals(0, new Vector(0, 0, -1).tangent().getZ(), DELTA, "ERROR: wrong tangent of the negative z axis");
+    }
+
+    /**
+     * Test method for {@link primitives.Vector#toFrame(double[], int)}.
+     */
+    @Test
+    void testToFrame() {
+        Vector n = v4.normalize();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The directions keep their lengths and their angles with the z axis, which becomes the vector
+        double[] directions = { 0.6, 0, 0.8, 0, -0.28, 0.96 };
+        n.toFrame(directions, 2);
+        for (int i = 0; i < 2; ++i) {
+            Vector d = new Vector(directions[3 * i], directions[3 * i + 1], directions[3 * i + 2]);
+            assertEquals(1, d.length(), DELTA, "ERROR: the rotated direction is not a unit vector");
+        }
+        assertEquals(0.8, n.dotProduct(new Vector(directions[0], directions[1], directions[2])), DELTA,
+                "ERROR: the first direction has a wrong angle with the vector");
+        assertEquals(0.96, n.dotProduct(new Vector(directions[3], directions[4], directions[5])), DELTA,
+                "ERROR: the second direction has a wrong angle with the vector");
+        // TC02: A single direction is rotated like the directions of an array
+        assertEquals(directions[0], n.toFrame(0.6, 0, 0.8).getX(), DELTA, "ERROR: wrong single direction");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The z axis is rotated to the vector
+        assertEquals(n, n.toFrame(0, 0, 1), "ERROR: the z axis is not rotated to the vector");
+    }
+}
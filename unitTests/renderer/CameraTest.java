@@ -1,7 +1,13 @@
 package renderer;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.PointLight;
 import org.junit.jupiter.api.Test;
 
 import primitives.*;
@@ -63,4 +69,151 @@ class CameraTest {
 
     }
 
+    /**
+     * A ray tracer counting the rays traced through it
+     */
+    private static class CountingRayTracer extends RayTracerBase {
+        private final RayTracerBase tracer;
+        private int count = 0;
+
+        CountingRayTracer(Scene scene) {
+            super(scene);
+            tracer = new SimpleRayTracer(scene);
+        }
+
+        @Override
+        public Color traceRay(Ray ray) {
+            ++count;
+            return tracer.traceRay(ray);
+        }
+    }
+
+    /**
+     * Test method for adaptive supersampling, set by
+     * {@link renderer.Camera.Builder#setAdaptiveDepth(int)}.
+     */
+    @Test
+    void testAdaptiveSuperSampling() {
+        Scene scene = new Scene("Adaptive").setBackground(new Color(20, 20, 40));
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpDistance(100).setVpSize(20, 20)
+                .setImageWriter(new ImageWriter("adaptive", 20, 20))
+                .setAdaptiveDepth(3);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: A flat image traces only the pixel corners, shared by the neighbouring pixels
+        CountingRayTracer flat = new CountingRayTracer(scene);
+        builder.setRayTracer(flat).build().renderImage();
+        assertEquals(21 * 21, flat.count, "Flat image should trace each pixel corner once");
+
+        // EP02: Edges are subdivided, but far less than uniform supersampling
+        scene.geometries.add(new Sphere(6, new Point(0, 0, -100)).setEmission(new Color(200, 100, 0)));
+        CountingRayTracer edges = new CountingRayTracer(scene);
+        builder.setRayTracer(edges).build().renderImage().writeToImage();
+        assertTrue(edges.count > 21 * 21, "Edges should be subdivided");
+        assertTrue(edges.count < 161 * 161 / 4, "Flat regions should not be subdivided");
+
+        // =============== Boundary Values Tests ==================
+        // BV01: Depth out of range
+        assertThrows(IllegalArgumentException.class, () -> builder.setAdaptiveDepth(Camera.MAX_ADAPTIVE_DEPTH + 1),
+                "Adaptive depth above the maximum");
+    }
+
+    /**
+     * An image writer keeping the colors of the pixels written to it
+     */
+    private static class RecordingImageWriter extends ImageWriter {
+        private final java.awt.Color[] pixels;
+
+        RecordingImageWriter(int nX, int nY) {
+            super("recording", nX, nY);
+            pixels = new java.awt.Color[nX * nY];
+        }
+
+        @Override
+        public void writePixel(int xIndex, int yIndex, Color color) {
+            pixels[yIndex * getNx() + xIndex] = color.getColor();
+        }
+    }
+
+    /**
+     * Test method for parallel rendering, set by
+     * {@link renderer.Camera.Builder#setThreads(int)}.
+     */
+    @Test
+    void testThreads() {
+        Scene scene = new Scene("Threads").setBackground(new Color(10, 10, 30));
+        scene.geometries.add(
+                new Plane(new Point(0, 0, -100), new Vector(0, 0, 1))
+                        .setMaterial(new Material().setkD(0.5).setkR(0.3).setRoughness(0.2)),
+                new Sphere(40, new Point(0, 0, -60)).setEmission(new Color(60, 20, 20))
+                        .setMaterial(new Material().setkD(0.5).setkS(0.3).setnShininess(50)));
+        scene.lights.add(new PointLight(new Color(500, 500, 400), new Point(80, 80, 100)).setkL(0.001));
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(new Point(0, -300, 200)).setDirection(new Vector(0, 300, -260), new Vector(0, 260, 300))
+                .setVpDistance(300).setVpSize(200, 200);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: Random paths are rendered identically by one thread and by several threads
+        RayTracerBase pathTracer = new PathTracer(scene).setSamples(4);
+        RecordingImageWriter single = new RecordingImageWriter(30, 30);
+        builder.setRayTracer(pathTracer).setImageWriter(single).setThreads(1).build().renderImage();
+        RecordingImageWriter parallel = new RecordingImageWriter(30, 30);
+        builder.setImageWriter(parallel).setThreads(4).build().renderImage();
+        assertArrayEquals(single.pixels, parallel.pixels, "Path tracing depends on the number of threads");
+        java.awt.Color[] paths = single.pixels;
+
+        // EP02: Glossy reflections with adaptive supersampling do not depend on the number of threads either
+        builder.setRayTracer(new SimpleRayTracer(scene)).setAdaptiveDepth(2);
+        single = new RecordingImageWriter(30, 30);
+        builder.setImageWriter(single).setThreads(1).build().renderImage();
+        parallel = new RecordingImageWriter(30, 30);
+        builder.setImageWriter(parallel).setThreads(3).build().renderImage();
+        assertArrayEquals(single.pixels, parallel.pixels, "Adaptive sampling depends on the number of threads");
+
+        // EP03: Another frame gets different noise
+        RecordingImageWriter next = new RecordingImageWriter(30, 30);
+        builder.setRayTracer(pathTracer).setAdaptiveDepth(0).setImageWriter(next).setFrame(1).build().renderImage();
+        assertTrue(!java.util.Arrays.equals(paths, next.pixels), "Frames should get different noise");
+
+        // =============== Boundary Values Tests ==================
+        // BV01: No threads
+        assertThrows(IllegalArgumentException.class, () -> builder.setThreads(0), "Zero threads");
+    }
+
+    /**
+     * Test method for rendering in batches and in packets, set by
+     * {@link renderer.Camera.Builder#setBatchSize(int)} and {@link renderer.Camera.Builder#setPacketTracing(boolean)}.
+     */
+    @Test
+    void testBatches() {
+        Scene scene = new Scene("Batches").setBackground(new Color(10, 10, 30));
+        scene.geometries.add(
+                new Plane(new Point(0, 0, -100), new Vector(0, 0, 1))
+                        .setMaterial(new Material().setkD(0.5).setkR(0.3).setRoughness(0.2)),
+                new Sphere(40, new Point(0, 0, -60)).setEmission(new Color(60, 20, 20))
+                        .setMaterial(new Material().setkD(0.5).setkS(0.3).setnShininess(50).setRoughness(0.1)
+                                .setkR(0.4)));
+        scene.lights.add(new PointLight(new Color(500, 500, 400), new Point(80, 80, 100)).setkL(0.001));
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(new Point(0, -300, 200)).setDirection(new Vector(0, 300, -260), new Vector(0, 260, 300))
+                .setVpDistance(300).setVpSize(200, 200).setRayTracer(new SimpleRayTracer(scene));
+        RecordingImageWriter single = new RecordingImageWriter(30, 30);
+        builder.setImageWriter(single).build().renderImage();
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: Glossy reflections traced in batches of any size match the pixels traced one by one
+        for (int batchSize : new int[] { 7, 64 }) {
+            RecordingImageWriter batches = new RecordingImageWriter(30, 30);
+            builder.setImageWriter(batches).setBatchSize(batchSize).build().renderImage();
+            assertArrayEquals(single.pixels, batches.pixels, "Batches of " + batchSize + " change the image");
+        }
+
+        // EP02: Glossy reflections traced in packets match the pixels traced one by one
+        RecordingImageWriter packets = new RecordingImageWriter(30, 30);
+        builder.setImageWriter(packets).setBatchSize(0).setPacketTracing(true).build().renderImage();
+        assertArrayEquals(single.pixels, packets.pixels, "Packets change the image");
+    }
 }
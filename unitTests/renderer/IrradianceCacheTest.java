@@ -0,0 +1,148 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the irradiance cache and the indirect diffuse light of the simple ray tracer
+ */
+class IrradianceCacheTest {
+    /** The normal of the records of the tests */
+    private final Vector up = new Vector(0, 0, 1);
+    /** The light of the records of the tests */
+    private final Color light = new Color(100, 50, 20);
+
+    /**
+     * Test method for {@link IrradianceCache#lookup(Point, Vector)} and
+     * {@link IrradianceCache#insert(Point, Vector, Color, double)}.
+     */
+    @Test
+    void testLookup() {
+        IrradianceCache cache = new IrradianceCache().setAccuracy(0.5).setSpacing(1, 100);
+        cache.insert(new Point(0, 0, 0), up, light, 10);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A point within accuracy times the radius, with the same normal, interpolates the record
+        assertEquals(light.getColor(), cache.lookup(new Point(3, 0, 0), up).getColor(), "Wrong interpolated light");
+
+        // TC02: A point beyond accuracy times the radius
+        assertNull(cache.lookup(new Point(6, 0, 0), up), "Record should not be valid far from its point");
+
+        // TC03: A point facing the opposite way
+        assertNull(cache.lookup(new Point(1, 0, 0), new Vector(0, 0, -1)), "Record should not be valid for a back face");
+
+        // TC04: A point behind the record, whose hemisphere sees geometries the record does not see
+        assertNull(cache.lookup(new Point(0, 0, -2), up), "Record should not be valid behind its point");
+
+        // TC05: Two records are weighted by their proximity
+        cache.insert(new Point(4, 0, 0), up, Color.BLACK, 10);
+        java.awt.Color between = cache.lookup(new Point(1, 0, 0), up).getColor();
+        assertTrue(between.getRed() > 50 && between.getRed() < 100, "Closer record should weigh more");
+        assertEquals(2, cache.size(), "Wrong number of records");
+
+        // TC06: The root grows to hold a far record
+        cache.insert(new Point(5000, -3000, 700), up, light, 1);
+        assertEquals(light.getColor(), cache.lookup(new Point(5000, -3000, 700), up).getColor(),
+                "Far record should be found");
+        assertEquals(between, cache.lookup(new Point(1, 0, 0), up).getColor(),
+                "Records should be kept when the root grows");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: An empty cache
+        assertNull(new IrradianceCache().lookup(Point.ZERO, up), "Empty cache should have no record");
+        // TC12: Accuracy out of range
+        assertThrows(IllegalArgumentException.class, () -> cache.setAccuracy(0), "Set zero accuracy");
+        // TC13: Spacing bounds out of order
+        assertThrows(IllegalArgumentException.class, () -> cache.setSpacing(10, 1), "Set unordered spacing");
+    }
+
+    /**
+     * Test method for concurrent insertions in {@link IrradianceCache#insert(Point, Vector, Color, double)}.
+     */
+    @Test
+    void testConcurrentInsert() throws InterruptedException {
+        IrradianceCache cache = new IrradianceCache().setSpacing(0.5, 20);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            int first = t;
+            threads[t] = new Thread(() -> {
+                for (int i = first; i < 4000; i += threads.length)
+                    cache.insert(new Point(i % 20 * 37.0, i / 20 % 20 * 41.0, i / 400 * 53.0), up, light, i % 7 + 1);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: No record is lost by concurrent insertions, including while the root grows
+        assertEquals(4000, cache.size(), "Wrong number of records");
+        for (int i = 0; i < 4000; ++i)
+            assertNotNull(cache.lookup(new Point(i % 20 * 37.0, i / 20 % 20 * 41.0, i / 400 * 53.0), up),
+                    "Record " + i + " was lost");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setIrradianceCache(IrradianceCache)}.
+     */
+    @Test
+    void testIndirectDiffuse() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A diffuse floor under a uniform sky reflects the sky scaled by its diffuse coefficient
+        Scene sky = new Scene("Sky scene").setBackground(new Color(100, 200, 40));
+        sky.geometries.add(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1))
+                .setMaterial(new Material().setkD(0.5)));
+        IrradianceCache cache = new IrradianceCache();
+        SimpleRayTracer tracer = new SimpleRayTracer(sky).setIrradianceCache(cache);
+        for (int i = 0; i < 100; ++i) {
+            java.awt.Color color = tracer.traceRay(new Ray(new Point(i * 0.5, 0, 10), new Vector(1, 1, -2))).getColor();
+            assertEquals(50, color.getRed(), 1, "Wrong indirect red");
+            assertEquals(100, color.getGreen(), 1, "Wrong indirect green");
+            assertEquals(20, color.getBlue(), 1, "Wrong indirect blue");
+        }
+
+        // TC02: Neighbouring points interpolate the records instead of gathering again
+        assertTrue(cache.size() < 10, "Too many records for a flat floor");
+        assertTrue(cache.getHitRate() > 0.9, "Too few interpolations");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Without a cache, there is no indirect diffuse light
+        assertEquals(new java.awt.Color(0, 0, 0),
+                new SimpleRayTracer(sky).traceRay(new Ray(new Point(0, 0, 10), new Vector(1, 1, -2))).getColor(),
+                "No indirect diffuse light without a cache");
+    }
+
+    /** Produce a picture of a room lit indirectly through the irradiance cache, rendered in parallel */
+    @Test
+    void renderIrradianceCache() {
+        Scene scene = new Scene("Room scene");
+        Material wall = new Material().setkD(0.7);
+        scene.geometries.add(
+                new Plane(new Point(0, 0, -100), new Vector(0, 0, 1)).setMaterial(wall),
+                new Plane(new Point(0, 0, 100), new Vector(0, 0, -1)).setMaterial(wall),
+                new Plane(new Point(-100, 0, 0), new Vector(1, 0, 0)).setEmission(new Color(20, 0, 0))
+                        .setMaterial(new Material().setkD(0.7)),
+                new Plane(new Point(100, 0, 0), new Vector(-1, 0, 0)).setEmission(new Color(0, 20, 0))
+                        .setMaterial(new Material().setkD(0.7)),
+                new Plane(new Point(0, 100, 0), new Vector(0, -1, 0)).setMaterial(wall),
+                new Sphere(35, new Point(20, 30, -65)).setMaterial(new Material().setkD(0.6).setkS(0.3)
+                        .setnShininess(40)));
+        scene.lights.add(new PointLight(new Color(400, 400, 350), new Point(0, 20, 90)).setkL(0.002));
+        Camera.getBuilder()
+                .setLocation(new Point(0, -400, 0)).setDirection(new Vector(0, 1, 0), new Vector(0, 0, 1))
+                .setVpDistance(300).setVpSize(150, 150)
+                .setImageWriter(new ImageWriter("irradianceCache", 100, 100))
+                .setRayTracer(new SimpleRayTracer(scene)
+                        .setIrradianceCache(new IrradianceCache().setSpacing(2, 50).setGatherRays(32)))
+                .setThreads(2)
+                .build()
+                .renderImage()
+                .writeToImage();
+    }
+}
@@ -0,0 +1,88 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import geometries.Triangle;
+import lighting.AmbientLight;
+import lighting.SpotLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static java.awt.Color.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for tracing packets of primary rays
+ */
+class PacketTracingTest {
+    /** Scene for the tests */
+    private final Scene scene = new Scene("Packet scene");
+    /** Camera builder for the tests */
+    private final Camera.Builder cameraBuilder = Camera.getBuilder()
+            .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+            .setLocation(new Point(0, 0, 1000)).setVpDistance(1000)
+            .setVpSize(200, 200);
+
+    /**
+     * Test method for {@link SimpleRayTracer#traceRays(RayPacket, Color[])}.
+     */
+    @Test
+    void testTraceRays() {
+        scene.geometries.add(
+                new Sphere(50d, new Point(0, 0, -50)).setEmission(new Color(BLUE))
+                        .setMaterial(new Material().setkD(0.4).setkS(0.3).setnShininess(100).setkT(0.3)),
+                new Triangle(new Point(-150, -150, -115), new Point(150, -150, -135), new Point(75, 75, -150))
+                        .setMaterial(new Material().setkD(0.5).setkS(0.5).setnShininess(60)),
+                new Plane(new Point(0, 0, -200), new Vector(0, 0, 1)).setEmission(new Color(20, 20, 20)));
+        scene.setAmbientLight(new AmbientLight(new Color(WHITE), 0.15));
+        scene.lights.add(new SpotLight(new Color(700, 400, 400), new Point(60, 50, 0), new Vector(0, 0, -1))
+                .setkL(4E-5).setkQ(2E-7));
+        SimpleRayTracer tracer = new SimpleRayTracer(scene);
+        Camera camera = cameraBuilder.setRayTracer(tracer).setImageWriter(new ImageWriter("packets", 40, 40)).build();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Coherent packets of neighbouring pixels give the same colors as single rays
+        RayPacket packet = new RayPacket();
+        Color[] colors = new Color[RayPacket.SIZE];
+        for (int i = 0; i < 40; i += 2)
+            for (int j = 0; j < 40; j += 4) {
+                packet.clear();
+                for (int k = 0; k < RayPacket.SIZE; ++k)
+                    packet.add(camera.constructRay(40, 40, j + k % 4, i + k / 4));
+                assertTrue(packet.isCoherent(), "Packet of neighbouring pixels should be coherent");
+                tracer.traceRays(packet, colors);
+                for (int k = 0; k < RayPacket.SIZE; ++k)
+                    assertEquals(tracer.traceRay(packet.getRay(k)).getColor(), colors[k].getColor(),
+                            "Packet color differs from single ray color");
+            }
+
+        // TC02: Diverging rays make an incoherent packet which is traced lane by lane
+        packet.clear();
+        packet.add(new Ray(new Point(0, 0, 1000), new Vector(0, 0, -1)));
+        packet.add(new Ray(new Point(0, 0, 1000), new Vector(1, 0, 0)));
+        assertFalse(packet.isCoherent(), "Packet of diverging rays should not be coherent");
+        tracer.traceRays(packet, colors);
+        assertEquals(tracer.traceRay(packet.getRay(0)).getColor(), colors[0].getColor(),
+                "Incoherent packet color differs from single ray color");
+    }
+
+    /** Produce a picture of a sphere and triangles traced in packets */
+    @Test
+    void renderPackets() {
+        scene.geometries.add(
+                new Sphere(60d, new Point(0, 0, -200)).setEmission(new Color(BLUE))
+                        .setMaterial(new Material().setkD(0.5).setkS(0.5).setnShininess(30)),
+                new Triangle(new Point(-150, -150, -115), new Point(150, -150, -135), new Point(75, 75, -150))
+                        .setMaterial(new Material().setkD(0.5).setkS(0.5).setnShininess(60)));
+        scene.lights.add(new SpotLight(new Color(700, 400, 400), new Point(40, 40, 115), new Vector(-1, -1, -4))
+                .setkL(4E-4).setkQ(2E-5));
+
+        cameraBuilder.setRayTracer(new SimpleRayTracer(scene))
+                .setImageWriter(new ImageWriter("packetTracing", 250, 250))
+                .setPacketTracing(true)
+                .build()
+                .renderImage()
+                .writeToImage();
+    }
+}
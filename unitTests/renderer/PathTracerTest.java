@@ -0,0 +1,96 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.AmbientLight;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Monte Carlo path tracer
+ */
+class PathTracerTest {
+    /** A ray hitting the floor of the scenes */
+    private final Ray ray = new Ray(new Point(0, 0, 10), new Vector(1, 1, -2));
+
+    /**
+     * Test method for {@link PathTracer#traceRay(Ray)}.
+     */
+    @Test
+    void testTraceRay() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Without geometries to bounce on, the direct light equals the simple ray tracer
+        Scene direct = new Scene("Direct scene");
+        direct.geometries.add(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setEmission(new Color(20, 10, 5))
+                .setMaterial(new Material().setkD(0.5).setkS(0.4).setnShininess(20)));
+        direct.lights.add(new PointLight(new Color(300, 200, 100), new Point(3, 6, 4)).setkL(0.01));
+        direct.setAmbientLight(new AmbientLight(new Color(30, 30, 30), 0.1));
+        assertEquals(new SimpleRayTracer(direct).traceRay(ray).getColor(),
+                new PathTracer(direct).setSamples(4).traceRay(ray).getColor(),
+                "Direct light differs from the simple ray tracer");
+
+        // TC02: A diffuse floor under a uniform sky reflects the sky scaled by its diffuse coefficient
+        Scene sky = new Scene("Sky scene").setBackground(new Color(100, 200, 40));
+        sky.geometries.add(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1))
+                .setMaterial(new Material().setkD(0.5)));
+        java.awt.Color color = new PathTracer(sky).setSamples(20000).traceRay(ray).getColor();
+        assertEquals(50, color.getRed(), 2, "Wrong indirect red");
+        assertEquals(100, color.getGreen(), 3, "Wrong indirect green");
+        assertEquals(20, color.getBlue(), 1, "Wrong indirect blue");
+
+        // TC03: A mirror floor reflects the light of a sphere above it
+        Scene mirror = new Scene("Mirror scene");
+        mirror.geometries.add(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkR(1)),
+                new Sphere(1, new Point(20, 20, 10)).setEmission(new Color(0, 0, 200)));
+        assertEquals(new java.awt.Color(0, 0, 200),
+                new PathTracer(mirror).setSamples(10).traceRay(new Ray(new Point(0, 0, 10), new Vector(1, 1, -1)))
+                        .getColor(),
+                "Wrong mirror reflection");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A ray missing the scene gives the background
+        assertEquals(new java.awt.Color(100, 200, 40),
+                new PathTracer(sky).traceRay(new Ray(new Point(0, 0, 10), new Vector(0, 0, 1))).getColor(),
+                "Missing ray should give the background");
+    }
+
+    /**
+     * Test method for {@link PathTracer#setSamples(int)} and {@link PathTracer#setMaxDepth(int)}.
+     */
+    @Test
+    void testSetters() {
+        PathTracer tracer = new PathTracer(new Scene("Empty scene"));
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Zero samples
+        assertThrows(IllegalArgumentException.class, () -> tracer.setSamples(0), "Set zero samples");
+        // TC12: Zero depth
+        assertThrows(IllegalArgumentException.class, () -> tracer.setMaxDepth(0), "Set zero depth");
+    }
+
+    /**
+     * Rendering test: the path tracer plugs into the camera like any ray tracer.
+     */
+    @Test
+    void testRender() {
+        Scene scene = new Scene("Path scene").setBackground(new Color(10, 10, 30));
+        scene.geometries.add(
+                new Plane(new Point(0, 0, -100), new Vector(0, 0, 1)).setMaterial(new Material().setkD(0.6)),
+                new Sphere(40, new Point(0, 0, -60)).setEmission(new Color(60, 20, 20))
+                        .setMaterial(new Material().setkD(0.5).setkS(0.3).setnShininess(50).setkR(0.2)));
+        scene.lights.add(new PointLight(new Color(500, 500, 400), new Point(80, 80, 100)).setkL(0.001));
+        Camera.getBuilder()
+                .setLocation(new Point(0, -300, 200)).setDirection(new Vector(0, 300, -260), new Vector(0, 260, 300))
+                .setVpDistance(300).setVpSize(200, 200)
+                .setImageWriter(new ImageWriter("pathTracing", 100, 100))
+                .setRayTracer(new PathTracer(scene).setSamples(8))
+                .build()
+                .renderImage()
+                .writeToImage();
+    }
+}
@@ -0,0 +1,121 @@
+package renderer;
+
+import geometries.Geometries;
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.DirectionalLight;
+import lighting.LightSource;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the caustic photon map
+ */
+class PhotonMapTest {
+    /** The intensity of the lights of the tests */
+    private final Color light = new Color(100, 100, 100);
+    /** The normal of the floor */
+    private final Vector up = new Vector(0, 0, 1);
+    /** A point light above the spheres of the tests */
+    private final List<LightSource> lights = List.of(new PointLight(light, new Point(0, 0, 100)));
+
+    /**
+     * Creates a floor with a transparent sphere above it.
+     *
+     * @param ior the index of refraction of the sphere
+     * @return the geometries
+     */
+    private static Geometries lens(double ior) {
+        return new Geometries(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(1)),
+                new Sphere(20, new Point(0, 0, 40)).setMaterial(new Material().setkT(1).setIor(ior)));
+    }
+
+    /**
+     * Test method for {@link PhotonMap#irradiance(Point, Vector)}.
+     */
+    @Test
+    void testIrradiance() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Light passing straight through a clear sphere has the intensity of the direct light
+        PhotonMap clear = new PhotonMap(new Point(0, 0, 40), 25).setPhotons(200_000).setNeighbors(200);
+        clear.build(lights, lens(1));
+        assertEquals(100, clear.irradiance(new Point(0, 0, 0), up).difference(Color.BLACK), 15,
+                "Wrong irradiance of the caustic");
+        // TC02: A lens focuses the light under it, out of the rest of its shadow
+        PhotonMap focused = new PhotonMap(new Point(0, 0, 40), 25).setPhotons(200_000);
+        focused.build(lights, lens(1.5));
+        double focus = focused.irradiance(new Point(0, 0, 0), up).difference(Color.BLACK);
+        assertTrue(focus > 200, "The lens should focus the light");
+        assertTrue(focus > 10 * focused.irradiance(new Point(25, 0, 0), up).difference(Color.BLACK),
+                "The lens should focus the light out of the edge of its shadow");
+        // TC03: Photons arriving at the other side of a surface are not counted
+        assertEquals(Color.BLACK.getColor(), focused.irradiance(new Point(0, 0, 0), up.scale(-1)).getColor(),
+                "The caustic should not light the back of the floor");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Far from the caustics, beyond the maximal radius
+        assertEquals(Color.BLACK.getColor(), focused.irradiance(new Point(100, 0, 0), up).getColor(),
+                "There should be no caustic away from the lens");
+        // TC12: An empty map
+        assertEquals(Color.BLACK.getColor(), new PhotonMap(Point.ZERO, 1).irradiance(Point.ZERO, up).getColor(),
+                "An empty map should have no caustics");
+    }
+
+    /**
+     * Test method for {@link PhotonMap#build(List, geometries.Intersectable)}.
+     */
+    @Test
+    void testBuild() throws Exception {
+        PhotonMap map = new PhotonMap(new Point(0, 0, 40), 25).setPhotons(20_000);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The photons emitted and stored, and their memory
+        map.build(lights, lens(1.5));
+        int size = map.size();
+        assertEquals(20_000, map.getEmitted(), "Wrong number of emitted photons");
+        assertTrue(size > 0 && size < 20_000, "Only the photons through the lens should be stored");
+        assertEquals(37L * size, map.getMemory(), "Wrong memory of the photons");
+        // TC02: The emission is the same when repeated in parallel
+        Color irradiance = map.irradiance(new Point(3, 2, 0), up);
+        map.build(lights, lens(1.5));
+        assertEquals(size, map.size(), "The photons should not depend on the threads");
+        assertEquals(irradiance.getColor(), map.irradiance(new Point(3, 2, 0), up).getColor(),
+                "The caustics should not depend on the threads");
+        // TC03: A directional light emits through the target sphere
+        map.build(List.of(new DirectionalLight(light, new Vector(0, 0, -1))), lens(1.5));
+        assertTrue(map.irradiance(new Point(0, 0, 0), up).difference(Color.BLACK) > 100,
+                "The lens should focus the directional light");
+        // TC04: Wrong configurations
+        assertThrows(IllegalArgumentException.class, () -> new PhotonMap(Point.ZERO, 0), "Created with a zero radius");
+        assertThrows(IllegalArgumentException.class, () -> map.setPhotons(0), "Set no photons");
+        assertThrows(IllegalArgumentException.class, () -> map.setMaxPhotons(0), "Set no stored photons");
+        assertThrows(IllegalArgumentException.class, () -> map.setTimeLimit(-1), "Set a negative time limit");
+        assertThrows(IllegalArgumentException.class, () -> map.setNeighbors(0), "Set no neighbors");
+        assertThrows(IllegalArgumentException.class, () -> map.setMaxRadius(0), "Set a zero radius");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The maximal number of stored photons bounds the memory, and fewer photons are emitted
+        map.setMaxPhotons(1000).build(lights, lens(1.5));
+        assertTrue(map.size() <= 1000 && map.size() > 0, "The map should be bounded");
+        assertTrue(map.getEmitted() < 20_000, "The emission should stop when the map is full");
+        int bounded = map.size();
+        long emitted = map.getEmitted();
+        new ForkJoinPool(4).submit(() -> map.build(lights, lens(1.5))).get();
+        assertEquals(bounded, map.size(), "The bounded map should not depend on the threads");
+        assertEquals(emitted, map.getEmitted(), "The bounded emission should not depend on the threads");
+        // TC12: The time limit bounds the pre-pass
+        map.setMaxPhotons(1 << 20).setPhotons(50_000_000).setTimeLimit(1).build(lights, lens(1.5));
+        assertTrue(map.getEmitted() < 50_000_000, "The emission should stop at the time limit");
+        // TC13: Without reflective or refractive geometries, no photon is stored
+        map.setPhotons(1000).setTimeLimit(0)
+                .build(lights, new Geometries(new Plane(Point.ZERO, up).setMaterial(new Material().setkD(1))));
+        assertEquals(0, map.size(), "The direct light should not be stored");
+    }
+}
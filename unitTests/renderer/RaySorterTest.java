@@ -0,0 +1,68 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the sorting of the ray queues of the wavefront ray tracer
+ */
+class RaySorterTest {
+    /**
+     * Calculates the octant of the direction of a ray, as in the sort key.
+     *
+     * @param ray the ray
+     * @return the octant, between 0 and 7
+     */
+    private static int octant(Ray ray) {
+        Vector d = ray.getDirection();
+        return (d.getX() < 0 ? 4 : 0) | (d.getY() < 0 ? 2 : 0) | (d.getZ() < 0 ? 1 : 0);
+    }
+
+    /**
+     * Test method for {@link RaySorter#sort(RayQueue, RayQueue)}.
+     */
+    @Test
+    void testSort() {
+        Random random = new Random(7);
+        RayQueue source = new RayQueue();
+        for (int i = 0; i < 1000; ++i) {
+            Vector direction = new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+                    random.nextDouble() - 0.5);
+            Point origin = new Point(100 * random.nextDouble(), 100 * random.nextDouble(), 100 * random.nextDouble());
+            source.add(new Ray(origin, direction), i, 0, Double3.ONE, Double3.ONE, i);
+        }
+        RayQueue target = new RayQueue();
+        new RaySorter().sort(source, target);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The rays of mixed directions come out in contiguous runs of ascending octants
+        assertEquals(source.size, target.size, "The sorted queue should hold all the rays");
+        for (int k = 1; k < target.size; ++k)
+            assertTrue(octant(target.rays[k - 1]) <= octant(target.rays[k]), "The octants are not contiguous at " + k);
+        // TC02: Every ray keeps its pixel and its seed, and appears once
+        boolean[] seen = new boolean[source.size];
+        for (int k = 0; k < target.size; ++k) {
+            int pixel = target.pixels[k];
+            assertFalse(seen[pixel], "Pixel " + pixel + " appears twice");
+            seen[pixel] = true;
+            assertSame(source.rays[pixel], target.rays[k], "Wrong ray of pixel " + pixel);
+            assertEquals(pixel, target.seeds[k], "Wrong seed of pixel " + pixel);
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Rays of one octant from a single origin keep their order
+        RayQueue same = new RayQueue();
+        for (int i = 0; i < 10; ++i)
+            same.add(new Ray(Point.ZERO, new Vector(1, 1 + i, 1)), i, 0, Double3.ONE, Double3.ONE, i);
+        new RaySorter().sort(same, target);
+        for (int k = 0; k < target.size; ++k)
+            assertEquals(k, target.pixels[k], "The order of equal keys should be kept");
+    }
+}
@@ -0,0 +1,112 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the samplers and for the beams generated with them
+ */
+class SamplerTest {
+    private final double DELTA = 0.000001;
+    /** All the samplers */
+    private final Sampler[] samplers = {
+            new StratifiedSampler(), new HaltonSampler(), new SobolSampler(), new BlueNoiseSampler() };
+
+    /**
+     * Test method for {@link Sampler#sample(double[], int)}.
+     */
+    @Test
+    void testSample() {
+        for (Sampler sampler : samplers) {
+            String name = sampler.getClass().getSimpleName();
+            double[] points = new double[2 * 64];
+            sampler.sample(points, 64);
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: All the points are in the unit square
+            for (double coordinate : points)
+                assertTrue(coordinate >= 0 && coordinate < 1, name + ": point out of the unit square");
+
+            // TC02: The points are spread evenly: each of the 16 cells of a 4x4 grid has 4 points, give or take
+            int[] cells = new int[16];
+            for (int i = 0; i < 64; ++i)
+                ++cells[(int) (points[2 * i] * 4) + 4 * (int) (points[2 * i + 1] * 4)];
+            for (int cell : cells)
+                assertTrue(cell >= 1 && cell <= 8, name + ": points are not spread evenly");
+        }
+
+        // TC03: A prefix of 16 Sobol points has exactly one point in each cell of a 4x4 grid
+        double[] points = new double[2 * 16];
+        new SobolSampler().sample(points, 16);
+        int[] cells = new int[16];
+        for (int i = 0; i < 16; ++i)
+            ++cells[(int) (points[2 * i] * 4) + 4 * (int) (points[2 * i + 1] * 4)];
+        for (int cell : cells)
+            assertEquals(1, cell, "Sobol points should stratify the grid");
+    }
+
+    /**
+     * Test method for {@link Sampler#squareToDisk(double[], int)} and
+     * {@link Sampler#squareToHemisphere(double[], double[], int)}.
+     */
+    @Test
+    void testMappings() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Points are mapped into the unit disk, and directions are unit vectors on the upper hemisphere
+        double[] points = new double[2 * 100];
+        double[] directions = new double[3 * 100];
+        new HaltonSampler().sample(points, 100);
+        Sampler.squareToHemisphere(points, directions, 100);
+        for (int i = 0; i < 100; ++i) {
+            double x = points[2 * i], y = points[2 * i + 1];
+            assertTrue(x * x + y * y <= 1 + DELTA, "Point out of the unit disk");
+            double dx = directions[3 * i], dy = directions[3 * i + 1], dz = directions[3 * i + 2];
+            assertEquals(1, dx * dx + dy * dy + dz * dz, DELTA, "Direction is not a unit vector");
+            assertTrue(dz >= 0, "Direction out of the hemisphere");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The center and a corner of the square map to the center and the edge of the disk
+        points = new double[] { 0.5, 0.5, 1, 0.5 };
+        Sampler.squareToDisk(points, 2);
+        assertArrayEquals(new double[] { 0, 0, 1, 0 }, points, DELTA, "Wrong mapping of the center and an edge");
+    }
+
+    /**
+     * Test method for {@link Blackboard#generateBeam(Vector, double, double, Ray, int, Sampler)}.
+     */
+    @Test
+    void testGenerateBeam() {
+        Vector n = new Vector(0, 0, 1);
+        for (Sampler sampler : samplers) {
+            String name = sampler.getClass().getSimpleName();
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: The beam has one ray per sample, all inside the cone of the beam
+            Ray ray = new Ray(new Point(0, 0, 1), new Vector(0, 1, 1));
+            List<Ray> beam = Blackboard.generateBeam(n, 1, 0.2, ray, 16, sampler);
+            assertEquals(16, beam.size(), name + ": wrong number of rays");
+            for (Ray beamRay : beam)
+                assertNotSame(ray, beamRay, name + ": the given ray should not be part of the beam");
+            for (Ray beamRay : beam)
+                assertTrue(beamRay.getDirection().dotProduct(ray.getDirection()) >= 1 / Math.sqrt(1.04) - DELTA,
+                        name + ": ray out of the beam");
+
+            // =============== Boundary Values Tests ==================
+            // TC11: A wide beam almost tangent to the surface stays on the side of the given ray
+            Ray grazing = new Ray(new Point(0, 0, 1), new Vector(0, 1, 0.05));
+            for (Ray beamRay : Blackboard.generateBeam(n, 1, 1, grazing, 32, sampler))
+                assertTrue(beamRay.getDirection().dotProduct(n) > 0, name + ": ray crossed the surface");
+            // TC12: A beam of a single ray has one sample of the disk, and a beam without width is the given ray
+            assertEquals(1, Blackboard.generateBeam(n, 1, 0.2, ray, 1, sampler).size(), name + ": wrong single beam");
+            assertEquals(List.of(ray), Blackboard.generateBeam(n, 1, 0, ray, 16, sampler),
+                    name + ": a beam without width should be the given ray");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package renderer;
+
+import geometries.Geometries;
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.DirectionalLight;
+import lighting.PointLight;
+import lighting.SphereLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the shadow maps of the light sources
+ */
+class ShadowMapTest {
+    /** A floor, with a sphere above it and a transparent sphere beside it */
+    private final Geometries geometries = new Geometries(
+            new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(1)),
+            new Sphere(20, new Point(0, 0, 50)).setMaterial(new Material().setkD(0.5)),
+            new Sphere(20, new Point(100, 0, 50)).setMaterial(new Material().setkT(0.5)));
+    /** The intensity of the lights of the tests */
+    private final Color light = new Color(100, 100, 100);
+    /** The normal of the floor */
+    private final Vector up = new Vector(0, 0, 1);
+
+    /**
+     * Test method for {@link ShadowMap#visibility(Point, Vector)} of a point light.
+     */
+    @Test
+    void testCubeMap() {
+        ShadowMap map = ShadowMap.of(new PointLight(light, new Point(0, 0, 100)), geometries, 128, Point.ZERO, 1,
+                false);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A point of the floor under the sphere is in its shadow
+        assertEquals(0, map.visibility(new Point(0, 0, 0), up), "The umbra should be hidden");
+        // TC02: A point of the floor away from the sphere is lit, without shadowing itself
+        assertEquals(1, map.visibility(new Point(-80, 30, 0), up), "The floor should be lit");
+        // TC03: The lit side of the sphere is lit, its far side is hidden
+        assertEquals(1, map.visibility(new Point(0, 0, 70), up), "The top of the sphere should be lit");
+        assertEquals(0, map.visibility(new Point(0, 0, 30), up.scale(-1)), "The bottom of the sphere should be hidden");
+        // TC04: Transparent geometries cast no shadow
+        assertEquals(1, map.visibility(new Point(200, 0, 0), up), "A transparent sphere should cast no shadow");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The edge of the shadow is filtered, the visibility rising gradually across it
+        boolean partial = false;
+        double previous = 0;
+        for (double x = 40; x <= 48; x += 0.05) {
+            double visibility = map.visibility(new Point(x, 0, 0), up);
+            assertTrue(visibility >= previous, "The visibility should rise across the edge");
+            partial |= visibility > 0 && visibility < 1;
+            previous = visibility;
+        }
+        assertTrue(partial && previous == 1, "The edge of the shadow should be partly visible");
+        // TC12: The position of the light
+        assertEquals(1, map.visibility(new Point(0, 0, 100), up), "The light should see itself");
+    }
+
+    /**
+     * Test method for {@link ShadowMap#visibility(Point, Vector)} of a directional light.
+     */
+    @Test
+    void testOrthographicMap() {
+        ShadowMap map = ShadowMap.of(new DirectionalLight(light, new Vector(0, 0, -1)), geometries, 128,
+                new Point(0, 0, 0), 40, false);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A point of the floor under the sphere is in its shadow, though the sphere is beyond the covered sphere
+        assertEquals(0, map.visibility(new Point(0, 0, 0), up), "The umbra should be hidden");
+        // TC02: A point of the floor away from the sphere is lit
+        assertEquals(1, map.visibility(new Point(30, 0, 0), up), "The floor should be lit");
+        // TC03: A point beyond the covered sphere
+        assertTrue(Double.isNaN(map.visibility(new Point(60, 0, 0), up)), "A point beyond the map should not be covered");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A point beyond the covered sphere on the far side from the light
+        assertTrue(Double.isNaN(map.visibility(new Point(0, 0, -50), up)), "A point below the map should not be covered");
+    }
+
+    /**
+     * Test method for {@link ShadowMap#of(lighting.LightSource, geometries.Intersectable, int, Point, double, boolean)}.
+     */
+    @Test
+    void testOf() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Area lights keep their sampled soft shadows
+        assertNull(ShadowMap.of(new SphereLight(light, new Point(0, 0, 100), 5), geometries, 16, Point.ZERO, 1, false),
+                "An area light should not be mapped");
+        // TC02: The parallel and serial maps are the same
+        PointLight point = new PointLight(light, new Point(30, -20, 90));
+        ShadowMap serial = ShadowMap.of(point, geometries, 32, Point.ZERO, 1, false);
+        ShadowMap parallel = ShadowMap.of(point, geometries, 32, Point.ZERO, 1, true);
+        for (int x = -60; x <= 60; x += 3)
+            assertEquals(serial.visibility(new Point(x, 0.5 * x, 0), up), parallel.visibility(new Point(x, 0.5 * x, 0), up),
+                    "The parallel map should be the serial one");
+    }
+}
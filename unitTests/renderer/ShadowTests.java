@@ -6,6 +6,9 @@ import org.junit.jupiter.api.Test;
 
 import geometries.*;
 import lighting.AmbientLight;
+import lighting.DiskLight;
+import lighting.RectangleLight;
+import lighting.SphereLight;
 import lighting.SpotLight;
 import primitives.*;
 import renderer.*;
@@ -113,4 +116,28 @@ public class ShadowTests {
          .writeToImage();
    }
 
+
+   /** Produce a picture of soft shadows cast by rectangle, disk and sphere area lights */
+   @Test
+   public void areaLights() {
+      scene.geometries.add( //
+                           new Plane(new Point(0, 0, -150), new Vector(0, 0, 1)) //
+                              .setMaterial(new Material().setkD(0.6)), //
+                           new Sphere(30d, new Point(-70, 40, -100)).setEmission(new Color(BLUE).reduce(2)) //
+                              .setMaterial(trMaterial), //
+                           new Sphere(25d, new Point(60, 50, -110)).setEmission(new Color(RED).reduce(2)) //
+                              .setMaterial(trMaterial), //
+                           new Triangle(new Point(-20, -80, -150), new Point(40, -60, -150), new Point(0, -30, -90)) //
+                              .setEmission(new Color(GREEN).reduce(2)).setMaterial(trMaterial));
+      scene.setAmbientLight(new AmbientLight(new Color(WHITE), 0.1));
+      scene.lights.add(new RectangleLight(new Color(300, 300, 250), new Point(-100, 120, 50),
+                                          new Vector(60, 0, 0), new Vector(0, 30, 20)).setkL(0.002));
+      scene.lights.add(new DiskLight(new Color(200, 250, 300), new Point(120, 80, 20), new Vector(-1, -1, -1), 25)
+                          .setkL(0.002));
+      scene.lights.add(new SphereLight(new Color(300, 200, 150), new Point(20, -120, 10), 15).setkL(0.002));
+      camera.setImageWriter(new ImageWriter("shadowAreaLights", 400, 400))
+         .build()
+         .renderImage() //
+         .writeToImage();
+   }
 }
@@ -0,0 +1,574 @@
+package renderer;
+
+import geometries.Geometry;
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.AmbientLight;
+import lighting.DirectionalLight;
+import lighting.EnvironmentLight;
+import lighting.PointLight;
+import lighting.RectangleLight;
+import lighting.SpotLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the configuration of the recursion limits and the path termination of the simple ray tracer
+ */
+class SimpleRayTracerTest {
+    /** Scene of two parallel half-mirrors, between which a ray bounces up to the maximal level */
+    private final Scene scene = new Scene("Mirrors scene");
+    /** A ray bouncing between the mirrors */
+    private final Ray ray = new Ray(new Point(0, 0, 1), new Vector(1, 0, -1));
+
+    SimpleRayTracerTest() {
+        scene.geometries.add(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setEmission(new Color(100, 0, 0))
+                        .setMaterial(new Material().setkR(0.5)),
+                new Plane(new Point(0, 0, 2), new Vector(0, 0, -1)).setEmission(new Color(0, 100, 0))
+                        .setMaterial(new Material().setkR(0.5)));
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setMaxLevel(int)}.
+     */
+    @Test
+    void testSetMaxLevel() {
+        SimpleRayTracer tracer = new SimpleRayTracer(scene);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The default level is limited by the minimal attenuation (0.5^9 < 0.001 < 0.5^8)
+        assertEquals(new java.awt.Color(133, 66, 0), tracer.traceRay(ray).getColor(), "Wrong color of default level");
+        assertEquals(10, tracer.getAveragePathDepth(), "Wrong default path depth");
+
+        // TC02: A lower level shortens the paths
+        tracer.setMaxLevel(3).resetStatistics();
+        assertEquals(new java.awt.Color(125, 50, 0), tracer.traceRay(ray).getColor(), "Wrong color of level 3");
+        assertEquals(3, tracer.getAveragePathDepth(), "Wrong path depth of level 3");
+
+        // TC03: A non-positive level
+        assertThrows(IllegalArgumentException.class, () -> tracer.setMaxLevel(0), "Set a zero level");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Level 1 shades the primary hit only
+        tracer.setMaxLevel(1).resetStatistics();
+        assertEquals(new java.awt.Color(100, 0, 0), tracer.traceRay(ray).getColor(), "Wrong color of level 1");
+        assertEquals(1, tracer.getAveragePathDepth(), "Wrong path depth of level 1");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setMinK(double)}.
+     */
+    @Test
+    void testSetMinK() {
+        SimpleRayTracer tracer = new SimpleRayTracer(scene);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A higher minimal attenuation terminates the paths earlier (0.5^2 < 0.3 < 0.5)
+        tracer.setMinK(0.3);
+        assertEquals(new java.awt.Color(100, 50, 0), tracer.traceRay(ray).getColor(), "Wrong color of minimal k 0.3");
+        assertEquals(2, tracer.getAveragePathDepth(), "Wrong path depth of minimal k 0.3");
+
+        // TC02: A negative minimal attenuation
+        assertThrows(IllegalArgumentException.class, () -> tracer.setMinK(-0.1), "Set a negative minimal k");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setRussianRoulette(double)}.
+     */
+    @Test
+    void testSetRussianRoulette() {
+        SimpleRayTracer tracer = new SimpleRayTracer(scene).setMinK(0).setMaxLevel(30);
+        Color expected = tracer.traceRay(ray);
+        double fullDepth = tracer.getAveragePathDepth();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The roulette shortens the paths and keeps the average color
+        tracer.setRussianRoulette(0.2).resetStatistics();
+        final int N = 20000;
+        Color sum = Color.BLACK;
+        for (int i = 0; i < N; ++i)
+            sum = sum.add(tracer.traceRay(ray));
+        java.awt.Color average = sum.reduce(N).getColor();
+        java.awt.Color reference = expected.getColor();
+        assertEquals(reference.getRed(), average.getRed(), 2, "Russian roulette biased the red component");
+        assertEquals(reference.getGreen(), average.getGreen(), 2, "Russian roulette biased the green component");
+        assertTrue(tracer.getAveragePathDepth() < fullDepth / 2, "Russian roulette did not shorten the paths");
+
+        // TC02: A threshold out of range
+        assertThrows(IllegalArgumentException.class, () -> tracer.setRussianRoulette(1.5), "Set a threshold above 1");
+    }
+
+    /**
+     * Test method for glossy reflections of materials with {@link Material#setRoughness(double)}.
+     */
+    @Test
+    void testGlossyReflection() {
+        Ray down = new Ray(new Point(0, 0, 1), new Vector(1, 0, -1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A rough mirror under a uniform sky needs only the initial beam
+        Scene sky = new Scene("Sky scene").setBackground(new Color(100, 200, 40));
+        sky.geometries.add(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1))
+                .setMaterial(new Material().setkR(0.5).setRoughness(0.3)));
+        SimpleRayTracer tracer = new SimpleRayTracer(sky);
+        assertEquals(new java.awt.Color(50, 100, 20), tracer.traceRay(down).getColor(), "Wrong uniform glossy color");
+        assertEquals(4, tracer.getAverageGlossyRays(), "A uniform beam should not be refined");
+
+        // TC02: A rough mirror reflecting the edge of a bright sphere refines the beam
+        Scene edge = new Scene("Edge scene");
+        edge.geometries.add(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1))
+                        .setMaterial(new Material().setkR(1).setRoughness(0.05)),
+                new Sphere(1, new Point(20.7, 0, 9.3)).setEmission(new Color(200, 200, 200)));
+        tracer = new SimpleRayTracer(edge);
+        for (int i = 0; i < 20; ++i)
+            tracer.traceRay(new Ray(new Point(0, 0, 10), new Vector(1, 0, -1)));
+        assertTrue(tracer.getAverageGlossyRays() > 4, "A noisy beam should be refined");
+        assertTrue(tracer.getAverageGlossyRays() <= 32, "A beam should not exceed its maximal size");
+
+        // TC03: A negative roughness
+        assertThrows(IllegalArgumentException.class, () -> new Material().setRoughness(-0.1),
+                "Set a negative roughness");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setLightSamples(int)}.
+     */
+    @Test
+    void testLightSamples() {
+        Scene stadium = new Scene("Stadium scene");
+        stadium.geometries.add(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1))
+                .setMaterial(new Material().setkD(0.5).setkS(0.2).setnShininess(20)));
+        for (int i = 0; i < 40; ++i)
+            for (int j = 0; j < 25; ++j)
+                stadium.lights.add(new PointLight(new Color(6, 5, 4), new Point(i * 10 - 200, j * 10 - 125, 30))
+                        .setkQ(0.002));
+        stadium.lights.add(new DirectionalLight(new Color(20, 20, 20), new Vector(0, 0, -1)));
+        Ray ray = new Ray(new Point(-40, 30, 50), new Vector(1, 0.5, -1));
+        SimpleRayTracer tracer = new SimpleRayTracer(stadium);
+        java.awt.Color exact = tracer.traceRay(ray).getColor();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Sampling a few lights per hit is unbiased: the average color converges to the color of all the lights
+        tracer.setLightSamples(4);
+        double red = 0, green = 0, blue = 0;
+        int count = 2000;
+        for (int s = 0; s < count; ++s) {
+            PixelRandom.current().seed(s, 0, 0);
+            java.awt.Color color = tracer.traceRay(ray).getColor();
+            red += color.getRed();
+            green += color.getGreen();
+            blue += color.getBlue();
+        }
+        assertEquals(exact.getRed(), red / count, exact.getRed() * 0.03, "Biased red");
+        assertEquals(exact.getGreen(), green / count, exact.getGreen() * 0.03, "Biased green");
+        assertEquals(exact.getBlue(), blue / count, exact.getBlue() * 0.03, "Biased blue");
+
+        // TC02: A negative number of samples
+        assertThrows(IllegalArgumentException.class, () -> tracer.setLightSamples(-1), "Set negative samples");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: With no more lights than samples, all the lights are added
+        Scene few = new Scene("Few lights scene");
+        few.geometries.add(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(0.5)));
+        few.lights.add(new PointLight(new Color(100, 50, 20), new Point(0, 0, 10)));
+        few.lights.add(new SpotLight(new Color(100, 50, 20), new Point(5, 0, 10), new Vector(0, 0, -1)));
+        assertEquals(new SimpleRayTracer(few).traceRay(ray).getColor(),
+                new SimpleRayTracer(few).setLightSamples(2).traceRay(ray).getColor(), "Wrong color of all the lights");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setLightCutoff(double)}.
+     */
+    @Test
+    void testLightCutoff() {
+        Scene city = new Scene("City scene");
+        city.geometries.add(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1))
+                .setMaterial(new Material().setkD(0.5).setkS(0.2).setnShininess(20)));
+        for (int i = 0; i < 30; ++i)
+            for (int j = 0; j < 30; ++j)
+                city.lights.add(new PointLight(new Color(200, 150, 100), new Point(i * 20 - 300, j * 20 - 300, 10))
+                        .setkL(0.05).setkQ(0.01));
+        SimpleRayTracer exact = new SimpleRayTracer(city);
+        SimpleRayTracer culled = new SimpleRayTracer(city).setLightCutoff(0.1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Skipping the lights below the cutoff barely changes the colors
+        for (int i = 0; i < 50; ++i) {
+            Ray ray = new Ray(new Point(i * 11 - 275, i * 7 - 150, 40), new Vector(1, 0.5, -1));
+            java.awt.Color expected = exact.traceRay(ray).getColor();
+            java.awt.Color actual = culled.traceRay(ray).getColor();
+            assertEquals(expected.getRed(), actual.getRed(), 1, "Wrong red of ray " + i);
+            assertEquals(expected.getGreen(), actual.getGreen(), 1, "Wrong green of ray " + i);
+            assertEquals(expected.getBlue(), actual.getBlue(), 1, "Wrong blue of ray " + i);
+        }
+
+        // TC02: A negative cutoff
+        assertThrows(IllegalArgumentException.class, () -> culled.setLightCutoff(-1), "Set a negative cutoff");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A zero cutoff adds all the lights
+        Ray ray = new Ray(new Point(0, 0, 40), new Vector(1, 0.5, -1));
+        assertEquals(exact.traceRay(ray).getColor(), culled.setLightCutoff(0).traceRay(ray).getColor(),
+                "A zero cutoff should add all the lights");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setShadowCache(boolean)}.
+     */
+    @Test
+    void testShadowCache() {
+        Scene shade = new Scene("Shade scene");
+        shade.geometries.add(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(0.5)),
+                new Sphere(20, new Point(0, 0, 50)).setMaterial(new Material().setkD(0.5)),
+                new Sphere(5, new Point(40, 0, 20)).setMaterial(new Material().setkD(0.5).setkT(0.5)));
+        shade.lights.add(new PointLight(new Color(300, 300, 300), new Point(0, 0, 200)));
+        SimpleRayTracer cached = new SimpleRayTracer(shade);
+        SimpleRayTracer uncached = new SimpleRayTracer(shade).setShadowCache(false);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The cache does not change the colors, in the shadow of the opaque sphere, of the transparent sphere,
+        // and in the light
+        for (int i = 0; i < 100; ++i) {
+            Ray ray = new Ray(new Point(i - 50, -100, 100), new Vector(0, 1, -1));
+            assertEquals(uncached.traceRay(ray).getColor(), cached.traceRay(ray).getColor(), "Wrong color of ray " + i);
+        }
+        assertEquals(0, uncached.getShadowCacheHitRate(), "A disabled cache should not be hit");
+
+        // TC02: Neighbouring points in the shadow of the same geometry hit the cache
+        cached.resetStatistics();
+        for (int i = 0; i < 100; ++i)
+            cached.traceRay(new Ray(new Point(i * 0.1 - 5, -100, 100), new Vector(0, 1, -1)));
+        assertEquals(0.99, cached.getShadowCacheHitRate(), 1e-9, "All the shadow rays but the first should hit");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Points in the light miss the cache
+        cached.resetStatistics();
+        cached.traceRay(new Ray(new Point(100, -100, 100), new Vector(0, 1, -1)));
+        assertEquals(0, cached.getShadowCacheHitRate(), "A lit point should miss the cache");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setSoftShadowGrid(int)} with area lights.
+     */
+    @Test
+    void testSoftShadows() {
+        Scene soft = new Scene("Soft shadow scene");
+        soft.geometries.add(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(1)),
+                new Sphere(20, new Point(0, 0, 50)).setMaterial(new Material().setkD(0.5)));
+        soft.lights.add(new RectangleLight(new Color(100, 100, 100), new Point(0, 0, 100),
+                new Vector(40, 0, 0), new Vector(0, 40, 0)));
+        SimpleRayTracer tracer = new SimpleRayTracer(soft);
+        Vector down = new Vector(0, 0, -1);
+        int lit = tracer.traceRay(new Ray(new Point(100, 0, 10), down)).getColor().getRed();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Far from the sphere, a point is fully lit by the probes alone
+        assertEquals(0, tracer.getPenumbraRate(), "A lit point should not be in a penumbra");
+        // TC02: Under the sphere, a point is fully shadowed by the probes alone
+        assertEquals(0, tracer.traceRay(new Ray(new Point(0, 0, 10), down)).getColor().getRed(),
+                "The umbra should be black");
+        assertEquals(0, tracer.getPenumbraRate(), "A shadowed point should not be in a penumbra");
+        // TC03: At the edge of the shadow, a point is partly lit with all the cells
+        int penumbra = tracer.traceRay(new Ray(new Point(40, 0, 10), down)).getColor().getRed();
+        assertTrue(penumbra > 0 && penumbra < lit, "The penumbra should be partly lit");
+        assertEquals(1 / 3d, tracer.getPenumbraRate(), 1e-9, "A penumbra point should be traced with all the cells");
+        // TC04: A grid below 2 cells per side
+        assertThrows(IllegalArgumentException.class, () -> tracer.setSoftShadowGrid(1), "Set a grid of 1 cell");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: With a finer grid, the penumbra still darkens gradually towards the umbra
+        tracer.setSoftShadowGrid(8);
+        int previous = 0;
+        for (int x = 24; x <= 56; x += 16) {
+            int red = 0;
+            for (int s = 0; s < 20; ++s) {
+                PixelRandom.current().seed(s, x, 0);
+                red += tracer.traceRay(new Ray(new Point(x, 0, 10), down)).getColor().getRed();
+            }
+            assertTrue(red > previous, "The penumbra should lighten away from the umbra");
+            previous = red;
+        }
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#calcLightIntensity(lighting.LightSource, Point, Double3)}.
+     */
+    @Test
+    void testCalcLightIntensity() {
+        Scene filtered = new Scene("Transparent shadow scene");
+        filtered.geometries.add(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(1)),
+                new Plane(new Point(0, 0, 50), new Vector(0, 0, 1)).setMaterial(new Material().setkT(0.5)));
+        SimpleRayTracer tracer = new SimpleRayTracer(filtered);
+        Ray down = new Ray(new Point(0, 0, 10), new Vector(0, 0, -1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A transparent geometry halves the light of a point light behind it
+        filtered.lights.add(new PointLight(new Color(100, 100, 100), new Point(0, 0, 100)));
+        assertEquals(50, tracer.traceRay(down).getColor().getRed(), 1, "Wrong light of the point light");
+        // TC02: A transparent geometry halves the light of a directional light as well
+        filtered.lights.clear();
+        filtered.lights.add(new DirectionalLight(new Color(100, 100, 100), new Vector(0, 0, -1)));
+        assertEquals(50, tracer.traceRay(down).getColor().getRed(), 1, "Wrong light of the directional light");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setShadowMaps(int, Point, double)}.
+     */
+    @Test
+    void testShadowMaps() {
+        Scene mapped = new Scene("Shadow map scene");
+        mapped.geometries.add(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(1)),
+                new Sphere(20, new Point(0, 0, 50)).setMaterial(new Material().setkD(0.5)));
+        mapped.lights.add(new PointLight(new Color(100, 100, 100), new Point(0, 0, 100)));
+        mapped.lights.add(new DirectionalLight(new Color(50, 50, 50), new Vector(1, 0, -2)));
+        SimpleRayTracer exact = new SimpleRayTracer(mapped);
+        SimpleRayTracer tracer = new SimpleRayTracer(mapped).setShadowMaps(256, Point.ZERO, 60);
+        Vector down = new Vector(0, 0, -1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Away from the edges of the shadows, the maps give the exact colors
+        for (int x = -55; x <= 55; x += 10) {
+            Ray ray = new Ray(new Point(x, 3, 10), down);
+            assertEquals(exact.traceRay(ray).getColor(), tracer.traceRay(ray).getColor(),
+                    "Wrong color at x = " + x);
+        }
+        // TC02: Beyond the map of the directional light, the shadow rays are traced
+        Ray far = new Ray(new Point(200, 0, 10), down);
+        assertEquals(exact.traceRay(far).getColor(), tracer.traceRay(far).getColor(), "Wrong color beyond the map");
+        // TC03: Wrong arguments
+        assertThrows(IllegalArgumentException.class, () -> tracer.setShadowMaps(-1, Point.ZERO, 60),
+                "Set a negative resolution");
+        assertThrows(IllegalArgumentException.class, () -> tracer.setShadowMaps(16, Point.ZERO, 0),
+                "Set a zero radius");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The edge of the shadow of the point light is filtered between the umbra and the lit floor
+        int umbra = tracer.traceRay(new Ray(new Point(-35, 0, 10), down)).getColor().getRed();
+        int lit = tracer.traceRay(new Ray(new Point(-55, 0, 10), down)).getColor().getRed();
+        boolean partial = false;
+        for (double x = -40; x >= -48; x -= 0.05) {
+            int red = tracer.traceRay(new Ray(new Point(x, 0, 10), down)).getColor().getRed();
+            partial |= red > umbra && red < lit;
+        }
+        assertTrue(partial, "The edge of the shadow should be partly lit");
+        // TC12: A zero resolution restores the exact shadows
+        tracer.setShadowMaps(0, Point.ZERO, 0);
+        Ray edge = new Ray(new Point(-43.6, 0, 10), down);
+        assertEquals(exact.traceRay(edge).getColor(), tracer.traceRay(edge).getColor(), "The shadows should be exact");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setEnvironmentSamples(int)}.
+     */
+    @Test
+    void testEnvironmentSamples() {
+        float[] rgb = new float[3 * 16 * 8];
+        java.util.Arrays.fill(rgb, 0, rgb.length / 2, 100); // A sky of radiance 100 above a black ground
+        Scene sky = new Scene("Environment scene").setEnvironment(new EnvironmentLight(16, 8, rgb));
+        sky.geometries.add(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(0.5)));
+        SimpleRayTracer tracer = new SimpleRayTracer(sky).setEnvironmentSamples(4096);
+        Ray down = new Ray(new Point(3, 4, 10), new Vector(0, 0, -1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The open sky lights the floor with its radiance times the diffuse coefficient
+        assertEquals(50, tracer.traceRay(down).getColor().getRed(), 2, "Wrong light of the sky");
+        // TC02: A ray missing the scene sees the environment instead of the background color
+        assertEquals(new Color(100, 100, 100).getColor(),
+                tracer.traceRay(new Ray(new Point(0, 0, 10), new Vector(1, 0, 1))).getColor(), "Wrong background");
+        // TC03: A negative number of samples
+        assertThrows(IllegalArgumentException.class, () -> tracer.setEnvironmentSamples(-1),
+                "Set a negative number of samples");
+        // TC04: The wavefront tracer, which queues the samples as lights, lights the floor alike
+        WavefrontRayTracer wavefront = new WavefrontRayTracer(sky);
+        wavefront.setEnvironmentSamples(4096);
+        assertEquals(50, wavefront.traceRay(down).getColor().getRed(), 2, "Wrong light of the sky in a wavefront");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A sphere covering the floor shadows it from the sky
+        sky.geometries.add(new Sphere(5, new Point(3, 4, 2)).setMaterial(new Material().setkD(0.5)));
+        assertEquals(0, tracer.traceRay(new Ray(new Point(3, 4, 1), new Vector(0, 0, -1))).getColor().getRed(), 2,
+                "The covered floor should be dark");
+        // TC12: Without samples, the environment lights nothing
+        tracer.setEnvironmentSamples(0);
+        assertEquals(Color.BLACK.getColor(), tracer.traceRay(down).getColor(), "The floor should not be lit");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setAmbientOcclusion(int, double)}.
+     */
+    @Test
+    void testAmbientOcclusion() {
+        Scene occluded = new Scene("Ambient occlusion scene").setAmbientLight(new AmbientLight(new Color(100, 100, 100), 1));
+        occluded.geometries.add(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(1)),
+                new Sphere(5, new Point(0, 0, 6)).setMaterial(new Material().setkD(1)),
+                new Sphere(5, new Point(50, 0, 30)).setMaterial(new Material().setkD(1)));
+        SimpleRayTracer tracer = new SimpleRayTracer(occluded).setAmbientOcclusion(64, 10);
+        Vector down = new Vector(0, 0, -1);
+        Ray open = new Ray(new Point(-40, 0, 30), new Vector(0, 0.1, -1));
+        Ray under = new Ray(new Point(8, 0, 3), new Vector(-1, 0, -0.2));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: An open floor receives all the ambient light
+        assertEquals(100, tracer.traceRay(open).getColor().getRed(), "The open floor should not be occluded");
+        // TC02: The floor under a sphere receives less of it
+        int shaded = tracer.traceRay(under).getColor().getRed();
+        assertTrue(shaded < 60, "The floor under the sphere should be occluded");
+        // TC03: Wrong arguments
+        assertThrows(IllegalArgumentException.class, () -> tracer.setAmbientOcclusion(-1, 10),
+                "Set a negative number of rays");
+        assertThrows(IllegalArgumentException.class, () -> tracer.setAmbientOcclusion(16, 0),
+                "Set a zero distance");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A geometry beyond the distance does not occlude
+        assertEquals(100, tracer.traceRay(new Ray(new Point(50, 0, 20), down)).getColor().getRed(),
+                "The sphere beyond the distance should not occlude");
+        // TC12: Without occlusion rays, the ambient light is constant
+        tracer.setAmbientOcclusion(0, 0);
+        assertEquals(100, tracer.traceRay(under).getColor().getRed(), "The ambient light should not be occluded");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#constructRefractedRay(Vector, Point, Vector, double)}.
+     */
+    @Test
+    void testConstructRefractedRay() {
+        SimpleRayTracer tracer = new SimpleRayTracer(new Scene("Refraction scene"));
+        Vector n = new Vector(0, 0, 1);
+        Vector v = new Vector(1, 0, -1).normalize();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Entering a denser geometry bends the ray towards the normal by Snell's law
+        Vector entering = tracer.constructRefractedRay(n, Point.ZERO, v, 1.5).getDirection();
+        assertEquals(Math.sqrt(0.5) / 1.5, entering.getX(), 1e-12, "Wrong refraction into the geometry");
+        assertTrue(entering.getZ() < 0, "The refracted ray should enter the geometry");
+        // TC02: Leaving it at the same angle, beyond the critical angle, the ray is reflected
+        Vector leaving = tracer.constructRefractedRay(n, Point.ZERO, new Vector(1, 0, 1).normalize(), 1.5)
+                .getDirection();
+        assertEquals(new Vector(1, 0, -1).normalize(), leaving, "The ray should be reflected inside the geometry");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: An index of 1 does not bend the ray
+        assertEquals(v, tracer.constructRefractedRay(n, Point.ZERO, v, 1).getDirection(), "The ray should not bend");
+        // TC12: A ray along the normal is not bent
+        assertEquals(n.scale(-1), tracer.constructRefractedRay(n, Point.ZERO, n.scale(-1), 1.5).getDirection(),
+                "A perpendicular ray should not bend");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setPhotonMap(PhotonMap)}.
+     */
+    @Test
+    void testPhotonMap() {
+        Scene lens = new Scene("Caustic scene");
+        lens.geometries.add(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(0.5)),
+                new Sphere(20, new Point(0, 0, 40)).setMaterial(new Material().setkT(0.9).setIor(1.5)));
+        lens.lights.add(new PointLight(new Color(100, 100, 100), new Point(0, 0, 100)));
+        SimpleRayTracer tracer = new SimpleRayTracer(lens);
+        Ray focus = new Ray(new Point(0, 0, 10), new Vector(0, 0, -1));
+        Ray away = new Ray(new Point(80, 0, 10), new Vector(0, 0, -1));
+        int shadow = tracer.traceRay(focus).getColor().getRed();
+        int lit = tracer.traceRay(away).getColor().getRed();
+        PhotonMap map = new PhotonMap(new Point(0, 0, 40), 25).setPhotons(50_000);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The lens focuses the light under it
+        tracer.setPhotonMap(map);
+        assertTrue(map.size() > 0, "The photons should be stored when the map is set");
+        assertTrue(tracer.traceRay(focus).getColor().getRed() > shadow + 50, "The caustic should light the floor");
+        // TC02: Away from the lens, the colors are unchanged
+        assertEquals(lit, tracer.traceRay(away).getColor().getRed(), "The floor away from the lens should not change");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Without a map, there are no caustics
+        assertEquals(shadow, tracer.setPhotonMap(null).traceRay(focus).getColor().getRed(),
+                "The caustic should be removed");
+    }
+
+    /**
+     * Test method for the visibility flags and the light linking of the geometries,
+     * {@link Geometry#setCastsShadows(boolean)}, {@link Geometry#setVisibleToCamera(boolean)},
+     * {@link Geometry#setVisibleToReflections(boolean)} and
+     * {@link Geometry#setLights(lighting.LightSource...)}.
+     */
+    @Test
+    void testVisibilityFlags() {
+        Scene flagged = new Scene("Flagged scene");
+        Geometry floor = new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(1));
+        Geometry sphere = new Sphere(10, new Point(0, 0, 50)).setEmission(new Color(0, 0, 200));
+        flagged.geometries.add(floor, sphere);
+        PointLight above = new PointLight(new Color(100, 0, 0), new Point(0, 0, 100));
+        PointLight aside = new PointLight(new Color(0, 100, 0), new Point(300, 0, 100));
+        flagged.lights.add(above);
+        flagged.lights.add(aside);
+        SimpleRayTracer tracer = new SimpleRayTracer(flagged);
+        Ray down = new Ray(new Point(0, 0, 200), new Vector(0, 0, -1));
+        Color shadowed = tracer.traceRay(new Ray(new Point(0, 0, 10), new Vector(0, 0, -1)));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The camera sees the sphere, which shadows the floor under it from the light above
+        assertEquals(new Color(0, 0, 200).getColor(), tracer.traceRay(down).getColor(), "The sphere should be seen");
+        assertEquals(0, shadowed.getColor().getRed(), "The floor should be shadowed");
+        // TC02: A sphere invisible to the camera still casts its shadow
+        sphere.setVisibleToCamera(false);
+        assertEquals(shadowed.getColor(), tracer.traceRay(down).getColor(), "The camera should see the shadowed floor");
+        // TC03: A sphere which casts no shadow
+        sphere.setCastsShadows(false);
+        assertTrue(tracer.traceRay(down).getColor().getRed() > 0, "The floor should be lit");
+        // TC04: A sphere invisible in reflections is not seen in a mirror
+        floor.setMaterial(new Material().setkR(1));
+        assertEquals(new Color(0, 0, 200).getColor(), tracer.traceRay(down).getColor(),
+                "The mirror should reflect the sphere");
+        sphere.setVisibleToReflections(false);
+        assertEquals(flagged.background.getColor(), tracer.traceRay(down).getColor(),
+                "The mirror should not reflect the sphere");
+        // TC05: A floor linked to the light aside only is not lit by the light above
+        floor.setMaterial(new Material().setkD(1)).setLights(aside);
+        Color linked = tracer.traceRay(down);
+        assertEquals(0, linked.getColor().getRed(), "The floor should not be lit by the unlinked light");
+        assertTrue(linked.getColor().getGreen() > 0, "The floor should be lit by the linked light");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A floor linked to no light, and then back to all the lights
+        floor.setLights();
+        assertEquals(Color.BLACK.getColor(), tracer.traceRay(down).getColor(), "The floor should not be lit");
+        floor.setAllLights();
+        assertTrue(tracer.traceRay(down).getColor().getRed() > 0, "The floor should be lit again");
+    }
+
+    /** Produce a picture of a floor lit by a thousand lights, four of them sampled per hit */
+    @Test
+    void renderManyLights() {
+        Scene scene = new Scene("Many lights scene");
+        scene.geometries.add(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(new Material().setkD(0.6)),
+                new Sphere(30, new Point(0, 0, 30)).setMaterial(new Material().setkD(0.5).setkS(0.4)
+                        .setnShininess(60)));
+        for (int i = 0; i < 1000; ++i) {
+            double angle = i * 2.399963; // The golden angle spreads the lights evenly over a disk
+            double radius = 10 * Math.sqrt(i);
+            Color color = new Color(300 + i % 3 * 100, 300 + i % 5 * 50, 300 + i % 7 * 40);
+            Point position = new Point(radius * Math.cos(angle), radius * Math.sin(angle), 15 + i % 4 * 5);
+            scene.lights.add(i % 2 == 0
+                    ? new PointLight(color, position).setkQ(0.05)
+                    : new SpotLight(color, position, new Vector(-Math.cos(angle), -Math.sin(angle), -2)).setkQ(0.05));
+        }
+        Camera.getBuilder()
+                .setLocation(new Point(0, -500, 300)).setDirection(new Vector(0, 500, -300), new Vector(0, 300, 500))
+                .setVpDistance(400).setVpSize(300, 300)
+                .setImageWriter(new ImageWriter("manyLights", 200, 200))
+                .setRayTracer(new SimpleRayTracer(scene).setLightSamples(8))
+                .build()
+                .renderImage()
+                .writeToImage();
+    }
+}
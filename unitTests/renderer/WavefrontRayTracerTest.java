@@ -0,0 +1,170 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import geometries.Triangle;
+import lighting.AmbientLight;
+import lighting.PointLight;
+import lighting.RectangleLight;
+import lighting.SpotLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static java.awt.Color.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the wavefront ray tracer
+ */
+class WavefrontRayTracerTest {
+    /** Scene of reflective and transparent geometries lit by two lights */
+    private final Scene scene = new Scene("Wavefront scene");
+    /** Camera builder for the tests */
+    private final Camera.Builder cameraBuilder = Camera.getBuilder()
+            .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+            .setLocation(new Point(0, 0, 1000)).setVpDistance(1000)
+            .setVpSize(200, 200);
+
+    WavefrontRayTracerTest() {
+        scene.geometries.add(
+                new Sphere(50d, new Point(0, 0, -50)).setEmission(new Color(BLUE))
+                        .setMaterial(new Material().setkD(0.4).setkS(0.3).setnShininess(100).setkT(0.3)),
+                new Sphere(25d, new Point(0, 0, -50)).setEmission(new Color(RED))
+                        .setMaterial(new Material().setkD(0.5).setkS(0.5).setnShininess(100)),
+                new Triangle(new Point(-150, -150, -115), new Point(150, -150, -135), new Point(75, 75, -150))
+                        .setMaterial(new Material().setkD(0.5).setkS(0.5).setnShininess(60).setkR(0.5)),
+                new Plane(new Point(0, 0, -200), new Vector(0, 0, 1)).setEmission(new Color(20, 20, 20))
+                        .setMaterial(new Material().setkD(0.3).setkR(0.3)));
+        scene.setAmbientLight(new AmbientLight(new Color(WHITE), 0.15));
+        scene.lights.add(new SpotLight(new Color(700, 400, 400), new Point(60, 50, 0), new Vector(0, 0, -1))
+                .setkL(4E-5).setkQ(2E-7));
+        scene.lights.add(new PointLight(new Color(300, 300, 500), new Point(-100, 100, 200)).setkL(1E-4));
+    }
+
+    /**
+     * Test method for {@link WavefrontRayTracer#traceRays(Ray[], Color[], int)}.
+     */
+    @Test
+    void testTraceRays() {
+        SimpleRayTracer simple = new SimpleRayTracer(scene);
+        WavefrontRayTracer wavefront = new WavefrontRayTracer(scene);
+        Camera camera = cameraBuilder.setRayTracer(simple).setImageWriter(new ImageWriter("wavefront", 50, 50)).build();
+        Ray[] rays = new Ray[50 * 50];
+        for (int i = 0; i < 50; ++i)
+            for (int j = 0; j < 50; ++j)
+                rays[i * 50 + j] = camera.constructRay(50, 50, j, i);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Breadth-first tracing gives the colors of depth-first tracing, up to the rounding of the sums
+        Color[] colors = new Color[rays.length];
+        wavefront.traceRays(rays, colors, rays.length);
+        for (int p = 0; p < rays.length; ++p) {
+            java.awt.Color expected = simple.traceRay(rays[p]).getColor();
+            java.awt.Color actual = colors[p].getColor();
+            assertEquals(expected.getRed(), actual.getRed(), 1, "Wrong red of pixel " + p);
+            assertEquals(expected.getGreen(), actual.getGreen(), 1, "Wrong green of pixel " + p);
+            assertEquals(expected.getBlue(), actual.getBlue(), 1, "Wrong blue of pixel " + p);
+        }
+
+        // TC02: Every stage processed the batch, and there are shadow rays and secondary rays
+        assertEquals(rays.length, wavefront.getStageItems(WavefrontRayTracer.Stage.GENERATE),
+                "Wrong number of generated rays");
+        assertTrue(wavefront.getStageItems(WavefrontRayTracer.Stage.EXTEND) > rays.length,
+                "Secondary rays should be extended");
+        assertTrue(wavefront.getStageItems(WavefrontRayTracer.Stage.SHADOW) > 0, "Shadow rays should be traced");
+        for (WavefrontRayTracer.Stage stage : WavefrontRayTracer.Stage.values())
+            if (stage != WavefrontRayTracer.Stage.SORT)
+                assertTrue(wavefront.getStageNanos(stage) > 0, "Stage " + stage + " should be timed");
+        assertEquals(0, wavefront.getStageItems(WavefrontRayTracer.Stage.SORT), "Rays should not be sorted by default");
+
+        // TC03: Parallel stages give the same colors
+        Color[] parallel = new Color[rays.length];
+        wavefront.setParallel(true).resetStatistics().traceRays(rays, parallel, rays.length);
+        for (int p = 0; p < rays.length; ++p)
+            assertEquals(colors[p].getColor(), parallel[p].getColor(), "Parallel stages changed pixel " + p);
+
+        // TC04: Sorting the secondary and shadow rays scatters their contributions back to the same pixels
+        Color[] sorted = new Color[rays.length];
+        wavefront.setRaySorting(true).resetStatistics().traceRays(rays, sorted, rays.length);
+        assertEquals(wavefront.getStageItems(WavefrontRayTracer.Stage.EXTEND) - rays.length
+                        + wavefront.getStageItems(WavefrontRayTracer.Stage.SHADOW),
+                wavefront.getStageItems(WavefrontRayTracer.Stage.SORT),
+                "All the secondary rays and shadow rays should be sorted");
+        for (int p = 0; p < rays.length; ++p) {
+            java.awt.Color expected = colors[p].getColor();
+            java.awt.Color actual = sorted[p].getColor();
+            assertEquals(expected.getRed(), actual.getRed(), 1, "Sorting changed the red of pixel " + p);
+            assertEquals(expected.getGreen(), actual.getGreen(), 1, "Sorting changed the green of pixel " + p);
+            assertEquals(expected.getBlue(), actual.getBlue(), 1, "Sorting changed the blue of pixel " + p);
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A single ray
+        assertEquals(colors[25 * 50 + 25].getColor(), wavefront.traceRay(rays[25 * 50 + 25]).getColor(),
+                "Single ray differs from its batch");
+    }
+
+    /**
+     * Traces a batch of rays, starting from the same random stream of the caller.
+     *
+     * @param tracer the tracer
+     * @param rays   the rays
+     * @return the colors of the rays
+     */
+    private static Color[] trace(WavefrontRayTracer tracer, Ray[] rays) {
+        Color[] colors = new Color[rays.length];
+        PixelRandom.current().seed(1, 2, 3);
+        tracer.traceRays(rays, colors, rays.length);
+        return colors;
+    }
+
+    /**
+     * Test method for {@link WavefrontRayTracer#setParallel(boolean)} with random sampling in the stages.
+     */
+    @Test
+    void testParallelSampling() {
+        scene.lights.add(new RectangleLight(new Color(400, 400, 400), new Point(0, 0, 150), new Vector(80, 0, 0),
+                new Vector(0, 80, 0)).setkL(1E-4));
+        WavefrontRayTracer wavefront = new WavefrontRayTracer(scene);
+        Camera camera = cameraBuilder.setRayTracer(wavefront).setImageWriter(new ImageWriter("wavefront", 50, 50))
+                .build();
+        Ray[] rays = new Ray[50 * 50];
+        for (int i = 0; i < 50; ++i)
+            for (int j = 0; j < 50; ++j)
+                rays[i * 50 + j] = camera.constructRay(50, 50, j, i);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The jittered shadow rays of an area light give the same penumbrae in serial and parallel stages
+        Color[] serial = trace(wavefront, rays);
+        assertTrue(wavefront.getPenumbraRate() > 0, "Some hits should be in a penumbra");
+        Color[] parallel = trace(wavefront.setParallel(true), rays);
+        for (int p = 0; p < rays.length; ++p)
+            assertEquals(serial[p].getColor(), parallel[p].getColor(), "Parallel stages changed pixel " + p);
+        // TC02: The ambient occlusion rays of a hit depend on its pixel only
+        wavefront.setParallel(false).setAmbientOcclusion(8, 100);
+        serial = trace(wavefront, rays);
+        parallel = trace(wavefront.setParallel(true), rays);
+        for (int p = 0; p < rays.length; ++p)
+            assertEquals(serial[p].getColor(), parallel[p].getColor(), "Parallel stages changed the occlusion of " + p);
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Sorting the shadow rays keeps their random streams
+        Color[] sorted = trace(wavefront.setRaySorting(true), rays);
+        for (int p = 0; p < rays.length; ++p)
+            assertEquals(serial[p].getColor(), sorted[p].getColor(), "Sorting changed pixel " + p);
+    }
+
+    /** Produce a picture of the scene traced in batches through the wavefront pipeline */
+    @Test
+    void renderWavefront() {
+        scene.geometries.add(new Sphere(30d, new Point(-80, 60, -60))
+                .setMaterial(new Material().setkD(0.2).setkR(0.7).setRoughness(0.1)));
+        cameraBuilder.setRayTracer(new WavefrontRayTracer(scene).setParallel(true).setRaySorting(true))
+                .setImageWriter(new ImageWriter("wavefront", 200, 200))
+                .setBatchSize(4096).setThreads(2)
+                .build()
+                .renderImage()
+                .writeToImage();
+    }
+}